@@ -11,7 +11,6 @@
 package org.eclipse.swt.custom;
 
 import org.eclipse.swt.*;
-import org.eclipse.swt.internal.Compatibility;
 import org.eclipse.swt.widgets.*;
 import java.util.Vector;
 
@@ -22,14 +21,13 @@ class DefaultContent implements StyledTextContent {
 	char[] textStore = new char[0];	// stores the actual text
 	int gapStart = -1;	// the character position start of the gap
 	int gapEnd = -1;	// the character position after the end of the gap
-	int gapLine = -1;	// the line on which the gap exists, the gap will always be associated with one line
 	int highWatermark = 300;	
 	int lowWatermark = 50;		
 	
-	int[][] lines = new int[50][2];	// array of character positions and lengths representing the lines of text
+	int[] lineStarts = new int[50];	// logical character positions of the start of each line of text
 	int lineCount = 0;	// the number of lines of text	
-	int expandExp = 1; 	// the expansion exponent, used to increase the lines array exponentially
-	int replaceExpandExp = 1; 	// the expansion exponent, used to increase the lines array exponentially
+	int shiftLine = 0;	// the first line whose start has not been moved by shiftDelta yet
+	int shiftDelta = 0;	// the pending change of the starts of the lines from shiftLine on
 
 /** 
  * Creates a new DefaultContent and initializes it.  A <code>StyledTextContent</> will always have
@@ -40,48 +38,19 @@ DefaultContent() {
 	setText("");
 }
 /** 
- * Adds a line to the end of the line indexes array.  Increases the size of the array if necessary.
+ * Adds a line to the end of the line starts array.  Increases the size of the array if necessary.
  * <code>lineCount</code> is updated to reflect the new entry.
  * <p>
  *
  * @param start the start of the line
- * @param length the length of the line
  */
-void addLineIndex(int start, int length) {
-	int size = lines.length;
-	if (lineCount == size) {
-		// expand the lines by powers of 2
-		int[][] newLines = new int[size+Compatibility.pow2(expandExp)][2];
-		System.arraycopy(lines, 0, newLines, 0, size);
-		lines = newLines;
-		expandExp++;
+void addLineStart(int start) {
+	if (lineCount == lineStarts.length) {
+		int[] newStarts = new int[lineCount * 2];
+		System.arraycopy(lineStarts, 0, newStarts, 0, lineCount);
+		lineStarts = newStarts;
 	}
-	int[] range = new int[] {start, length};
-	lines[lineCount] = range;
-	lineCount++;
-}
-/** 
- * Adds a line index to the end of <code>linesArray</code>.  Increases the 
- * size of the array if necessary and returns a new array.
- * <p>
- *
- * @param start the start of the line
- * @param length the length of the line
- * @param linesArray the array to which to add the line index
- * @param count the position at which to add the line
- * @return a new array of line indexes
- */
-int[][] addLineIndex(int start, int length, int[][] linesArray, int count) {
-	int size = linesArray.length;
-	int[][] newLines = linesArray;
-	if (count == size) {
-		newLines = new int[size+Compatibility.pow2(replaceExpandExp)][2];
-		replaceExpandExp++;
-		System.arraycopy(linesArray, 0, newLines, 0, size);
-	}
-	int[] range = new int[] {start, length};
-	newLines[count] = range;
-	return newLines;
+	lineStarts[lineCount++] = start;
 }
 /**
  * Adds a <code>TextChangeListener</code> listening for 
@@ -107,9 +76,8 @@ public void addTextChangeListener(TextChangeListener listener) {
  *
  * @param position the position at which a change is occurring
  * @param sizeHint the size of the change
- * @param line the line where the gap will go
  */
-void adjustGap(int position, int sizeHint, int line) {
+void adjustGap(int position, int sizeHint) {
 	if (position == gapStart) {
 		// text is being inserted at the gap position
 		int size = (gapEnd - gapStart) - sizeHint;
@@ -121,35 +89,41 @@ void adjustGap(int position, int sizeHint, int line) {
 		if (lowWatermark <= size && size <= highWatermark)
 			return;
 	}
-	moveAndResizeGap(position, sizeHint, line);
+	moveAndResizeGap(position, sizeHint);
+}
+/**
+ * Returns the character at the given logical offset.
+ * <p>
+ *
+ * @param offset logical character offset (i.e., does not include gap)
+ * @return the character
+ */
+char charAt(int offset) {
+	if (offset >= gapStart) offset += gapEnd - gapStart;
+	return textStore[offset];
 }
 /**
  * Calculates the indexes of each line in the text store.  Assumes no gap exists.  
  * Optimized to do less checking.
  */
 void indexLines(){
-	int start = 0;
 	lineCount = 0;
+	shiftLine = shiftDelta = 0;
+	addLineStart(0);
+	char[] textStore = this.textStore;
 	int textLength = textStore.length;
-	int i;
-	for (i = start; i < textLength; i++) {
+	for (int i = 0; i < textLength; i++) {
 		char ch = textStore[i];					
 		if (ch == SWT.CR) {
 			// see if the next character is a LF
-			if (i + 1 < textLength) {
-				ch = textStore[i+1];
-				if (ch == SWT.LF) {
-					i++;
-				}
+			if (i + 1 < textLength && textStore[i+1] == SWT.LF) {
+				i++;
 			}
-			addLineIndex(start, i - start + 1);
-			start = i + 1;
+			addLineStart(i + 1);
 		} else if (ch == SWT.LF) {
-			addLineIndex(start, i - start + 1);
-			start = i + 1;
+			addLineStart(i + 1);
 		}
 	}
-	addLineIndex(start, i - start);
 }
 /** 
  * Returns whether or not the given character is a line delimiter.  Both CR and LF 
@@ -206,118 +180,60 @@ protected boolean isValidReplace(int start, int replaceLength, String newText){
 	return true;
 }
 /**
- * Calculates the indexes of each line of text in the given range.
+ * Calculates the starts of the lines that follow <code>startLine</code> up to
+ * and including <code>endLine</code>, after the text of these lines changed.  
+ * The lines after <code>endLine</code> are moved by the change in length of 
+ * the text.
  * <p>
  *
- * @param offset the logical start offset of the text lineate
- * @param length the length of the text to lineate, includes gap
- * @param numLines the number of lines to initially allocate for the line index array,
- *	passed in for efficiency (the exact number of lines may be known)
- * @return a line indexes array where each line is identified by a start offset and 
- * 	a length
- */
-int[][] indexLines(int offset, int length, int numLines){
-	int[][] indexedLines = new int[numLines][2];
-	int start = 0;
-	int lineCount = 0;
-	int i;
-	replaceExpandExp = 1;
-	for (i = start; i < length; i++) {
-		int location = i + offset; 
-		if ((location >= gapStart) && (location < gapEnd)) {
-			// ignore the gap
-		} else {
-			char ch = textStore[location];				
-			if (ch == SWT.CR) {
-				// see if the next character is a LF
-				if (location+1 < textStore.length) {
-					ch = textStore[location+1];
-					if (ch == SWT.LF) {
-						i++;
-					} 
-				}
-				indexedLines = addLineIndex(start, i - start + 1, indexedLines, lineCount);
-				lineCount++;
-				start = i + 1;
-			} else if (ch == SWT.LF) {
-				indexedLines = addLineIndex(start, i - start + 1, indexedLines, lineCount);
-				lineCount++;
-				start = i + 1;
+ * @param startLine the first line that changed, its start does not change
+ * @param endLine the last line that changed
+ * @param start the logical start offset of startLine
+ * @param end the logical end offset of the changed text of the lines, includes 
+ * 	the delimiter of endLine
+ * @param delta the change in length of the text
+ */
+void indexLines(int startLine, int endLine, int start, int end, int delta) {
+	int[] newStarts = new int[10];
+	int count = 0;
+	boolean lastLine = endLine == lineCount - 1;
+	int charCount = getCharCount();
+	for (int i = start; i < end; i++) {
+		char ch = charAt(i);
+		if (ch == SWT.CR) {
+			// see if the next character is a LF
+			if (i + 1 < charCount && charAt(i + 1) == SWT.LF) {
+				i++;
 			}
+		} else if (ch != SWT.LF) {
+			continue;
 		}
-	}
-	int[][] newLines = new int[lineCount+1][2];
-	System.arraycopy(indexedLines, 0, newLines, 0, lineCount);
-	int[] range = new int[] {start, i - start};
-	newLines[lineCount] = range;
-	return newLines; 
-}
-/**
- * Inserts text.
- * <p>
- *
- * @param position the position at which to insert the text
- * @param text the text to insert
- */
-void insert(int position, String text) {	
-	if (text.length() == 0) return;
-				
-	int startLine = getLineAtOffset(position);
-	int change = text.length();
-	boolean endInsert = position == getCharCount();
-	adjustGap(position, change, startLine);
-
-	// during an insert the gap will be adjusted to start at
-	// position and it will be associated with startline, the
-	// inserted text will be placed in the gap		
-	int startLineOffset = getOffsetAtLine(startLine);
-	// at this point, startLineLength will include the start line
-	// and all of the newly inserted text
-	int	startLineLength = getPhysicalLine(startLine).length();
-	
-	if (change > 0) {
-		// shrink gap 
-		gapStart += (change);
-		for (int i = 0; i < text.length(); i++) {
-			textStore[position + i]= text.charAt(i);
+		// the delimiter at the end starts the line after endLine, which already exists
+		if (i + 1 == end && !lastLine) break;
+		if (count == newStarts.length) {
+			int[] newArray = new int[count * 2];
+			System.arraycopy(newStarts, 0, newArray, 0, count);
+			newStarts = newArray;
 		}
+		newStarts[count++] = i + 1;
 	}
-		
-	// figure out the number of new lines that have been inserted
-	int [][] newLines = indexLines(startLineOffset, startLineLength, 10);
-	// only insert an empty line if it is the last line in the text
-	int numNewLines = newLines.length - 1;
-	if (newLines[numNewLines][1] == 0) {
-		// last inserted line is a new line
-		if (endInsert) {
-			// insert happening at end of the text, leave numNewLines as
-			// is since the last new line will not be concatenated with another
-			// line 
-			numNewLines += 1;
-		} else {
-			numNewLines -= 1;
+
+	// move the lines after endLine, the move is applied lazily by getLineStart()
+	// so that typing in a line does not touch the starts of all of the lines below it
+	moveShift(endLine + 1);
+	shiftDelta += delta;
+	int change = count - (endLine - startLine);
+	if (change != 0) {
+		if (lineCount + change > lineStarts.length) {
+			int[] newArray = new int[Math.max(lineCount + change, lineStarts.length * 2)];
+			System.arraycopy(lineStarts, 0, newArray, 0, lineCount);
+			lineStarts = newArray;
 		}
+		System.arraycopy(lineStarts, endLine + 1, lineStarts, endLine + 1 + change, lineCount - endLine - 1);
+		shiftLine += change;
+		lineCount += change;
 	}
-	
-	// make room for the new lines
-	expandLinesBy(numNewLines);
-	// shift down the lines after the replace line
-	for (int i = lineCount - 1; i > startLine; i--) {
-		lines[i + numNewLines]=lines[i];
-	}
-	// insert the new lines
-	for (int i = 0; i < numNewLines; i++) {
-		newLines[i][0] += startLineOffset;
-		lines[startLine + i]=newLines[i];
-	}
-	// update the last inserted line
-	if (numNewLines < newLines.length) {
-		newLines[numNewLines][0] += startLineOffset;
-		lines[startLine + numNewLines] = newLines[numNewLines];
-	}
-	
-	lineCount += numNewLines;
-	gapLine = getLineAtPhysicalOffset(gapStart);
+	System.arraycopy(newStarts, 0, lineStarts, startLine + 1, count);
 }
 /**
  * Moves the gap and adjusts its size in anticipation of a text change.  
@@ -327,9 +243,8 @@ void insert(int position, String text) {
  *
  * @param position the position at which a change is occurring
  * @param size the size of the change
- * @param newGapLine the line where the gap should be put
  */
-void moveAndResizeGap(int position, int size, int newGapLine) {
+void moveAndResizeGap(int position, int size) {
 	char[] content = null;
 	int oldSize = gapEnd - gapStart;
 	int newSize;
@@ -338,16 +253,6 @@ void moveAndResizeGap(int position, int size, int newGapLine) {
 	} else {
 		newSize = lowWatermark - size;
 	}
-	// remove the old gap from the lines information
-	if (gapExists()) {
-		// adjust the line length
-		lines[gapLine][1] = lines[gapLine][1] - oldSize;
-		// adjust the offsets of the lines after the gapLine
-		for (int i = gapLine + 1; i < lineCount; i++) {
-			lines[i][0] = lines[i][0] - oldSize;
-		}
-	}
-	
 	if (newSize < 0) {
 		if (oldSize > 0) {
 			// removing the gap
@@ -379,18 +284,6 @@ void moveAndResizeGap(int position, int size, int newGapLine) {
 	textStore = content;
 	gapStart = newGapStart;
 	gapEnd = newGapEnd;
-	
-	// add the new gap to the lines information
-	if (gapExists()) {
-		gapLine = newGapLine;
-		// adjust the line length
-		int gapLength = gapEnd - gapStart;
-		lines[gapLine][1] = lines[gapLine][1] + (gapLength);
-		// adjust the offsets of the lines after the gapLine
-		for (int i = gapLine + 1; i < lineCount; i++) {
-			lines[i][0] = lines[i][0] + gapLength;
-		}
-	}
 }
 /** 
  * Returns the number of lines that are in the specified text.
@@ -476,27 +369,12 @@ public int getCharCount() {
  */
 public String getLine(int index) {
 	if ((index >= lineCount) || (index < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
-	int start = lines[index][0];
-	int length = lines[index][1];
-	int end = start + length - 1;
-	if (!gapExists() || (end < gapStart) || (start >= gapEnd)) {
-		// line is before or after the gap
-		while ((length - 1 >= 0) && isDelimiter(textStore[start+length-1])) {
-			length--;
-		}
-		return new String(textStore, start, length);
-	} else {
-		// gap is in the specified range, strip out the gap
-		StringBuffer buf = new StringBuffer();
-		int gapLength = gapEnd - gapStart;
-		buf.append(textStore, start, gapStart - start);
-		buf.append(textStore, gapEnd, length - gapLength - (gapStart - start));
-		length = buf.length();
-		while ((length - 1 >=0) && isDelimiter(buf.charAt(length - 1))) {
-			length--;
-		}
-		return buf.toString().substring(0, length);
+	int start = getLineStart(index);
+	int end = index + 1 < lineCount ? getLineStart(index + 1) : getCharCount();
+	while ((end > start) && isDelimiter(charAt(end - 1))) {
+		end--;
 	}
+	return getTextRange(start, end - start);
 }
 /**
  * Returns the line delimiter that should be used by the StyledText 
@@ -510,40 +388,6 @@ public String getLine(int index) {
 public String getLineDelimiter() {
 	return LineDelimiter;
 }
-/**
- * Returns the line at the given index with delimiters.
- * <p>
- * @param index	the index of the line to return
- * @return the logical line text (i.e., without the gap) with delimiters
- */
-String getFullLine(int index) {
-	int start = lines[index][0];
-	int length = lines[index][1];
-	int end = start + length - 1;
-	if (!gapExists() || (end < gapStart) || (start >= gapEnd)) {
-		// line is before or after the gap
-		return new String(textStore, start, length);
-	} else {
-		// gap is in the specified range, strip out the gap
-		StringBuffer buffer = new StringBuffer();
-		int gapLength = gapEnd - gapStart;
-		buffer.append(textStore, start, gapStart - start);
-		buffer.append(textStore, gapEnd, length - gapLength - (gapStart - start));
-		return buffer.toString();
-	}
-}
-/**
- * Returns the physical line at the given index (i.e., with delimiters and the gap).
- * <p>
- *
- * @param index the line index
- * @return the physical line 
- */
-String getPhysicalLine(int index) {
-	int start = lines[index][0];
-	int length = lines[index][1];
-	return getPhysicalText(start, length);
-}
 /**
  * @return the number of lines in the text store
  */
@@ -562,67 +406,30 @@ public int getLineCount(){
  */
 public int getLineAtOffset(int charPosition){
 	if ((charPosition > getCharCount()) || (charPosition < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
-	int position;
-	if (charPosition < gapStart) {
-		// position is before the gap
-		position = charPosition;
-	} else {
-		// position includes the gap
-		position = charPosition + (gapEnd - gapStart);
-	}
-
-	// if last line and the line is not empty you can ask for 
-	// a position that doesn't exist (the one to the right of the 
-	// last character) - for inserting
-	if (lineCount > 0) {
-		int lastLine = lineCount - 1;
-		if (position == lines[lastLine][0] + lines[lastLine][1]) 
-			return lastLine;
-	}
-
+	// find the last line that starts at or before the position
 	int high = lineCount;
-	int low = -1;
-	int index = lineCount;
+	int low = 0;
 	while (high - low > 1) {
-		index = (high + low) / 2;
-		int lineStart = lines[index][0];
-		int lineEnd = lineStart + lines[index][1] - 1;
-		if (position <= lineStart) {
-			high = index;
-		} else if (position <= lineEnd) {
-			high = index;
-			break;
-		} else {
+		int index = (high + low) >>> 1;
+		if (getLineStart(index) <= charPosition) {
 			low = index;
+		} else {
+			high = index;
 		}
 	}
-	return high;
+	return low;
 }
 /**
- * Returns the line index at the given physical offset.
+ * Returns the logical start offset of the given line.
  * <p>
  *
- * @param position physical character offset (i.e., includes gap)
- * @return the line index
+ * @param index the line index
+ * @return the start offset of the line
  */
-int getLineAtPhysicalOffset(int position){
-	int high = lineCount;
-	int low = -1;
-	int index = lineCount;
-	while (high - low > 1) {
-		index = (high + low) / 2;
-		int lineStart = lines[index][0];
-		int lineEnd = lineStart + lines[index][1] - 1;
-		if (position <= lineStart) {
-			high = index;
-		} else if (position <= lineEnd) {
-			high = index;
-			break;
-		} else {
-			low = index;
-		}
-	}
-	return high;
+int getLineStart(int index) {
+	int start = lineStarts[index];
+	if (index >= shiftLine) start += shiftDelta;
+	return start;
 }
 /**
  * Returns the logical offset of the given line.
@@ -638,27 +445,26 @@ int getLineAtPhysicalOffset(int position){
 public int getOffsetAtLine(int lineIndex) {
 	if (lineIndex == 0) return 0;
 	if ((lineIndex >= lineCount) || (lineIndex < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
-	int start = lines[lineIndex][0];
-	if (start > gapEnd) {
-		return start - (gapEnd - gapStart);
-	} else {
-		return start;
-	}
+	return getLineStart(lineIndex);
 }	
 /**
- * Increases the line indexes array to accommodate more lines.
+ * Applies the pending move of the line starts to the lines before 
+ * <code>line</code>, or takes it back from the lines from <code>line</code>
+ * on, so that the move is pending from <code>line</code> on.
  * <p>
  *
- * @param numLines the number to increase the array by
+ * @param line the first line that the pending move applies to
  */
-void expandLinesBy(int numLines) {
-	int size = lines.length;
-	if (size - lineCount >= numLines) {
-		return;
+void moveShift(int line) {
+	if (shiftDelta != 0) {
+		for (int i = shiftLine; i < line; i++) {
+			lineStarts[i] += shiftDelta;
+		}
+		for (int i = line; i < shiftLine; i++) {
+			lineStarts[i] -= shiftDelta;
+		}
 	}
-	int[][] newLines = new int[size+Math.max(10, numLines)][2];
-	System.arraycopy(lines, 0, newLines, 0, size);
-	lines = newLines;
+	shiftLine = line;
 }
 /**	 
  * Reports an SWT error.
@@ -778,15 +584,40 @@ public void replaceTextRange(int start, int replaceLength, String newText){
 	event.newCharCount = newText.length();
 	sendTextEvent(event);
 
-	// first delete the text to be replaced
-	delete(start, replaceLength, event.replaceLineCount + 1);
-	// then insert the new text
-	insert(start, newText);
+	// find the lines that are changed, a CR that ends the line before 
+	// may join a LF at the start of the new text
+	int startLine = getLineAtOffset(start);
+	if (startLine > 0 && start == getLineStart(startLine) && charAt(start - 1) == SWT.CR) {
+		startLine--;
+	}
+	int endLine = getLineAtOffset(start + replaceLength);
+	int lineStart = getLineStart(startLine);
+	int lineEnd = endLine + 1 < lineCount ? getLineStart(endLine + 1) : getCharCount();
+	int delta = newText.length() - replaceLength;
+	replace(start, replaceLength, newText);
+	indexLines(startLine, endLine, lineStart, lineEnd + delta, delta);
 	// inform listeners
 	event = new StyledTextEvent(this);
 	event.type = StyledText.TextChanged;
 	sendTextEvent(event);
 }
+/**
+ * Replaces text in the text store.  The gap is moved to the start of the 
+ * replaced text, the replaced text is added to the gap and the new text is
+ * copied into the gap.
+ * <p>
+ *
+ * @param position the position at which the text to replace starts
+ * @param length the length of the text to replace
+ * @param text the new text
+ */
+void replace(int position, int length, String text) {
+	int change = text.length();
+	adjustGap(position, change);
+	gapEnd += length;
+	text.getChars(0, change, textStore, gapStart);
+	gapStart += change;
+}
 /**
  * Sends the text listeners the TextChanged event.
  */
@@ -806,76 +637,10 @@ public void setText (String text){
 	textStore = text.toCharArray();
 	gapStart = -1;
 	gapEnd = -1;
-	expandExp = 1;
 	indexLines();
 	StyledTextEvent event = new StyledTextEvent(this);
 	event.type = StyledText.TextSet;
 	event.text = "";
 	sendTextEvent(event);
 }
-/**
- * Deletes text.
- * <p>
- * @param position the position at which the text to delete starts
- * @param length the length of the text to delete
- * @param numLines the number of lines that are being deleted
- */
-void delete(int position, int length, int numLines) {
-	if (length == 0) return;
-		
-	int startLine = getLineAtOffset(position);
-	int startLineOffset = getOffsetAtLine(startLine);
-	int endLine = getLineAtOffset(position + length);
-
-	String endText = "";
-	boolean splittingDelimiter = false;
-	if (position + length < getCharCount()) {
-		endText = getTextRange(position + length - 1, 2);
-		if ((endText.charAt(0) == SWT.CR) && (endText.charAt(1) == SWT.LF)) {
-			splittingDelimiter = true;
-		}
-	}
-
-	adjustGap(position + length, -length, startLine);
-	int [][] oldLines = indexLines(position, length + (gapEnd - gapStart), numLines);
-	
-	// enlarge the gap - the gap can be enlarged either to the
-	// right or left
-	if (position + length == gapStart) {
-		gapStart -= length;
-	} else {
-		gapEnd += length;
-	}		
-
-	// figure out the length of the new concatenated line, do so by
-	// finding the first line delimiter after position
-	int j = position;
-	boolean eol = false;
-	while (j < textStore.length && !eol) {
-		if (j < gapStart || j >= gapEnd) {
-			char ch = textStore[j];
-			if (isDelimiter(ch)) {
-				if (j + 1 < textStore.length) {
-					if (ch == SWT.CR && (textStore[j+1] == SWT.LF)) {
-						j++;
-					}
-				}
-				eol = true;
-			} 
-		}
-		j++;
-	}
-	// update the line where the deletion started
-	lines[startLine][1] = (position - startLineOffset) + (j - position);
-	// figure out the number of lines that have been deleted
-	int numOldLines = oldLines.length - 1;
-	if (splittingDelimiter) numOldLines -= 1;
-	// shift up the lines after the last deleted line, no need to update
-	// the offset or length of the lines
-	for (int i = endLine + 1; i < lineCount; i++) {
-		lines[i - numOldLines] = lines[i];
-	}
-	lineCount -= numOldLines;
-	gapLine = getLineAtPhysicalOffset(gapStart);		
-}
 }
@@ -0,0 +1,421 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.custom;
+
+import org.eclipse.swt.*;
+import org.eclipse.swt.widgets.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.Vector;
+
+/**
+ * A read-only <code>StyledTextContent</code> implementation that shows the
+ * contents of a file without reading the file into memory.  The file is
+ * mapped into memory by the operating system, and only the characters that
+ * are requested by <code>getLine</code> and <code>getTextRange</code> are
+ * decoded.
+ * <p>
+ * The line delimiters are found by scanning the file forward, no further
+ * than the last line or offset that was asked for.  The start of every
+ * 64th line is remembered, so the line index takes a small fraction of the
+ * memory of the text.  Note that <code>getLineCount</code> has to scan the
+ * whole file.
+ * </p><p>
+ * The file must be encoded with a character set that encodes every
+ * character in a single byte, such as ISO-8859-1 or US-ASCII, so that
+ * the offsets of the content are the offsets of the file, and the file
+ * must not be larger than <code>Integer.MAX_VALUE</code> bytes.  The file
+ * should not be changed while it is shown.
+ * </p><p>
+ * The content can be used in a <code>StyledText</code> widget by calling
+ * <code>StyledText.setContent</code>.  The widget should not be editable,
+ * since <code>replaceTextRange</code> and <code>setText</code> are not
+ * supported.
+ * </p>
+ *
+ * @see StyledText#setContent(StyledTextContent)
+ *
+ * @since 3.7
+ */
+public class MappedFileContent implements StyledTextContent {
+	private final static String LineDelimiter = System.getProperty("line.separator");
+
+	Vector textListeners = new Vector(); // stores text listeners for event sending
+	ByteBuffer bytes;	// the mapped file
+	int charCount;
+	Charset charset;
+	boolean latin1;	// bytes map to the characters of the same value
+
+	/* The line index, see scan() */
+	int[] chunkStarts = new int[16];	// start of every CHUNK_SIZE-th line
+	int lineCount = 1;	// the number of lines that were found
+	int scanOffset = 0;	// the offset up to which the text was scanned
+	boolean scanned;	// the whole text was scanned
+	int lastLine, lastLineStart;	// the last line that was looked up
+
+	final static int CHUNK_SHIFT = 6;
+	final static int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	final static int SCAN_SIZE = 64 * 1024;
+
+/**
+ * Creates a new <code>MappedFileContent</code> that shows the contents of
+ * the given file.
+ * <p>
+ *
+ * @param file the file to show
+ * @param charsetName the name of the character set of the file, or
+ * 	<code>null</code> for ISO-8859-1
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT - if the file is null</li>
+ *    <li>ERROR_INVALID_ARGUMENT - if the character set is not supported or does not encode every character in a single byte</li>
+ *    <li>ERROR_INVALID_ARGUMENT - if the file is larger than <code>Integer.MAX_VALUE</code> bytes</li>
+ * </ul>
+ * @exception SWTException <ul>
+ *    <li>ERROR_IO - if an IO error occurs while mapping the file</li>
+ * </ul>
+ */
+public MappedFileContent(File file, String charsetName) {
+	super();
+	if (file == null) error(SWT.ERROR_NULL_ARGUMENT);
+	if (charsetName == null) charsetName = "ISO-8859-1";
+	try {
+		charset = Charset.forName(charsetName);
+	} catch (IllegalArgumentException e) {
+		error(SWT.ERROR_INVALID_ARGUMENT);
+	}
+	if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1 || charset.newDecoder().maxCharsPerByte() != 1) {
+		error(SWT.ERROR_INVALID_ARGUMENT);
+	}
+	String name = charset.name();
+	latin1 = name.equals("ISO-8859-1") || name.equals("US-ASCII");
+	FileInputStream stream = null;
+	try {
+		stream = new FileInputStream(file);
+		FileChannel channel = stream.getChannel();
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE) error(SWT.ERROR_INVALID_ARGUMENT);
+		bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		charCount = (int) size;
+	} catch (IOException e) {
+		SWT.error(SWT.ERROR_IO, e);
+	} finally {
+		try {
+			if (stream != null) stream.close();
+		} catch (IOException e) {}
+	}
+	if (charCount == 0) scanned = true;
+}
+/**
+ * Creates a copy of the given content that shares the mapped file and
+ * has its own line index, so that it can be read in another thread.
+ * <p>
+ *
+ * @param content the content to copy
+ */
+MappedFileContent(MappedFileContent content) {
+	super();
+	bytes = content.bytes.duplicate();
+	charCount = content.charCount;
+	charset = content.charset;
+	latin1 = content.latin1;
+	chunkStarts = (int[]) content.chunkStarts.clone();
+	lineCount = content.lineCount;
+	scanOffset = content.scanOffset;
+	scanned = content.scanned;
+	lastLine = content.lastLine;
+	lastLineStart = content.lastLineStart;
+}
+/**
+ * Adds a <code>TextChangeListener</code> listening for
+ * <code>TextChangingEvent</code> and <code>TextChangedEvent</code>. A
+ * <code>TextChangingEvent</code> is sent before changes to the text occur.
+ * A <code>TextChangedEvent</code> is sent after changes to the text
+ * occurred.
+ * <p>
+ *
+ * @param listener the listener
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT when listener is null</li>
+ * </ul>
+ */
+public void addTextChangeListener(TextChangeListener listener) {
+	if (listener == null) error(SWT.ERROR_NULL_ARGUMENT);
+	StyledTextListener typedListener = new StyledTextListener(listener);
+	textListeners.addElement(typedListener);
+}
+/**
+ * Returns the offset of the line delimiter that ends the line starting at
+ * the given offset, or the number of characters if the line is the last one.
+ */
+int delimiterAt(int lineStart) {
+	ByteBuffer bytes = this.bytes;
+	int end = charCount;
+	for (int i = lineStart; i < end; i++) {
+		byte ch = bytes.get(i);
+		if (ch == SWT.LF || ch == SWT.CR) return i;
+	}
+	return end;
+}
+void error (int code) {
+	SWT.error(code);
+}
+/**
+ * Returns the number of characters in the content.
+ * <p>
+ *
+ * @return the number of characters in the content
+ */
+public int getCharCount() {
+	return charCount;
+}
+/**
+ * Returns the line at <code>index</code> without delimiters.
+ * <p>
+ *
+ * @param index	the index of the line to return
+ * @return the logical line text (i.e., without the delimiters)
+ * @exception IllegalArgumentException <ul>
+ *   <li>ERROR_INVALID_ARGUMENT when index is out of range</li>
+ * </ul>
+ */
+public String getLine(int index) {
+	int start = getOffsetAtLine(index);
+	return getTextRange(start, delimiterAt(start) - start);
+}
+/**
+ * Returns the line index at the given character offset.
+ * <p>
+ *
+ * @param charPosition	the character offset
+ * @return the line index
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_INVALID_ARGUMENT when charPosition is out of range</li>
+ * </ul>
+ */
+public int getLineAtOffset(int charPosition) {
+	if ((charPosition > charCount) || (charPosition < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
+	while (!scanned && scanOffset <= charPosition) scan();
+	int line, lineStart;
+	if (lastLineStart <= charPosition && charPosition - lastLineStart < SCAN_SIZE) {
+		line = lastLine;
+		lineStart = lastLineStart;
+	} else {
+		/* find the last chunk that starts at or before the offset */
+		int low = 0, high = ((lineCount - 1) >> CHUNK_SHIFT) + 1;
+		while (high - low > 1) {
+			int mid = (low + high) >>> 1;
+			if (chunkStarts[mid] <= charPosition) {
+				low = mid;
+			} else {
+				high = mid;
+			}
+		}
+		line = low << CHUNK_SHIFT;
+		lineStart = chunkStarts[low];
+	}
+	while (line < lineCount - 1) {
+		int next = nextLineStart(lineStart);
+		if (next > charPosition) break;
+		line++;
+		lineStart = next;
+	}
+	lastLine = line;
+	lastLineStart = lineStart;
+	return line;
+}
+/**
+ * Returns the number of lines in the content.  The whole text is scanned
+ * for line delimiters the first time this is called.
+ * <p>
+ *
+ * @return the number of lines in the content
+ */
+public int getLineCount() {
+	while (!scanned) scan();
+	return lineCount;
+}
+/**
+ * Returns the line delimiter that should be used by the StyledText
+ * widget when inserting new lines.  This delimiter may be different than the
+ * delimiter that is used by the <code>StyledTextContent</code> interface.
+ * <p>
+ *
+ * @return the platform line delimiter as specified in the line.separator
+ * 	system property.
+ */
+public String getLineDelimiter() {
+	return LineDelimiter;
+}
+/**
+ * Returns the offset of the given line.
+ * <p>
+ *
+ * @param lineIndex index of line
+ * @return the starting offset of the line.  When there are not any lines,
+ * 	getOffsetAtLine(0) is a valid call that should answer 0.
+ * @exception IllegalArgumentException <ul>
+ *   <li>ERROR_INVALID_ARGUMENT when lineIndex is out of range</li>
+ * </ul>
+ */
+public int getOffsetAtLine(int lineIndex) {
+	if (lineIndex == 0) return 0;
+	while (!scanned && lineCount <= lineIndex) scan();
+	if ((lineIndex >= lineCount) || (lineIndex < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
+	int line, lineStart;
+	if (lastLine <= lineIndex && lineIndex - lastLine < (lineIndex & (CHUNK_SIZE - 1))) {
+		line = lastLine;
+		lineStart = lastLineStart;
+	} else {
+		line = lineIndex & ~(CHUNK_SIZE - 1);
+		lineStart = chunkStarts[lineIndex >> CHUNK_SHIFT];
+	}
+	while (line < lineIndex) {
+		lineStart = nextLineStart(lineStart);
+		line++;
+	}
+	lastLine = line;
+	lastLineStart = lineStart;
+	return lineStart;
+}
+/**
+ * Returns a string representing the content at the given range.
+ * <p>
+ *
+ * @param start the start offset of the text to return
+ * @param length the length of the text to return
+ * @return the text
+ */
+public String getTextRange(int start, int length) {
+	if (length == 0) return "";
+	if (latin1) {
+		char[] chars = new char[length];
+		ByteBuffer bytes = this.bytes;
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) (bytes.get(start + i) & 0xFF);
+		}
+		return new String(chars);
+	}
+	ByteBuffer range = bytes.duplicate();
+	range.limit(start + length);
+	range.position(start);
+	CharsetDecoder decoder = charset.newDecoder();
+	decoder.onMalformedInput(CodingErrorAction.REPLACE);
+	decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	try {
+		return decoder.decode(range).toString();
+	} catch (CharacterCodingException e) {
+		return "";
+	}
+}
+/**
+ * Returns the start of the line that follows the line starting at the
+ * given offset.  The line must not be the last one.
+ */
+int nextLineStart(int lineStart) {
+	int index = delimiterAt(lineStart);
+	if (bytes.get(index) == SWT.CR && index + 1 < charCount && bytes.get(index + 1) == SWT.LF) {
+		index++;
+	}
+	return index + 1;
+}
+/**
+ * Removes the specified <code>TextChangeListener</code>.
+ * <p>
+ *
+ * @param listener the listener which should no longer be notified
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT when listener is null</li>
+ * </ul>
+ */
+public void removeTextChangeListener(TextChangeListener listener){
+	if (listener == null) error(SWT.ERROR_NULL_ARGUMENT);
+	for (int i = 0; i < textListeners.size(); i++) {
+		TypedListener typedListener = (TypedListener) textListeners.elementAt(i);
+		if (typedListener.getEventListener () == listener) {
+			textListeners.removeElementAt(i);
+			break;
+		}
+	}
+}
+/**
+ * The content is read-only, replacing text is not supported.
+ * <p>
+ *
+ * @param start	start offset of text to replace
+ * @param replaceLength length of text to replace
+ * @param newText the new text
+ *
+ * @exception IllegalArgumentException <ul>
+ *   <li>ERROR_INVALID_ARGUMENT always</li>
+ * </ul>
+ */
+public void replaceTextRange(int start, int replaceLength, String newText){
+	error(SWT.ERROR_INVALID_ARGUMENT);
+}
+/**
+ * Scans the next <code>SCAN_SIZE</code> characters for line delimiters.
+ * The start of a line is stored when the index of the line is a multiple
+ * of <code>CHUNK_SIZE</code>.  A CR/LF delimiter is never split between
+ * two scans.
+ */
+void scan() {
+	ByteBuffer bytes = this.bytes;
+	int end = Math.min(charCount, scanOffset + SCAN_SIZE);
+	int i = scanOffset;
+	while (i < end) {
+		byte ch = bytes.get(i++);
+		if (ch == SWT.CR) {
+			if (i < charCount && bytes.get(i) == SWT.LF) i++;
+		} else if (ch != SWT.LF) {
+			continue;
+		}
+		if ((lineCount & (CHUNK_SIZE - 1)) == 0) {
+			int chunk = lineCount >> CHUNK_SHIFT;
+			if (chunk == chunkStarts.length) {
+				int[] newChunkStarts = new int[chunk * 2];
+				System.arraycopy(chunkStarts, 0, newChunkStarts, 0, chunk);
+				chunkStarts = newChunkStarts;
+			}
+			chunkStarts[chunk] = i;
+		}
+		lineCount++;
+	}
+	scanOffset = i;
+	if (scanOffset >= charCount) scanned = true;
+}
+/**
+ * Returns a copy of the content that another thread can read while this
+ * content is used by the widget.  Only the line index is copied.
+ * <p>
+ *
+ * @return the copy
+ */
+MappedFileContent snapshot() {
+	return new MappedFileContent(this);
+}
+/**
+ * The content is read-only, setting the text is not supported.
+ * <p>
+ *
+ * @param text the new text
+ *
+ * @exception IllegalArgumentException <ul>
+ *   <li>ERROR_INVALID_ARGUMENT always</li>
+ * </ul>
+ */
+public void setText (String text){
+	error(SWT.ERROR_INVALID_ARGUMENT);
+}
+}
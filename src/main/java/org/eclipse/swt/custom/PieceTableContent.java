@@ -0,0 +1,734 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.custom;
+
+import org.eclipse.swt.*;
+import org.eclipse.swt.widgets.*;
+import java.util.Vector;
+
+/**
+ * A <code>StyledTextContent</code> implementation that is suited to large
+ * documents.  The text that was set with <code>setText</code> is never
+ * copied, and inserted text is appended to a separate buffer.  The document
+ * is described by a sequence of pieces of these two buffers, which is kept
+ * in a balanced tree.  Replacing text costs O(log n) in the number of pieces
+ * plus the size of the change, and does not depend on the size of the
+ * document or on the distance to the previous change.
+ * <p>
+ * The line delimiters of each buffer are indexed once, in a flat array of
+ * positions, when text is added to the buffer.  The tree keeps the number of
+ * delimiters of each subtree, so that lines and offsets are converted into
+ * each other in O(log n) as well.
+ * </p><p>
+ * The content can be used in a <code>StyledText</code> widget by calling
+ * <code>StyledText.setContent</code>.
+ * </p>
+ *
+ * @see StyledText#setContent(StyledTextContent)
+ *
+ * @since 3.7
+ */
+public class PieceTableContent implements StyledTextContent {
+	private final static String LineDelimiter = System.getProperty("line.separator");
+
+	Vector textListeners = new Vector(); // stores text listeners for event sending
+
+	/* The buffers, 0 is the original text and 1 is the text that was added */
+	char[][] buffers = new char[2][];
+	int[][] bufferBreaks = new int[2][];	// positions that end a line in each buffer, see indexBreaks()
+	int addLength, addBreakCount;
+
+	/* The pieces, kept in a treap ordered by their position in the document */
+	int[] left, right, priority;
+	int[] buffer, start, length, breaks;	// the piece
+	int[] totalLength, totalBreaks;	// the piece and all of its descendents
+	int root = -1, freeNode = -1;
+	int seed = 0x2545F491;
+	int splitLeft, splitRight;	// results of split()
+
+/**
+ * Creates a new <code>PieceTableContent</code> that holds an empty line.
+ */
+public PieceTableContent() {
+	super();
+	setText("");
+}
+/**
+ * Creates a copy of the given content that shares its buffers and has its
+ * own copy of the pieces.  The buffers can be shared because the text in
+ * them is never changed, text is only appended to the add buffer.
+ * <p>
+ *
+ * @param content the content to copy
+ */
+PieceTableContent(PieceTableContent content) {
+	super();
+	buffers = (char[][]) content.buffers.clone();
+	bufferBreaks = (int[][]) content.bufferBreaks.clone();
+	addLength = content.addLength;
+	addBreakCount = content.addBreakCount;
+	if (content.left != null) {
+		left = (int[]) content.left.clone();
+		right = (int[]) content.right.clone();
+		priority = (int[]) content.priority.clone();
+		buffer = (int[]) content.buffer.clone();
+		start = (int[]) content.start.clone();
+		length = (int[]) content.length.clone();
+		breaks = (int[]) content.breaks.clone();
+		totalLength = (int[]) content.totalLength.clone();
+		totalBreaks = (int[]) content.totalBreaks.clone();
+	}
+	root = content.root;
+	freeNode = content.freeNode;
+	seed = content.seed;
+}
+/**
+ * Adds a <code>TextChangeListener</code> listening for
+ * <code>TextChangingEvent</code> and <code>TextChangedEvent</code>. A
+ * <code>TextChangingEvent</code> is sent before changes to the text occur.
+ * A <code>TextChangedEvent</code> is sent after changes to the text
+ * occurred.
+ * <p>
+ *
+ * @param listener the listener
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT when listener is null</li>
+ * </ul>
+ */
+public void addTextChangeListener(TextChangeListener listener) {
+	if (listener == null) error(SWT.ERROR_NULL_ARGUMENT);
+	StyledTextListener typedListener = new StyledTextListener(listener);
+	textListeners.addElement(typedListener);
+}
+/**
+ * Appends text to the add buffer and returns a new piece for it.
+ * <p>
+ *
+ * @param text the text to append
+ * @return the node of the new piece
+ */
+int append(String text) {
+	int count = text.length();
+	char[] chars = buffers[1];
+	/*
+	* Keep a CR at the end of the buffer from forming a CR/LF delimiter
+	* with the appended text, so that the delimiters that are already
+	* indexed remain valid.
+	*/
+	boolean pad = addLength > 0 && chars[addLength - 1] == SWT.CR && text.charAt(0) == SWT.LF;
+	int required = addLength + count + (pad ? 1 : 0);
+	if (required > chars.length) {
+		char[] newChars = new char[Math.max(required, chars.length * 2)];
+		System.arraycopy(chars, 0, newChars, 0, addLength);
+		buffers[1] = chars = newChars;
+	}
+	if (pad) chars[addLength++] = 0;
+	int offset = addLength;
+	text.getChars(0, count, chars, offset);
+	addLength += count;
+	int[] indexed = bufferBreaks[1];
+	for (int i = offset; i < addLength; i++) {
+		char ch = chars[i];
+		if (ch == SWT.LF || (ch == SWT.CR && (i + 1 == addLength || chars[i + 1] != SWT.LF))) {
+			if (addBreakCount == indexed.length) {
+				int[] newIndexed = new int[Math.max(16, indexed.length * 2)];
+				System.arraycopy(indexed, 0, newIndexed, 0, addBreakCount);
+				bufferBreaks[1] = indexed = newIndexed;
+			}
+			indexed[addBreakCount++] = i;
+		}
+	}
+	return createNode(1, offset, count);
+}
+/**
+ * Returns the number of line delimiters that end before the given offset.
+ * <p>
+ *
+ * @param offset logical character offset
+ * @return the number of line delimiters
+ */
+int breaksBefore(int offset) {
+	int result = 0;
+	int node = root;
+	while (node != -1) {
+		int leftLength = total(totalLength, left[node]);
+		if (offset <= leftLength) {
+			node = left[node];
+		} else {
+			result += total(totalBreaks, left[node]);
+			offset -= leftLength;
+			if (offset <= length[node]) {
+				int bufferStart = start[node];
+				int[] indexed = bufferBreaks[buffer[node]];
+				int count = buffer[node] == 0 ? indexed.length : addBreakCount;
+				int pieceBreaks = search(indexed, count, bufferStart + offset) - search(indexed, count, bufferStart);
+				if (offset == length[node]) pieceBreaks = breaks[node];
+				return result + pieceBreaks;
+			}
+			result += breaks[node];
+			offset -= length[node];
+			node = right[node];
+		}
+	}
+	return result;
+}
+/**
+ * Returns the character at the given offset.
+ * <p>
+ *
+ * @param offset logical character offset
+ * @return the character
+ */
+char charAt(int offset) {
+	int node = root;
+	while (true) {
+		int leftLength = total(totalLength, left[node]);
+		if (offset < leftLength) {
+			node = left[node];
+		} else if (offset < leftLength + length[node]) {
+			return buffers[buffer[node]][start[node] + offset - leftLength];
+		} else {
+			offset -= leftLength + length[node];
+			node = right[node];
+		}
+	}
+}
+/**
+ * Returns a new node for a piece of a buffer.
+ * <p>
+ *
+ * @param bufferIndex the buffer of the piece
+ * @param pieceStart the start of the piece in the buffer
+ * @param pieceLength the length of the piece
+ * @return the node
+ */
+int createNode(int bufferIndex, int pieceStart, int pieceLength) {
+	if (freeNode == -1) {
+		int size = left == null ? 0 : left.length;
+		int newSize = Math.max(16, size * 2);
+		left = grow(left, newSize);
+		right = grow(right, newSize);
+		priority = grow(priority, newSize);
+		buffer = grow(buffer, newSize);
+		start = grow(start, newSize);
+		length = grow(length, newSize);
+		breaks = grow(breaks, newSize);
+		totalLength = grow(totalLength, newSize);
+		totalBreaks = grow(totalBreaks, newSize);
+		for (int i = size; i < newSize; i++) {
+			right[i] = i + 1 < newSize ? i + 1 : -1;
+		}
+		freeNode = size;
+	}
+	int node = freeNode;
+	freeNode = right[node];
+	seed ^= seed << 13;
+	seed ^= seed >>> 17;
+	seed ^= seed << 5;
+	left[node] = right[node] = -1;
+	priority[node] = seed;
+	setPiece(node, bufferIndex, pieceStart, pieceLength);
+	return node;
+}
+/**
+ * Reports an SWT error.
+ * <p>
+ *
+ * @param code the error code
+ */
+void error (int code) {
+	SWT.error(code);
+}
+/**
+ * Returns the node of a piece for the text between the given offsets,
+ * taking it out of the tree.
+ * <p>
+ *
+ * @param offset the logical start offset
+ * @param count the logical length
+ * @return the root of the nodes that were removed or -1 if there are none
+ */
+int extract(int offset, int count) {
+	split(root, offset);
+	int head = splitLeft;
+	split(splitRight, count);
+	int middle = splitLeft;
+	root = merge(head, splitRight);
+	return middle;
+}
+/**
+ * Ensures that no piece ends with the CR and the next piece starts with the
+ * LF of a CR/LF line delimiter, by replacing the two characters with a piece
+ * of their own.  Called for the piece boundaries created by a change.
+ * <p>
+ *
+ * @param offset the logical offset of a piece boundary
+ */
+void fixDelimiter(int offset) {
+	if (offset <= 0 || offset >= getCharCount()) return;
+	if (charAt(offset - 1) != SWT.CR || charAt(offset) != SWT.LF) return;
+	freeNodes(extract(offset - 1, 2));
+	int node = append("\r\n");
+	split(root, offset - 1);
+	root = merge(merge(splitLeft, node), splitRight);
+}
+/**
+ * Returns the nodes of the given subtree to the free list.
+ * <p>
+ *
+ * @param node the root of the subtree
+ */
+void freeNodes(int node) {
+	if (node == -1) return;
+	freeNodes(left[node]);
+	freeNodes(right[node]);
+	right[node] = freeNode;
+	freeNode = node;
+}
+/**
+ * @return the number of characters in the content
+ */
+public int getCharCount() {
+	return total(totalLength, root);
+}
+/**
+ * Returns the line at <code>index</code> without delimiters.
+ * <p>
+ *
+ * @param index	the index of the line to return
+ * @return the line text without delimiters
+ * @exception IllegalArgumentException <ul>
+ *   <li>ERROR_INVALID_ARGUMENT when index is out of range</li>
+ * </ul>
+ */
+public String getLine(int index) {
+	int lineCount = getLineCount();
+	if ((index >= lineCount) || (index < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
+	int lineStart = getOffsetAtLine(index);
+	int lineEnd = index + 1 < lineCount ? getOffsetAtLine(index + 1) : getCharCount();
+	while (lineEnd > lineStart) {
+		char ch = charAt(lineEnd - 1);
+		if (ch != SWT.CR && ch != SWT.LF) break;
+		lineEnd--;
+	}
+	return getTextRange(lineStart, lineEnd - lineStart);
+}
+/**
+ * Returns the line at the given offset.
+ * <p>
+ *
+ * @param charPosition logical character offset
+ * @return the line index
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_INVALID_ARGUMENT when charPosition is out of range</li>
+ * </ul>
+ */
+public int getLineAtOffset(int charPosition) {
+	if ((charPosition > getCharCount()) || (charPosition < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
+	return breaksBefore(charPosition);
+}
+/**
+ * @return the number of lines in the content
+ */
+public int getLineCount() {
+	return total(totalBreaks, root) + 1;
+}
+/**
+ * Returns the line delimiter that should be used by the StyledText
+ * widget when inserting new lines.  This delimiter may be different than the
+ * delimiter that is used by the <code>StyledTextContent</code> interface.
+ * <p>
+ *
+ * @return the platform line delimiter as specified in the line.separator
+ * 	system property.
+ */
+public String getLineDelimiter() {
+	return LineDelimiter;
+}
+/**
+ * Returns the offset of the given line.
+ * <p>
+ *
+ * @param lineIndex index of line
+ * @return the starting offset of the line.  When there are not any lines,
+ * 	getOffsetAtLine(0) is a valid call that should answer 0.
+ * @exception IllegalArgumentException <ul>
+ *   <li>ERROR_INVALID_ARGUMENT when lineIndex is out of range</li>
+ * </ul>
+ */
+public int getOffsetAtLine(int lineIndex) {
+	if (lineIndex == 0) return 0;
+	if ((lineIndex >= getLineCount()) || (lineIndex < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
+	/* find the delimiter that ends the previous line */
+	int index = lineIndex - 1;
+	int offset = 0;
+	int node = root;
+	while (true) {
+		int leftBreaks = total(totalBreaks, left[node]);
+		if (index < leftBreaks) {
+			node = left[node];
+			continue;
+		}
+		offset += total(totalLength, left[node]);
+		index -= leftBreaks;
+		if (index < breaks[node]) {
+			int bufferStart = start[node];
+			int[] indexed = bufferBreaks[buffer[node]];
+			int count = buffer[node] == 0 ? indexed.length : addBreakCount;
+			int first = search(indexed, count, bufferStart) + index;
+			int position = bufferStart + length[node] - 1;
+			if (first < count && indexed[first] < bufferStart + length[node]) {
+				position = indexed[first];
+			}
+			return offset + position - bufferStart + 1;
+		}
+		index -= breaks[node];
+		offset += length[node];
+		node = right[node];
+	}
+}
+/**
+ * Returns a string representing the content at the given range.
+ * <p>
+ *
+ * @param start the start offset of the text to return
+ * @param length the length of the text to return
+ * @return the text
+ */
+public String getTextRange(int start, int length) {
+	if (length == 0) return "";
+	char[] result = new char[length];
+	int offset = start, end = start + length;
+	while (offset < end) {
+		/* find the piece at offset and copy as much of it as possible */
+		int node = root, pieceOffset = offset;
+		while (true) {
+			int leftLength = total(totalLength, left[node]);
+			if (pieceOffset < leftLength) {
+				node = left[node];
+			} else if (pieceOffset < leftLength + this.length[node]) {
+				pieceOffset -= leftLength;
+				break;
+			} else {
+				pieceOffset -= leftLength + this.length[node];
+				node = right[node];
+			}
+		}
+		int count = Math.min(this.length[node] - pieceOffset, end - offset);
+		System.arraycopy(buffers[buffer[node]], this.start[node] + pieceOffset, result, offset - start, count);
+		offset += count;
+	}
+	return new String(result);
+}
+/**
+ * Returns a copy of the array with a new length.
+ */
+static int[] grow(int[] array, int newLength) {
+	int[] newArray = new int[newLength];
+	if (array != null) System.arraycopy(array, 0, newArray, 0, array.length);
+	return newArray;
+}
+/**
+ * Indexes the line delimiters of the original text.  A position ends a line
+ * if it holds a LF, or a CR that is not followed by a LF, so that a CR/LF
+ * delimiter is counted once, at its LF.
+ * <p>
+ *
+ * @param chars the text
+ * @return the positions of the line delimiters
+ */
+static int[] indexBreaks(char[] chars) {
+	int count = 0, length = chars.length;
+	for (int pass = 0; pass < 2; pass++) {
+		int[] result = pass == 0 ? null : new int[count];
+		count = 0;
+		for (int i = 0; i < length; i++) {
+			char ch = chars[i];
+			if (ch == SWT.LF || (ch == SWT.CR && (i + 1 == length || chars[i + 1] != SWT.LF))) {
+				if (result != null) result[count] = i;
+				count++;
+			}
+		}
+		if (result != null) return result;
+	}
+	return null;
+}
+/**
+ * Determine whether or not the replace operation is valid.  The /r/n line
+ * delimiter may not be split or partially deleted.
+ * <p>
+ *
+ * @param start	start offset of text to replace
+ * @param replaceLength length of text to replace
+ * @param newText the new text
+ * @return a boolean specifying whether or not the replace operation is valid
+ */
+protected boolean isValidReplace(int start, int replaceLength, String newText){
+	int charCount = getCharCount();
+	if (start < 0 || replaceLength < 0 || start + replaceLength > charCount) return false;
+	if (replaceLength == 0) {
+		// inserting text, see if the \r\n line delimiter is being split
+		if (start == 0 || start == charCount) return true;
+		return !(charAt(start - 1) == SWT.CR && charAt(start) == SWT.LF);
+	}
+	// deleting text, see if part of a \r\n line delimiter is being deleted
+	if (start != 0 && charAt(start) == SWT.LF && charAt(start - 1) == SWT.CR) return false;
+	int end = start + replaceLength;
+	if (end != charCount && charAt(end - 1) == SWT.CR && charAt(end) == SWT.LF) return false;
+	return true;
+}
+/**
+ * Returns the number of lines that are in the specified text.
+ * <p>
+ *
+ * @param text the text to lineate
+ * @return number of lines in the text
+ */
+int lineCount(String text){
+	int lineCount = 0;
+	int length = text.length();
+	for (int i = 0; i < length; i++) {
+		char ch = text.charAt(i);
+		if (ch == SWT.CR) {
+			if (i + 1 < length && text.charAt(i + 1) == SWT.LF) {
+				i++;
+			}
+			lineCount++;
+		} else if (ch == SWT.LF) {
+			lineCount++;
+		}
+	}
+	return lineCount;
+}
+/**
+ * Merges two trees, all of the pieces of the first one preceding the
+ * pieces of the second one.
+ * <p>
+ *
+ * @param first the root of the first tree or -1
+ * @param second the root of the second tree or -1
+ * @return the root of the merged tree
+ */
+int merge(int first, int second) {
+	if (first == -1) return second;
+	if (second == -1) return first;
+	if (priority[first] >= priority[second]) {
+		right[first] = merge(right[first], second);
+		update(first);
+		return first;
+	}
+	left[second] = merge(first, left[second]);
+	update(second);
+	return second;
+}
+/**
+ * Removes the specified <code>TextChangeListener</code>.
+ * <p>
+ *
+ * @param listener the listener which should no longer be notified
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT when listener is null</li>
+ * </ul>
+ */
+public void removeTextChangeListener(TextChangeListener listener){
+	if (listener == null) error(SWT.ERROR_NULL_ARGUMENT);
+	for (int i = 0; i < textListeners.size(); i++) {
+		TypedListener typedListener = (TypedListener) textListeners.elementAt(i);
+		if (typedListener.getEventListener () == listener) {
+			textListeners.removeElementAt(i);
+			break;
+		}
+	}
+}
+/**
+ * Replaces the text with <code>newText</code> starting at position <code>start</code>
+ * for a length of <code>replaceLength</code>.  Notifies the appropriate listeners.
+ * <p>
+ *
+ * When sending the TextChangingEvent, <code>newLineCount</code> is the number of
+ * lines that are going to be inserted and <code>replaceLineCount</code> is
+ * the number of lines that are going to be deleted, based on the change
+ * that occurs visually.  For example:
+ * <ul>
+ * <li>(replaceText,newText) ==> (replaceLineCount,newLineCount)
+ * <li>("","\n") ==> (0,1)
+ * <li>("\n\n","a") ==> (2,0)
+ * </ul>
+ * </p>
+ *
+ * @param start	start offset of text to replace
+ * @param replaceLength length of text to replace
+ * @param newText the new text
+ *
+ * @exception SWTException <ul>
+ *   <li>ERROR_INVALID_ARGUMENT when the text change results in a multi byte
+ *      line delimiter being split or partially deleted.  Splitting a line
+ *      delimiter by inserting text between the CR and LF characters of the
+ *      \r\n delimiter or deleting part of this line delimiter is not supported</li>
+ * </ul>
+ */
+public void replaceTextRange(int start, int replaceLength, String newText){
+	// check for invalid replace operations
+	if (!isValidReplace(start, replaceLength, newText)) SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+
+	// inform listeners
+	StyledTextEvent event = new StyledTextEvent(this);
+	event.type = StyledText.TextChanging;
+	event.start = start;
+	event.replaceLineCount = breaksBefore(start + replaceLength) - breaksBefore(start);
+	event.text = newText;
+	event.newLineCount = lineCount(newText);
+	event.replaceCharCount = replaceLength;
+	event.newCharCount = newText.length();
+	sendTextEvent(event);
+
+	// remove the replaced pieces and insert a piece for the new text
+	freeNodes(extract(start, replaceLength));
+	if (newText.length() > 0) {
+		int node = append(newText);
+		split(root, start);
+		root = merge(merge(splitLeft, node), splitRight);
+	}
+	fixDelimiter(start + newText.length());
+	fixDelimiter(start);
+
+	// inform listeners
+	event = new StyledTextEvent(this);
+	event.type = StyledText.TextChanged;
+	sendTextEvent(event);
+}
+/**
+ * Returns the number of positions in the sorted array that are less than
+ * the given value.
+ */
+static int search(int[] array, int count, int value) {
+	int low = 0, high = count;
+	while (low < high) {
+		int mid = (low + high) >>> 1;
+		if (array[mid] < value) {
+			low = mid + 1;
+		} else {
+			high = mid;
+		}
+	}
+	return low;
+}
+/**
+ * Sends the text listeners the TextChanged event.
+ */
+void sendTextEvent(StyledTextEvent event) {
+	for (int i = 0; i < textListeners.size(); i++) {
+		((StyledTextListener)textListeners.elementAt(i)).handleEvent(event);
+	}
+}
+/**
+ * Sets a node to the given piece and counts the line delimiters of the piece.
+ */
+void setPiece(int node, int bufferIndex, int pieceStart, int pieceLength) {
+	buffer[node] = bufferIndex;
+	start[node] = pieceStart;
+	length[node] = pieceLength;
+	int[] indexed = bufferBreaks[bufferIndex];
+	int count = bufferIndex == 0 ? indexed.length : addBreakCount;
+	int pieceEnd = pieceStart + pieceLength;
+	int pieceBreaks = search(indexed, count, pieceEnd) - search(indexed, count, pieceStart);
+	/* a CR that is separated from its LF by the end of the piece ends a line */
+	char[] chars = buffers[bufferIndex];
+	int bufferLength = bufferIndex == 0 ? chars.length : addLength;
+	if (pieceLength > 0 && chars[pieceEnd - 1] == SWT.CR && pieceEnd < bufferLength && chars[pieceEnd] == SWT.LF) {
+		pieceBreaks++;
+	}
+	breaks[node] = pieceBreaks;
+	update(node);
+}
+/**
+ * Sets the content to text.  The text is not copied again when it is changed.
+ * <p>
+ *
+ * @param text the text
+ */
+public void setText (String text){
+	buffers[0] = text.toCharArray();
+	bufferBreaks[0] = indexBreaks(buffers[0]);
+	buffers[1] = new char[16];
+	bufferBreaks[1] = new int[16];
+	addLength = addBreakCount = 0;
+	left = right = priority = null;
+	buffer = start = length = breaks = totalLength = totalBreaks = null;
+	root = freeNode = -1;
+	if (text.length() > 0) root = createNode(0, 0, text.length());
+	StyledTextEvent event = new StyledTextEvent(this);
+	event.type = StyledText.TextSet;
+	event.text = "";
+	sendTextEvent(event);
+}
+/**
+ * Returns a copy of the content that another thread can read while this
+ * content is changed by the widget.  The cost depends on the number of
+ * pieces and not on the size of the text.
+ * <p>
+ *
+ * @return the copy
+ */
+PieceTableContent snapshot() {
+	return new PieceTableContent(this);
+}
+/**
+ * Splits a tree at the given offset into the trees <code>splitLeft</code>
+ * and <code>splitRight</code>, splitting the piece at the offset if needed.
+ * <p>
+ *
+ * @param node the root of the tree or -1
+ * @param offset the logical offset
+ */
+void split(int node, int offset) {
+	if (node == -1) {
+		splitLeft = splitRight = -1;
+		return;
+	}
+	int leftLength = total(totalLength, left[node]);
+	if (offset <= leftLength) {
+		split(left[node], offset);
+		left[node] = splitRight;
+		update(node);
+		splitRight = node;
+	} else if (offset >= leftLength + length[node]) {
+		split(right[node], offset - leftLength - length[node]);
+		right[node] = splitLeft;
+		update(node);
+		splitLeft = node;
+	} else {
+		int cut = offset - leftLength;
+		int newNode = createNode(buffer[node], start[node] + cut, length[node] - cut);
+		priority[newNode] = priority[node];
+		right[newNode] = right[node];
+		update(newNode);
+		right[node] = -1;
+		setPiece(node, buffer[node], start[node], cut);
+		splitLeft = node;
+		splitRight = newNode;
+	}
+}
+/**
+ * Returns the total of a subtree, or 0 for an empty subtree.
+ */
+static int total(int[] totals, int node) {
+	return node == -1 ? 0 : totals[node];
+}
+/**
+ * Recomputes the totals of a node from its piece and its children.
+ */
+void update(int node) {
+	totalLength[node] = length[node] + total(totalLength, left[node]) + total(totalLength, right[node]);
+	totalBreaks[node] = breaks[node] + total(totalBreaks, left[node]) + total(totalBreaks, right[node]);
+}
+}
@@ -3696,6 +3696,23 @@ public boolean getEditable() {
 	checkWidget();
 	return editable;
 }
+/**
+ * Returns whether the heights and widths of the lines that have not been
+ * shown are estimated in a background thread.
+ *
+ * @return true if the line metrics are estimated, false otherwise
+ * @exception SWTException <ul>
+ *    <li>ERROR_WIDGET_DISPOSED - if the receiver has been disposed</li>
+ *    <li>ERROR_THREAD_INVALID_ACCESS - if not called from the thread that created the receiver</li>
+ * </ul>
+ * 
+ * @see #setEstimatedLineMetrics(boolean)
+ * @since 3.7
+ */
+public boolean getEstimatedLineMetrics() {
+	checkWidget();
+	return renderer.estimateMetrics;
+}
 public Color getForeground() {
 	checkWidget();
 	if (foreground == null) {
@@ -4090,6 +4107,30 @@ public boolean getLineJustify(int index) {
 	}
 	return isListening(LineGetStyle) ? false : renderer.getLineJustify(index, justify);
 }
+/**
+ * Returns the counters of the work that was done to find the heights and
+ * widths of the lines since the receiver was created.  The result holds
+ * four values:
+ * <ul>
+ * <li>the number of lines that were measured in the user interface thread</li>
+ * <li>the time in nanoseconds spent measuring them</li>
+ * <li>the number of lines that were estimated in the background thread</li>
+ * <li>the time in nanoseconds spent estimating them</li>
+ * </ul>
+ *
+ * @return the line metrics counters
+ * @exception SWTException <ul>
+ *    <li>ERROR_WIDGET_DISPOSED - if the receiver has been disposed</li>
+ *    <li>ERROR_THREAD_INVALID_ACCESS - if not called from the thread that created the receiver</li>
+ * </ul>
+ * 
+ * @see #setEstimatedLineMetrics(boolean)
+ * @since 3.7
+ */
+public long[] getLineMetricsCounters() {
+	checkWidget();
+	return new long[] {renderer.measuredLines, renderer.measureTime, renderer.estimatedLines, renderer.estimateTime};
+}
 /**
  * Returns the line spacing of the widget.
  *
@@ -7728,6 +7769,8 @@ void resetCache(int firstLine, int count) {
 			verticalScrollOffset = -1;
 		}
 		renderer.calculateIdle();
+	} else if (renderer.estimateMetrics) {
+		renderer.calculateIdle();
 	}
 }
 /**
@@ -8493,6 +8536,36 @@ public void setEditable(boolean editable) {
 	checkWidget();
 	this.editable = editable;
 }
+/**
+ * Sets whether the heights and widths of the lines that have not been
+ * shown are estimated in a background thread.
+ * <p>
+ * By default the lines are measured in the user interface thread, a few at
+ * a time, whenever the widget is idle.  On very large documents this takes a
+ * long time and the scroll bars keep changing meanwhile.  When the line metrics
+ * are estimated, the text of the lines is measured in a background thread using
+ * the advance widths of the characters of the font, ignoring styles, and only
+ * the lines that are shown are measured exactly.  The scroll bars are updated
+ * when the estimation is done.
+ * </p>
+ *
+ * @param estimate if true the line metrics are estimated, if false they are measured
+ * @exception SWTException <ul>
+ *    <li>ERROR_WIDGET_DISPOSED - if the receiver has been disposed</li>
+ *    <li>ERROR_THREAD_INVALID_ACCESS - if not called from the thread that created the receiver</li>
+ * </ul>
+ * 
+ * @since 3.7
+ */
+public void setEstimatedLineMetrics(boolean estimate) {
+	checkWidget();
+	if (renderer.estimateMetrics == estimate) return;
+	renderer.estimateMetrics = estimate;
+	renderer.estimator = null;
+	renderer.estimatedWidth = 0;
+	resetCache(0, content.getLineCount());
+	super.redraw();
+}
 /**
  * Sets a new font to render text with.
  * <p>
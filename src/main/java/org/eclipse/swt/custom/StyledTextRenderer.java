@@ -12,6 +12,7 @@ package org.eclipse.swt.custom;
 
 
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
 import org.eclipse.swt.graphics.*;
 import org.eclipse.swt.widgets.*;
 
@@ -33,6 +34,10 @@ class StyledTextRenderer {
 	/* Line data */
 	int topIndex = -1;
 	TextLayout[] layouts;
+	int[] layoutLines, layoutStamps;
+	int layoutStamp;
+	TextLayout[] freeLayouts;
+	int freeLayoutCount;
 	int lineCount;
 	int[] lineWidth;
 	int[] lineHeight;
@@ -40,6 +45,17 @@ class StyledTextRenderer {
 	int maxWidth;
 	int maxWidthLineIndex;
 	boolean idleRunning;
+	int idleIndex;
+
+	/* Estimated line metrics */
+	boolean estimateMetrics;
+	Estimator estimator;
+	int estimatedWidth;
+	int textSerial;
+
+	/* Counters */
+	int measuredLines, estimatedLines;
+	long measureTime, estimateTime;
 
 	/* Bullet */
 	Bullet[] bullets;
@@ -48,6 +64,8 @@ class StyledTextRenderer {
 
 	/* Style data */
 	int[] ranges;
+	int shiftRange;	// the first range whose start has not been moved by shiftDelta yet
+	int shiftDelta;	// the pending change of the starts of the ranges from shiftRange on
 	int styleCount;
 	StyleRange[] styles;
 	StyleRange[] stylesSet;
@@ -60,7 +78,9 @@ class StyledTextRenderer {
 
 	final static int GROW = 32;
 	final static int IDLE_TIME = 50;
+	final static int ESTIMATE_COUNT = 1024;
 	final static int CACHE_SIZE = 128;
+	final static int FREE_LAYOUT_SIZE = 16;
 
 	final static int BACKGROUND = 1 << 0;
 	final static int ALIGNMENT = 1 << 1;
@@ -99,12 +119,167 @@ class StyledTextRenderer {
 		}
 	}
 
+	/*
+	* Estimates the heights and widths of the lines in a background thread.
+	* The thread uses a snapshot of the font metrics and never touches the
+	* content or the widget.  The estimates are stored in chunks of lines by
+	* syncExec, which also detects changes to the text or to the metrics since
+	* the chunk was started.  The thread reads the lines from a snapshot of
+	* the content when the content can make one without copying its text,
+	* otherwise the text of each chunk is copied in the UI thread.
+	*/
+	class Estimator implements Runnable {
+		Display display;
+
+		/* Font metrics snapshot */
+		Font font;
+		int[] charWidths;
+		int averageCharWidth, tabWidth, defaultHeight, wrapWidth, trim;
+
+		/* The chunk of lines that is being estimated */
+		int startLine, serial;
+		StyledTextContent source;	// the snapshot of the content or null
+		String[] texts;
+		int[] widths;
+		long time;
+
+		Estimator(Display display) {
+			this.display = display;
+		}
+		public void run() {
+			Runnable exchange = new Runnable() {
+				public void run() {
+					exchange();
+				}
+			};
+			try {
+				while (true) {
+					display.syncExec(exchange);
+					if (widths == null) break;
+					long start = System.nanoTime();
+					for (int i = 0; i < widths.length; i++) {
+						if (source != null) {
+							widths[i] = estimateWidth(source.getLine(startLine + i));
+						} else {
+							widths[i] = estimateWidth(texts[i]);
+							texts[i] = null;
+						}
+					}
+					time = System.nanoTime() - start;
+				}
+			} catch (SWTException e) {
+				/* the display was disposed */
+			}
+		}
+		int estimateWidth(String text) {
+			int x = 0, length = text.length();
+			for (int i = 0; i < length; i++) {
+				char ch = text.charAt(i);
+				if (ch == '\t') {
+					if (tabWidth > 0) x = (x / tabWidth + 1) * tabWidth;
+				} else {
+					x += ch < charWidths.length ? charWidths[ch] : averageCharWidth;
+				}
+			}
+			return x + trim;
+		}
+		/*
+		* Runs in the UI thread.  Stores the estimates of the current chunk
+		* and starts the next one, or sets widths to null when the estimator
+		* is done.
+		*/
+		void exchange() {
+			if (styledText == null || estimator != this) {
+				source = null;
+				texts = null;
+				widths = null;
+				return;
+			}
+			if (widths != null && serial == textSerial && isCurrent()) {
+				int count = Math.min(widths.length, lineCount - startLine);
+				if (count > 0 && wrapWidth > 0) {
+					ensureLineCapacity(startLine + count);
+					for (int i = 0; i < count; i++) {
+						int index = startLine + i;
+						int height = (Math.max(0, widths[i] - trim) / wrapWidth + 1) * defaultHeight;
+						if (lineHeight[index] == -1 && height > 1) lineHeight[index] = -height;
+					}
+				}
+				for (int i = 0; i < count; i++) {
+					if (widths[i] > estimatedWidth) estimatedWidth = widths[i];
+				}
+				startLine += widths.length;
+				estimatedLines += count;
+				estimateTime += time;
+			}
+			if (!isCurrent()) {
+				snapshot();
+				startLine = 0;
+				estimatedWidth = 0;
+			}
+			if (source == null || serial != textSerial) {
+				if (content instanceof PieceTableContent) {
+					source = ((PieceTableContent) content).snapshot();
+				} else if (content instanceof MappedFileContent) {
+					source = ((MappedFileContent) content).snapshot();
+				}
+			}
+			serial = textSerial;
+			if (startLine >= lineCount) {
+				source = null;
+				texts = null;
+				widths = null;
+				estimator = null;
+				styledText.setScrollBars(true);
+				ScrollBar bar = styledText.getVerticalBar();
+				if (bar != null) {
+					bar.setSelection(styledText.getVerticalScrollOffset());
+				}
+				return;
+			}
+			int count = Math.min(ESTIMATE_COUNT, lineCount - startLine);
+			widths = new int[count];
+			if (source == null) {
+				texts = new String[count];
+				for (int i = 0; i < count; i++) {
+					texts[i] = content.getLine(startLine + i);
+				}
+			}
+		}
+		boolean isCurrent() {
+			return charWidths != null && font == regularFont && 
+				averageCharWidth == StyledTextRenderer.this.averageCharWidth &&
+				tabWidth == StyledTextRenderer.this.tabWidth &&
+				defaultHeight == getLineHeight() &&
+				wrapWidth == styledText.getWrapWidth() &&
+				trim == getTrim();
+		}
+		void snapshot() {
+			font = regularFont;
+			averageCharWidth = StyledTextRenderer.this.averageCharWidth;
+			tabWidth = StyledTextRenderer.this.tabWidth;
+			defaultHeight = getLineHeight();
+			wrapWidth = styledText.getWrapWidth();
+			trim = getTrim();
+			charWidths = new int[256];
+			GC gc = new GC(styledText);
+			gc.setFont(regularFont);
+			for (int i = 0; i < charWidths.length; i++) {
+				charWidths[i] = gc.getAdvanceWidth((char)i);
+			}
+			gc.dispose();
+			widths = null;
+		}
+	}
+
 StyledTextRenderer(Device device, StyledText styledText) {
 	this.device = device;
 	this.styledText = styledText;
 }
 int addMerge(int[] mergeRanges, StyleRange[] mergeStyles, int mergeCount, int modifyStart, int modifyEnd) {
 	int rangeCount = styleCount << 1;
+	int shiftLimit = Math.min(rangeCount, modifyEnd + 2);
+	if (shiftRange < shiftLimit) moveRangeShift(shiftLimit);
 	StyleRange endStyle = null;
 	int endStart = 0, endLength = 0;
 	if (modifyEnd < rangeCount) {
@@ -155,6 +330,7 @@ int addMerge(int[] mergeRanges, StyleRange[] mergeStyles, int mergeCount, int mo
 		System.arraycopy(mergeRanges, 0, ranges, modifyStart, mergeCount);
 		System.arraycopy(mergeStyles, 0, styles, modifyStart >> 1, mergeCount >> 1);
 	}
+	shiftRange += grow;
 	styleCount += grow >> 1;
 	return grow;
 }
@@ -202,17 +378,21 @@ int addMerge(StyleRange[] mergeStyles, int mergeCount, int modifyStart, int modi
 }
 void calculate(int startLine, int lineCount) {
 	int endLine = startLine + lineCount;
-	if (startLine < 0 || endLine > lineWidth.length) {
+	if (startLine < 0 || endLine > this.lineCount) {
 		return;
 	}
-	int hTrim = styledText.leftMargin + styledText.rightMargin + styledText.getCaretWidth();
+	ensureLineCapacity(endLine);
+	int hTrim = getTrim();
 	for (int i = startLine; i < endLine; i++) {
-		if (lineWidth[i] == -1 || lineHeight[i] == -1) {
-			TextLayout layout = getTextLayout(i);
+		if (lineWidth[i] == -1 || lineHeight[i] < 0) {
+			long start = System.nanoTime();
+			TextLayout layout = getTextLayout(i, styledText.getOrientation(), styledText.getWrapWidth(), styledText.lineSpacing, false);
 			Rectangle rect = layout.getBounds();
 			lineWidth[i] = rect.width + hTrim;
 			lineHeight[i] = rect.height;
 			disposeTextLayout(layout);
+			measuredLines++;
+			measureTime += System.nanoTime() - start;
 		}
 		if (lineWidth[i] > maxWidth) {
 			maxWidth = lineWidth[i];
@@ -220,6 +400,24 @@ void calculate(int startLine, int lineCount) {
 		}
 	}
 }
+/*
+* Grows the line width and height arrays to hold the given number
+* of lines.  The new entries are marked as not calculated.
+*/
+void ensureLineCapacity(int count) {
+	int length = lineWidth.length;
+	if (count <= length) return;
+	int newLength = Math.min(Math.max(count + GROW, length * 3 / 2), Math.max(count, lineCount));
+	int[] newWidths = new int[newLength];
+	System.arraycopy(lineWidth, 0, newWidths, 0, length);
+	int[] newHeights = new int[newLength];
+	System.arraycopy(lineHeight, 0, newHeights, 0, length);
+	for (int i = length; i < newLength; i++) {
+		newWidths[i] = newHeights[i] = -1;
+	}
+	lineWidth = newWidths;
+	lineHeight = newHeights;
+}
 void calculateClientArea () {
 	int index = styledText.getTopIndex();
 	int lineCount = content.getLineCount();
@@ -231,18 +429,36 @@ void calculateClientArea () {
 	}
 }
 void calculateIdle () {
+	if (estimateMetrics) {
+		if (estimator == null) {
+			Display display = styledText.getDisplay();
+			estimator = new Estimator(display);
+			Thread thread = new Thread(estimator, "StyledText line metrics"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return;
+	}
 	if (idleRunning) return;
+	idleIndex = 0;
 	Runnable runnable = new Runnable() {
 		public void run() {
 			if (styledText == null) return;
 			int i;
 			long start = System.currentTimeMillis();
-			for (i = 0; i < lineCount; i++) {
-				if (lineHeight[i] == -1 || lineWidth[i] == -1) {
+			/* continue after the last line that was measured, then check the lines before it */
+			int startIndex = Math.min(idleIndex, lineCount);
+			for (i = startIndex; i < lineCount; i++) {
+				if (i >= lineWidth.length || lineHeight[i] < 0 || lineWidth[i] == -1) {
 					calculate(i, 1);
 					if (System.currentTimeMillis() - start > IDLE_TIME) break;
 				}
 			}
+			idleIndex = i;
+			if (i == lineCount && startIndex > 0) {
+				idleIndex = 0;
+				i = 0;
+			}
 			if (i < lineCount) {
 				Display display = styledText.getDisplay();
 				display.asyncExec(this);
@@ -285,6 +501,9 @@ void copyInto(StyledTextRenderer renderer) {
 	if (ranges != null) {
 		int[] newRanges = renderer.ranges = new int[styleCount << 1];
 		System.arraycopy(ranges, 0, newRanges, 0, newRanges.length);
+		for (int i = shiftRange; i < newRanges.length; i += 2) {
+			newRanges[i] += shiftDelta;
+		}
 	}
 	if (styles != null) {
 		StyleRange[] newStyles = renderer.styles = new StyleRange[styleCount];
@@ -317,7 +536,7 @@ void disposeTextLayout (TextLayout layout) {
 			if (layouts[i] == layout) return;
 		}
 	}
-	layout.dispose();
+	releaseTextLayout(layout);
 }
 void drawBullet(Bullet bullet, GC gc, int paintX, int paintY, int index, int lineAscent, int lineDescent) {
 	StyleRange style = bullet.style;
@@ -483,8 +702,10 @@ int getHeight () {
 	int totalHeight = 0;
 	int width = styledText.getWrapWidth();
 	for (int i = 0; i < lineCount; i++) {
-		int height = lineHeight[i];
-		if (height == -1) {
+		int height = i < lineHeight.length ? lineHeight[i] : -1;
+		if (height < -1) {
+			height = -height;
+		} else if (height == -1) {
 			if (width > 0) {
 				int length = content.getLine(i).length();
 				height = ((length * averageCharWidth / width) + 1) * defaultLineHeight;
@@ -525,7 +746,7 @@ boolean hasLink(int offset) {
 			int rangeCount = styleCount << 1;
 			int index = getRangeIndex(offset, -1, rangeCount);
 			if (index >= rangeCount) return false;
-			int rangeStart = ranges[index];
+			int rangeStart = getRangeStart(index);
 			int rangeLength = ranges[index + 1];
 			StyleRange rangeStyle = styles[index >> 1];
 			if (rangeStart <= offset && offset < rangeStart + rangeLength && rangeStyle.underline && rangeStyle.underlineStyle == SWT.UNDERLINE_LINK) {
@@ -564,7 +785,7 @@ int getLineHeight() {
 	return ascent + descent;
 }
 int getLineHeight(int lineIndex) {
-	if (lineHeight[lineIndex] == -1) {
+	if (lineIndex >= lineHeight.length || lineHeight[lineIndex] < 0) {
 		calculate(lineIndex, 1);
 	}
 	return lineHeight[lineIndex];
@@ -601,12 +822,21 @@ int[] getLineTabStops(int index, int[] defaultTabStops) {
 	}
 	return defaultTabStops;
 }
+/*
+* Returns the start of the range at the given index of the ranges array,
+* including the pending shift of the ranges, see moveRangeShift().
+*/
+int getRangeStart(int index) {
+	int start = ranges[index];
+	if (index >= shiftRange) start += shiftDelta;
+	return start;
+}
 int getRangeIndex(int offset, int low, int high) {
 	if (styleCount == 0) return 0;
 	if (ranges != null)  {
 		while (high - low > 2) {
 			int index = ((high + low) / 2) / 2 * 2;
-			int end = ranges[index] + ranges[index + 1];
+			int end = getRangeStart(index) + ranges[index + 1];
 			if (end > offset) {
 				high = index;
 			} else {
@@ -634,11 +864,16 @@ int[] getRanges(int start, int length) {
 		int rangeCount = styleCount << 1;
 		int rangeStart = getRangeIndex(start, -1, rangeCount);
 		if (rangeStart >= rangeCount) return null;
-		if (ranges[rangeStart] > end) return null;
+		if (getRangeStart(rangeStart) > end) return null;
 		int rangeEnd = Math.min(rangeCount - 2, getRangeIndex(end, rangeStart - 1, rangeCount));
-		if (ranges[rangeEnd] > end) rangeEnd = Math.max(rangeStart, rangeEnd - 2);
+		if (getRangeStart(rangeEnd) > end) rangeEnd = Math.max(rangeStart, rangeEnd - 2);
 		newRanges = new int[rangeEnd - rangeStart + 2];
 		System.arraycopy(ranges, rangeStart, newRanges, 0, newRanges.length);
+		if (shiftDelta != 0) {
+			for (int i = Math.max(0, shiftRange - rangeStart); i < newRanges.length; i += 2) {
+				newRanges[i] += shiftDelta;
+			}
+		}
 	} else {
 		int rangeStart = getRangeIndex(start, -1, styleCount);
 		if (rangeStart >= styleCount) return null;
@@ -669,14 +904,14 @@ StyleRange[] getStyleRanges(int start, int length, boolean includeRanges) {
 		int rangeCount = styleCount << 1;
 		int rangeStart = getRangeIndex(start, -1, rangeCount);
 		if (rangeStart >= rangeCount) return null;
-		if (ranges[rangeStart] > end) return null;
+		if (getRangeStart(rangeStart) > end) return null;
 		int rangeEnd = Math.min(rangeCount - 2, getRangeIndex(end, rangeStart - 1, rangeCount));
-		if (ranges[rangeEnd] > end) rangeEnd = Math.max(rangeStart, rangeEnd - 2);
+		if (getRangeStart(rangeEnd) > end) rangeEnd = Math.max(rangeStart, rangeEnd - 2);
 		newStyles = new StyleRange[((rangeEnd - rangeStart) >> 1) + 1];
 		if (includeRanges) {
 			for (int i = rangeStart, j = 0; i <= rangeEnd; i += 2, j++) {
 				newStyles[j] = (StyleRange)styles[i >> 1].clone();
-				newStyles[j].start = ranges[i];
+				newStyles[j].start = getRangeStart(i);
 				newStyles[j].length = ranges[i + 1];
 			}
 		} else {
@@ -719,24 +954,20 @@ TextLayout getTextLayout(int lineIndex) {
 	return getTextLayout(lineIndex, styledText.getOrientation(), styledText.getWrapWidth(), styledText.lineSpacing);
 }
 TextLayout getTextLayout(int lineIndex, int orientation, int width, int lineSpacing) {
+	return getTextLayout(lineIndex, orientation, width, lineSpacing, true);
+}
+/*
+* Returns the layout of the line.  The layouts are cached by line, the least
+* recently used one is reused when the cache is full.  When cache is false
+* the line is only being measured, a cached layout is returned when there is
+* one but otherwise the line does not take a layout from the cache.
+*/
+TextLayout getTextLayout(int lineIndex, int orientation, int width, int lineSpacing, boolean cache) {
 	TextLayout layout = null;
 	if (styledText != null) {
 		int topIndex = styledText.topIndex > 0 ? styledText.topIndex - 1 : 0;
-		if (layouts == null || topIndex != this.topIndex) {
-			TextLayout[] newLayouts = new TextLayout[CACHE_SIZE];
-			if (layouts != null) {
-				for (int i = 0; i < layouts.length; i++) {
-					if (layouts[i] != null) {
-						int layoutIndex = (i + this.topIndex) - topIndex;
-						if (0 <= layoutIndex && layoutIndex < newLayouts.length) {
-							newLayouts[layoutIndex] = layouts[i];
-						} else {
-							layouts[i].dispose();
-						}
-					}
-				}
-			}
-			if (bullets != null && bulletsIndices != null && topIndex != this.topIndex) {
+		if (topIndex != this.topIndex) {
+			if (bullets != null && bulletsIndices != null) {
 				int delta = topIndex - this.topIndex;
 				if (delta > 0) {
 					if (delta < bullets.length) {
@@ -755,21 +986,17 @@ TextLayout getTextLayout(int lineIndex, int orientation, int width, int lineSpac
 				}
 			}
 			this.topIndex = topIndex;
-			layouts = newLayouts;
 		}
-		if (layouts != null) {
-			int layoutIndex = lineIndex - topIndex;
-			if (0 <= layoutIndex && layoutIndex < layouts.length) {
-				layout = layouts[layoutIndex];
-				if (layout != null) {
-					if (lineWidth[lineIndex] != -1) return layout;
-				} else {
-					layout = layouts[layoutIndex] = new TextLayout(device);
-				}
-			}
+		int index = getLayoutIndex(lineIndex);
+		if (index != -1) {
+			layout = layouts[index];
+			layoutStamps[index] = ++layoutStamp;
+			if (lineIndex < lineWidth.length && lineWidth[lineIndex] != -1) return layout;
+		} else if (cache) {
+			layout = layouts[newLayoutIndex(lineIndex)];
 		}
 	}
-	if (layout == null) layout = new TextLayout(device);
+	if (layout == null) layout = newTextLayout();
 	String line = content.getLine(lineIndex);
 	int lineOffset = content.getOffsetAtLine(lineIndex);
 	int[] segments = null;
@@ -783,6 +1010,7 @@ TextLayout getTextLayout(int lineIndex, int orientation, int width, int lineSpac
 	int[] ranges = null;
 	StyleRange[] styles = null;
 	int rangeStart = 0, styleCount = 0;
+	int shiftRange = Integer.MAX_VALUE, shiftDelta = 0;
 	StyledTextEvent event = null;
 	if (styledText != null) {
 		event = styledText.getBidiSegments(lineOffset, line);
@@ -856,6 +1084,8 @@ TextLayout getTextLayout(int lineIndex, int orientation, int width, int lineSpac
 		ranges = this.ranges;
 		styles = this.styles;
 		styleCount = this.styleCount;
+		shiftRange = this.shiftRange;
+		shiftDelta = this.shiftDelta;
 		if (ranges != null) {
 			rangeStart = getRangeIndex(lineOffset, -1, styleCount << 1);
 		} else {
@@ -889,11 +1119,12 @@ TextLayout getTextLayout(int lineIndex, int orientation, int width, int lineSpac
 			int rangeCount = styleCount << 1;
 			for (int i = rangeStart; i < rangeCount; i += 2) {
 				int start, end;
-				if (lineOffset > ranges[i]) {
+				int styleStart = i >= shiftRange ? ranges[i] + shiftDelta : ranges[i];
+				if (lineOffset > styleStart) {
 					start = 0;
-					end = Math.min (length, ranges[i + 1] - lineOffset + ranges[i]);
+					end = Math.min (length, ranges[i + 1] - lineOffset + styleStart);
 				} else {
-					start = ranges[i] - lineOffset;
+					start = styleStart - lineOffset;
 					end = Math.min(length, start + ranges[i + 1]);
 				}
 				if (start >= length) break;
@@ -1017,9 +1248,70 @@ TextLayout getTextLayout(int lineIndex, int orientation, int width, int lineSpac
 	}
 	return layout;
 }
+int getTrim() {
+	return styledText.leftMargin + styledText.rightMargin + styledText.getCaretWidth();
+}
 int getWidth() {
+	if (estimateMetrics) return Math.max(maxWidth, estimatedWidth);
 	return maxWidth;
 }
+/*
+* Returns the index of the cached layout of the line, or -1.
+*/
+int getLayoutIndex(int lineIndex) {
+	if (layouts == null) return -1;
+	for (int i = 0; i < layouts.length; i++) {
+		if (layoutLines[i] == lineIndex && layouts[i] != null) return i;
+	}
+	return -1;
+}
+/*
+* Returns the index of a cached layout for the line, taking an empty
+* entry or the least recently used one.
+*/
+int newLayoutIndex(int lineIndex) {
+	if (layouts == null) {
+		layouts = new TextLayout[CACHE_SIZE];
+		layoutLines = new int[CACHE_SIZE];
+		layoutStamps = new int[CACHE_SIZE];
+	}
+	int index = 0;
+	for (int i = 0; i < layouts.length; i++) {
+		if (layouts[i] == null) {
+			index = i;
+			break;
+		}
+		if (layoutStamps[i] < layoutStamps[index]) index = i;
+	}
+	if (layouts[index] == null) layouts[index] = newTextLayout();
+	layoutLines[index] = lineIndex;
+	layoutStamps[index] = ++layoutStamp;
+	return index;
+}
+TextLayout newTextLayout() {
+	if (freeLayoutCount > 0) {
+		TextLayout layout = freeLayouts[--freeLayoutCount];
+		freeLayouts[freeLayoutCount] = null;
+		return layout;
+	}
+	return new TextLayout(device);
+}
+/*
+* Keeps a layout that is no longer used so that it can be reused
+* by newTextLayout() instead of creating a new one.
+*/
+void releaseTextLayout(TextLayout layout) {
+	if (layout.isDisposed()) return;
+	if (freeLayouts == null) freeLayouts = new TextLayout[FREE_LAYOUT_SIZE];
+	for (int i = 0; i < freeLayoutCount; i++) {
+		if (freeLayouts[i] == layout) return;
+	}
+	if (freeLayoutCount < freeLayouts.length) {
+		freeLayouts[freeLayoutCount++] = layout;
+	} else {
+		layout.dispose();
+	}
+}
 void reset() {
 	if (layouts != null) {
 		for (int i = 0; i < layouts.length; i++) {
@@ -1027,9 +1319,20 @@ void reset() {
 			if (layout != null) layout.dispose();
 		}
 		layouts = null;
+		layoutLines = layoutStamps = null;
+	}
+	if (freeLayouts != null) {
+		for (int i = 0; i < freeLayoutCount; i++) {
+			freeLayouts[i].dispose();
+		}
+		freeLayouts = null;
+		freeLayoutCount = 0;
 	}
 	topIndex = -1;
+	estimator = null;
+	estimatedWidth = 0;
 	stylesSetCount = styleCount = lineCount = 0;
+	shiftRange = shiftDelta = 0;
 	ranges = null;
 	styles = null;
 	stylesSet = null;
@@ -1043,8 +1346,9 @@ void reset() {
 }
 void reset(int startLine, int lineCount) {
 	int endLine = startLine + lineCount;
-	if (startLine < 0 || endLine > lineWidth.length) return;
-	for (int i = startLine; i < endLine; i++) {
+	if (startLine < 0 || endLine > this.lineCount) return;
+	int count = Math.min(endLine, lineWidth.length);
+	for (int i = startLine; i < count; i++) {
 		lineWidth[i] = -1;
 		lineHeight[i] = -1;
 	}
@@ -1052,7 +1356,8 @@ void reset(int startLine, int lineCount) {
 		maxWidth = 0;
 		maxWidthLineIndex = -1;
 		if (lineCount != this.lineCount) {
-			for (int i = 0; i < this.lineCount; i++) {
+			count = Math.min(this.lineCount, lineWidth.length);
+			for (int i = 0; i < count; i++) {
 				if (lineWidth[i] > maxWidth) {
 					maxWidth = lineWidth[i];
 					maxWidthLineIndex = i;
@@ -1065,8 +1370,8 @@ void setContent(StyledTextContent content) {
 	reset();
 	this.content = content;
 	lineCount = content.getLineCount();
-	lineWidth = new int[lineCount];
-	lineHeight = new int[lineCount];
+	lineWidth = new int[Math.min(lineCount, GROW)];
+	lineHeight = new int[lineWidth.length];
 	reset(0, lineCount);
 }
 void setFont(Font font, int tabs) {
@@ -1221,6 +1526,7 @@ void setLineTabStops(int startLine, int count, int[] tabStops) {
 void setStyleRanges (int[] newRanges, StyleRange[] newStyles) {
 	if (newStyles == null) {
 		stylesSetCount = styleCount = 0;
+		shiftRange = shiftDelta = 0;
 		ranges = null;
 		styles = null;
 		stylesSet = null;
@@ -1254,6 +1560,7 @@ void setStyleRanges (int[] newRanges, StyleRange[] newStyles) {
 	}
 
 	if (styleCount == 0) {
+		shiftRange = shiftDelta = 0;
 		if (newRanges != null) {
 			ranges = new int[newRanges.length];
 			System.arraycopy(newRanges, 0, ranges, 0, ranges.length);
@@ -1264,6 +1571,7 @@ void setStyleRanges (int[] newRanges, StyleRange[] newStyles) {
 		return;
 	}
 	if (newRanges != null && ranges == null) {
+		shiftRange = shiftDelta = 0;
 		ranges = new int[styles.length << 1];
 		for (int i = 0, j = 0; i < styleCount; i++) {
 			ranges[j++] = styles[i].start;
@@ -1279,6 +1587,9 @@ void setStyleRanges (int[] newRanges, StyleRange[] newStyles) {
 	}
 	if (ranges != null) {
 		int rangeCount = styleCount << 1;
+		/* the ranges that are read and changed must not have a pending shift */
+		int lastEnd = newRanges[newRanges.length - 2] + newRanges[newRanges.length - 1];
+		moveRangeShift(Math.min(rangeCount, getRangeIndex(lastEnd, -1, rangeCount) + 4));
 		int start = newRanges[0];
 		int modifyStart = getRangeIndex(start, -1, rangeCount), modifyEnd;
 		boolean insert = modifyStart == rangeCount;
@@ -1304,7 +1615,7 @@ void setStyleRanges (int[] newRanges, StyleRange[] newStyles) {
 				if (ranges[modifyEnd] + ranges[modifyEnd + 1] > newEnd) break;
 				modifyEnd += 2;
 			}
-			if (ranges[modifyStart] < newStart && newStart < ranges[modifyStart] + ranges[modifyStart + 1]) {
+			if (modifyStart < rangeCount && ranges[modifyStart] < newStart && newStart < ranges[modifyStart] + ranges[modifyStart + 1]) {
 				mergeStyles[mergeCount >> 1] = styles[modifyStart >> 1];
 				mergeRanges[mergeCount] = ranges[modifyStart];
 				mergeRanges[mergeCount + 1] = newStart - ranges[modifyStart];
@@ -1351,8 +1662,8 @@ void setStyleRanges (int[] newRanges, StyleRange[] newStyles) {
 				if (styles[modifyEnd].start + styles[modifyEnd].length > newEnd) break;
 				modifyEnd++;
 			}
-			style = styles[modifyStart];
-			if (style.start < newStart && newStart < style.start + style.length) {
+			style = modifyStart < styleCount ? styles[modifyStart] : null;
+			if (style != null && style.start < newStart && newStart < style.start + style.length) {
 				style = mergeStyles[mergeCount++] = (StyleRange)style.clone();
 				style.length = newStart - style.start;
 			}
@@ -1377,24 +1688,17 @@ void textChanging(TextChangingEvent event) {
 	int newLineCount = event.newLineCount, replaceLineCount = event.replaceLineCount;
 
 	updateRanges(start, replaceCharCount, newCharCount);
+	textSerial++;
 
 	int startLine = content.getLineAtOffset(start);
 	if (replaceCharCount == content.getCharCount()) lines = null;
 	if (replaceLineCount == lineCount) {
 		lineCount = newLineCount;
-		lineWidth = new int[lineCount];
-		lineHeight = new int[lineCount];
+		lineWidth = new int[Math.min(lineCount, GROW)];
+		lineHeight = new int[lineWidth.length];
 		reset(0, lineCount);
 	} else {
 		int delta = newLineCount - replaceLineCount;
-		if (lineCount + delta > lineWidth.length) {
-			int[] newWidths = new int[lineCount + delta + GROW];
-			System.arraycopy(lineWidth, 0, newWidths, 0, lineCount);
-			lineWidth = newWidths;
-			int[] newHeights = new int[lineCount + delta + GROW];
-			System.arraycopy(lineHeight, 0, newHeights, 0, lineCount);
-			lineHeight = newHeights;
-		}
 		if (lines != null) {
 			if (lineCount + delta > lines.length) {
 				LineInfo[] newLines = new LineInfo[lineCount + delta + GROW];
@@ -1404,60 +1708,65 @@ void textChanging(TextChangingEvent event) {
 		}
 		int startIndex = startLine + replaceLineCount + 1;
 		int endIndex = startLine + newLineCount + 1;
-		System.arraycopy(lineWidth, startIndex, lineWidth, endIndex, lineCount - startIndex);
-		System.arraycopy(lineHeight, startIndex, lineHeight, endIndex, lineCount - startIndex);
-		for (int i = startLine; i < endIndex; i++) {
-			lineWidth[i] = lineHeight[i] = -1;
-		}
-		for (int i = lineCount + delta; i < lineCount; i++) {
-			lineWidth[i] = lineHeight[i] = -1;
+		/*
+		* Only the lines that have been measured are stored, the
+		* lines past the end of the arrays are unknown.
+		*/
+		int count = Math.min(lineCount, lineWidth.length);
+		if (count > startIndex) {
+			ensureLineCapacity(count + delta);
+			System.arraycopy(lineWidth, startIndex, lineWidth, endIndex, count - startIndex);
+			System.arraycopy(lineHeight, startIndex, lineHeight, endIndex, count - startIndex);
+			for (int i = startLine; i < endIndex; i++) {
+				lineWidth[i] = lineHeight[i] = -1;
+			}
+			for (int i = count + delta; i < count; i++) {
+				lineWidth[i] = lineHeight[i] = -1;
+			}
+		} else {
+			for (int i = startLine; i < count; i++) {
+				lineWidth[i] = lineHeight[i] = -1;
+			}
 		}
 		if (layouts != null) {
-			int layoutStartLine = startLine - topIndex;
-			int layoutEndLine = layoutStartLine + replaceLineCount + 1;
-			for (int i = layoutStartLine; i < layoutEndLine; i++) {
-				if (0 <= i && i < layouts.length) {
-					if (layouts[i] != null) layouts[i].dispose();
+			int layoutEndLine = startLine + replaceLineCount;
+			for (int i = 0; i < layouts.length; i++) {
+				if (layouts[i] == null) continue;
+				int line = layoutLines[i];
+				if (line > layoutEndLine) {
+					layoutLines[i] = line + delta;
+				} else if (line >= startLine) {
+					releaseTextLayout(layouts[i]);
 					layouts[i] = null;
-					if (bullets != null && bulletsIndices != null) bullets[i] = null;
 				}
 			}
+		}
+		if (bullets != null && bulletsIndices != null) {
+			int bulletStartLine = startLine - topIndex;
+			int bulletEndLine = bulletStartLine + replaceLineCount + 1;
+			for (int i = bulletStartLine; i < bulletEndLine; i++) {
+				if (0 <= i && i < bullets.length) bullets[i] = null;
+			}
 			if (delta > 0) {
-				for (int i = layouts.length - 1; i >= layoutEndLine; i--) {
-					if (0 <= i && i < layouts.length) {
+				for (int i = bullets.length - 1; i >= bulletEndLine; i--) {
+					if (0 <= i && i < bullets.length) {
 						endIndex = i + delta;
-						if (0 <= endIndex && endIndex < layouts.length) {
-							layouts[endIndex] = layouts[i];
-							layouts[i] = null;
-							if (bullets != null && bulletsIndices != null) {
-								bullets[endIndex] = bullets[i];
-								bulletsIndices[endIndex] = bulletsIndices[i];
-								bullets[i] = null;
-							}
-						} else {
-							if (layouts[i] != null) layouts[i].dispose();
-							layouts[i] = null;
-							if (bullets != null && bulletsIndices != null) bullets[i] = null;
+						if (0 <= endIndex && endIndex < bullets.length) {
+							bullets[endIndex] = bullets[i];
+							bulletsIndices[endIndex] = bulletsIndices[i];
 						}
+						bullets[i] = null;
 					}
 				}
 			} else if (delta < 0) {
-				for (int i = layoutEndLine; i < layouts.length; i++) {
-					if (0 <= i && i < layouts.length) {
+				for (int i = bulletEndLine; i < bullets.length; i++) {
+					if (0 <= i && i < bullets.length) {
 						endIndex = i + delta;
-						if (0 <= endIndex && endIndex < layouts.length) {
-							layouts[endIndex] = layouts[i];
-							layouts[i] = null;
-							if (bullets != null && bulletsIndices != null) {
-								bullets[endIndex] = bullets[i];
-								bulletsIndices[endIndex] = bulletsIndices[i];
-								bullets[i] = null;
-							}
-						} else {
-							if (layouts[i] != null) layouts[i].dispose();
-							layouts[i] = null;
-							if (bullets != null && bulletsIndices != null) bullets[i] = null;
+						if (0 <= endIndex && endIndex < bullets.length) {
+							bullets[endIndex] = bullets[i];
+							bulletsIndices[endIndex] = bulletsIndices[i];
 						}
+						bullets[i] = null;
 					}
 				}
 			}
@@ -1482,7 +1791,8 @@ void textChanging(TextChangingEvent event) {
 		if (maxWidthLineIndex != -1 && startLine <= maxWidthLineIndex && maxWidthLineIndex <= startLine + replaceLineCount) {
 			maxWidth = 0;
 			maxWidthLineIndex = -1;
-			for (int i = 0; i < lineCount; i++) {
+			count = Math.min(lineCount, lineWidth.length);
+			for (int i = 0; i < count; i++) {
 				if (lineWidth[i] > maxWidth) {
 					maxWidth = lineWidth[i];
 					maxWidthLineIndex = i;
@@ -1525,6 +1835,22 @@ void updateBullets(int startLine, int replaceLineCount, int newLineCount, boolea
 		}
 	}
 }
+/*
+* Applies the pending shift to the starts of the ranges before index, or
+* takes it back from the ranges from index on, so that the shift is pending
+* from index on.
+*/
+void moveRangeShift(int index) {
+	if (shiftDelta != 0) {
+		for (int i = shiftRange; i < index; i += 2) {
+			ranges[i] += shiftDelta;
+		}
+		for (int i = index; i < shiftRange; i += 2) {
+			ranges[i] -= shiftDelta;
+		}
+	}
+	shiftRange = index;
+}
 void updateRanges(int start, int replaceCharCount, int newCharCount) {
 	if (styleCount == 0 || (replaceCharCount == 0 && newCharCount == 0)) return;
 	if (ranges != null) {
@@ -1534,6 +1860,12 @@ void updateRanges(int start, int replaceCharCount, int newCharCount) {
 		int end = start + replaceCharCount;
 		int modifyEnd = getRangeIndex(end, modifyStart - 1, rangeCount);
 		int offset = newCharCount - replaceCharCount;
+		/*
+		* The ranges after the change are moved by a pending shift, which is 
+		* only applied to them when a change happens somewhere else.  This 
+		* keeps typing in a document with many ranges from touching all of them.
+		*/
+		moveRangeShift(Math.min(rangeCount, modifyEnd + 2));
 		if (modifyStart == modifyEnd && ranges[modifyStart] < start && end < ranges[modifyEnd] + ranges[modifyEnd + 1]) {
 			if (newCharCount == 0) {
 				ranges[modifyStart + 1] -= replaceCharCount;
@@ -1553,15 +1885,11 @@ void updateRanges(int start, int replaceCharCount, int newCharCount) {
 				ranges[modifyStart + 2] = start + newCharCount;
 				ranges[modifyStart + 1] = start - ranges[modifyStart];
 				styles[(modifyStart >> 1) + 1] = styles[modifyStart >> 1];
+				shiftRange += 2;
 				rangeCount += 2;
 				styleCount++;
 				modifyEnd += 4;
 			}
-			if (offset != 0) {
-				for (int i = modifyEnd; i < rangeCount; i += 2) {
-					ranges[i] += offset;
-				}
-			}
 		} else {
 			if (ranges[modifyStart] < start && start < ranges[modifyStart] + ranges[modifyStart + 1]) {
 				ranges[modifyStart + 1] = start - ranges[modifyStart];
@@ -1571,14 +1899,15 @@ void updateRanges(int start, int replaceCharCount, int newCharCount) {
 				ranges[modifyEnd + 1] = ranges[modifyEnd] + ranges[modifyEnd + 1] - end;
 				ranges[modifyEnd] = end;
 			}
-			if (offset != 0) {
-				for (int i = modifyEnd; i < rangeCount; i += 2) {
-					ranges[i] += offset;
-				}
-			}
 			System.arraycopy(ranges, modifyEnd, ranges, modifyStart, rangeCount - modifyEnd);
 			System.arraycopy(styles, modifyEnd >> 1, styles, modifyStart >> 1, styleCount - (modifyEnd >> 1));
+			shiftRange -= modifyEnd - modifyStart;
 			styleCount -= (modifyEnd - modifyStart) >> 1;
+			modifyEnd = modifyStart;
+		}
+		if (offset != 0) {
+			moveRangeShift(modifyEnd);
+			shiftDelta += offset;
 		}
 	} else {
 		int modifyStart = getRangeIndex(start, -1, styleCount);
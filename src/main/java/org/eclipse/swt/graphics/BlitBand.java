@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.graphics;
+
+import org.eclipse.swt.internal.BandRunner;
+
+/*
+ * The fast paths of ImageData.blit() for unscaled, unflipped blits
+ * without alpha.  Each pixel is copied with a fixed sequence of byte
+ * moves chosen before the loop, so the inner loops have no branches.
+ * Large blits are split into bands of rows that are blitted by
+ * separate threads, see BandRunner.
+ */
+final class BlitBand implements Runnable {
+	int kind;
+	byte[] srcData;
+	int srcOffset, srcStride, srcBpp;
+	byte[] destData;
+	int destOffset, destStride, destBpp;
+	int width, startRow, endRow;
+
+	/*
+	 * The byte offsets of the channels within a pixel, DIRECT and INDEX only.
+	 * A destPad of -1 leaves the pad byte of 32 bit pixels unchanged, INDEX only.
+	 */
+	int srcRed, srcGreen, srcBlue;
+	int destRed, destGreen, destBlue, destPad;
+
+	/* The source palette, INDEX only */
+	byte[] reds, greens, blues;
+
+	/* Copies the rows unchanged */
+	static final int COPY = 0;
+	/* Moves the 8 bit channels of 24 or 32 bit pixels into 24 or 32 bit pixels */
+	static final int DIRECT = 1;
+	/* Looks up 8 bit palette indices into 24 or 32 bit pixels */
+	static final int INDEX = 2;
+
+	/* Blits with fewer pixels per band are not split */
+	static final int BAND_PIXELS = 256 * 1024;
+	static final int MAX_BANDS = Runtime.getRuntime().availableProcessors();
+
+BlitBand(int kind) {
+	this.kind = kind;
+}
+
+/*
+ * Blits the rows from 0 to height, splitting them in bands when the
+ * blit is large and more than one processor is available.
+ */
+void blit(int height) {
+	int bands = getBandCount(width, height);
+	if (bands <= 1) {
+		startRow = 0;
+		endRow = height;
+		run();
+		return;
+	}
+	Runnable[] runnables = new Runnable[bands];
+	for (int i = 0; i < bands; i++) {
+		BlitBand band = i == bands - 1 ? this : copy();
+		band.startRow = (int)((long)height * i / bands);
+		band.endRow = (int)((long)height * (i + 1) / bands);
+		runnables[i] = band;
+	}
+	BandRunner.run(runnables);
+}
+
+/*
+ * Returns the number of bands to split a blit of the given number of
+ * pixels in, which is 1 when the blit should not be split.
+ */
+static int getBandCount(int width, int height) {
+	return (int)Math.max(1, Math.min(MAX_BANDS, (long)width * height / BAND_PIXELS));
+}
+
+BlitBand copy() {
+	BlitBand band = new BlitBand(kind);
+	band.srcData = srcData;
+	band.srcOffset = srcOffset;
+	band.srcStride = srcStride;
+	band.srcBpp = srcBpp;
+	band.destData = destData;
+	band.destOffset = destOffset;
+	band.destStride = destStride;
+	band.destBpp = destBpp;
+	band.width = width;
+	band.srcRed = srcRed;
+	band.srcGreen = srcGreen;
+	band.srcBlue = srcBlue;
+	band.destRed = destRed;
+	band.destGreen = destGreen;
+	band.destBlue = destBlue;
+	band.destPad = destPad;
+	band.reds = reds;
+	band.greens = greens;
+	band.blues = blues;
+	return band;
+}
+
+public void run() {
+	switch (kind) {
+		case COPY: copyRows(); break;
+		case DIRECT: directRows(); break;
+		case INDEX: indexRows(); break;
+	}
+}
+
+void copyRows() {
+	final byte[] srcData = this.srcData, destData = this.destData;
+	final int length = width * srcBpp;
+	for (int y = startRow; y < endRow; y++) {
+		System.arraycopy(srcData, srcOffset + y * srcStride, destData, destOffset + y * destStride, length);
+	}
+}
+
+void directRows() {
+	final byte[] srcData = this.srcData, destData = this.destData;
+	final int width = this.width, sbpp = srcBpp;
+	final int sr = srcRed, sg = srcGreen, sb = srcBlue;
+	final int dr = destRed, dg = destGreen, db = destBlue, da = destPad;
+	for (int y = startRow; y < endRow; y++) {
+		int sp = srcOffset + y * srcStride, dp = destOffset + y * destStride;
+		if (destBpp == 4) {
+			for (int x = 0; x < width; x++, sp += sbpp, dp += 4) {
+				destData[dp + dr] = srcData[sp + sr];
+				destData[dp + dg] = srcData[sp + sg];
+				destData[dp + db] = srcData[sp + sb];
+				destData[dp + da] = 0;
+			}
+		} else {
+			for (int x = 0; x < width; x++, sp += sbpp, dp += 3) {
+				destData[dp + dr] = srcData[sp + sr];
+				destData[dp + dg] = srcData[sp + sg];
+				destData[dp + db] = srcData[sp + sb];
+			}
+		}
+	}
+}
+
+void indexRows() {
+	final byte[] srcData = this.srcData, destData = this.destData;
+	final byte[] reds = this.reds, greens = this.greens, blues = this.blues;
+	final int width = this.width;
+	final int dr = destRed, dg = destGreen, db = destBlue, da = destPad;
+	for (int y = startRow; y < endRow; y++) {
+		int sp = srcOffset + y * srcStride, dp = destOffset + y * destStride;
+		if (destBpp == 4 && da == -1) {
+			for (int x = 0; x < width; x++, dp += 4) {
+				int index = srcData[sp + x] & 0xff;
+				destData[dp + dr] = reds[index];
+				destData[dp + dg] = greens[index];
+				destData[dp + db] = blues[index];
+			}
+		} else if (destBpp == 4) {
+			for (int x = 0; x < width; x++, dp += 4) {
+				int index = srcData[sp + x] & 0xff;
+				destData[dp + dr] = reds[index];
+				destData[dp + dg] = greens[index];
+				destData[dp + db] = blues[index];
+				destData[dp + da] = 0;
+			}
+		} else {
+			for (int x = 0; x < width; x++, dp += 3) {
+				int index = srcData[sp + x] & 0xff;
+				destData[dp + dr] = reds[index];
+				destData[dp + dg] = greens[index];
+				destData[dp + db] = blues[index];
+			}
+		}
+	}
+}
+
+}
@@ -83,6 +83,16 @@ public abstract class Device implements Drawable {
 
 	boolean useXRender;
 
+	/* Scaled Pixmaps */
+	Image [] scaledImages = new Image [SCALED_PIXMAP_COUNT];
+	int [] scaledPixmaps = new int [SCALED_PIXMAP_COUNT], scaledSizes = new int [SCALED_PIXMAP_COUNT];
+	int [] scaledKeys = new int [SCALED_PIXMAP_COUNT * SCALED_KEY_SIZE];
+	int scaledCount, scaledBytes;
+	int scaledHits, scaledMisses;
+	static final int SCALED_PIXMAP_COUNT = 32;
+	static final int SCALED_PIXMAP_LIMIT = 8 * 1024 * 1024;
+	static final int SCALED_KEY_SIZE = 8;
+
 	static boolean CAIRO_LOADED;
 
 	/* Parsing Tables */
@@ -280,6 +290,22 @@ synchronized static void deregister (Device device) {
 protected void destroy () {
 }
 
+/*
+ * Frees the scaled pixmaps of the specified image, or of all
+ * images if the argument is null.  This must be called before
+ * the contents of an image change or its pixmaps are freed.
+ */
+void flushScaledPixmaps (Image image) {
+	int i = 0;
+	while (i < scaledCount) {
+		if (image == null || scaledImages [i] == image) {
+			removeScaledPixmap (i);
+		} else {
+			i++;
+		}
+	}
+}
+
 /**
  * Disposes of the operating system resources associated with
  * the receiver. After this method has been invoked, the receiver
@@ -330,6 +356,69 @@ static synchronized Device findDevice (int xDisplay) {
 	return null;
 }
 
+/*
+ * Returns a pixmap holding the specified area of a pixmap of the image
+ * (either its color pixmap or its mask) stretched to the destination size.
+ * Stretching is done on the client by GC.scalePixmap(), which reads back
+ * the whole area from the X server, so the result is kept in a cache and
+ * reused by the next draw of the same image at the same size.  The cache
+ * is kept in most recently used order and is bounded by SCALED_PIXMAP_COUNT
+ * entries and SCALED_PIXMAP_LIMIT bytes.
+ * 
+ * The pixmap belongs to the cache and must not be freed by the caller.  It
+ * stays valid until the next call as long as the destination size was
+ * accepted by isScaledPixmapCached(), which guarantees that the two most
+ * recent entries are never evicted.
+ */
+int getScaledPixmap (Image image, int pixmap, int srcX, int srcY, int srcWidth, int srcHeight, int destWidth, int destHeight, boolean flipX, boolean flipY) {
+	int flags = (flipX ? 1 : 0) | (flipY ? 2 : 0);
+	for (int i=0; i<scaledCount; i++) {
+		int k = i * SCALED_KEY_SIZE;
+		if (scaledImages [i] == image && scaledKeys [k] == pixmap &&
+			scaledKeys [k + 1] == srcX && scaledKeys [k + 2] == srcY &&
+			scaledKeys [k + 3] == srcWidth && scaledKeys [k + 4] == srcHeight &&
+			scaledKeys [k + 5] == destWidth && scaledKeys [k + 6] == destHeight &&
+			scaledKeys [k + 7] == flags) {
+				int scaledPixmap = scaledPixmaps [i], size = scaledSizes [i];
+				System.arraycopy (scaledImages, 0, scaledImages, 1, i);
+				System.arraycopy (scaledPixmaps, 0, scaledPixmaps, 1, i);
+				System.arraycopy (scaledSizes, 0, scaledSizes, 1, i);
+				System.arraycopy (scaledKeys, 0, scaledKeys, SCALED_KEY_SIZE, k);
+				setScaledPixmap (0, image, scaledPixmap, size, pixmap, srcX, srcY, srcWidth, srcHeight, destWidth, destHeight, flags);
+				scaledHits++;
+				return scaledPixmap;
+		}
+	}
+	scaledMisses++;
+	int xImagePtr = GC.scalePixmap (xDisplay, pixmap, srcX, srcY, srcWidth, srcHeight, 0, 0, destWidth, destHeight, flipX, flipY);
+	if (xImagePtr == 0) return 0;
+	XImage xImage = new XImage ();
+	OS.memmove (xImage, xImagePtr, XImage.sizeof);
+	int drawable = OS.XDefaultRootWindow (xDisplay);
+	int scaledPixmap = OS.XCreatePixmap (xDisplay, drawable, destWidth, destHeight, xImage.depth);
+	if (scaledPixmap == 0) {
+		OS.XDestroyImage (xImagePtr);
+		return 0;
+	}
+	int xGC = OS.XCreateGC (xDisplay, scaledPixmap, 0, null);
+	OS.XPutImage (xDisplay, scaledPixmap, xGC, xImagePtr, 0, 0, 0, 0, destWidth, destHeight);
+	OS.XFreeGC (xDisplay, xGC);
+	int size = xImage.bytes_per_line * xImage.height;
+	OS.XDestroyImage (xImagePtr);
+	if (scaledCount == SCALED_PIXMAP_COUNT) removeScaledPixmap (scaledCount - 1);
+	System.arraycopy (scaledImages, 0, scaledImages, 1, scaledCount);
+	System.arraycopy (scaledPixmaps, 0, scaledPixmaps, 1, scaledCount);
+	System.arraycopy (scaledSizes, 0, scaledSizes, 1, scaledCount);
+	System.arraycopy (scaledKeys, 0, scaledKeys, SCALED_KEY_SIZE, scaledCount * SCALED_KEY_SIZE);
+	setScaledPixmap (0, image, scaledPixmap, size, pixmap, srcX, srcY, srcWidth, srcHeight, destWidth, destHeight, flags);
+	scaledCount++;
+	scaledBytes += size;
+	while (scaledBytes > SCALED_PIXMAP_LIMIT && scaledCount > 1) {
+		removeScaledPixmap (scaledCount - 1);
+	}
+	return scaledPixmap;
+}
+
 /**
  * Returns a rectangle describing the receiver's size and location.
  *
@@ -423,6 +512,8 @@ public DeviceData getDeviceData () {
 		data.objects = new Object [0];
 		data.errors = new Error [0];
 	}
+	data.scaledPixmapHits = scaledHits;
+	data.scaledPixmapMisses = scaledMisses;
 	return data;
 }
 
@@ -738,6 +829,16 @@ public abstract int internal_new_GC (GCData data);
  */
 public abstract void internal_dispose_GC (int handle, GCData data);
 
+/*
+ * Returns whether a stretched draw to the specified size should go through
+ * getScaledPixmap().  Large destinations are not cached, so that a single
+ * entry never uses more than a quarter of SCALED_PIXMAP_LIMIT (assuming at
+ * most 4 bytes per pixel).
+ */
+boolean isScaledPixmapCached (int destWidth, int destHeight) {
+	return destWidth * destHeight <= SCALED_PIXMAP_LIMIT / 16;
+}
+
 /**
  * Returns <code>true</code> if the device has been disposed,
  * and <code>false</code> otherwise.
@@ -825,6 +926,17 @@ void new_Object (Object object) {
 	}
 }
 
+void removeScaledPixmap (int index) {
+	OS.XFreePixmap (xDisplay, scaledPixmaps [index]);
+	scaledBytes -= scaledSizes [index];
+	int length = --scaledCount - index;
+	System.arraycopy (scaledImages, index + 1, scaledImages, index, length);
+	System.arraycopy (scaledPixmaps, index + 1, scaledPixmaps, index, length);
+	System.arraycopy (scaledSizes, index + 1, scaledSizes, index, length);
+	System.arraycopy (scaledKeys, (index + 1) * SCALED_KEY_SIZE, scaledKeys, index * SCALED_KEY_SIZE, length * SCALED_KEY_SIZE);
+	scaledImages [scaledCount] = null;
+}
+
 static synchronized void register (Device device) {
 	for (int i=0; i<Devices.length; i++) {
 		if (Devices [i] == null) {
@@ -862,6 +974,11 @@ static synchronized void register (Device device) {
  * @see #destroy
  */
 protected void release () {
+	/* Free the scaled pixmaps */
+	flushScaledPixmaps (null);
+	scaledImages = null;
+	scaledPixmaps = scaledSizes = scaledKeys = null;
+
 	/* Free the parsing tables */
 	OS.XtFree(tabPointer);
 	OS.XtFree(crPointer);
@@ -954,6 +1071,21 @@ protected void release () {
 	}
 }
 
+void setScaledPixmap (int index, Image image, int scaledPixmap, int size, int pixmap, int srcX, int srcY, int srcWidth, int srcHeight, int destWidth, int destHeight, int flags) {
+	int k = index * SCALED_KEY_SIZE;
+	scaledImages [index] = image;
+	scaledPixmaps [index] = scaledPixmap;
+	scaledSizes [index] = size;
+	scaledKeys [k] = pixmap;
+	scaledKeys [k + 1] = srcX;
+	scaledKeys [k + 2] = srcY;
+	scaledKeys [k + 3] = srcWidth;
+	scaledKeys [k + 4] = srcHeight;
+	scaledKeys [k + 5] = destWidth;
+	scaledKeys [k + 6] = destHeight;
+	scaledKeys [k + 7] = flags;
+}
+
 /**
  * If the underlying window system supports printing warning messages
  * to the console, setting warnings to <code>false</code> prevents these
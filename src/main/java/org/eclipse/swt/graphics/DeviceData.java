@@ -27,4 +27,13 @@ public class DeviceData {
 	public boolean tracking;
 	public Error [] errors;
 	public Object [] objects;
+
+	/*
+	* Cache statistics - may not be honoured
+	* on some SWT platforms.
+	*/
+	/** @since 3.7 */
+	public int scaledPixmapHits, scaledPixmapMisses;
+	/** @since 3.7 */
+	public int backBufferHits, backBufferMisses;
 }
@@ -62,6 +62,19 @@ public final class Font extends Resource {
 	 */
 	public String codePage;
 
+	/*
+	 * The advance widths of the characters in the font, filled in on demand
+	 * by getAdvance().  The table is split in pages of 256 characters, which
+	 * are created when one of their characters is first read.  A zero entry
+	 * has not been read yet and -1 marks a character that must be measured
+	 * by Motif.
+	 */
+	int[][] advances;
+	XFontStruct advanceStruct;
+
+	/* The height of the font, or -1 before getHeight() reads it */
+	int height = -1;
+
 Font (Device device) {
 	super(device);
 }
@@ -165,6 +178,9 @@ void destroy() {
 	if (handle == device.systemFont.handle) return;
 	OS.XmFontListFree (handle);
 	handle = 0;
+	advances = null;
+	advanceStruct = null;
+	height = -1;
 }
 
 /**
@@ -184,6 +200,47 @@ public boolean equals (Object object) {
 	return device == font.device && handle == font.handle;
 }
 
+/*
+ * Returns the advance width of the character, or -1 when it cannot be
+ * computed from the font metrics and must be measured with an XmString.
+ * Only font lists made of a single core font are measured this way.  The
+ * glyphs of a font set depend on the locale and are left to Motif.
+ */
+int getAdvance (char ch) {
+	if (advances == null) initAdvances ();
+	if (advanceStruct == null) return -1;
+	int[] page = advances [ch >> 8];
+	if (page == null) page = advances [ch >> 8] = new int [256];
+	int width = page [ch & 0xFF];
+	if (width == 0) width = page [ch & 0xFF] = loadAdvance (ch);
+	return width;
+}
+
+/*
+ * Returns the sum of the advance widths of the characters from start to
+ * end (exclusive), or -1 if one of them cannot be computed.  Core fonts
+ * are not kerned, so the sum is the width of the string.
+ */
+int getAdvance (char[] chars, int start, int end) {
+	int width = 0;
+	for (int i = start; i < end; i++) {
+		int advance = getAdvance (chars [i]);
+		if (advance == -1) return -1;
+		width += advance;
+	}
+	return width;
+}
+
+int getAdvance (String string) {
+	int width = 0, length = string.length ();
+	for (int i = 0; i < length; i++) {
+		int advance = getAdvance (string.charAt (i));
+		if (advance == -1) return -1;
+		width += advance;
+	}
+	return width;
+}
+
 /**
  * Returns the code page for the specified font list.
  *
@@ -391,6 +448,53 @@ public FontData[] getFontData() {
 	return data;
 }
 
+/*
+ * Returns the height of the tallest font of the font list, which is read
+ * once and kept, since the font list of the receiver never changes.
+ */
+int getHeight () {
+	if (height != -1) return height;
+	/* Create a font context to iterate over each element in the font list */
+	int [] buffer = new int [1];
+	if (!OS.XmFontListInitFontContext (buffer, handle)) {
+		SWT.error(SWT.ERROR_NO_HANDLES);
+	}
+	int context = buffer [0];
+	
+	/* Values discovering during iteration */
+	int height = 0;
+	XFontStruct fontStruct = new XFontStruct ();
+	int fontListEntry;
+	int [] fontStructPtr = new int [1];
+	int [] fontNamePtr = new int [1];
+	
+	/* Go through each entry in the font list. */
+	while ((fontListEntry = OS.XmFontListNextEntry (context)) != 0) {
+		int fontPtr = OS.XmFontListEntryGetFont (fontListEntry, buffer);
+		if (buffer [0] == 0) {
+			/* FontList contains a single font */
+			OS.memmove (fontStruct, fontPtr, XFontStruct.sizeof);
+			int fontHeight = fontStruct.ascent + fontStruct.descent;
+			height = Math.max(height, fontHeight);
+		} else {
+			/* FontList contains a fontSet */
+			int nFonts = OS.XFontsOfFontSet (fontPtr, fontStructPtr, fontNamePtr);
+			int [] fontStructs = new int [nFonts];
+			OS.memmove (fontStructs, fontStructPtr [0], nFonts * 4);
+			
+			/* Go through each fontStruct in the font set */
+			for (int i=0; i<nFonts; i++) {
+				OS.memmove (fontStruct, fontStructs[i], XFontStruct.sizeof);
+				int fontHeight = fontStruct.ascent + fontStruct.descent;
+				height = Math.max(height, fontHeight);
+			}
+		}
+	}
+	
+	OS.XmFontListFreeFontContext (context);
+	return this.height = height;
+}
+
 /**
  * Returns an integer hash code for the receiver. Any two 
  * objects that return <code>true</code> when passed to 
@@ -405,6 +509,23 @@ public int hashCode () {
 	return handle;
 }
 
+void initAdvances () {
+	advances = new int [256][];
+	int[] buffer = new int [1];
+	if (!OS.XmFontListInitFontContext (buffer, handle)) return;
+	int context = buffer [0];
+	int fontListEntry, entryCount = 0, fontPtr = 0, fontType = 0;
+	while ((fontListEntry = OS.XmFontListNextEntry (context)) != 0) {
+		fontPtr = OS.XmFontListEntryGetFont (fontListEntry, buffer);
+		fontType = buffer [0];
+		entryCount++;
+	}
+	OS.XmFontListFreeFontContext (context);
+	if (entryCount != 1 || fontType != OS.XmFONT_IS_FONT || fontPtr == 0) return;
+	advanceStruct = new XFontStruct ();
+	OS.memmove (advanceStruct, fontPtr, XFontStruct.sizeof);
+}
+
 void init (FontData[] fds) {
 	/* Change current locale if needed. Note: only the first font data is used */
 	FontData firstFd = fds[0];
@@ -506,6 +627,39 @@ void init (FontData[] fds) {
 	if (handle == 0) SWT.error(SWT.ERROR_NO_HANDLES);
 }
 
+/*
+ * Reads the advance width of the character from the per_char table of the
+ * font, the same way GC.getAdvanceWidth() does.  The character is converted
+ * to the code page of the font first.  A glyph of zero width is missing from
+ * the font, so Motif is left to draw the default character instead.
+ */
+int loadAdvance (char ch) {
+	XFontStruct fontStruct = advanceStruct;
+	byte[] buffer = Converter.wcsToMbcs (codePage, new char[] {ch}, false);
+	int row, col;
+	if (fontStruct.min_byte1 == 0 && fontStruct.max_byte1 == 0) {
+		if (buffer.length != 1) return -1;
+		row = 0;
+		col = buffer [0] & 0xFF;
+	} else {
+		if (buffer.length != 2) return -1;
+		row = buffer [0] & 0xFF;
+		col = buffer [1] & 0xFF;
+	}
+	if (row < fontStruct.min_byte1 || row > fontStruct.max_byte1) return -1;
+	if (col < fontStruct.min_char_or_byte2 || col > fontStruct.max_char_or_byte2) return -1;
+	int perCharPtr = fontStruct.per_char;
+	if (perCharPtr == 0) {
+		/* All glyphs in the font have the font's maximum width */
+		return fontStruct.max_bounds_width;
+	}
+	int charsPerRow = fontStruct.max_char_or_byte2 - fontStruct.min_char_or_byte2 + 1;
+	int offset = (row - fontStruct.min_byte1) * charsPerRow + col - fontStruct.min_char_or_byte2;
+	XCharStruct charStruct = new XCharStruct ();
+	OS.memmove (charStruct, perCharPtr + offset * XCharStruct.sizeof, XCharStruct.sizeof);
+	return charStruct.width > 0 ? charStruct.width : -1;
+}
+
 /**
  * Returns <code>true</code> if the font has been disposed,
  * and <code>false</code> otherwise.
@@ -484,6 +484,7 @@ void destroy() {
 	if (clipRgn != 0) OS.XDestroyRegion(clipRgn);
 	Image image = data.image;
 	if (image != null) {
+		image.device.flushScaledPixmaps(image);
 		image.memGC = null;
 		if (image.transparentPixel != -1) image.createMask();
 	}
@@ -943,9 +944,21 @@ void drawImageMask(Image srcImage, int srcX, int srcY, int srcWidth, int srcHeig
 	} else {
 		int colorPixmap = 0, maskPixmap = 0;
 		int foreground = 0x00000000;
+		boolean cached = false;
 		if (simple || (srcWidth == destWidth && srcHeight == destHeight)) {
 			colorPixmap = srcImage.pixmap;
 			maskPixmap = srcImage.mask;
+		} else if (srcImage.memGC == null && device.isScaledPixmapCached(destWidth, destHeight)) {
+			/* Use the cached stretched color and mask */
+			colorPixmap = device.getScaledPixmap(srcImage, srcImage.pixmap, srcX, srcY, srcWidth, srcHeight, destWidth, destHeight, false, false);
+			if (colorPixmap != 0) {
+				maskPixmap = device.getScaledPixmap(srcImage, srcImage.mask, srcX, srcY, srcWidth, srcHeight, destWidth, destHeight, false, false);
+			}
+			cached = true;
+			srcX = srcY = 0;
+			srcWidth = destWidth;
+			srcHeight = destHeight;
+			foreground = ~foreground;
 		} else {
 			/* Stretch the color and mask*/
 			int xImagePtr = scalePixmap(xDisplay, srcImage.pixmap, srcX, srcY, srcWidth, srcHeight, destX, destY, destWidth, destHeight, false, false);
@@ -995,8 +1008,10 @@ void drawImageMask(Image srcImage, int srcX, int srcY, int srcWidth, int srcHeig
 		}
 
 		/* Destroy scaled pixmaps */
-		if (colorPixmap != 0 && srcImage.pixmap != colorPixmap) OS.XFreePixmap(xDisplay, colorPixmap);
-		if (maskPixmap != 0 && srcImage.mask != maskPixmap) OS.XFreePixmap(xDisplay, maskPixmap);
+		if (!cached) {
+			if (colorPixmap != 0 && srcImage.pixmap != colorPixmap) OS.XFreePixmap(xDisplay, colorPixmap);
+			if (maskPixmap != 0 && srcImage.mask != maskPixmap) OS.XFreePixmap(xDisplay, maskPixmap);
+		}
 	}
 
 	/* Destroy the image mask if the there is a GC created on the image */
@@ -1058,19 +1073,35 @@ void drawImage(Image srcImage, int srcX, int srcY, int srcWidth, int srcHeight,
 		OS.XCopyArea(xDisplay, srcImage.pixmap, xDrawable, handle, srcX, srcY, srcWidth, srcHeight, destX, destY);
 		return;
 	}
-	if (device.useXRender) {
+	/*
+	* XRender and the scaled pixmap cache sample the nearest pixel, so
+	* images that are filtered are scaled on the client every time.
+	*/
+	int interpolation = data.interpolation;
+	boolean filter = interpolation == SWT.LOW || interpolation == SWT.HIGH;
+	if (device.useXRender && !filter) {
 		drawImageXRender(srcImage, srcX, srcY, srcWidth, srcHeight, destX, destY, destWidth, destHeight, simple, imgWidth, imgHeight, 0, -1);
 		return;
 	}
 	
 	/* Streching case */
-	int xImagePtr = scalePixmap(xDisplay, srcImage.pixmap, srcX, srcY, srcWidth, srcHeight, destX, destY, destWidth, destHeight, false, false);
+	if (!filter && srcImage.memGC == null && device.isScaledPixmapCached(destWidth, destHeight)) {
+		int scaledPixmap = device.getScaledPixmap(srcImage, srcImage.pixmap, srcX, srcY, srcWidth, srcHeight, destWidth, destHeight, false, false);
+		if (scaledPixmap != 0) {
+			OS.XCopyArea(xDisplay, scaledPixmap, xDrawable, handle, 0, 0, destWidth, destHeight, destX, destY);
+		}
+		return;
+	}
+	int xImagePtr = scalePixmap(xDisplay, srcImage.pixmap, srcX, srcY, srcWidth, srcHeight, destX, destY, destWidth, destHeight, false, false, interpolation);
 	if (xImagePtr != 0) {
 		OS.XPutImage(xDisplay, xDrawable, handle, xImagePtr, 0, 0, destX, destY, destWidth, destHeight);
 		OS.XDestroyImage(xImagePtr);
 	}
 }
 static int scalePixmap(int display, int pixmap, int srcX, int srcY, int srcWidth, int srcHeight, int destX, int destY, int destWidth, int destHeight, boolean flipX, boolean flipY) {
+	return scalePixmap(display, pixmap, srcX, srcY, srcWidth, srcHeight, destX, destY, destWidth, destHeight, flipX, flipY, SWT.DEFAULT);
+}
+static int scalePixmap(int display, int pixmap, int srcX, int srcY, int srcWidth, int srcHeight, int destX, int destY, int destWidth, int destHeight, boolean flipX, boolean flipY, int interpolation) {
 	int xSrcImagePtr = OS.XGetImage(display, pixmap, srcX, srcY, srcWidth, srcHeight, OS.AllPlanes, OS.ZPixmap);
 	if (xSrcImagePtr == 0) return 0;
 	XImage xSrcImage = new XImage();
@@ -1124,11 +1155,35 @@ static int scalePixmap(int display, int pixmap, int srcX, int srcY, int srcWidth
 			xImage.data = bufPtr;
 			OS.memmove(xImagePtr, xImage, XImage.sizeof);
 			byte[] buf = new byte[bufSize];
-			ImageData.blit(ImageData.BLIT_SRC,
-				srcData, xSrcImage.bits_per_pixel, xSrcImage.bytes_per_line, xSrcImage.byte_order, 0, 0, srcWidth, srcHeight, 0, 0, 0,
-				ImageData.ALPHA_OPAQUE, null, 0, 0, 0,
-				buf, xImage.bits_per_pixel, xImage.bytes_per_line, xImage.byte_order, 0, 0, destWidth, destHeight, 0, 0, 0,
-				flipX, flipY);
+			if (interpolation == SWT.LOW || interpolation == SWT.HIGH) {
+				/*
+				* Filter the pixels as 24 bit RGB.  The pixmaps of images are
+				* always created with the masks of the default visual.
+				*/
+				Visual xVisual = new Visual();
+				OS.memmove(xVisual, visual, Visual.sizeof);
+				int redMask = xVisual.red_mask, greenMask = xVisual.green_mask, blueMask = xVisual.blue_mask;
+				byte[] srcRGB = new byte[srcWidth * srcHeight * 3];
+				ImageData.blit(ImageData.BLIT_SRC,
+					srcData, xSrcImage.bits_per_pixel, xSrcImage.bytes_per_line, xSrcImage.byte_order, 0, 0, srcWidth, srcHeight, redMask, greenMask, blueMask,
+					ImageData.ALPHA_OPAQUE, null, 0, 0, 0,
+					srcRGB, 24, srcWidth * 3, ImageData.MSB_FIRST, 0, 0, srcWidth, srcHeight, 0xFF0000, 0xFF00, 0xFF,
+					false, false);
+				byte[] destRGB = new byte[destWidth * destHeight * 3];
+				int filter = interpolation == SWT.HIGH ? ImageScaler.LANCZOS : ImageScaler.MIPMAP;
+				ImageScaler.scale(srcRGB, srcWidth * 3, srcWidth, srcHeight, destRGB, destWidth * 3, destWidth, destHeight, 3, filter);
+				ImageData.blit(ImageData.BLIT_SRC,
+					destRGB, 24, destWidth * 3, ImageData.MSB_FIRST, 0, 0, destWidth, destHeight, 0xFF0000, 0xFF00, 0xFF,
+					ImageData.ALPHA_OPAQUE, null, 0, 0, 0,
+					buf, xImage.bits_per_pixel, xImage.bytes_per_line, xImage.byte_order, 0, 0, destWidth, destHeight, redMask, greenMask, blueMask,
+					flipX, flipY);
+			} else {
+				ImageData.blit(ImageData.BLIT_SRC,
+					srcData, xSrcImage.bits_per_pixel, xSrcImage.bytes_per_line, xSrcImage.byte_order, 0, 0, srcWidth, srcHeight, 0, 0, 0,
+					ImageData.ALPHA_OPAQUE, null, 0, 0, 0,
+					buf, xImage.bits_per_pixel, xImage.bytes_per_line, xImage.byte_order, 0, 0, destWidth, destHeight, 0, 0, 0,
+					flipX, flipY);
+			}
 			OS.memmove(bufPtr, buf, bufSize);
 			break;
 		}
@@ -2249,6 +2304,8 @@ char fixMnemonic(char[] text) {
 public int getAdvanceWidth(char ch) {
 	if (handle == 0) SWT.error(SWT.ERROR_GRAPHIC_DISPOSED);
 	checkGC(FONT);
+	int width = data.font.getAdvance(ch);
+	if (width != -1) return width;
 	int fontList  = data.font.handle;
 	byte[] charBuffer = Converter.wcsToMbcs(getCodePage (), new char[] { ch }, false);
 	int val = charBuffer[0] & 0xFF;
@@ -2813,46 +2870,7 @@ public Font getFont () {
 	return Font.motif_new(data.device, data.font.handle);
 }
 int getFontHeight () {
-	int fontList = data.font.handle;
-	/* Create a font context to iterate over each element in the font list */
-	int [] buffer = new int [1];
-	if (!OS.XmFontListInitFontContext (buffer, fontList)) {
-		SWT.error(SWT.ERROR_NO_HANDLES);
-	}
-	int context = buffer [0];
-	
-	/* Values discovering during iteration */
-	int height = 0;
-	XFontStruct fontStruct = new XFontStruct ();
-	int fontListEntry;
-	int [] fontStructPtr = new int [1];
-	int [] fontNamePtr = new int [1];
-	
-	/* Go through each entry in the font list. */
-	while ((fontListEntry = OS.XmFontListNextEntry (context)) != 0) {
-		int fontPtr = OS.XmFontListEntryGetFont (fontListEntry, buffer);
-		if (buffer [0] == 0) {
-			/* FontList contains a single font */
-			OS.memmove (fontStruct, fontPtr, XFontStruct.sizeof);
-			int fontHeight = fontStruct.ascent + fontStruct.descent;
-			height = Math.max(height, fontHeight);
-		} else {
-			/* FontList contains a fontSet */
-			int nFonts = OS.XFontsOfFontSet (fontPtr, fontStructPtr, fontNamePtr);
-			int [] fontStructs = new int [nFonts];
-			OS.memmove (fontStructs, fontStructPtr [0], nFonts * 4);
-			
-			/* Go through each fontStruct in the font set */
-			for (int i=0; i<nFonts; i++) {
-				OS.memmove (fontStruct, fontStructs[i], XFontStruct.sizeof);
-				int fontHeight = fontStruct.ascent + fontStruct.descent;
-				height = Math.max(height, fontHeight);
-			}
-		}
-	}
-	
-	OS.XmFontListFreeFontContext (context);
-	return height;
+	return data.font.getHeight ();
 }
 /**
  * Returns a FontMetrics which contains information
@@ -3425,6 +3443,19 @@ boolean isIdentity(double[] matrix) {
 	if (matrix == null) return true;
 	return matrix[0] == 1 && matrix[1] == 0 && matrix[2] == 0 && matrix[3] == 1 && matrix[4] == 0 && matrix[5] == 0;
 }
+/*
+ * Returns true if the string has no tabs, line delimiters or (when the
+ * flags ask for it) mnemonics, so that its extent is that of the string.
+ */
+boolean isSimpleText(String string, int flags) {
+	boolean mnemonic = (flags & SWT.DRAW_MNEMONIC) != 0;
+	for (int i = 0; i < string.length(); i++) {
+		char ch = string.charAt(i);
+		if (ch == '\t' || ch == '\r' || ch == '\n') return false;
+		if (mnemonic && ch == '&') return false;
+	}
+	return true;
+}
 /**
  * Sets the receiver to always use the operating system's advanced graphics
  * subsystem for all graphics operations if the argument is <code>true</code>.
@@ -3978,7 +4009,13 @@ public void setForegroundPattern(Pattern pattern) {
  * <p>
  * This operation requires the operating system's advanced
  * graphics subsystem which may not be available on some
- * platforms.
+ * platforms.  When it is not available, stretched images are
+ * filtered on the client instead: <code>SWT.LOW</code> uses a
+ * bilinear filter, averaging large reductions by halves first,
+ * and <code>SWT.HIGH</code> uses a Lanczos filter.
+ * <code>SWT.DEFAULT</code> and <code>SWT.NONE</code> sample the
+ * nearest pixel.  Only images without transparency are filtered
+ * this way.
  * </p>
  * 
  * @param interpolation the new interpolation setting
@@ -3989,7 +4026,6 @@ public void setForegroundPattern(Pattern pattern) {
  * </ul> 
  * @exception SWTException <ul>
  *    <li>ERROR_GRAPHIC_DISPOSED - if the receiver has been disposed</li>
- *    <li>ERROR_NO_GRAPHICS_LIBRARY - if advanced graphics are not available</li>
  * </ul>
  * 
  * @see #getAdvanced
@@ -4009,7 +4045,12 @@ public void setInterpolation(int interpolation) {
 		default:
 			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 	}
-	initCairo();
+	try {
+		initCairo();
+	} catch (SWTException e) {
+		/* Cairo is not available, drawImage() filters on the client */
+		if (e.code != SWT.ERROR_NO_GRAPHICS_LIBRARY) throw e;
+	}
 	data.interpolation = interpolation;
 }
 /**
@@ -4465,6 +4506,11 @@ public Point stringExtent(String string) {
 		Cairo.cairo_text_extents(cairo, buffer, extents);
 		return new Point((int)extents.width, (int)font_extents.height);
 	}
+	if (string != data.string && string.length() != 0) {
+		/* Measure core fonts without creating an XmString */
+		int width = data.font.getAdvance(string);
+		if (width != -1) return new Point(width, getFontHeight());
+	}
 	setString(string);
 	checkGC(FONT);
 	if (data.stringWidth != -1) return new Point(data.stringWidth, data.stringHeight);
@@ -4547,6 +4593,10 @@ public Point textExtent(String string, int flags) {
 		Cairo.cairo_text_extents(cairo, buffer, extents);
 		return new Point((int)extents.width, (int)font_extents.height);
 	}
+	if (string != data.text && string.length() != 0 && isSimpleText(string, flags)) {
+		int width = data.font.getAdvance(string);
+		if (width != -1) return new Point(width, getFontHeight());
+	}
 	setText(string, flags);
 	checkGC(FONT);
 	if (data.textWidth != -1) return new Point(data.textWidth, data.textHeight);
@@ -698,24 +698,31 @@ void createAlphaMask(int width, int height) {
 			OS.XSetForeground(xDisplay, gc, (alpha & 0xFF) << 8 | (alpha & 0xFF));
 			OS.XFillRectangle(xDisplay, mask, gc, 0, 0, 1, 1);
 		} else {
-			int imagePtr = OS.XGetImage(xDisplay, mask, 0, 0, width, height, OS.AllPlanes, OS.ZPixmap);
-			XImage xImage = new XImage();
-			OS.memmove(xImage, imagePtr, XImage.sizeof);
-			if (xImage.bytes_per_line == width) {
-				OS.memmove(xImage.data, alphaData, alphaData.length);
-			} else {
-				byte[] line = new byte[xImage.bytes_per_line];
-				for (int y = 0; y < height; y++) {
-					System.arraycopy(alphaData, width * y, line, 0, width);
-					OS.memmove(xImage.data + (xImage.bytes_per_line * y), line, xImage.bytes_per_line);
-				}
-			}
-			OS.XPutImage(xDisplay, mask, gc, imagePtr, 0, 0, 0, 0, width, height);
-			OS.XDestroyImage(imagePtr);
+			putAlphaMask(gc, width, 0, height);
 		}			
 		OS.XFreeGC(xDisplay, gc);
 	}
 }
+/*
+ * Copies the given rows of the alpha data into the XRender alpha mask.
+ */
+void putAlphaMask(int gc, int width, int y, int height) {
+	int xDisplay = device.xDisplay;
+	int imagePtr = OS.XGetImage(xDisplay, mask, 0, y, width, height, OS.AllPlanes, OS.ZPixmap);
+	XImage xImage = new XImage();
+	OS.memmove(xImage, imagePtr, XImage.sizeof);
+	if (xImage.bytes_per_line == width && y == 0 && height * width == alphaData.length) {
+		OS.memmove(xImage.data, alphaData, alphaData.length);
+	} else {
+		byte[] line = new byte[xImage.bytes_per_line];
+		for (int i = 0; i < height; i++) {
+			System.arraycopy(alphaData, width * (y + i), line, 0, width);
+			OS.memmove(xImage.data + (xImage.bytes_per_line * i), line, xImage.bytes_per_line);
+		}
+	}
+	OS.XPutImage(xDisplay, mask, gc, imagePtr, 0, 0, 0, y, width, height);
+	OS.XDestroyImage(imagePtr);
+}
 /**
  * Create the receiver's mask if necessary.
  */
@@ -744,6 +751,7 @@ void createSurface() {
 }
 void destroy() {
 	if (memGC != null) memGC.dispose();
+	device.flushScaledPixmaps(this);
 	int xDisplay = device.xDisplay;
 	if (pixmap != 0) OS.XFreePixmap (xDisplay, pixmap);
 	if (mask != 0) OS.XFreePixmap (xDisplay, mask);
@@ -756,6 +764,7 @@ void destroy() {
  */
 void destroyMask() {
 	if (mask == 0) return;
+	device.flushScaledPixmaps(this);
 	OS.XFreePixmap (device.xDisplay, mask);
 	mask = 0;
 }
@@ -1141,6 +1150,7 @@ public int internal_new_GC (GCData data) {
 	if (type != SWT.BITMAP || memGC != null) {
 		SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 	}
+	device.flushScaledPixmaps(this);
 	int xDisplay = device.xDisplay;
 	int xGC = OS.XCreateGC (xDisplay, pixmap, 0, null);
 	if (xGC == 0) SWT.error (SWT.ERROR_NO_HANDLES);
@@ -1407,6 +1417,7 @@ public void setBackground(Color color) {
 	if (transparentPixel == -1) return;
 	/* Generate the mask if necessary. */
 	if (mask == 0) createMask();
+	device.flushScaledPixmaps(this);
 	Rectangle bounds = getBounds();
 	int[] unused = new int[1];
 	int[] depth = new int[1];
@@ -1426,6 +1437,66 @@ public void setBackground(Color color) {
 	/* Destroy the receiver's mask if the there is a GC created on it */
 	if (memGC != null) destroyMask();
 }
+/**
+ * Sets the pixels of the given rows of the receiver to those of the
+ * same rows of the argument, which must be the same size as the
+ * receiver. The transparency of the receiver is updated in the same
+ * rows when it was created with the same kind of transparency as the
+ * argument. This is meant for showing an image while it is being
+ * loaded by an <code>incremental</code> <code>ImageLoader</code>,
+ * without creating a new image each time some rows are loaded.
+ *
+ * @param data the image data to take the pixels from
+ * @param y the first row to set
+ * @param height the number of rows to set
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT - if the image data is null</li>
+ *    <li>ERROR_INVALID_ARGUMENT - if the image data is not the same size as the receiver, or the rows are not in the receiver</li>
+ * </ul>
+ * @exception SWTException <ul>
+ *    <li>ERROR_GRAPHIC_DISPOSED - if the receiver has been disposed</li>
+ *    <li>ERROR_UNSUPPORTED_DEPTH - if the depth of the image data is not supported</li>
+ * </ul>
+ * 
+ * @see ImageLoader#incremental
+ * @see ImageLoaderEvent#y
+ * @see ImageLoaderEvent#height
+ * @since 3.7
+ */
+public void setImageData(ImageData data, int y, int height) {
+	if (isDisposed()) SWT.error(SWT.ERROR_GRAPHIC_DISPOSED);
+	if (data == null) SWT.error(SWT.ERROR_NULL_ARGUMENT);
+	Rectangle bounds = getBounds();
+	if (data.width != bounds.width || data.height != bounds.height) SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+	if (y < 0 || height < 0 || y + height > bounds.height) SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+	if (height == 0) return;
+	device.flushScaledPixmaps(this);
+	int xDisplay = device.xDisplay;
+	int screenDepth = OS.XDefaultDepthOfScreen(OS.XDefaultScreenOfDisplay(xDisplay));
+	int visual = OS.XDefaultVisual(xDisplay, OS.XDefaultScreen(xDisplay));
+	int[] transPixel = null;
+	if (data.transparentPixel != -1) transPixel = new int[]{data.transparentPixel};
+	int gc = OS.XCreateGC(xDisplay, pixmap, 0, null);
+	int error = putImage(data, 0, y, data.width, height, 0, y, data.width, height, xDisplay, visual, screenDepth, device.xcolors, transPixel, false, pixmap, gc);
+	OS.XFreeGC(xDisplay, gc);
+	if (error != 0) SWT.error(error);
+	if (type == SWT.ICON || transparentPixel != -1) {
+		/* The mask of an image with a transparent pixel is created lazily */
+		if (mask == 0) return;
+		ImageData maskImage = data.getTransparencyMask(y, height);
+		gc = OS.XCreateGC(xDisplay, mask, 0, null);
+		error = putImage(maskImage, 0, 0, maskImage.width, height, 0, y, maskImage.width, height, xDisplay, visual, screenDepth, device.xcolors, null, true, mask, gc);
+		OS.XFreeGC(xDisplay, gc);
+		if (error != 0) SWT.error(error);
+	} else if (alpha == -1 && alphaData != null && data.alphaData != null) {
+		System.arraycopy(data.alphaData, data.width * y, alphaData, data.width * y, data.width * height);
+		if (mask == 0) return;
+		gc = OS.XCreateGC(xDisplay, mask, 0, null);
+		putAlphaMask(gc, data.width, y, height);
+		OS.XFreeGC(xDisplay, gc);
+	}
+}
 /**
  * Returns a string containing a concise, human-readable
  * description of the receiver.
@@ -520,20 +520,28 @@ public static ImageData internal_new(
 }
 
 ImageData colorMaskImage(int pixel) {
+	return colorMaskImage(pixel, 0, height);
+}
+
+/**
+ * Returns the mask of the given pixel for the rows from y to
+ * y + height, as an image of that height.
+ */
+ImageData colorMaskImage(int pixel, int y, int height) {
 	ImageData mask = new ImageData(width, height, 1, bwPalette(),
 		2, null, 0, null, null, -1, -1, SWT.IMAGE_UNDEFINED,
 		0, 0, 0, 0);
 	int[] row = new int[width];
-	for (int y = 0; y < height; y++) {
-		getPixels(0, y, width, row, 0);
-		for (int i = 0; i < width; i++) {
-			if (pixel != -1 && row[i] == pixel) {
-				row[i] = 0;
+	for (int i = 0; i < height; i++) {
+		getPixels(0, y + i, width, row, 0);
+		for (int j = 0; j < width; j++) {
+			if (pixel != -1 && row[j] == pixel) {
+				row[j] = 0;
 			} else {
-				row[i] = 1;
+				row[j] = 1;
 			}
 		}
-		mask.setPixels(0, y, width, row, 0);
+		mask.setPixels(0, i, width, row, 0);
 	}
 	return mask;
 }
@@ -1073,6 +1081,21 @@ public ImageData getTransparencyMask() {
 	}
 }
 
+/**
+ * Returns the transparency mask of the rows from y to y + height,
+ * as an image of that height.
+ */
+ImageData getTransparencyMask(int y, int height) {
+	if (getTransparencyType() == SWT.TRANSPARENCY_MASK) {
+		int maskBpl = (((width + 7) / 8) + (maskPad - 1)) / maskPad * maskPad;
+		byte[] rows = new byte[maskBpl * height];
+		System.arraycopy(maskData, maskBpl * y, rows, 0, rows.length);
+		return new ImageData(width, height, 1, bwPalette(), maskPad, rows);
+	} else {
+		return colorMaskImage(transparentPixel, y, height);
+	}
+}
+
 /**
  * Returns the image transparency type, which will be one of
  * <code>SWT.TRANSPARENCY_NONE</code>, <code>SWT.TRANSPARENCY_MASK</code>,
@@ -1157,6 +1180,80 @@ public ImageData scaledTo(int width, int height) {
 	return dest;
 }
 
+/**
+ * Returns a copy of the receiver which has been stretched or
+ * shrunk to the specified size, filtering the pixels with the
+ * given interpolation. If either the width or height is negative,
+ * the resulting image will be inverted in the associated axis.
+ * <p>
+ * The interpolation is one of <code>SWT.NONE</code>, which samples
+ * the nearest pixel like <code>scaledTo(int, int)</code>,
+ * <code>SWT.LOW</code>, which averages large reductions by halves
+ * before a bilinear filter, <code>SWT.DEFAULT</code>, which averages
+ * the area covered by each pixel, or <code>SWT.HIGH</code>, which uses
+ * a Lanczos filter. The pixels of images with an indexed palette or
+ * a transparent pixel, and transparency masks, are always sampled.
+ * </p>
+ *
+ * @param width the width of the new ImageData
+ * @param height the height of the new ImageData
+ * @param interpolation the interpolation used to filter the pixels
+ * @return a scaled copy of the image
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_INVALID_ARGUMENT - if the interpolation is not one of <code>SWT.DEFAULT</code>,
+ *                                 <code>SWT.NONE</code>, <code>SWT.LOW</code> or <code>SWT.HIGH</code></li>
+ * </ul>
+ *
+ * @see GC#setInterpolation(int)
+ *
+ * @since 3.7
+ */
+public ImageData scaledTo(int width, int height, int interpolation) {
+	int filter = 0;
+	switch (interpolation) {
+		case SWT.NONE: return scaledTo(width, height);
+		case SWT.LOW: filter = ImageScaler.MIPMAP; break;
+		case SWT.DEFAULT: filter = ImageScaler.BOX; break;
+		case SWT.HIGH: filter = ImageScaler.LANCZOS; break;
+		default: SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+	}
+	ImageData dest = scaledTo(width, height);
+	if (!palette.isDirect || transparentPixel != -1) return dest;
+	final boolean flipX = (width < 0);
+	final boolean flipY = (height < 0);
+
+	/* Filter the colors as 24 bit RGB */
+	byte[] srcRGB = new byte[this.width * this.height * 3];
+	blit(BLIT_SRC,
+		this.data, this.depth, this.bytesPerLine, this.getByteOrder(), 0, 0, this.width, this.height, palette.redMask, palette.greenMask, palette.blueMask,
+		ALPHA_OPAQUE, null, 0, 0, 0,
+		srcRGB, 24, this.width * 3, MSB_FIRST, 0, 0, this.width, this.height, 0xFF0000, 0xFF00, 0xFF,
+		false, false);
+	byte[] destRGB = new byte[dest.width * dest.height * 3];
+	ImageScaler.scale(srcRGB, this.width * 3, this.width, this.height, destRGB, dest.width * 3, dest.width, dest.height, 3, filter);
+	blit(BLIT_SRC,
+		destRGB, 24, dest.width * 3, MSB_FIRST, 0, 0, dest.width, dest.height, 0xFF0000, 0xFF00, 0xFF,
+		ALPHA_OPAQUE, null, 0, 0, 0,
+		dest.data, dest.depth, dest.bytesPerLine, dest.getByteOrder(), 0, 0, dest.width, dest.height, palette.redMask, palette.greenMask, palette.blueMask,
+		flipX, flipY);
+
+	/* Filter the alpha */
+	if (alphaData != null) {
+		byte[] destAlpha = dest.alphaData;
+		if (flipX || flipY) destAlpha = new byte[dest.width * dest.height];
+		ImageScaler.scale(this.alphaData, this.width, this.width, this.height, destAlpha, dest.width, dest.width, dest.height, 1, filter);
+		if (destAlpha != dest.alphaData) {
+			blit(BLIT_SRC,
+				destAlpha, 8, dest.width, MSB_FIRST, 0, 0, dest.width, dest.height, null, null, null,
+				ALPHA_OPAQUE, null, 0, 0, 0,
+				dest.alphaData, 8, dest.width, MSB_FIRST, 0, 0, dest.width, dest.height, null, null, null,
+				flipX, flipY);
+		}
+	}
+	return dest;
+}
+
 /**
  * Sets the alpha value at offset <code>x</code> in
  * scanline <code>y</code> in the receiver's alpha data.
@@ -1875,9 +1972,25 @@ static void blit(int op,
 	/*** Blit ***/
 	int dp = dpr;
 	int sp = spr;
+	final boolean unscaled = !flipX && !flipY && srcWidth == destWidth && srcHeight == destHeight;
 	if ((alphaMode == 0x10000) && (stype == dtype) &&
 		(srcRedMask == destRedMask) && (srcGreenMask == destGreenMask) &&
 		(srcBlueMask == destBlueMask) && (srcAlphaMask == destAlphaMask)) {
+		if (unscaled) {
+			/*** Fast blit (row copy) ***/
+			BlitBand band = new BlitBand(BlitBand.COPY);
+			band.srcData = srcData;
+			band.srcOffset = spr;
+			band.srcStride = srcStride;
+			band.srcBpp = sbpp;
+			band.destData = destData;
+			band.destOffset = dpr;
+			band.destStride = destStride;
+			band.destBpp = dbpp;
+			band.width = destWidth;
+			band.blit(destHeight);
+			return;
+		}
 		/*** Fast blit (straight copy) ***/
 		switch (sbpp) {
 			case 1:
@@ -1952,6 +2065,37 @@ static void blit(int op,
 		}
 	}
 
+	/*** Fast blit (unscaled 8 bit channels) ***/
+	if (alphaMode == 0x10000 && unscaled && sbpp >= 3 && dbpp >= 3) {
+		int sr = getChannelOffset(srcRedMask, sbpp, srcOrder);
+		int sg = getChannelOffset(srcGreenMask, sbpp, srcOrder);
+		int sb = getChannelOffset(srcBlueMask, sbpp, srcOrder);
+		int dr = getChannelOffset(destRedMask, dbpp, destOrder);
+		int dg = getChannelOffset(destGreenMask, dbpp, destOrder);
+		int db = getChannelOffset(destBlueMask, dbpp, destOrder);
+		if (sr != -1 && sg != -1 && sb != -1 && dr != -1 && dg != -1 && db != -1 && dr != dg && dg != db && db != dr) {
+			BlitBand band = new BlitBand(BlitBand.DIRECT);
+			band.srcData = srcData;
+			band.srcOffset = spr;
+			band.srcStride = srcStride;
+			band.srcBpp = sbpp;
+			band.destData = destData;
+			band.destOffset = dpr;
+			band.destStride = destStride;
+			band.destBpp = dbpp;
+			band.width = destWidth;
+			band.srcRed = sr;
+			band.srcGreen = sg;
+			band.srcBlue = sb;
+			band.destRed = dr;
+			band.destGreen = dg;
+			band.destBlue = db;
+			band.destPad = 6 - dr - dg - db;
+			band.blit(destHeight);
+			return;
+		}
+	}
+
 	/*** Comprehensive blit (apply transformations) ***/
 	final int srcRedShift = getChannelShift(srcRedMask);
 	final byte[] srcReds = ANY_TO_EIGHT[getChannelWidth(srcRedMask, srcRedShift)];
@@ -2762,29 +2906,39 @@ static void blit(int op,
 	boolean flipX, boolean flipY) {
 	if ((destWidth <= 0) || (destHeight <= 0) || (alphaMode == ALPHA_TRANSPARENT)) return;
 
-	/*** Fast blit (straight copy) ***/
-	if (srcX == 0 && srcY == 0 && destX == 0 && destY == 0 && destWidth == srcWidth && destHeight == srcHeight) {
-		if (destDepth == 24 && srcDepth == 8 && (op & BLIT_ALPHA) == 0 && destRedMask == 0xFF0000 && destGreenMask == 0xFF00 && destBlueMask == 0xFF) {
-			for (int y = 0, sp = 0, dp = 0, spad = srcStride - srcWidth, dpad = destStride - (destWidth * 3); y < destHeight; y++, sp += spad, dp += dpad) {
-				for (int x = 0; x < destWidth; x++) {
-					int index = srcData[sp++] & 0xff;
-					destData[dp++] = srcReds[index];
-					destData[dp++] = srcGreens[index];
-					destData[dp++] = srcBlues[index];
-				}
-			}
-			return;
-		}
-		if (destDepth == 32 && destOrder == MSB_FIRST && srcDepth == 8 && (op & BLIT_ALPHA) == 0 && destRedMask == 0xFF0000 && destGreenMask == 0xFF00 && destBlueMask == 0xFF) {
-			for (int y = 0, sp = 0, dp = 0, spad = srcStride - srcWidth, dpad = destStride - (destWidth * 4); y < destHeight; y++, sp += spad, dp += dpad) {
-				for (int x = 0; x < destWidth; x++) {
-					int index = srcData[sp++] & 0xff;
-					dp++;
-					destData[dp++] = srcReds[index];
-					destData[dp++] = srcGreens[index];
-					destData[dp++] = srcBlues[index];
-				}
-			}
+	/*** Fast blit (unscaled) ***/
+	if (srcDepth == 8 && (op & BLIT_ALPHA) == 0 && !flipX && !flipY && destWidth == srcWidth && destHeight == srcHeight) {
+		int dbpp = destDepth / 8;
+		int dr = getChannelOffset(destRedMask, dbpp, destOrder);
+		int dg = getChannelOffset(destGreenMask, dbpp, destOrder);
+		int db = getChannelOffset(destBlueMask, dbpp, destOrder);
+		if ((destDepth == 24 || destDepth == 32) && dr != -1 && dg != -1 && db != -1 && dr != dg && dg != db && db != dr) {
+			BlitBand band = new BlitBand(BlitBand.INDEX);
+			band.srcData = srcData;
+			band.srcOffset = srcY * srcStride + srcX;
+			band.srcStride = srcStride;
+			band.srcBpp = 1;
+			band.destData = destData;
+			band.destOffset = destY * destStride + destX * dbpp;
+			band.destStride = destStride;
+			band.destBpp = dbpp;
+			band.width = destWidth;
+			band.destRed = dr;
+			band.destGreen = dg;
+			band.destBlue = db;
+			band.destPad = 6 - dr - dg - db;
+			/*
+			* The 32 bit blit of a whole image that this replaces left the pad
+			* byte of each pixel unchanged, so keep doing that for it.
+			*/
+			if (srcX == 0 && srcY == 0 && destX == 0 && destY == 0 && destDepth == 32 && destOrder == MSB_FIRST &&
+				destRedMask == 0xFF0000 && destGreenMask == 0xFF00 && destBlueMask == 0xFF) {
+				band.destPad = -1;
+			}
+			band.reds = srcReds;
+			band.greens = srcGreens;
+			band.blues = srcBlues;
+			band.blit(destHeight);
 			return;
 		}
 	}
@@ -3451,6 +3605,17 @@ static int getChannelShift(int mask) {
 	return i;
 }
 
+/**
+ * Computes the offset of an 8 bit channel within a 24 or 32 bit
+ * pixel from a mask, or -1 if the channel is not a whole byte.
+ */
+static int getChannelOffset(int mask, int bpp, int order) {
+	int shift = getChannelShift(mask);
+	if (mask == 0 || (shift & 7) != 0 || shift >= bpp * 8 || mask != 0xFF << shift) return -1;
+	int index = shift >> 3;
+	return (bpp == 3 || order == MSB_FIRST) ? bpp - 1 - index : index;
+}
+
 /**
  * Computes the required channel width (depth) from a mask.
  */
@@ -81,6 +81,56 @@ public class ImageLoader {
 	 * The default is 1. A value of 0 means 'display repeatedly'
 	 */
 	public int repeatCount;
+
+	/**
+	 * whether the images may be loaded or saved using several
+	 * threads, when the format supports it (currently loading
+	 * JPEG and saving PNG). The loaded image data is the same
+	 * either way, and so is the saved image, although the saved
+	 * file may be slightly bigger. The default is false.
+	 * 
+	 * @since 3.7
+	 */
+	public boolean parallel;
+
+	/**
+	 * the level of compression used when saving the images, when
+	 * the format supports it (currently PNG). The level goes from
+	 * 0 for no compression to 9 for the best and slowest compression.
+	 * The default is <code>SWT.DEFAULT</code>, which is a trade off
+	 * between speed and size.
+	 * 
+	 * @since 3.7
+	 */
+	public int compression = SWT.DEFAULT;
+
+	/**
+	 * the strategy of the compression used when saving the images,
+	 * when the format supports it (currently PNG). It is one of the
+	 * strategies of <code>java.util.zip.Deflater</code>: 0 is the
+	 * default strategy, 1 favours the small values produced by
+	 * filtering images and 2 only encodes the bytes without looking
+	 * for repeated sequences. The default is 0.
+	 * 
+	 * @since 3.7
+	 */
+	public int compressionStrategy;
+
+	/**
+	 * whether the listeners are sent the image data being loaded
+	 * rather than a copy of it. When true, all the events for an
+	 * image carry the same <code>ImageData</code>, which keeps
+	 * changing until the image is loaded, and the range of rows
+	 * that changed since the previous event. Listeners must copy
+	 * whatever they need to keep before returning, or update an
+	 * <code>Image</code> with <code>Image.setImageData(ImageData, int, int)</code>.
+	 * The default is false, where each event carries a copy.
+	 * 
+	 * @see ImageLoaderEvent#y
+	 * @see ImageLoaderEvent#height
+	 * @since 3.7
+	 */
+	public boolean incremental;
 		
 	/*
 	 * the set of ImageLoader event listeners, created on demand
@@ -131,6 +181,50 @@ public ImageData[] load(InputStream stream) {
 	return data;
 }
 
+/**
+ * Loads an array of <code>ImageData</code> objects from the
+ * specified input stream, for display at no more than the
+ * specified size. Throws an error if either an error occurs
+ * while loading the images, or if the images are not of a
+ * supported type. Returns the loaded image data array.
+ * <p>
+ * The size is a hint: formats that can decode an image at a
+ * reduced size, such as JPEG, do so when the image is larger
+ * than needed to fill the size while keeping its aspect ratio,
+ * which uses much less memory and time than decoding the full
+ * image. The loaded images are never smaller than that and may
+ * be larger, so they usually still need to be scaled to the
+ * final size. A size of <code>SWT.DEFAULT</code> leaves that
+ * dimension unconstrained.
+ * </p>
+ *
+ * @param stream the input stream to load the images from
+ * @param maxWidth the width the images will be displayed at, or <code>SWT.DEFAULT</code>
+ * @param maxHeight the height the images will be displayed at, or <code>SWT.DEFAULT</code>
+ * @return an array of <code>ImageData</code> objects loaded from the specified input stream
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT - if the stream is null</li>
+ *    <li>ERROR_INVALID_ARGUMENT - if the width or height is neither positive nor <code>SWT.DEFAULT</code></li>
+ * </ul>
+ * @exception SWTException <ul>
+ *    <li>ERROR_IO - if an IO error occurs while reading from the stream</li>
+ *    <li>ERROR_INVALID_IMAGE - if the image stream contains invalid data</li>
+ *    <li>ERROR_UNSUPPORTED_FORMAT - if the image stream contains an unrecognized format</li>
+ * </ul>
+ * 
+ * @since 3.7
+ */
+public ImageData[] load(InputStream stream, int maxWidth, int maxHeight) {
+	if (stream == null) SWT.error(SWT.ERROR_NULL_ARGUMENT);
+	if ((maxWidth <= 0 && maxWidth != SWT.DEFAULT) || (maxHeight <= 0 && maxHeight != SWT.DEFAULT)) {
+		SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+	}
+	reset();
+	data = FileFormat.load(stream, this, maxWidth, maxHeight);
+	return data;
+}
+
 /**
  * Loads an array of <code>ImageData</code> objects from the
  * file with the specified name. Throws an error if either
@@ -190,6 +284,7 @@ public ImageData[] load(String filename) {
  *
  * @exception IllegalArgumentException <ul>
  *    <li>ERROR_NULL_ARGUMENT - if the stream is null</li>
+ *    <li>ERROR_INVALID_ARGUMENT - if the compression or the compression strategy is not valid</li>
  * </ul>
  * @exception SWTException <ul>
  *    <li>ERROR_IO - if an IO error occurs while writing to the stream</li>
@@ -199,6 +294,8 @@ public ImageData[] load(String filename) {
  */
 public void save(OutputStream stream, int format) {
 	if (stream == null) SWT.error(SWT.ERROR_NULL_ARGUMENT);
+	if (compression != SWT.DEFAULT && (compression < 0 || compression > 9)) SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+	if (compressionStrategy < 0 || compressionStrategy > 2) SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 	FileFormat.save(stream, format, this);
 }
 
@@ -225,6 +322,7 @@ public void save(OutputStream stream, int format) {
  *
  * @exception IllegalArgumentException <ul>
  *    <li>ERROR_NULL_ARGUMENT - if the file name is null</li>
+ *    <li>ERROR_INVALID_ARGUMENT - if the compression or the compression strategy is not valid</li>
  * </ul>
  * @exception SWTException <ul>
  *    <li>ERROR_IO - if an IO error occurs while writing to the file</li>
@@ -234,6 +332,8 @@ public void save(OutputStream stream, int format) {
  */
 public void save(String filename, int format) {
 	if (filename == null) SWT.error(SWT.ERROR_NULL_ARGUMENT);
+	if (compression != SWT.DEFAULT && (compression < 0 || compression > 9)) SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+	if (compressionStrategy < 0 || compressionStrategy > 2) SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 	OutputStream stream = null;
 	try {
 		stream = Compatibility.newFileOutputStream(filename);
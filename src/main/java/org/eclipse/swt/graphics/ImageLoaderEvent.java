@@ -55,6 +55,28 @@ public class ImageLoaderEvent extends SWTEventObject {
 	 * exception is thrown
 	 */
 	public boolean endOfImage;
+
+	/**
+	 * the first of the rows of <code>imageData</code> that changed
+	 * since the previous event for the same image. This is 0 unless
+	 * the loader is <code>incremental</code>, in which case all the
+	 * events of an image carry the same <code>ImageData</code>
+	 * 
+	 * @see ImageLoader#incremental
+	 * @since 3.7
+	 */
+	public int y;
+
+	/**
+	 * the number of rows of <code>imageData</code>, starting at
+	 * <code>y</code>, that changed since the previous event for the
+	 * same image. This is the height of the image data unless the
+	 * loader is <code>incremental</code>
+	 * 
+	 * @see ImageLoader#incremental
+	 * @since 3.7
+	 */
+	public int height;
 	
 	static final long serialVersionUID = 3257284738325558065L;
 	
@@ -68,10 +90,29 @@ public class ImageLoaderEvent extends SWTEventObject {
  * @param endOfImage the end of image flag for the event
  */
 public ImageLoaderEvent(ImageLoader source, ImageData imageData, int incrementCount, boolean endOfImage) {
+	this(source, imageData, incrementCount, endOfImage, 0, imageData != null ? imageData.height : 0);
+}
+
+/**
+ * Constructs a new instance of this class given the event source and
+ * the values to store in its fields.
+ *
+ * @param source the ImageLoader that was loading when the event occurred
+ * @param imageData the image data for the event
+ * @param incrementCount the image data increment for the event
+ * @param endOfImage the end of image flag for the event
+ * @param y the first row of the image data that changed
+ * @param height the number of rows of the image data that changed
+ * 
+ * @since 3.7
+ */
+public ImageLoaderEvent(ImageLoader source, ImageData imageData, int incrementCount, boolean endOfImage, int y, int height) {
 	super(source);
 	this.imageData = imageData;
 	this.incrementCount = incrementCount;
 	this.endOfImage = endOfImage;
+	this.y = y;
+	this.height = height;
 }
 
 /**
@@ -81,7 +122,7 @@ public ImageLoaderEvent(ImageLoader source, ImageData imageData, int incrementCo
  * @return a string representation of the event
  */
 public String toString () {
-	return "ImageLoaderEvent {source=" + source + " imageData=" + imageData + " incrementCount=" + incrementCount + " endOfImage=" + endOfImage + "}"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+	return "ImageLoaderEvent {source=" + source + " imageData=" + imageData + " incrementCount=" + incrementCount + " endOfImage=" + endOfImage + " y=" + y + " height=" + height + "}"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
 }
 
 }
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.graphics;
+
+import org.eclipse.swt.internal.BandRunner;
+
+/*
+ * Scales images made of 8 bit channels with a filter, as opposed to the
+ * nearest neighbour sampling of ImageData.blit().  The filters are
+ * separable: the rows are scaled horizontally first, then the columns
+ * vertically.  The weights of the source pixels that make up each
+ * destination pixel are computed once per axis in 14 bit fixed point.
+ * Large passes are split into bands of rows run by separate threads.
+ */
+final class ImageScaler implements Runnable {
+	byte[] srcData, destData;
+	int srcStride, destStride, channels;
+	int width, startRow, endRow;
+	boolean vertical;
+
+	/*
+	 * The source indices and weights of each destination pixel along the
+	 * axis of the pass, taps entries per pixel.  Horizontal indices are
+	 * byte offsets in a row and vertical ones are byte offsets of rows.
+	 */
+	int[] indices, weights;
+	int taps;
+
+	/* Area average */
+	static final int BOX = 0;
+	/* Triangle filter, widened when reducing */
+	static final int BILINEAR = 1;
+	/* Halves the image while it is more than twice too big, then BILINEAR */
+	static final int MIPMAP = 2;
+	/* Three lobed Lanczos filter, widened when reducing */
+	static final int LANCZOS = 3;
+
+	static final int WEIGHT_SHIFT = 14;
+	static final int WEIGHT_ONE = 1 << WEIGHT_SHIFT;
+
+/*
+ * Scales the source pixels into the destination.  Each pixel is made of
+ * channels bytes, which are filtered independently.
+ */
+static void scale(byte[] srcData, int srcStride, int srcWidth, int srcHeight,
+	byte[] destData, int destStride, int destWidth, int destHeight,
+	int channels, int filter) {
+	if (filter == MIPMAP) {
+		while (srcWidth >= destWidth * 2 || srcHeight >= destHeight * 2) {
+			boolean halveX = srcWidth >= destWidth * 2, halveY = srcHeight >= destHeight * 2;
+			int width = halveX ? srcWidth / 2 : srcWidth, height = halveY ? srcHeight / 2 : srcHeight;
+			int stride = width * channels;
+			byte[] data = new byte[stride * height];
+			halve(srcData, srcStride, data, stride, width, height, channels, halveX, halveY);
+			srcData = data;
+			srcStride = stride;
+			srcWidth = width;
+			srcHeight = height;
+		}
+		filter = BILINEAR;
+	}
+	int tempStride = destWidth * channels;
+	byte[] tempData = new byte[tempStride * srcHeight];
+
+	ImageScaler pass = new ImageScaler();
+	pass.srcData = srcData;
+	pass.srcStride = srcStride;
+	pass.destData = tempData;
+	pass.destStride = tempStride;
+	pass.channels = channels;
+	pass.width = destWidth;
+	pass.setWeights(filter, srcWidth, destWidth, channels);
+	pass.run(srcHeight);
+
+	pass = new ImageScaler();
+	pass.srcData = tempData;
+	pass.srcStride = tempStride;
+	pass.destData = destData;
+	pass.destStride = destStride;
+	pass.channels = channels;
+	pass.width = destWidth;
+	pass.vertical = true;
+	pass.setWeights(filter, srcHeight, destHeight, tempStride);
+	pass.run(destHeight);
+}
+
+/*
+ * Averages two by two (or two by one) blocks of source pixels into the
+ * destination.  An odd last row or column of the source is dropped.
+ */
+static void halve(byte[] srcData, int srcStride, byte[] destData, int destStride, int width, int height, int channels, boolean halveX, boolean halveY) {
+	int dx = halveX ? channels : 0, dy = halveY ? srcStride : 0;
+	int shift = (halveX ? 1 : 0) + (halveY ? 1 : 0), round = (1 << shift) >> 1;
+	for (int y = 0; y < height; y++) {
+		int sp = (halveY ? y * 2 : y) * srcStride, dp = y * destStride;
+		for (int x = 0; x < width; x++) {
+			for (int c = 0; c < channels; c++, sp++, dp++) {
+				int sum = srcData[sp] & 0xFF;
+				if (halveX) sum += srcData[sp + dx] & 0xFF;
+				if (halveY) {
+					sum += srcData[sp + dy] & 0xFF;
+					if (halveX) sum += srcData[sp + dx + dy] & 0xFF;
+				}
+				destData[dp] = (byte)((sum + round) >> shift);
+			}
+			sp += dx;
+		}
+	}
+}
+
+static double kernel(int filter, double x) {
+	if (x < 0) x = -x;
+	switch (filter) {
+		case BILINEAR:
+			return x < 1 ? 1 - x : 0;
+		case LANCZOS:
+			if (x == 0) return 1;
+			if (x >= 3) return 0;
+			double px = Math.PI * x;
+			return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+	}
+	return 0;
+}
+
+/*
+ * Runs the pass over the rows from 0 to height, splitting them in bands
+ * when the pass is large.
+ */
+void run(int height) {
+	int bands = BlitBand.getBandCount(width * taps, height);
+	if (bands <= 1) {
+		startRow = 0;
+		endRow = height;
+		run();
+		return;
+	}
+	Runnable[] runnables = new Runnable[bands];
+	for (int i = 0; i < bands; i++) {
+		ImageScaler band = this;
+		if (i != bands - 1) {
+			band = new ImageScaler();
+			band.srcData = srcData;
+			band.srcStride = srcStride;
+			band.destData = destData;
+			band.destStride = destStride;
+			band.channels = channels;
+			band.width = width;
+			band.vertical = vertical;
+			band.indices = indices;
+			band.weights = weights;
+			band.taps = taps;
+		}
+		band.startRow = (int)((long)height * i / bands);
+		band.endRow = (int)((long)height * (i + 1) / bands);
+		runnables[i] = band;
+	}
+	BandRunner.run(runnables);
+}
+
+public void run() {
+	if (vertical) {
+		scaleColumns();
+	} else {
+		scaleRows();
+	}
+}
+
+void scaleColumns() {
+	final byte[] srcData = this.srcData, destData = this.destData;
+	final int[] indices = this.indices, weights = this.weights;
+	final int taps = this.taps, length = width * channels;
+	int[] sums = new int[length];
+	for (int y = startRow; y < endRow; y++) {
+		for (int i = 0; i < length; i++) sums[i] = WEIGHT_ONE >> 1;
+		for (int k = y * taps, end = k + taps; k < end; k++) {
+			int weight = weights[k];
+			if (weight == 0) continue;
+			int sp = indices[k];
+			for (int i = 0; i < length; i++) {
+				sums[i] += weight * (srcData[sp + i] & 0xFF);
+			}
+		}
+		int dp = y * destStride;
+		for (int i = 0; i < length; i++) {
+			int value = sums[i] >> WEIGHT_SHIFT;
+			destData[dp + i] = (byte)(value < 0 ? 0 : value > 0xFF ? 0xFF : value);
+		}
+	}
+}
+
+void scaleRows() {
+	final byte[] srcData = this.srcData, destData = this.destData;
+	final int[] indices = this.indices, weights = this.weights;
+	final int taps = this.taps, channels = this.channels, width = this.width;
+	for (int y = startRow; y < endRow; y++) {
+		int sp = y * srcStride, dp = y * destStride;
+		for (int x = 0; x < width; x++) {
+			int first = x * taps;
+			for (int c = 0; c < channels; c++) {
+				int sum = WEIGHT_ONE >> 1;
+				for (int k = first, end = first + taps; k < end; k++) {
+					sum += weights[k] * (srcData[sp + indices[k] + c] & 0xFF);
+				}
+				int value = sum >> WEIGHT_SHIFT;
+				destData[dp++] = (byte)(value < 0 ? 0 : value > 0xFF ? 0xFF : value);
+			}
+		}
+	}
+}
+
+/*
+ * Computes the source indices and the weights of the destination pixels
+ * along one axis.  Source indices past the edges are clamped, and the
+ * weights of each destination pixel are normalized to add up to one.
+ */
+void setWeights(int filter, int srcLength, int destLength, int step) {
+	double scale = (double)destLength / srcLength;
+	double stretch = Math.max(1, 1 / scale);
+	double radius = filter == LANCZOS ? 3 * stretch : stretch;
+	taps = filter == BOX ? (int)Math.ceil(1 / scale) + 2 : 2 * (int)Math.ceil(radius) + 2;
+	indices = new int[destLength * taps];
+	weights = new int[destLength * taps];
+	double[] values = new double[taps];
+	for (int i = 0; i < destLength; i++) {
+		int first, count = 0;
+		if (filter == BOX) {
+			double left = i / scale, right = (i + 1) / scale;
+			first = (int)Math.floor(left);
+			for (int j = first; j < right && count < taps; j++) {
+				values[count++] = Math.min(right, j + 1) - Math.max(left, j);
+			}
+		} else {
+			double center = (i + 0.5) / scale - 0.5;
+			first = (int)Math.ceil(center - radius);
+			for (int j = first; j <= center + radius && count < taps; j++) {
+				values[count++] = kernel(filter, (j - center) / stretch);
+			}
+		}
+		double total = 0;
+		for (int k = 0; k < count; k++) total += values[k];
+		int offset = i * taps, sum = 0, largest = offset;
+		for (int k = 0; k < count; k++) {
+			int index = Math.min(Math.max(first + k, 0), srcLength - 1);
+			int weight = total != 0 ? (int)Math.round(values[k] / total * WEIGHT_ONE) : 0;
+			indices[offset + k] = index * step;
+			weights[offset + k] = weight;
+			sum += weight;
+			if (weight > weights[largest]) largest = offset + k;
+		}
+		if (total == 0) {
+			/* No source pixel contributes, take the nearest one */
+			int index = Math.min(Math.max((int)(i / scale), 0), srcLength - 1);
+			indices[offset] = index * step;
+			weights[offset] = sum = WEIGHT_ONE;
+		}
+		weights[largest] += WEIGHT_ONE - sum;
+	}
+}
+
+}
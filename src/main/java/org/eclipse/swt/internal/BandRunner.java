@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.internal;
+
+/**
+ * Runs bands of work, such as the rows of an image, in parallel.
+ * <p>
+ * The calling thread runs the last band and waits for the others, which
+ * run in worker threads.  Workers are kept for a few seconds after they
+ * become idle, so that repeated calls do not start new threads.  The
+ * first exception or error thrown by a band is thrown again in the
+ * calling thread, after all of the bands have finished.
+ * </p>
+ */
+public final class BandRunner implements Runnable {
+	Runnable band;	// the band to run, or null when the worker is idle
+	BandRunner batch;	// the batch of the band
+
+	/* The state of a batch */
+	int pending;
+	Throwable exception;
+
+	/* The idle workers, guarded by lock */
+	static final Object lock = new Object();
+	static BandRunner[] idle = new BandRunner[4];
+	static int idleCount;
+
+	/* The time in milliseconds that an idle worker waits for a band */
+	static final int IDLE_TIME = 5000;
+
+BandRunner() {
+}
+
+/**
+ * Runs the bands and returns when all of them have finished.
+ *
+ * @param bands the bands to run
+ */
+public static void run(Runnable[] bands) {
+	int last = bands.length - 1;
+	if (last < 0) return;
+	BandRunner batch = new BandRunner();
+	batch.pending = last;
+	for (int i = 0; i < last; i++) {
+		BandRunner worker = null;
+		synchronized (lock) {
+			if (idleCount > 0) {
+				worker = idle[--idleCount];
+				idle[idleCount] = null;
+				worker.band = bands[i];
+				worker.batch = batch;
+				lock.notifyAll();
+			}
+		}
+		if (worker == null) {
+			worker = new BandRunner();
+			worker.band = bands[i];
+			worker.batch = batch;
+			Thread thread = new Thread(worker, "SWT worker"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+	try {
+		bands[last].run();
+	} catch (Throwable e) {
+		batch.fail(e);
+	}
+	boolean interrupted = false;
+	synchronized (batch) {
+		while (batch.pending > 0) {
+			try {
+				batch.wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+	}
+	if (interrupted) Thread.currentThread().interrupt();
+	Throwable exception = batch.exception;
+	if (exception instanceof RuntimeException) throw (RuntimeException) exception;
+	if (exception instanceof Error) throw (Error) exception;
+}
+
+/*
+ * Counts a band of the batch as finished.
+ */
+synchronized void done() {
+	if (--pending == 0) notifyAll();
+}
+
+/*
+ * Records an exception of a band of the batch, keeping the first one.
+ */
+synchronized void fail(Throwable e) {
+	if (exception == null) exception = e;
+}
+
+/*
+ * Runs bands until the worker has been idle for IDLE_TIME.
+ */
+public void run() {
+	while (true) {
+		Runnable band;
+		BandRunner batch;
+		synchronized (lock) {
+			band = this.band;
+			batch = this.batch;
+			this.band = null;
+			this.batch = null;
+		}
+		try {
+			band.run();
+		} catch (Throwable e) {
+			batch.fail(e);
+		}
+		/* Become idle before the caller can start the next batch */
+		synchronized (lock) {
+			if (idleCount == idle.length) {
+				BandRunner[] newIdle = new BandRunner[idle.length * 2];
+				System.arraycopy(idle, 0, newIdle, 0, idleCount);
+				idle = newIdle;
+			}
+			idle[idleCount++] = this;
+		}
+		batch.done();
+		synchronized (lock) {
+			long end = System.nanoTime() + IDLE_TIME * 1000000L;
+			while (this.band == null) {
+				long wait = (end - System.nanoTime()) / 1000000;
+				if (wait > 0) {
+					try {
+						lock.wait(wait);
+						continue;
+					} catch (InterruptedException e) {
+						/* Stop the worker */
+					}
+				}
+				for (int i = 0; i < idleCount; i++) {
+					if (idle[i] == this) {
+						System.arraycopy(idle, i + 1, idle, i, --idleCount - i);
+						idle[idleCount] = null;
+						break;
+					}
+				}
+				return;
+			}
+		}
+	}
+}
+}
@@ -15,6 +15,7 @@ import java.io.*;
 import java.text.MessageFormat;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.zip.Deflater;
 import java.util.zip.InflaterInputStream;
 import java.util.zip.DeflaterOutputStream;
 
@@ -171,6 +172,78 @@ public static OutputStream newDeflaterOutputStream(OutputStream stream) throws I
 	return new DeflaterOutputStream(stream);
 }
 
+/**
+ * Create an DeflaterOutputStream with the given compression level
+ * and strategy if such things are supported.
+ * 
+ * @param stream the output stream
+ * @param level the compression level, from 0 to 9 or -1 for the default
+ * @param strategy the compression strategy
+ * @return a deflater stream or <code>null</code>
+ * @exception IOException
+ * 
+ * @since 3.7
+ */
+public static OutputStream newDeflaterOutputStream(OutputStream stream, int level, int strategy) throws IOException {
+	final Deflater deflater = new Deflater(level);
+	deflater.setStrategy(strategy);
+	return new DeflaterOutputStream(stream, deflater) {
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				deflater.end();
+			}
+		}
+	};
+}
+
+/**
+ * Compress bytes into raw deflate blocks if such things are supported.
+ * Unless finish is true, the compressed bytes end with an empty stored
+ * block on a byte boundary, so that more compressed bytes can follow.
+ * The dictionaryLength bytes before offset, which precede the bytes in
+ * the uncompressed stream, may be referred to by the compressed bytes.
+ * 
+ * @param data the bytes to compress
+ * @param offset the offset of the first byte to compress
+ * @param length the number of bytes to compress
+ * @param dictionaryLength the number of bytes before offset to use as the dictionary
+ * @param level the compression level, from 0 to 9 or -1 for the default
+ * @param strategy the compression strategy
+ * @param finish whether the compressed bytes end the stream
+ * @return the compressed bytes or <code>null</code>
+ * 
+ * @since 3.7
+ */
+public static byte[] deflate(byte[] data, int offset, int length, int dictionaryLength, int level, int strategy, boolean finish) {
+	Deflater deflater = new Deflater(level, true);
+	try {
+		if (strategy != Deflater.DEFAULT_STRATEGY) {
+			/*
+			* A new strategy is applied by the next call to deflate(), which
+			* then compresses nothing and would drop a dictionary set before
+			* it, so apply the strategy first with no input.
+			*/
+			deflater.setStrategy(strategy);
+			deflater.deflate(new byte[1], 0, 0, Deflater.NO_FLUSH);
+		}
+		if (dictionaryLength > 0) deflater.setDictionary(data, offset - dictionaryLength, dictionaryLength);
+		deflater.setInput(data, offset, length);
+		if (finish) deflater.finish();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(length / 2 + 64);
+		byte[] buffer = new byte[8192];
+		while (true) {
+			int count = deflater.deflate(buffer, 0, buffer.length, finish ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+			stream.write(buffer, 0, count);
+			if (finish ? deflater.finished() : count < buffer.length) break;
+		}
+		return stream.toByteArray();
+	} finally {
+		deflater.end();
+	}
+}
+
 /**
  * Open a file if such things are supported.
  * 
@@ -11,6 +11,8 @@
 package org.eclipse.swt.internal;
 
 
+import java.nio.ByteBuffer;
+
 import org.eclipse.swt.internal.motif.*;
 
 /**
@@ -33,6 +35,18 @@ public final class Converter {
 	static final byte[] UTF8;
 
 	static final Object LOCK = new Object ();
+
+	/*
+	 * The encodings that are converted in Java, without taking the
+	 * lock or calling iconv.  All other code pages go through iconv.
+	 */
+	static final int ICONV = 0;
+	static final int UTF_8 = 1;
+	static final int ISO_8859_1 = 2;
+	static final int US_ASCII = 3;
+
+	/* Per thread byte buffer used to fill direct byte buffers */
+	static final ThreadLocal ScratchBuffer = new ThreadLocal ();
 	
 	/* Converter cache */
 	static boolean LastMbcsToUCS2Failed, LastUCS2ToMbcsFailed;
@@ -116,6 +130,137 @@ static String getAsciiString (byte [] buffer) {
 	return new String (chars);
 }
 
+/*
+ * Returns the number of chars the UTF-8 bytes decode to.  Like iconv, the
+ * conversion stops at the first invalid or truncated sequence.  A sequence
+ * of four bytes decodes to a surrogate pair.
+ */
+static int decodeUTF8 (byte [] buffer, char [] chars) {
+	int length = buffer.length, count = 0, i = 0;
+	while (i < length) {
+		int b = buffer [i] & 0xFF, ch, size;
+		if (b < 0x80) {
+			ch = b;
+			size = 1;
+		} else if (0xC2 <= b && b <= 0xDF) {
+			if (i + 1 >= length) break;
+			int b1 = buffer [i + 1] & 0xFF;
+			if ((b1 & 0xC0) != 0x80) break;
+			ch = ((b & 0x1F) << 6) | (b1 & 0x3F);
+			size = 2;
+		} else if (0xE0 <= b && b <= 0xEF) {
+			if (i + 2 >= length) break;
+			int b1 = buffer [i + 1] & 0xFF, b2 = buffer [i + 2] & 0xFF;
+			if ((b1 & 0xC0) != 0x80 || (b2 & 0xC0) != 0x80) break;
+			if (b == 0xE0 && b1 < 0xA0) break;
+			if (b == 0xED && b1 >= 0xA0) break;
+			ch = ((b & 0x0F) << 12) | ((b1 & 0x3F) << 6) | (b2 & 0x3F);
+			size = 3;
+		} else if (0xF0 <= b && b <= 0xF4) {
+			if (i + 3 >= length) break;
+			int b1 = buffer [i + 1] & 0xFF, b2 = buffer [i + 2] & 0xFF, b3 = buffer [i + 3] & 0xFF;
+			if ((b1 & 0xC0) != 0x80 || (b2 & 0xC0) != 0x80 || (b3 & 0xC0) != 0x80) break;
+			if (b == 0xF0 && b1 < 0x90) break;
+			if (b == 0xF4 && b1 >= 0x90) break;
+			ch = ((b & 0x07) << 18) | ((b1 & 0x3F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F);
+			size = 4;
+		} else {
+			break;
+		}
+		if (ch >= 0x10000) {
+			if (chars != null) {
+				ch -= 0x10000;
+				chars [count] = (char) (0xD800 + (ch >> 10));
+				chars [count + 1] = (char) (0xDC00 + (ch & 0x3FF));
+			}
+			count += 2;
+		} else {
+			if (chars != null) chars [count] = (char) ch;
+			count++;
+		}
+		i += size;
+	}
+	return count;
+}
+
+/*
+ * Encodes the chars from start to end (exclusive) into the bytes at offset
+ * and returns the number of bytes.  When the bytes are null, only the length
+ * is computed.  Like iconv, characters that cannot be represented in the
+ * encoding are dropped, and so are unpaired surrogates.
+ */
+static int encode (int encoding, char [] buffer, int start, int end, byte [] mbcs, int offset) {
+	int count = 0;
+	for (int i=start; i<end; i++) {
+		int ch = buffer [i];
+		if (ch <= 0x7F) {
+			if (mbcs != null) mbcs [offset + count] = (byte) ch;
+			count++;
+			continue;
+		}
+		switch (encoding) {
+			case US_ASCII:
+				break;
+			case ISO_8859_1:
+				if (ch <= 0xFF) {
+					if (mbcs != null) mbcs [offset + count] = (byte) ch;
+					count++;
+				}
+				break;
+			case UTF_8:
+				if (ch <= 0x7FF) {
+					if (mbcs != null) {
+						mbcs [offset + count] = (byte) (0xC0 | (ch >> 6));
+						mbcs [offset + count + 1] = (byte) (0x80 | (ch & 0x3F));
+					}
+					count += 2;
+				} else if (ch < 0xD800 || ch > 0xDFFF) {
+					if (mbcs != null) {
+						mbcs [offset + count] = (byte) (0xE0 | (ch >> 12));
+						mbcs [offset + count + 1] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+						mbcs [offset + count + 2] = (byte) (0x80 | (ch & 0x3F));
+					}
+					count += 3;
+				} else if (ch <= 0xDBFF && i + 1 < end && 0xDC00 <= buffer [i + 1] && buffer [i + 1] <= 0xDFFF) {
+					ch = 0x10000 + ((ch - 0xD800) << 10) + (buffer [++i] - 0xDC00);
+					if (mbcs != null) {
+						mbcs [offset + count] = (byte) (0xF0 | (ch >> 18));
+						mbcs [offset + count + 1] = (byte) (0x80 | ((ch >> 12) & 0x3F));
+						mbcs [offset + count + 2] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+						mbcs [offset + count + 3] = (byte) (0x80 | (ch & 0x3F));
+					}
+					count += 4;
+				}
+				break;
+		}
+	}
+	return count;
+}
+
+/*
+ * Returns the encoding of the code page when it is converted in Java,
+ * or ICONV otherwise.  Code page names are compared ignoring case and
+ * the dashes and underscores that vary from one platform to the other.
+ */
+static int getEncoding (String codePage) {
+	String cp = codePage != null ? codePage : CodePage;
+	if (isCodePage (cp, "utf8")) return UTF_8;
+	if (isCodePage (cp, "iso88591") || isCodePage (cp, "88591") || isCodePage (cp, "latin1")) return ISO_8859_1;
+	if (isCodePage (cp, "ansix3.41968") || isCodePage (cp, "usascii") || isCodePage (cp, "ascii")) return US_ASCII;
+	return ICONV;
+}
+
+static boolean isCodePage (String codePage, String name) {
+	int length = codePage.length (), index = 0;
+	for (int i=0; i<length; i++) {
+		char ch = codePage.charAt (i);
+		if (ch == '-' || ch == '_') continue;
+		if (index == name.length ()) return false;
+		if (Character.toLowerCase (ch) != name.charAt (index++)) return false;
+	}
+	return index == name.length ();
+}
+
 /**
  * Converts an array of bytes representing the platform's encoding,
  * in the given code page, of some character data into an array of
@@ -149,6 +294,25 @@ public static char [] mbcsToWcs (String codePage, byte [] buffer) {
 		if ((buffer [i] & 0xFF) <= 0x7F) {
 			wideCharStr [i] = (char) buffer [i]; // all bytes <= 0x7F, so no ((char) (buffer[i]&0xFF)) needed
 		} else {
+			switch (getEncoding (codePage)) {
+				case UTF_8: {
+					int count = decodeUTF8 (buffer, null);
+					wideCharStr = new char [count];
+					decodeUTF8 (buffer, wideCharStr);
+					return wideCharStr;
+				}
+				case ISO_8859_1: {
+					for (int j=i; j<length; j++) {
+						wideCharStr [j] = (char) (buffer [j] & 0xFF);
+					}
+					return wideCharStr;
+				}
+				case US_ASCII: {
+					char [] result = new char [i];
+					System.arraycopy (wideCharStr, 0, result, 0, i);
+					return result;
+				}
+			}
 			synchronized (LOCK) {
 				/*
 				* Feature in Solaris.  Some Solaris machines do not provide an iconv
@@ -285,6 +449,17 @@ public static byte [] wcsToMbcs (String codePage, char [] buffer, boolean termin
 		if ((buffer [i] & 0xFFFF) <= 0x7F) {
 			mbcs [i] = (byte) buffer [i];
 		} else {
+			int encoding = getEncoding (codePage);
+			if (encoding != ICONV) {
+				int count = i + encode (encoding, buffer, i, length, null, 0);
+				if (count != length) {
+					byte [] result = new byte [terminate ? count + 1 : count];
+					System.arraycopy (mbcs, 0, result, 0, i);
+					mbcs = result;
+				}
+				encode (encoding, buffer, i, length, mbcs, i);
+				return mbcs;
+			}
 			synchronized (LOCK) {
 				/*
 				* Feature in Solaris.  Some Solaris machines do not provide an iconv
@@ -362,6 +537,93 @@ public static byte [] wcsToMbcs (String codePage, char [] buffer, boolean termin
 	return mbcs;
 }
 
+/**
+ * Converts the chars from start to end (exclusive) of an array
+ * (containing unicode data) to the platform's encoding in the given
+ * code page, storing the bytes in the given array at offset. If the
+ * termination flag is true, the bytes are followed by a null (zero).
+ * <p>
+ * The number of bytes needed is returned. The bytes are only stored
+ * when they fit in the array, so callers can reuse one array and grow
+ * it when the result is larger than the space left.
+ * </p>
+ *
+ * @param codePage the code page to use for conversion
+ * @param buffer the array of chars to be converted
+ * @param start the index of the first char to convert
+ * @param end the index after the last char to convert
+ * @param mbcs the array that receives the platform encoding
+ * @param offset the index of the first byte to store
+ * @param terminate <code>true</code> if the result should be null terminated and false otherwise.
+ * @return the number of bytes needed for the conversion
+ */
+public static int wcsToMbcs (String codePage, char [] buffer, int start, int end, byte [] mbcs, int offset, boolean terminate) {
+	return wcsToMbcs (codePage, buffer, start, end, mbcs, offset, mbcs.length, terminate);
+}
+
+static int wcsToMbcs (String codePage, char [] buffer, int start, int end, byte [] mbcs, int offset, int limit, boolean terminate) {
+	int encoding = getEncoding (codePage), count;
+	int extra = terminate ? 1 : 0;
+	if (encoding != ICONV) {
+		count = encode (encoding, buffer, start, end, null, 0);
+		if (offset + count + extra <= limit) {
+			encode (encoding, buffer, start, end, mbcs, offset);
+		}
+	} else {
+		/* Other code pages are converted by iconv into a new array */
+		char [] chars = new char [end - start];
+		System.arraycopy (buffer, start, chars, 0, chars.length);
+		byte [] result = wcsToMbcs (codePage, chars, false);
+		count = result.length;
+		if (offset + count + extra <= limit) {
+			System.arraycopy (result, 0, mbcs, offset, count);
+		}
+	}
+	if (terminate && offset + count + extra <= limit) mbcs [offset + count] = 0;
+	return count + extra;
+}
+
+/**
+ * Converts the chars from start to end (exclusive) of an array
+ * (containing unicode data) to the platform's encoding in the given
+ * code page, storing the bytes at the position of the given byte
+ * buffer, which can be a direct buffer. If the termination flag is
+ * true, the bytes are followed by a null (zero).
+ * <p>
+ * The number of bytes needed is returned. The bytes are only stored,
+ * and the position of the byte buffer only advanced, when they fit in
+ * the remaining space of the byte buffer.
+ * </p>
+ *
+ * @param codePage the code page to use for conversion
+ * @param buffer the array of chars to be converted
+ * @param start the index of the first char to convert
+ * @param end the index after the last char to convert
+ * @param mbcs the byte buffer that receives the platform encoding
+ * @param terminate <code>true</code> if the result should be null terminated and false otherwise.
+ * @return the number of bytes needed for the conversion
+ */
+public static int wcsToMbcs (String codePage, char [] buffer, int start, int end, ByteBuffer mbcs, boolean terminate) {
+	int position = mbcs.position (), remaining = mbcs.remaining ();
+	if (mbcs.hasArray ()) {
+		byte [] array = mbcs.array ();
+		int offset = mbcs.arrayOffset () + position;
+		int count = wcsToMbcs (codePage, buffer, start, end, array, offset, offset + remaining, terminate);
+		if (count <= remaining) mbcs.position (position + count);
+		return count;
+	}
+	byte [] scratch = (byte []) ScratchBuffer.get ();
+	if (scratch == null) scratch = new byte [Math.min (remaining, 1024)];
+	int count = wcsToMbcs (codePage, buffer, start, end, scratch, 0, terminate);
+	if (count > scratch.length && count <= remaining) {
+		scratch = new byte [count];
+		wcsToMbcs (codePage, buffer, start, end, scratch, 0, terminate);
+	}
+	ScratchBuffer.set (scratch);
+	if (count <= remaining) mbcs.put (scratch, 0, count);
+	return count;
+}
+
 /**
  * Converts a String (containing unicode data) to an array
  * of bytes representing the platform's encoding, of those characters
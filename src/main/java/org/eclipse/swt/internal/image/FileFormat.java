@@ -29,6 +29,7 @@ public abstract class FileFormat {
 	LEDataOutputStream outputStream;
 	ImageLoader loader;
 	int compression;
+	int maxWidth = SWT.DEFAULT, maxHeight = SWT.DEFAULT;
 
 /**
  * Return whether or not the specified input stream
@@ -61,6 +62,16 @@ public ImageData[] loadFromStream(LEDataInputStream stream) {
  * return the device independent image array represented by the stream.
  */	
 public static ImageData[] load(InputStream is, ImageLoader loader) {
+	return load(is, loader, SWT.DEFAULT, SWT.DEFAULT);
+}
+
+/**
+ * Read the specified input stream using the specified loader, and
+ * return the device independent image array represented by the stream.
+ * Formats that can decode at a reduced size do so when the images are
+ * larger than needed to fill the specified size.
+ */	
+public static ImageData[] load(InputStream is, ImageLoader loader, int maxWidth, int maxHeight) {
 	FileFormat fileFormat = null;
 	LEDataInputStream stream = new LEDataInputStream(is);
 	boolean isSupported = false;	
@@ -81,6 +92,8 @@ public static ImageData[] load(InputStream is, ImageLoader loader) {
 	}
 	if (!isSupported) SWT.error(SWT.ERROR_UNSUPPORTED_FORMAT);
 	fileFormat.loader = loader;
+	fileFormat.maxWidth = maxWidth;
+	fileFormat.maxHeight = maxHeight;
 	return fileFormat.loadFromStream(stream);
 }
 
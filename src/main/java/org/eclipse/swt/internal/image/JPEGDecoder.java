@@ -14,6 +14,7 @@ import java.io.*;
 
 import org.eclipse.swt.*;
 import org.eclipse.swt.graphics.*;
+import org.eclipse.swt.internal.BandRunner;
 
 public class JPEGDecoder {
 	
@@ -26,6 +27,8 @@ public class JPEGDecoder {
 	static final int MAX_COMPONENTS = 10;
 	static final int MAX_SAMP_FACTOR = 4;
 	static final int D_MAX_BLOCKS_IN_MCU = 10;
+	static final int BAND_PIXELS = 128 * 1024;
+	static final int MAX_BANDS = Runtime.getRuntime().availableProcessors();
 	static final int HUFF_LOOKAHEAD = 8;
 	static final int MAX_Q_COMPS = 4;
 	static final int IFAST_SCALE_BITS = 2;
@@ -1722,6 +1725,7 @@ public class JPEGDecoder {
 		int context_state;		/* process_data state machine status */
 		int rowgroups_avail;	/* row groups available to postprocessor */
 		int iMCU_row_ctr;	/* counts iMCU rows to detect image top/bot */
+		int first_iMCU_row;	/* iMCU row the pass starts at, nonzero for bands */
 					
 		void start_pass (jpeg_decompress_struct cinfo, int pass_mode) {
 			jpeg_d_main_controller main = cinfo.main;
@@ -1793,18 +1797,18 @@ public class JPEGDecoder {
 				/* Select the proper IDCT routine for this component's scaling */
 				switch (compptr.DCT_scaled_size) {
 //					#ifdef IDCT_SCALING_SUPPORTED
-//					case 1:
+					case 1:
 //						method_ptr = jpeg_idct_1x1;
-//						method = JDCT_ISLOW;	/* jidctred uses islow-style table */
-//						break;
-//					case 2:
+						method = JDCT_ISLOW;	/* jidctred uses islow-style table */
+						break;
+					case 2:
 //						method_ptr = jpeg_idct_2x2;
-//						method = JDCT_ISLOW;	/* jidctred uses islow-style table */
-//						break;
-//					case 4:
+						method = JDCT_ISLOW;	/* jidctred uses islow-style table */
+						break;
+					case 4:
 //						method_ptr = jpeg_idct_4x4;
-//						method = JDCT_ISLOW;	/* jidctred uses islow-style table */
-//						break;
+						method = JDCT_ISLOW;	/* jidctred uses islow-style table */
+						break;
 //					#endif
 					case DCTSIZE:
 						switch (cinfo.dct_method) {
@@ -2020,7 +2024,7 @@ public class JPEGDecoder {
 
 	}
 	
-	static final class jpeg_decompress_struct {
+	static final class jpeg_decompress_struct implements Cloneable {
 //		jpeg_error_mgr * err;	/* Error handler module */\
 //		struct jpeg_memory_mgr * mem;	/* Memory manager module */\
 //		struct jpeg_progress_mgr * progress; /* Progress monitor, or null if none */\
@@ -2056,6 +2060,7 @@ public class JPEGDecoder {
 		double output_gamma;		/* image gamma wanted in output */
 
 		boolean buffered_image;	/* true=multiple output passes */
+		int num_bands;		/* >1 = run the output side in bands of rows */
 		boolean raw_data_out;		/* true=downsampled data wanted */
 
 		int dct_method;	/* IDCT algorithm selector */
@@ -2253,6 +2258,33 @@ public class JPEGDecoder {
 		jpeg_upsampler upsample;
 		jpeg_color_deconverter cconvert;
 		jpeg_color_quantizer cquantize;
+
+		/* Shallow copy, used to give each band its own output side */
+		jpeg_decompress_struct copy() {
+			try {
+				return (jpeg_decompress_struct) clone();
+			} catch (CloneNotSupportedException e) {
+				error();
+				return null;
+			}
+		}
+	}
+
+	static final class jpeg_decompress_band implements Runnable {
+		jpeg_decompress_struct cinfo;	/* copy of the decompressor for this band */
+		byte[] data;			/* output image */
+		int row_stride;
+		int start_row, end_row;	/* output scanlines stored by this band */
+
+		public void run() {
+			byte[][] buffer = new byte[1][row_stride];
+			/* A band may start decoding above start_row to get context rows */
+			while (cinfo.output_scanline < end_row) {
+				int row = cinfo.output_scanline;
+				jpeg_read_scanlines(cinfo, buffer, 1);
+				if (row >= start_row) System.arraycopy(buffer[0], 0, data, row_stride * row, row_stride);
+			}
+		}
 	}
 
 static void error() {
@@ -2368,8 +2400,8 @@ static void jpeg_calc_output_dimensions (jpeg_decompress_struct cinfo)
 /* Do computations that are needed before master selection phase */
 {
 //#ifdef IDCT_SCALING_SUPPORTED
-//	int ci;
-//	jpeg_component_info compptr;
+	int ci;
+	jpeg_component_info compptr;
 //#endif
 
 	/* Prevent application from calling me at wrong times */
@@ -2378,75 +2410,75 @@ static void jpeg_calc_output_dimensions (jpeg_decompress_struct cinfo)
 //		ERREXIT1(cinfo, JERR_BAD_STATE, cinfo.global_state);
 
 //#ifdef IDCT_SCALING_SUPPORTED
-//
-//	/* Compute actual output image dimensions and DCT scaling choices. */
-//	if (cinfo.scale_num * 8 <= cinfo.scale_denom) {
-//		/* Provide 1/8 scaling */
-//		cinfo.output_width = (int)
-//			jdiv_round_up(cinfo.image_width, 8L);
-//		cinfo.output_height = (int)
-//			jdiv_round_up(cinfo.image_height, 8L);
-//		cinfo.min_DCT_scaled_size = 1;
-//	} else if (cinfo.scale_num * 4 <= cinfo.scale_denom) {
-//		/* Provide 1/4 scaling */
-//		cinfo.output_width = (int)
-//			jdiv_round_up(cinfo.image_width, 4L);
-//		cinfo.output_height = (int)
-//			jdiv_round_up(cinfo.image_height, 4L);
-//		cinfo.min_DCT_scaled_size = 2;
-//	} else if (cinfo.scale_num * 2 <= cinfo.scale_denom) {
-//		/* Provide 1/2 scaling */
-//		cinfo.output_width = (int)
-//			jdiv_round_up(cinfo.image_width, 2L);
-//		cinfo.output_height = (int)
-//			jdiv_round_up(cinfo.image_height, 2L);
-//		cinfo.min_DCT_scaled_size = 4;
-//	} else {
-//		/* Provide 1/1 scaling */
-//		cinfo.output_width = cinfo.image_width;
-//		cinfo.output_height = cinfo.image_height;
-//		cinfo.min_DCT_scaled_size = DCTSIZE;
-//	}
-//	/* In selecting the actual DCT scaling for each component, we try to
-//	 * scale up the chroma components via IDCT scaling rather than upsampling.
-//	 * This saves time if the upsampler gets to use 1:1 scaling.
-//	 * Note this code assumes that the supported DCT scalings are powers of 2.
-//	 */
-//	for (ci = 0; ci < cinfo.num_components; ci++) {
-//		compptr = cinfo.comp_info[ci];
-//		int ssize = cinfo.min_DCT_scaled_size;
-//		while (ssize < DCTSIZE &&
-//			(compptr.h_samp_factor * ssize * 2 <= cinfo.max_h_samp_factor * cinfo.min_DCT_scaled_size) &&
-//			(compptr.v_samp_factor * ssize * 2 <= cinfo.max_v_samp_factor * cinfo.min_DCT_scaled_size))
-//		{
-//			ssize = ssize * 2;
-//		}
-//		compptr.DCT_scaled_size = ssize;
-//	}
-//
-//	/* Recompute downsampled dimensions of components;
-//	 * application needs to know these if using raw downsampled data.
-//	 */
-//	for (ci = 0; ci < cinfo.num_components; ci++) {
-//		compptr = cinfo.comp_info[ci];
-//		/* Size in samples, after IDCT scaling */
-//		compptr.downsampled_width = (int)
-//			jdiv_round_up((long) cinfo.image_width * (long) (compptr.h_samp_factor * compptr.DCT_scaled_size),
-//				(cinfo.max_h_samp_factor * DCTSIZE));
-//		compptr.downsampled_height = (int)
-//			jdiv_round_up((long) cinfo.image_height * (long) (compptr.v_samp_factor * compptr.DCT_scaled_size),
-//				(cinfo.max_v_samp_factor * DCTSIZE));
-//	}
-//
-//#else /* !IDCT_SCALING_SUPPORTED */
 
-	/* Hardwire it to "no scaling" */
-	cinfo.output_width = cinfo.image_width;
-	cinfo.output_height = cinfo.image_height;
-	/* jdinput.c has already initialized DCT_scaled_size to DCTSIZE,
-	 * and has computed unscaled downsampled_width and downsampled_height.
+	/* Compute actual output image dimensions and DCT scaling choices. */
+	if (cinfo.scale_num * 8 <= cinfo.scale_denom) {
+		/* Provide 1/8 scaling */
+		cinfo.output_width = (int)
+			jdiv_round_up(cinfo.image_width, 8L);
+		cinfo.output_height = (int)
+			jdiv_round_up(cinfo.image_height, 8L);
+		cinfo.min_DCT_scaled_size = 1;
+	} else if (cinfo.scale_num * 4 <= cinfo.scale_denom) {
+		/* Provide 1/4 scaling */
+		cinfo.output_width = (int)
+			jdiv_round_up(cinfo.image_width, 4L);
+		cinfo.output_height = (int)
+			jdiv_round_up(cinfo.image_height, 4L);
+		cinfo.min_DCT_scaled_size = 2;
+	} else if (cinfo.scale_num * 2 <= cinfo.scale_denom) {
+		/* Provide 1/2 scaling */
+		cinfo.output_width = (int)
+			jdiv_round_up(cinfo.image_width, 2L);
+		cinfo.output_height = (int)
+			jdiv_round_up(cinfo.image_height, 2L);
+		cinfo.min_DCT_scaled_size = 4;
+	} else {
+		/* Provide 1/1 scaling */
+		cinfo.output_width = cinfo.image_width;
+		cinfo.output_height = cinfo.image_height;
+		cinfo.min_DCT_scaled_size = DCTSIZE;
+	}
+	/* In selecting the actual DCT scaling for each component, we try to
+	 * scale up the chroma components via IDCT scaling rather than upsampling.
+	 * This saves time if the upsampler gets to use 1:1 scaling.
+	 * Note this code assumes that the supported DCT scalings are powers of 2.
 	 */
+	for (ci = 0; ci < cinfo.num_components; ci++) {
+		compptr = cinfo.comp_info[ci];
+		int ssize = cinfo.min_DCT_scaled_size;
+		while (ssize < DCTSIZE &&
+			(compptr.h_samp_factor * ssize * 2 <= cinfo.max_h_samp_factor * cinfo.min_DCT_scaled_size) &&
+			(compptr.v_samp_factor * ssize * 2 <= cinfo.max_v_samp_factor * cinfo.min_DCT_scaled_size))
+		{
+			ssize = ssize * 2;
+		}
+		compptr.DCT_scaled_size = ssize;
+	}
 
+	/* Recompute downsampled dimensions of components;
+	 * application needs to know these if using raw downsampled data.
+	 */
+	for (ci = 0; ci < cinfo.num_components; ci++) {
+		compptr = cinfo.comp_info[ci];
+		/* Size in samples, after IDCT scaling */
+		compptr.downsampled_width = (int)
+			jdiv_round_up((long) cinfo.image_width * (long) (compptr.h_samp_factor * compptr.DCT_scaled_size),
+				(cinfo.max_h_samp_factor * DCTSIZE));
+		compptr.downsampled_height = (int)
+			jdiv_round_up((long) cinfo.image_height * (long) (compptr.v_samp_factor * compptr.DCT_scaled_size),
+				(cinfo.max_v_samp_factor * DCTSIZE));
+	}
+
+//#else /* !IDCT_SCALING_SUPPORTED */
+//
+//	/* Hardwire it to "no scaling" */
+//	cinfo.output_width = cinfo.image_width;
+//	cinfo.output_height = cinfo.image_height;
+//	/* jdinput.c has already initialized DCT_scaled_size to DCTSIZE,
+//	 * and has computed unscaled downsampled_width and downsampled_height.
+//	 */
+//
 //#endif /* IDCT_SCALING_SUPPORTED */
 
 	/* Report number of components in selected colorspace. */
@@ -2920,6 +2952,287 @@ static void jinit_inverse_dct (jpeg_decompress_struct cinfo) {
 static final int CONST_BITS = 13;
 static final int PASS1_BITS = 2;
 static final int RANGE_MASK =(MAXJSAMPLE * 4 + 3);
+static void inverse_DCT (jpeg_decompress_struct cinfo, jpeg_component_info compptr,
+	short[] coef_block,
+	byte[][] output_buf, int output_buf_offset, int output_col)
+/* Run the IDCT routine selected by start_pass for this component's scaling */
+{
+	switch (compptr.DCT_scaled_size) {
+		case 1:
+			jpeg_idct_1x1(cinfo, compptr, coef_block, output_buf, output_buf_offset, output_col);
+			break;
+		case 2:
+			jpeg_idct_2x2(cinfo, compptr, coef_block, output_buf, output_buf_offset, output_col);
+			break;
+		case 4:
+			jpeg_idct_4x4(cinfo, compptr, coef_block, output_buf, output_buf_offset, output_col);
+			break;
+		default:
+			jpeg_idct_islow(cinfo, compptr, coef_block, output_buf, output_buf_offset, output_col);
+			break;
+	}
+}
+
+/*
+ * Perform dequantization and inverse DCT on one block of coefficients,
+ * producing a reduced-size 4x4 output block.
+ */
+static void jpeg_idct_4x4 (jpeg_decompress_struct cinfo, jpeg_component_info compptr,
+	short[] coef_block,
+	byte[][] output_buf, int output_buf_offset, int output_col)
+{
+	int tmp0, tmp2, tmp10, tmp12;
+	int z1, z2, z3, z4;
+	short[] inptr = coef_block;
+	int[] quantptr = compptr.dct_table;
+	int[] wsptr = cinfo.workspace;	/* buffers data between passes */
+	byte[] outptr;
+	byte[] range_limit = cinfo.sample_range_limit;
+	int range_limit_offset = cinfo.sample_range_limit_offset + CENTERJSAMPLE;
+	int ctr;
+
+	/* Pass 1: process columns from input, store into work array. */
+
+	for (ctr = 0; ctr < DCTSIZE; ctr++) {
+		/* Don't bother to process column 4, because second pass won't use it */
+		if (ctr == 4)
+			continue;
+		if (inptr[DCTSIZE*1+ctr] == 0 && inptr[DCTSIZE*2+ctr] == 0 &&
+			inptr[DCTSIZE*3+ctr] == 0 && inptr[DCTSIZE*5+ctr] == 0 &&
+			inptr[DCTSIZE*6+ctr] == 0 && inptr[DCTSIZE*7+ctr] == 0)
+		{
+			/* AC terms all zero; we need not examine term 4 for 4x4 output */
+			int dcval = ((inptr[DCTSIZE*0+ctr]) * quantptr[DCTSIZE*0+ctr]) << PASS1_BITS;
+
+			wsptr[DCTSIZE*0+ctr] = dcval;
+			wsptr[DCTSIZE*1+ctr] = dcval;
+			wsptr[DCTSIZE*2+ctr] = dcval;
+			wsptr[DCTSIZE*3+ctr] = dcval;
+			continue;
+		}
+
+		/* Even part */
+
+		tmp0 = ((inptr[DCTSIZE*0+ctr]) * quantptr[DCTSIZE*0+ctr]) << (CONST_BITS+1);
+
+		z2 = ((inptr[DCTSIZE*2+ctr]) * quantptr[DCTSIZE*2+ctr]);
+		z3 = ((inptr[DCTSIZE*6+ctr]) * quantptr[DCTSIZE*6+ctr]);
+
+		tmp2 = (z2 * 15137/*FIX_1_847759065*/) + (z3 * - 6270/*FIX_0_765366865*/);
+
+		tmp10 = tmp0 + tmp2;
+		tmp12 = tmp0 - tmp2;
+
+		/* Odd part */
+
+		z1 = ((inptr[DCTSIZE*7+ctr]) * quantptr[DCTSIZE*7+ctr]);
+		z2 = ((inptr[DCTSIZE*5+ctr]) * quantptr[DCTSIZE*5+ctr]);
+		z3 = ((inptr[DCTSIZE*3+ctr]) * quantptr[DCTSIZE*3+ctr]);
+		z4 = ((inptr[DCTSIZE*1+ctr]) * quantptr[DCTSIZE*1+ctr]);
+
+		tmp0 = (z1 * - 1730/*FIX_0_211164243*/) /* sqrt(2) * (c3-c1) */
+			+ (z2 * 11893/*FIX_1_451774981*/) /* sqrt(2) * (c3+c7) */
+			+ (z3 * - 17799/*FIX_2_172734803*/) /* sqrt(2) * (-c1-c5) */
+			+ (z4 * 8697/*FIX_1_061594337*/); /* sqrt(2) * (c5+c7) */
+
+		tmp2 = (z1 * - 4176/*FIX_0_509795579*/) /* sqrt(2) * (c7-c5) */
+			+ (z2 * - 4926/*FIX_0_601344887*/) /* sqrt(2) * (c5-c1) */
+			+ (z3 * 7373/*FIX_0_899976223*/) /* sqrt(2) * (c3+c7) */
+			+ (z4 * 20995/*FIX_2_562915447*/); /* sqrt(2) * (c1+c3) */
+
+		/* Final output stage */
+
+		wsptr[DCTSIZE*0+ctr] = (((tmp10 + tmp2) + (1 << ((CONST_BITS-PASS1_BITS+1)-1))) >> (CONST_BITS-PASS1_BITS+1));
+		wsptr[DCTSIZE*3+ctr] = (((tmp10 - tmp2) + (1 << ((CONST_BITS-PASS1_BITS+1)-1))) >> (CONST_BITS-PASS1_BITS+1));
+		wsptr[DCTSIZE*1+ctr] = (((tmp12 + tmp0) + (1 << ((CONST_BITS-PASS1_BITS+1)-1))) >> (CONST_BITS-PASS1_BITS+1));
+		wsptr[DCTSIZE*2+ctr] = (((tmp12 - tmp0) + (1 << ((CONST_BITS-PASS1_BITS+1)-1))) >> (CONST_BITS-PASS1_BITS+1));
+	}
+
+	/* Pass 2: process 4 rows from work array, store into output array. */
+
+	int wsptr_offset = 0;
+	for (ctr = 0; ctr < 4; ctr++) {
+		outptr = output_buf[ctr+output_buf_offset];
+		/* It's not clear whether a zero row test is worthwhile here ... */
+
+//#ifndef NO_ZERO_ROW_TEST
+		if (wsptr[1+wsptr_offset] == 0 && wsptr[2+wsptr_offset] == 0 && wsptr[3+wsptr_offset] == 0 &&
+			wsptr[5+wsptr_offset] == 0 && wsptr[6+wsptr_offset] == 0 && wsptr[7+wsptr_offset] == 0)
+		{
+			/* AC terms all zero */
+			byte dcval = range_limit[range_limit_offset + ((((wsptr[0+wsptr_offset]) + (1 << ((PASS1_BITS+3)-1))) >> PASS1_BITS+3)
+					& RANGE_MASK)];
+
+			outptr[0+output_col] = dcval;
+			outptr[1+output_col] = dcval;
+			outptr[2+output_col] = dcval;
+			outptr[3+output_col] = dcval;
+
+			wsptr_offset += DCTSIZE;		/* advance pointer to next row */
+			continue;
+		}
+//#endif
+
+		/* Even part */
+
+		tmp0 = wsptr[0+wsptr_offset] << (CONST_BITS+1);
+
+		tmp2 = (wsptr[2+wsptr_offset] * 15137/*FIX_1_847759065*/) + (wsptr[6+wsptr_offset] * - 6270/*FIX_0_765366865*/);
+
+		tmp10 = tmp0 + tmp2;
+		tmp12 = tmp0 - tmp2;
+
+		/* Odd part */
+
+		z1 = wsptr[7+wsptr_offset];
+		z2 = wsptr[5+wsptr_offset];
+		z3 = wsptr[3+wsptr_offset];
+		z4 = wsptr[1+wsptr_offset];
+
+		tmp0 = (z1 * - 1730/*FIX_0_211164243*/) /* sqrt(2) * (c3-c1) */
+			+ (z2 * 11893/*FIX_1_451774981*/) /* sqrt(2) * (c3+c7) */
+			+ (z3 * - 17799/*FIX_2_172734803*/) /* sqrt(2) * (-c1-c5) */
+			+ (z4 * 8697/*FIX_1_061594337*/); /* sqrt(2) * (c5+c7) */
+
+		tmp2 = (z1 * - 4176/*FIX_0_509795579*/) /* sqrt(2) * (c7-c5) */
+			+ (z2 * - 4926/*FIX_0_601344887*/) /* sqrt(2) * (c5-c1) */
+			+ (z3 * 7373/*FIX_0_899976223*/) /* sqrt(2) * (c3+c7) */
+			+ (z4 * 20995/*FIX_2_562915447*/); /* sqrt(2) * (c1+c3) */
+
+		/* Final output stage */
+
+		outptr[0+output_col] = range_limit[range_limit_offset + ((((tmp10 + tmp2) + (1 << ((CONST_BITS+PASS1_BITS+3+1)-1))) >>
+					CONST_BITS+PASS1_BITS+3+1) & RANGE_MASK)];
+		outptr[3+output_col] = range_limit[range_limit_offset + ((((tmp10 - tmp2) + (1 << ((CONST_BITS+PASS1_BITS+3+1)-1))) >>
+					CONST_BITS+PASS1_BITS+3+1) & RANGE_MASK)];
+		outptr[1+output_col] = range_limit[range_limit_offset + ((((tmp12 + tmp0) + (1 << ((CONST_BITS+PASS1_BITS+3+1)-1))) >>
+					CONST_BITS+PASS1_BITS+3+1) & RANGE_MASK)];
+		outptr[2+output_col] = range_limit[range_limit_offset + ((((tmp12 - tmp0) + (1 << ((CONST_BITS+PASS1_BITS+3+1)-1))) >>
+					CONST_BITS+PASS1_BITS+3+1) & RANGE_MASK)];
+
+		wsptr_offset += DCTSIZE;		/* advance pointer to next row */
+	}
+}
+
+/*
+ * Perform dequantization and inverse DCT on one block of coefficients,
+ * producing a reduced-size 2x2 output block.
+ */
+static void jpeg_idct_2x2 (jpeg_decompress_struct cinfo, jpeg_component_info compptr,
+	short[] coef_block,
+	byte[][] output_buf, int output_buf_offset, int output_col)
+{
+	int tmp0, tmp10, z1;
+	short[] inptr = coef_block;
+	int[] quantptr = compptr.dct_table;
+	int[] wsptr = cinfo.workspace;	/* buffers data between passes */
+	byte[] outptr;
+	byte[] range_limit = cinfo.sample_range_limit;
+	int range_limit_offset = cinfo.sample_range_limit_offset + CENTERJSAMPLE;
+	int ctr;
+
+	/* Pass 1: process columns from input, store into work array. */
+
+	for (ctr = 0; ctr < DCTSIZE; ctr++) {
+		/* Don't bother to process columns 2,4,6 */
+		if (ctr == 2 || ctr == 4 || ctr == 6)
+			continue;
+		if (inptr[DCTSIZE*1+ctr] == 0 && inptr[DCTSIZE*3+ctr] == 0 &&
+			inptr[DCTSIZE*5+ctr] == 0 && inptr[DCTSIZE*7+ctr] == 0)
+		{
+			/* AC terms all zero; we need not examine terms 2,4,6 for 2x2 output */
+			int dcval = ((inptr[DCTSIZE*0+ctr]) * quantptr[DCTSIZE*0+ctr]) << PASS1_BITS;
+
+			wsptr[DCTSIZE*0+ctr] = dcval;
+			wsptr[DCTSIZE*1+ctr] = dcval;
+			continue;
+		}
+
+		/* Even part */
+
+		tmp10 = ((inptr[DCTSIZE*0+ctr]) * quantptr[DCTSIZE*0+ctr]) << (CONST_BITS+2);
+
+		/* Odd part */
+
+		z1 = ((inptr[DCTSIZE*7+ctr]) * quantptr[DCTSIZE*7+ctr]);
+		tmp0 = (z1 * - 5906/*FIX_0_720959822*/); /* sqrt(2) * (c7-c5+c3-c1) */
+		z1 = ((inptr[DCTSIZE*5+ctr]) * quantptr[DCTSIZE*5+ctr]);
+		tmp0 += (z1 * 6967/*FIX_0_850430095*/); /* sqrt(2) * (-c1+c3+c5+c7) */
+		z1 = ((inptr[DCTSIZE*3+ctr]) * quantptr[DCTSIZE*3+ctr]);
+		tmp0 += (z1 * - 10426/*FIX_1_272758580*/); /* sqrt(2) * (-c1+c3-c5-c7) */
+		z1 = ((inptr[DCTSIZE*1+ctr]) * quantptr[DCTSIZE*1+ctr]);
+		tmp0 += (z1 * 29692/*FIX_3_624509785*/); /* sqrt(2) * (c1+c3+c5+c7) */
+
+		/* Final output stage */
+
+		wsptr[DCTSIZE*0+ctr] = (((tmp10 + tmp0) + (1 << ((CONST_BITS-PASS1_BITS+2)-1))) >> (CONST_BITS-PASS1_BITS+2));
+		wsptr[DCTSIZE*1+ctr] = (((tmp10 - tmp0) + (1 << ((CONST_BITS-PASS1_BITS+2)-1))) >> (CONST_BITS-PASS1_BITS+2));
+	}
+
+	/* Pass 2: process 2 rows from work array, store into output array. */
+
+	int wsptr_offset = 0;
+	for (ctr = 0; ctr < 2; ctr++) {
+		outptr = output_buf[ctr+output_buf_offset];
+		/* It's not clear whether a zero row test is worthwhile here ... */
+
+//#ifndef NO_ZERO_ROW_TEST
+		if (wsptr[1+wsptr_offset] == 0 && wsptr[3+wsptr_offset] == 0 && wsptr[5+wsptr_offset] == 0 && wsptr[7+wsptr_offset] == 0) {
+			/* AC terms all zero */
+			byte dcval = range_limit[range_limit_offset + ((((wsptr[0+wsptr_offset]) + (1 << ((PASS1_BITS+3)-1))) >> PASS1_BITS+3)
+					& RANGE_MASK)];
+
+			outptr[0+output_col] = dcval;
+			outptr[1+output_col] = dcval;
+
+			wsptr_offset += DCTSIZE;		/* advance pointer to next row */
+			continue;
+		}
+//#endif
+
+		/* Even part */
+
+		tmp10 = wsptr[0+wsptr_offset] << (CONST_BITS+2);
+
+		/* Odd part */
+
+		tmp0 = (wsptr[7+wsptr_offset] * - 5906/*FIX_0_720959822*/) /* sqrt(2) * (c7-c5+c3-c1) */
+			+ (wsptr[5+wsptr_offset] * 6967/*FIX_0_850430095*/) /* sqrt(2) * (-c1+c3+c5+c7) */
+			+ (wsptr[3+wsptr_offset] * - 10426/*FIX_1_272758580*/) /* sqrt(2) * (-c1+c3-c5-c7) */
+			+ (wsptr[1+wsptr_offset] * 29692/*FIX_3_624509785*/); /* sqrt(2) * (c1+c3+c5+c7) */
+
+		/* Final output stage */
+
+		outptr[0+output_col] = range_limit[range_limit_offset + ((((tmp10 + tmp0) + (1 << ((CONST_BITS+PASS1_BITS+3+2)-1))) >>
+					CONST_BITS+PASS1_BITS+3+2) & RANGE_MASK)];
+		outptr[1+output_col] = range_limit[range_limit_offset + ((((tmp10 - tmp0) + (1 << ((CONST_BITS+PASS1_BITS+3+2)-1))) >>
+					CONST_BITS+PASS1_BITS+3+2) & RANGE_MASK)];
+
+		wsptr_offset += DCTSIZE;		/* advance pointer to next row */
+	}
+}
+
+/*
+ * Perform dequantization and inverse DCT on one block of coefficients,
+ * producing a reduced-size 1x1 output block.  Only the DC coefficient
+ * is used, so the entropy decoder does not even store the AC terms.
+ */
+static void jpeg_idct_1x1 (jpeg_decompress_struct cinfo, jpeg_component_info compptr,
+	short[] coef_block,
+	byte[][] output_buf, int output_buf_offset, int output_col)
+{
+	byte[] range_limit = cinfo.sample_range_limit;
+	int range_limit_offset = cinfo.sample_range_limit_offset + CENTERJSAMPLE;
+
+	/* We hardly need an inverse DCT routine for this: just take the
+	 * average pixel value, which is one-eighth of the DC coefficient.
+	 */
+	int dcval = ((coef_block[0]) * compptr.dct_table[0]);
+	dcval = ((dcval + (1 << (3-1))) >> 3);
+
+	output_buf[output_buf_offset][output_col] = range_limit[range_limit_offset + (dcval & RANGE_MASK)];
+}
+
 static void jpeg_idct_islow (jpeg_decompress_struct cinfo, jpeg_component_info compptr,
 	short[] coef_block,
 	byte[][] output_buf, int output_buf_offset, int output_col)
@@ -3333,7 +3646,7 @@ static void master_selection (jpeg_decompress_struct cinfo) {
 	}
 
 	/* Initialize principal buffer controllers. */
-	use_c_buffer = cinfo.inputctl.has_multiple_scans || cinfo.buffered_image;
+	use_c_buffer = cinfo.inputctl.has_multiple_scans || cinfo.buffered_image || cinfo.num_bands > 1;
 	jinit_d_coef_controller(cinfo, use_c_buffer);
 
 	if (! cinfo.raw_data_out)
@@ -3794,7 +4107,7 @@ static int decompress_onepass (jpeg_decompress_struct cinfo, byte[][][] output_b
 					if (cinfo.input_iMCU_row < last_iMCU_row ||	yoffset+yindex < compptr.last_row_height) {
 						output_col = start_col;
 						for (xindex = 0; xindex < useful_width; xindex++) {
-							jpeg_idct_islow(cinfo, compptr, coef.MCU_buffer[blkn+xindex], output_ptr, output_ptr_offset, output_col);
+							inverse_DCT(cinfo, compptr, coef.MCU_buffer[blkn+xindex], output_ptr, output_ptr_offset, output_col);
 							output_col += compptr.DCT_scaled_size;
 						}
 					}
@@ -4013,7 +4326,7 @@ static int decompress_smooth_data (jpeg_decompress_struct cinfo, byte[][][] outp
 					workspace[2] = (short) pred;
 				}
 				/* OK, do the IDCT */
-				jpeg_idct_islow(cinfo, compptr, workspace, output_ptr, output_ptr_offset, output_col);
+				inverse_DCT(cinfo, compptr, workspace, output_ptr, output_ptr_offset, output_col);
 				/* Advance for next column */
 				DC1 = DC2; DC2 = DC3;
 				DC4 = DC5; DC5 = DC6;
@@ -4077,7 +4390,7 @@ static int decompress_data (jpeg_decompress_struct cinfo, byte[][][] output_buf,
 			int buffer_ptr_offset = 0;
 			output_col = 0;
 			for (block_num = 0; block_num < compptr.width_in_blocks; block_num++) {
-				jpeg_idct_islow(cinfo, compptr, buffer_ptr[buffer_ptr_offset], output_ptr, output_ptr_offset, output_col);
+				inverse_DCT(cinfo, compptr, buffer_ptr[buffer_ptr_offset], output_ptr, output_ptr_offset, output_col);
 
 				buffer_ptr_offset++;
 				output_col += compptr.DCT_scaled_size;
@@ -4229,7 +4542,7 @@ static void process_data_context_main (jpeg_decompress_struct cinfo,
 			if (main.rowgroup_ctr[0] < main.rowgroups_avail)
 				return;			/* Need to suspend */
 			/* After the first iMCU, change wraparound pointers to normal state */
-			if (main.iMCU_row_ctr == 1)
+			if (main.iMCU_row_ctr == main.first_iMCU_row + 1)
 				set_wraparound_pointers(cinfo);
 			/* Prepare to load new iMCU row using other xbuffer list */
 			main.whichptr ^= 1;	/* 0=>1 or 1=>0 */
@@ -6298,12 +6611,103 @@ static boolean isFileFormat(LEDataInputStream stream) {
 	}
 }
 	
+/*
+ * Answers the denominator of the largest reduction the IDCT can apply
+ * (1/2, 1/4 or 1/8) for which the image, once fitted into the given
+ * size, is not enlarged.  A size of SWT.DEFAULT is not constrained.
+ */
+static int get_scale_denom(int image_width, int image_height, int maxWidth, int maxHeight) {
+	int denom = DCTSIZE;
+	while (denom > 1) {
+		if (maxWidth != SWT.DEFAULT && (long)maxWidth * denom <= image_width) break;
+		if (maxHeight != SWT.DEFAULT && (long)maxHeight * denom <= image_height) break;
+		denom /= 2;
+	}
+	return denom;
+}
+
+/*
+ * Answers the number of bands of iMCU rows to run the output side in,
+ * which is 1 when the image is too small to be worth the threads.  Each
+ * band gets at least two iMCU rows since it may decode one extra row.
+ */
+static int get_band_count (jpeg_decompress_struct cinfo) {
+	long pixels = (long) cinfo.output_width * cinfo.output_height;
+	return (int) Math.max(1, Math.min(Math.min(MAX_BANDS, pixels / BAND_PIXELS), cinfo.total_iMCU_rows / 2));
+}
+
+/*
+ * Copies the decompressor with a new output side that starts at the
+ * given iMCU row.  The coefficient buffer, the IDCT tables and the
+ * color converter are shared, since the output side only reads them.
+ */
+static jpeg_decompress_struct jpeg_start_band (jpeg_decompress_struct cinfo, int iMCU_row) {
+	jpeg_decompress_struct band = cinfo.copy();
+	band.workspace = new int[DCTSIZE2];
+	band.row_ctr = new int[1];
+	jpeg_d_coef_controller coef = band.coef = new jpeg_d_coef_controller();
+	coef.whole_image = cinfo.coef.whole_image;
+	coef.coef_arrays = cinfo.coef.coef_arrays;
+	coef.coef_bits_latch = cinfo.coef.coef_bits_latch;
+	coef.decompress_data = cinfo.coef.decompress_data;
+	jinit_upsampler(band);
+	jinit_d_post_controller(band, false);
+	jinit_d_main_controller(band, false);
+	band.upsample.start_pass(band);
+	band.post.start_pass(band, JBUF_PASS_THRU);
+	band.main.start_pass(band, JBUF_PASS_THRU);
+	band.main.first_iMCU_row = band.main.iMCU_row_ctr = iMCU_row;
+	band.output_iMCU_row = iMCU_row;
+	band.output_scanline = iMCU_row * cinfo.max_v_samp_factor * cinfo.min_DCT_scaled_size;
+	band.upsample.rows_to_go = cinfo.output_height - band.output_scanline;
+	return band;
+}
+
+/*
+ * Reads the rest of the file into the coefficient buffer, then runs the
+ * IDCT, upsampling and color conversion in num_bands bands of iMCU rows,
+ * each in its own thread.  When the upsampler needs context rows, a band
+ * starts decoding one iMCU row early so that its first rows get the same
+ * context as in a single pass, which keeps the output identical.
+ */
+static void jpeg_decompress_bands (jpeg_decompress_struct cinfo, byte[] data, int row_stride) {
+	/* Absorb the whole file into the coefficient buffer */
+	while (! cinfo.inputctl.eoi_reached) {
+		if (consume_input(cinfo) == JPEG_SUSPENDED)
+			error();
+	}
+	int rows_per_iMCU_row = cinfo.max_v_samp_factor * cinfo.min_DCT_scaled_size;
+	int bands = cinfo.num_bands;
+	jpeg_decompress_band[] runnables = new jpeg_decompress_band[bands];
+	for (int i = 0; i < bands; i++) {
+		int first = (int) ((long) cinfo.total_iMCU_rows * i / bands);
+		int last = (int) ((long) cinfo.total_iMCU_rows * (i + 1) / bands);
+		jpeg_decompress_band band = runnables[i] = new jpeg_decompress_band();
+		band.cinfo = jpeg_start_band(cinfo, first > 0 && cinfo.upsample.need_context_rows ? first - 1 : first);
+		band.data = data;
+		band.row_stride = row_stride;
+		band.start_row = first * rows_per_iMCU_row;
+		band.end_row = Math.min(last * rows_per_iMCU_row, cinfo.output_height);
+	}
+	BandRunner.run(runnables);
+	cinfo.output_scanline = cinfo.output_height;
+}
+
 static ImageData[] loadFromByteStream(InputStream inputStream, ImageLoader loader) {
+	return loadFromByteStream(inputStream, loader, SWT.DEFAULT, SWT.DEFAULT);
+}
+
+static ImageData[] loadFromByteStream(InputStream inputStream, ImageLoader loader, int maxWidth, int maxHeight) {
 	jpeg_decompress_struct cinfo = new jpeg_decompress_struct();
 	cinfo.inputStream = inputStream;
 	jpeg_create_decompress(cinfo);
 	jpeg_read_header(cinfo, true);
+	cinfo.scale_denom = get_scale_denom(cinfo.image_width, cinfo.image_height, maxWidth, maxHeight);
 	cinfo.buffered_image = cinfo.progressive_mode && loader.hasListeners();
+	if (loader.parallel && !cinfo.buffered_image) {
+		jpeg_calc_output_dimensions(cinfo);
+		cinfo.num_bands = get_band_count(cinfo);
+	}
 	jpeg_start_decompress(cinfo);
 	PaletteData palette = null;
 	switch (cinfo.out_color_space) {
@@ -6338,8 +6742,16 @@ static ImageData[] loadFromByteStream(InputStream inputStream, ImageLoader loade
 				System.arraycopy(buffer[0], 0, data, offset, row_stride);
 			}
 			jpeg_finish_output(cinfo);
-			loader.notifyListeners(new ImageLoaderEvent(loader, (ImageData)imageData.clone(), incrementCount, done = jpeg_input_complete(cinfo)));
+			done = jpeg_input_complete(cinfo);
+			if (loader.incremental) {
+				/* Every output pass rewrites the whole image */
+				loader.notifyListeners(new ImageLoaderEvent(loader, imageData, incrementCount, done, 0, imageData.height));
+			} else {
+				loader.notifyListeners(new ImageLoaderEvent(loader, (ImageData)imageData.clone(), incrementCount, done));
+			}
 		} while (!done);
+	} else if (cinfo.num_bands > 1) {
+		jpeg_decompress_bands(cinfo, data, row_stride);
 	} else {
 		while (cinfo.output_scanline < cinfo.output_height) {
 			int offset = row_stride * cinfo.output_scanline;
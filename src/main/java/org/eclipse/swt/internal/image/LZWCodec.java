@@ -419,9 +419,15 @@ void nextPutPixels(byte[] buf) {
 			else if (pass == 5) line = 0;
 			if (pass < 5) {
 				if (loader.hasListeners()) {
-					ImageData imageCopy = (ImageData) image.clone();
-					loader.notifyListeners(
-						new ImageLoaderEvent(loader, imageCopy, pass - 2, false));
+					if (loader.incremental) {
+						/* The rows of a pass are copied down over the whole image */
+						loader.notifyListeners(
+							new ImageLoaderEvent(loader, image, pass - 2, false, 0, imageHeight));
+					} else {
+						ImageData imageCopy = (ImageData) image.clone();
+						loader.notifyListeners(
+							new ImageLoaderEvent(loader, imageCopy, pass - 2, false));
+					}
 				}
 			}
 		}
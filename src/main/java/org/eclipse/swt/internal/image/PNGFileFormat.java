@@ -429,7 +429,8 @@ void readInterlaceFrame(
 		lastRow = (lastRow == row1) ? row2 : row1;
 	}
 	setImageDataValues(data, imageData);
-	fireInterlacedFrameEvent(frameCount);
+	int rows = startRow < height ? (height - 1 - startRow) / rowInterval * rowInterval + 1 : 0;
+	fireInterlacedFrameEvent(frameCount, startRow, rows);
 }
 /**
  * Read the pixel data for an interlaced image from the
@@ -449,12 +450,17 @@ void readInterlacedImage(InputStream inputStream) throws IOException {
  * frame has been loaded.
  * finalFrame should be true if the image has finished
  * loading, false if there are more frames to come.
+ * The frame changed the rows from y to y + height.
  */
-void fireInterlacedFrameEvent(int frameCount) {
+void fireInterlacedFrameEvent(int frameCount, int y, int height) {
 	if (loader.hasListeners()) {
-		ImageData image = (ImageData) imageData.clone();
 		boolean finalFrame = frameCount == 6;
-		loader.notifyListeners(new ImageLoaderEvent(loader, image, frameCount, finalFrame));
+		if (loader.incremental) {
+			loader.notifyListeners(new ImageLoaderEvent(loader, imageData, frameCount, finalFrame, y, height));
+		} else {
+			ImageData image = (ImageData) imageData.clone();
+			loader.notifyListeners(new ImageLoaderEvent(loader, image, frameCount, finalFrame));
+		}
 	}
 }
 /**
@@ -16,9 +16,24 @@ public class PngDeflater {
 
 	static final int BASE = 65521;
 	static final int WINDOW = 32768;
+	static final int WINDOW_MASK = WINDOW - 1;
 	static final int MIN_LENGTH = 3;
-	static final int MAX_MATCHES = 32;
-	static final int HASH = 8209;
+	static final int MAX_LENGTH = 258;
+	static final int HASH_BITS = 15;
+	static final int HASH_MASK = (1 << HASH_BITS) - 1;
+	/* Matches of MIN_LENGTH bytes further away than this cost more than literals */
+	static final int TOO_FAR = 4096;
+	static final int HUFFMAN_ONLY = 2;
+	
+	/*
+	 * For each compression level from 1 to 9, the number of positions
+	 * looked at for a match, the length of a match that is good enough
+	 * to stop looking, and the length of a match below which a longer
+	 * match is looked for at the next position (0 to take every match).
+	 */
+	static final int[] MAX_CHAIN = {4, 8, 32, 16, 32, 128, 256, 1024, 4096};
+	static final int[] NICE_LENGTH = {8, 16, 32, 16, 32, 128, 128, 258, 258};
+	static final int[] MAX_LAZY = {0, 0, 0, 4, 16, 16, 32, 128, 258};
 	
 	byte[] in;
 	int inLength;
@@ -29,36 +44,48 @@ public class PngDeflater {
 	
 	int buffer, bitCount;
 	
-	Link[] hashtable = new Link[HASH];
-	Link[] window = new Link[WINDOW];
-	int nextWindow;
+	int level, strategy;
+	int maxChain, niceLength, maxLazy;
+	
+	/*
+	 * The hash chains: head holds the last position of each hash of three
+	 * bytes and prev holds, for each position in the window, the previous
+	 * position with the same hash, or -1 when there is none.
+	 */
+	int[] head, prev;
+	int matchDistance;
 
-static class Link {
+public PngDeflater() {
 
-	int hash, value;
-	Link previous, next;
-	
-	Link() {
-	
-		this.hash = 0;
-		this.value = 0;
-		this.previous = null;
-		this.next = null;
-	
+	this(-1, 0);
+
+}
+
+/**
+ * Create a deflater with the given compression level, from 0
+ * to 9 or -1 for the default, and strategy, which is one of the
+ * strategies of java.util.zip.Deflater.
+ */
+public PngDeflater(int level, int strategy) {
+
+	if (level < 0 || level > 9) level = 6;
+	this.level = level;
+	this.strategy = strategy;
+	if (level > 0) {
+		setMaxChain(MAX_CHAIN[level - 1]);
+		niceLength = NICE_LENGTH[level - 1];
+		maxLazy = MAX_LAZY[level - 1];
 	}
 
 }
 
-static class Match {
+/**
+ * Set the number of positions looked at for each match, which
+ * trades compression for speed.
+ */
+public void setMaxChain(int maxChain) {
 
-	int length, distance;
-	
-	Match(int length, int distance) {
-	
-		this.length = length;
-		this.distance = distance;
-	
-	}
+	this.maxChain = Math.max(1, maxChain);
 
 }
 
@@ -203,24 +230,50 @@ void writeInt(ByteArrayOutputStream baos, int theInt) {
 
 }
 
-void updateAdler(byte value) {
+void updateAdler(byte[] data, int length) {
 
 	int low = adler32 & 0xffff;
 	int high = (adler32 >> 16) & 0xffff;
-	int valueInt = value & 0xff;
-	low = (low + valueInt) % BASE;
-	high = (low + high) % BASE;
+	for (int i = 0; i < length;) {
+		// up to 3854 bytes can be summed before high overflows
+		int end = Math.min(length, i + 3854);
+		for (; i < end; i++) {
+			low += data[i] & 0xff;
+			high += low;
+		}
+		low %= BASE;
+		high %= BASE;
+	}
 	adler32 = (high << 16) | low;
 
 }
 
-int hash(byte[] bytes) {
+int hash(int position) {
+
+	return ((in[position] & 0xff) << 10 ^ (in[position + 1] & 0xff) << 5 ^ (in[position + 2] & 0xff)) & HASH_MASK;
+
+}
+
+/**
+ * Add the position to its hash chain, answering the previous
+ * position with the same hash or -1.
+ */
+int insertHash(int position) {
 
-	int hash = ((bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8) % HASH;
-	if (hash < 0) {
-		hash = hash + HASH;
+	int hash = hash(position);
+	int match = head[hash];
+	prev[position & WINDOW_MASK] = match;
+	head[hash] = position;
+	return match;
+
+}
+
+void insertHashes(int from, int to) {
+
+	int end = Math.min(to, inLength - MIN_LENGTH + 1);
+	for (int i = from; i < end; i++) {
+		insertHash(i);
 	}
-	return hash;
 
 }
 
@@ -341,194 +394,127 @@ void outputMatch(int length, int distance) {
 
 }
 
-Match findLongestMatch(int position, Link firstPosition) {
+/**
+ * Answer the length of the longest match for the bytes at position
+ * found by following the hash chain from the given match, or 0 when
+ * there is none, and store its distance in matchDistance.
+ */
+int findLongestMatch(int position, int match) {
 
-	Link link = firstPosition;
-	int numberOfMatches = 0;
-	Match bestMatch = new Match(-1, -1);
+	byte[] in = this.in;
+	int chain = maxChain;
+	int maxLength = Math.min(MAX_LENGTH, inLength - position);
+	int bestLength = MIN_LENGTH - 1;
 	
-	while (true) {
+	while (match >= 0 && position - match < WINDOW && chain-- > 0) {
 	
-		int matchPosition = link.value;
+		// check the byte that would make the match longer first
+		if (in[match + bestLength] == in[position + bestLength] && in[match] == in[position]) {
 		
-		if (position - matchPosition < WINDOW && matchPosition != 0) {
-
-			int i;
-			
-			for (i = 1; position + i < inLength; i++) {
-				if (in[position + i] != in[matchPosition + i]) {
-					break;
-				}
+			int length = 1;
+			while (length < maxLength && in[match + length] == in[position + length]) {
+				length++;
 			}
 			
-			if (i >= MIN_LENGTH) {
-			
-				if (i > bestMatch.length) {
-					bestMatch.length = i;
-					bestMatch.distance = position - matchPosition;
-				}
-				
-				numberOfMatches = numberOfMatches + 1;
-				
-				if (numberOfMatches == MAX_MATCHES) {
+			if (length > bestLength) {
+				bestLength = length;
+				matchDistance = position - match;
+				if (length >= niceLength || length == maxLength) {
 					break;
 				}
-			
 			}
-						
-		}
 		
-		link = link.next;
-		if (link == null) {
-			break;
 		}
+		
+		match = prev[match & WINDOW_MASK];
 	
 	}
 	
-	if (bestMatch.length < MIN_LENGTH || bestMatch.distance < 1 || bestMatch.distance > WINDOW) {
-		return null;
+	if (bestLength < MIN_LENGTH || (bestLength == MIN_LENGTH && matchDistance > TOO_FAR)) {
+		return 0;
 	}
 	
-	return bestMatch;	
-
-}
-
-void updateHashtable(int to, int from) {
-
-	byte[] data = new byte[3];
-	int hash;
-	Link temp;
-	
-	for (int i = to; i < from; i++) {
-		
-		if (i + MIN_LENGTH > inLength) {
-			break;
-		}
-		
-		data[0] = in[i];
-		data[1] = in[i + 1];
-		data[2] = in[i + 2];
-		
-		hash = hash(data);
-		
-		if (window[nextWindow].previous != null) {
-			window[nextWindow].previous.next = null;
-		}
-		else if (window[nextWindow].hash != 0) {
-			hashtable[window[nextWindow].hash].next = null;
-		}
-		
-		window[nextWindow].hash = hash;
-		window[nextWindow].value = i;
-		window[nextWindow].previous = null;
-		temp = window[nextWindow].next = hashtable[hash].next;
-		hashtable[hash].next = window[nextWindow];
-		if (temp != null) {
-			temp.previous = window[nextWindow];
-		}
-		
-		nextWindow = nextWindow + 1;
-		if (nextWindow == WINDOW) {
-			nextWindow = 0;
-		}
-			
-	}
+	return bestLength;
 
 }
 
 void compress() {
 
-	int position, newPosition;
-	byte[] data = new byte[3];
-	int hash;
-	for (int i = 0; i < HASH; i++) {
-		hashtable[i] = new Link();
-	}
-	for (int i = 0; i < WINDOW; i++) {
-		window[i] = new Link();
+	head = new int[HASH_MASK + 1];
+	prev = new int[WINDOW];
+	for (int i = 0; i < head.length; i++) {
+		head[i] = -1;
 	}
-	nextWindow = 0;
-	Link firstPosition;
-	Match match;
-	int deferredPosition = -1;
-	Match deferredMatch = null;
+	
+	// the match found at the previous position, whose output is
+	// deferred in case the match at this position is longer
+	int previousLength = 0, previousDistance = 0;
+	boolean literalAvailable = false;
 	
 	writeBits(0x01, 1); // BFINAL = 0x01 (final block)
 	writeBits(0x01, 2); // BTYPE = 0x01 (compression with fixed Huffman codes)
 	
-	// just output first byte so we never match at zero
-	outputLiteral(in[0]);
-	position = 1;
+	int position = 0;
 	
 	while (position < inLength) {
 	
-		if (inLength - position < MIN_LENGTH) {
-			outputLiteral(in[position]);
-			position = position + 1;
-			continue;
-		}
-		
-		data[0] = in[position];
-		data[1] = in[position + 1];
-		data[2] = in[position + 2];
-		
-		hash = hash(data);
-		firstPosition = hashtable[hash];
-		
-		match = findLongestMatch(position, firstPosition);
+		int length = 0, distance = 0;
 		
-		updateHashtable(position, position + 1);
+		if (position + MIN_LENGTH <= inLength) {
+			int match = insertHash(position);
+			if (match >= 0 && (maxLazy == 0 || previousLength < maxLazy)) {
+				length = findLongestMatch(position, match);
+				distance = matchDistance;
+			}
+		}
 		
-		if (match != null) {
+		if (maxLazy == 0) {
 		
-			if (deferredMatch != null) {
-				if (match.length > deferredMatch.length + 1) {
-					// output literal at deferredPosition
-					outputLiteral(in[deferredPosition]);
-					// defer this match
-					deferredPosition = position;
-					deferredMatch = match;
-					position = position + 1;
-				}
-				else {
-					// output deferredMatch
-					outputMatch(deferredMatch.length, deferredMatch.distance);
-					newPosition = deferredPosition + deferredMatch.length;
-					deferredPosition = -1;
-					deferredMatch = null;
-					updateHashtable(position + 1, newPosition);
-					position = newPosition;
-				}
+			// take every match as soon as it is found
+			if (length != 0) {
+				outputMatch(length, distance);
+				insertHashes(position + 1, position + length);
+				position = position + length;
 			}
 			else {
-				// defer this match
-				deferredPosition = position;
-				deferredMatch = match;
+				outputLiteral(in[position]);
 				position = position + 1;
 			}
+			continue;
+		
+		}
+		
+		if (previousLength != 0 && length <= previousLength) {
+		
+			// output the deferred match, which started at the previous position
+			outputMatch(previousLength, previousDistance);
+			int newPosition = position - 1 + previousLength;
+			insertHashes(position + 1, newPosition);
+			position = newPosition;
+			previousLength = 0;
+			literalAvailable = false;
 		
 		}
 		
 		else {
 		
-			// no match found
-			if (deferredMatch != null) {
-				outputMatch(deferredMatch.length, deferredMatch.distance);
-				newPosition = deferredPosition + deferredMatch.length;
-				deferredPosition = -1;
-				deferredMatch = null;
-				updateHashtable(position + 1, newPosition);
-				position = newPosition;
-			}
-			else {
-				outputLiteral(in[position]);
-				position = position + 1;
+			// the byte at the previous position has no better match than this one
+			if (literalAvailable) {
+				outputLiteral(in[position - 1]);
 			}
+			previousLength = length;
+			previousDistance = distance;
+			literalAvailable = true;
+			position = position + 1;
 		
 		}
 	
 	}
 	
+	if (literalAvailable) {
+		outputLiteral(in[position - 1]);
+	}
+	
 	writeBits(0, 7); // end of block code
 	alignToByte();
 
@@ -562,9 +548,10 @@ void store() {
 	int blockLength;
 	int BFINAL = 0x00; // BFINAL = 0x00 or 0x01 (if final block), BTYPE = 0x00 (no compression)
 	
-	while (length > 0) {
+	// empty input still needs a final block
+	do {
 	
-		if (length < 65535) {
+		if (length <= 65535) {
 			blockLength = length;
 			BFINAL = 0x01;
 		}
@@ -584,7 +571,7 @@ void store() {
 		length = length - blockLength;
 		start = start + blockLength;
 	
-	}
+	} while (length > 0);
 
 }
 
@@ -598,15 +585,17 @@ public byte[] deflate(byte[] input) {
 	bytes.write((byte) 0x9C); // compression level = 0x80 (default), check bits = 0x1C
 	
 	// compute checksum
-	for (int i = 0; i < inLength; i++) {
-		updateAdler(in[i]);
-	}
-	
-	//store();
+	updateAdler(in, inLength);
 	
-	//compressHuffmanOnly();
-	
-	compress();
+	if (level == 0) {
+		store();
+	}
+	else if (strategy == HUFFMAN_ONLY) {
+		compressHuffmanOnly();
+	}
+	else {
+		compress();
+	}
 	
 	// write checksum
 	writeInt(bytes, adler32);
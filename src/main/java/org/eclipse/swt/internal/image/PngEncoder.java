@@ -18,6 +18,7 @@ import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.graphics.ImageLoader;
 import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.internal.BandRunner;
 import org.eclipse.swt.internal.Compatibility;
 
 final class PngEncoder extends Object {
@@ -42,6 +43,24 @@ final class PngEncoder extends Object {
 	int filterMethod = 0;
 	int interlaceMethod = 0;
 	
+	/* Image data with fewer bytes per block is not split */
+	static final int BLOCK_BYTES = 128 * 1024;
+	static final int MAX_BLOCKS = Runtime.getRuntime().availableProcessors();
+	static final int WINDOW = 32768;
+	static final int ADLER_BASE = 65521;
+	
+static class DeflateBlock implements Runnable {
+	byte[] data;
+	int offset, length, dictionaryLength;
+	int level, strategy;
+	boolean finish;
+	byte[] result;
+
+	public void run() {
+		result = Compatibility.deflate(data, offset, length, dictionaryLength, level, strategy, finish);
+	}
+}
+	
 public PngEncoder(ImageLoader loader) {
 
 	this.loader = loader;
@@ -231,92 +250,292 @@ void writeTransparency() {
 
 void writeImageData() throws IOException {
 
-	ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
-	OutputStream os = Compatibility.newDeflaterOutputStream(baos);
-	if (os == null) os = baos;
+	int bytesPerPixel = colorType == 3 ? 1 : colorType == 6 ? 4 : 3;
+	int bytesPerRow = width * bytesPerPixel;
 	
-	if (colorType == 3) {
+	byte[] lineBytes = new byte[bytesPerRow];
+	byte[] previousBytes = new byte[bytesPerRow];
+	int[] lineData = colorType == 3 ? null : new int[width];
+	byte[] alphaData = colorType == 6 ? new byte[width] : null;
 	
-		byte[] lineData = new byte[width];
+	byte[] compressed;
+	int blocks = loader.parallel ? getBlockCount(bytesPerRow + 1, height) : 1;
+	
+	if (blocks > 1) {
+	
+		byte[] filtered = new byte[(bytesPerRow + 1) * height];
 		
 		for (int y = 0; y < height; y++) {
+		
+			getRow(y, lineBytes, lineData, alphaData);
+			filterRow(lineBytes, previousBytes, bytesPerPixel, filtered, y * (bytesPerRow + 1));
 			
-			int filter = 0;
-			os.write(filter);
-			
-			data.getPixels(0, y, width, lineData, 0);
-			
-			os.write(lineData);
+			byte[] temp = previousBytes;
+			previousBytes = lineBytes;
+			lineBytes = temp;
 		
 		}
+		
+		compressed = deflateBlocks(filtered, bytesPerRow + 1, blocks);
 	
 	}
 	
 	else {
 	
-		int[] lineData = new int[width];
-		byte[] alphaData = null;
-		if (colorType == 6) {
-			alphaData = new byte[width];
-		}
-		
-		int redMask = data.palette.redMask;
-		int redShift = data.palette.redShift;
-		int greenMask = data.palette.greenMask;
-		int greenShift = data.palette.greenShift;
-		int blueShift = data.palette.blueShift;
-		int blueMask = data.palette.blueMask;
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
+		OutputStream os = Compatibility.newDeflaterOutputStream(baos, loader.compression, loader.compressionStrategy);
+		if (os == null) os = baos;
 		
-		byte[] lineBytes = new byte[width * (colorType == 6 ? 4 : 3)];
+		byte[] filteredBytes = new byte[bytesPerRow + 1];
 		
 		for (int y = 0; y < height; y++) {
 		
-			int filter = 0;
-			os.write(filter);
+			getRow(y, lineBytes, lineData, alphaData);
+			filterRow(lineBytes, previousBytes, bytesPerPixel, filteredBytes, 0);
 			
-			data.getPixels(0, y, width, lineData, 0);
+			os.write(filteredBytes);
 			
-			if (colorType == 6) {
-				data.getAlphas(0, y, width, alphaData, 0);
-			}
-			
-			int offset = 0;
-			for (int x = 0; x < lineData.length; x++) {
-			
-				int pixel = lineData[x];
-				
-				int r = pixel & redMask;
-				lineBytes[offset++] = (byte) ((redShift < 0) ? r >>> -redShift
-						: r << redShift);
-				int g = pixel & greenMask;
-				lineBytes[offset++] = (byte) ((greenShift < 0) ? g >>> -greenShift
-						: g << greenShift);
-				int b = pixel & blueMask;
-				lineBytes[offset++] = (byte) ((blueShift < 0) ? b >>> -blueShift
-						: b << blueShift);
-				
-				if (colorType == 6) {
-					lineBytes[offset++] = alphaData[x];
-				}
-			
-			}
-			
-			os.write(lineBytes);
+			byte[] temp = previousBytes;
+			previousBytes = lineBytes;
+			lineBytes = temp;
+		
+		}
+		
+		os.flush();
+		os.close();
+		
+		compressed = baos.toByteArray();
+		if (os == baos) {
+			PngDeflater deflater = new PngDeflater(loader.compression, loader.compressionStrategy);
+			compressed = deflater.deflate(compressed);
+		}
+	
+	}
+	
+	writeChunk(TAG_IDAT, compressed);
+
+}
+
+/**
+ * Store the bytes of the given row of the image, as they
+ * are written before filtering, into lineBytes.
+ */
+void getRow(int y, byte[] lineBytes, int[] lineData, byte[] alphaData) {
+
+	if (colorType == 3) {
+	
+		data.getPixels(0, y, width, lineBytes, 0);
+		return;
+	
+	}
+	
+	int redMask = data.palette.redMask;
+	int redShift = data.palette.redShift;
+	int greenMask = data.palette.greenMask;
+	int greenShift = data.palette.greenShift;
+	int blueShift = data.palette.blueShift;
+	int blueMask = data.palette.blueMask;
+	
+	data.getPixels(0, y, width, lineData, 0);
+	
+	if (colorType == 6) {
+		data.getAlphas(0, y, width, alphaData, 0);
+	}
+	
+	int offset = 0;
+	for (int x = 0; x < lineData.length; x++) {
+	
+		int pixel = lineData[x];
+		
+		int r = pixel & redMask;
+		lineBytes[offset++] = (byte) ((redShift < 0) ? r >>> -redShift
+				: r << redShift);
+		int g = pixel & greenMask;
+		lineBytes[offset++] = (byte) ((greenShift < 0) ? g >>> -greenShift
+				: g << greenShift);
+		int b = pixel & blueMask;
+		lineBytes[offset++] = (byte) ((blueShift < 0) ? b >>> -blueShift
+				: b << blueShift);
+		
+		if (colorType == 6) {
+			lineBytes[offset++] = alphaData[x];
+		}
+	
+	}
+
+}
+
+/**
+ * Write the filter type followed by the filtered bytes of
+ * a row into filtered at the given offset. Palette images
+ * are not filtered, as recommended by the PNG specification.
+ * Other images use the filter that gives the smallest sum of
+ * the filtered bytes taken as signed values, which tends to
+ * be the one that compresses best.
+ */
+void filterRow(byte[] lineBytes, byte[] previousBytes, int bytesPerPixel, byte[] filtered, int offset) {
+
+	int length = lineBytes.length;
+	int filter = PngIhdrChunk.FILTER_NONE;
+	
+	if (colorType != 3) {
+	
+		int sumNone = 0, sumSub = 0, sumUp = 0, sumAverage = 0, sumPaeth = 0;
+		
+		for (int i = 0; i < length; i++) {
+		
+			int current = lineBytes[i] & 0xFF;
+			int left = i >= bytesPerPixel ? lineBytes[i - bytesPerPixel] & 0xFF : 0;
+			int above = previousBytes[i] & 0xFF;
+			int aboveLeft = i >= bytesPerPixel ? previousBytes[i - bytesPerPixel] & 0xFF : 0;
 			
+			sumNone += filterCost(current);
+			sumSub += filterCost(current - left);
+			sumUp += filterCost(current - above);
+			sumAverage += filterCost(current - ((left + above) >> 1));
+			sumPaeth += filterCost(current - paethPredictor(left, above, aboveLeft));
+		
+		}
+		
+		int sum = sumNone;
+		if (sumSub < sum) {
+			filter = PngIhdrChunk.FILTER_SUB;
+			sum = sumSub;
 		}
+		if (sumUp < sum) {
+			filter = PngIhdrChunk.FILTER_UP;
+			sum = sumUp;
+		}
+		if (sumAverage < sum) {
+			filter = PngIhdrChunk.FILTER_AVERAGE;
+			sum = sumAverage;
+		}
+		if (sumPaeth < sum) {
+			filter = PngIhdrChunk.FILTER_PAETH;
+		}
+	
+	}
+	
+	filtered[offset++] = (byte) filter;
+	
+	for (int i = 0; i < length; i++) {
+	
+		int current = lineBytes[i] & 0xFF;
+		int left = i >= bytesPerPixel ? lineBytes[i - bytesPerPixel] & 0xFF : 0;
+		int above = previousBytes[i] & 0xFF;
+		int aboveLeft = i >= bytesPerPixel ? previousBytes[i - bytesPerPixel] & 0xFF : 0;
+		
+		switch (filter) {
+			case PngIhdrChunk.FILTER_NONE: break;
+			case PngIhdrChunk.FILTER_SUB: current -= left; break;
+			case PngIhdrChunk.FILTER_UP: current -= above; break;
+			case PngIhdrChunk.FILTER_AVERAGE: current -= (left + above) >> 1; break;
+			case PngIhdrChunk.FILTER_PAETH: current -= paethPredictor(left, above, aboveLeft); break;
+		}
+		
+		filtered[offset + i] = (byte) current;
+	
+	}
+
+}
+
+/**
+ * Answer the magnitude of a filtered byte taken as a
+ * signed value.
+ */
+static int filterCost(int value) {
+
+	value &= 0xFF;
+	return value < 128 ? value : 256 - value;
+
+}
+
+static int paethPredictor(int a, int b, int c) {
+
+	int p = a + b - c;
+	int pa = Math.abs(p - a);
+	int pb = Math.abs(p - b);
+	int pc = Math.abs(p - c);
+	if (pa <= pb && pa <= pc) return a;
+	if (pb <= pc) return b;
+	return c;
+
+}
+
+/**
+ * Answer the number of blocks of rows to compress in
+ * separate threads, which is 1 when the image data is
+ * too small to be worth splitting.
+ */
+static int getBlockCount(int bytesPerRow, int height) {
+
+	return (int) Math.max(1, Math.min(Math.min(MAX_BLOCKS, height), (long) bytesPerRow * height / BLOCK_BYTES));
+
+}
+
+/**
+ * Compress the filtered rows into a zlib stream, splitting
+ * them in blocks of rows that are compressed in separate
+ * threads. Each block but the last ends with a sync flush,
+ * and starts with the end of the previous block as its
+ * dictionary, so that the compressed blocks can be joined
+ * into one stream.
+ */
+byte[] deflateBlocks(byte[] filtered, int bytesPerRow, int blocks) throws IOException {
+
+	DeflateBlock[] runnables = new DeflateBlock[blocks];
+	
+	for (int i = 0; i < blocks; i++) {
+	
+		DeflateBlock block = new DeflateBlock();
+		block.data = filtered;
+		block.offset = (int) ((long) height * i / blocks) * bytesPerRow;
+		block.length = (int) ((long) height * (i + 1) / blocks) * bytesPerRow - block.offset;
+		block.dictionaryLength = Math.min(block.offset, WINDOW);
+		block.level = loader.compression;
+		block.strategy = loader.compressionStrategy;
+		block.finish = i == blocks - 1;
+		runnables[i] = block;
 	
 	}
 	
-	os.flush();
-	os.close();
+	BandRunner.run(runnables);
+	
+	ByteArrayOutputStream baos = new ByteArrayOutputStream(filtered.length / 2 + 64);
+	
+	int level = loader.compression;
+	int flags = level == SWT.DEFAULT || level == 6 ? 2 : level < 2 ? 0 : level < 6 ? 1 : 3;
+	int header = (0x78 << 8) | (flags << 6);
+	header += 31 - (header % 31);
+	writeShort(baos, header);
+	
+	for (int i = 0; i < blocks; i++) {
+	
+		DeflateBlock block = runnables[i];
+		if (block.result == null) SWT.error(SWT.ERROR_UNSUPPORTED_FORMAT);
+		baos.write(block.result, 0, block.result.length);
 	
-	byte[] compressed = baos.toByteArray();
-	if (os == baos) {
-		PngDeflater deflater = new PngDeflater();
-		compressed = deflater.deflate(compressed);
 	}
 	
-	writeChunk(TAG_IDAT, compressed);
+	writeInt(baos, adler32(filtered));
+	return baos.toByteArray();
+
+}
+
+static int adler32(byte[] buffer) {
+
+	int low = 1, high = 0;
+	for (int i = 0; i < buffer.length;) {
+		/* Up to 3854 bytes can be summed before high overflows */
+		int end = Math.min(buffer.length, i + 3854);
+		for (; i < end; i++) {
+			low += buffer[i] & 0xff;
+			high += low;
+		}
+		low %= ADLER_BASE;
+		high %= ADLER_BASE;
+	}
+	return (high << 16) | low;
 
 }
 
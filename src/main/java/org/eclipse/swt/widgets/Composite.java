@@ -1500,22 +1500,30 @@ int XExposure (int w, int client_data, int call_data, int continue_to_dispatch)
 	OS.XClipBox (damageRgn, rect);
 	GC paintGC = null;
 	Image image = null;
+	int width = 0, height = 0;
 	if ((style & SWT.DOUBLE_BUFFERED) != 0) {
 		Rectangle client = _getClientArea ();
-		int width = Math.max (1, Math.min (client.width, rect.x + rect.width));
-		int height = Math.max (1, Math.min (client.height, rect.y + rect.height));
-		image = new Image (display, width, height);
+		width = Math.max (1, Math.min (client.width, rect.x + rect.width));
+		height = Math.max (1, Math.min (client.height, rect.y + rect.height));
+		image = display.getBackBuffer (width, height);
 		paintGC = gc;
 		GCData imageGCData = new GCData ();
 		imageGCData.damageRgn = damageRgn; 
 		gc = GC.motif_new (image, imageGCData);
-		gc.setForeground (getForeground ());
-		gc.setBackground (getBackground ());
-		gc.setFont (getFont ());
 		if ((style & SWT.NO_BACKGROUND) != 0) {
 			/* This code is intentionaly commented because it is too slow to copy bits from the screen */
 //			paintGC.copyArea(image, 0, 0);
-		} else {
+			/*
+			* The back buffer is reused from paint to paint, so clear it
+			* to white (the default background of an image GC) as a new
+			* image would be instead of showing what was painted last.
+			*/
+			gc.fillRectangle (0, 0, width, height);
+		}
+		gc.setForeground (getForeground ());
+		gc.setBackground (getBackground ());
+		gc.setFont (getFont ());
+		if ((style & SWT.NO_BACKGROUND) == 0) {
 			drawBackground (gc, 0, 0, width, height, 0, 0);
 		}
 	}
@@ -1530,9 +1538,9 @@ int XExposure (int w, int client_data, int call_data, int continue_to_dispatch)
 	if ((style & SWT.DOUBLE_BUFFERED) != 0) {
 		gc.dispose ();
 		if (!isDisposed ()) {
-			paintGC.drawImage (image, 0, 0);
+			paintGC.drawImage (image, 0, 0, width, height, 0, 0, width, height);
 		}
-		image.dispose ();
+		display.releaseBackBuffer (image, width, height);
 		gc = paintGC;
 	}	
 	gc.dispose ();
@@ -116,6 +116,7 @@ public class Display extends Device {
 	int [] indexTable, userData;
 	Shell [] shellTable;
 	Widget [] widgetTable;
+	HandleTable handleTable = new HandleTable ();
 	static final int GROW_SIZE = 1024;
 	
 	/* Focus */
@@ -166,6 +167,7 @@ public class Display extends Device {
 	
 	/* Sync/Async Widget Communication */
 	Synchronizer synchronizer = new Synchronizer (this);
+	int asyncExecCount = 1, asyncExecTime;
 	Thread thread;
 	
 	/* Display Shutdown */
@@ -179,11 +181,26 @@ public class Display extends Device {
 	Tray tray;
 	
 	/* Timers */
-	int [] timerIds;
 	Runnable [] timerList;
+	long [] timerTimes;
+	int [] timerNext, timerPrev, timerHashNext;
+	int [] timerWheel, timerHash;
+	int timerFree = -1, timerCount, timerId;
+	long timerTime, timerDeadline, timerOrigin;
 	Callback timerCallback;
 	int timerProc;
+	static final int TIMER_TICK = 8;
+	static final int TIMER_WHEEL_SIZE = 512;
 	
+	/* Double Buffering */
+	Image [] backBuffers = new Image [BACK_BUFFER_COUNT];
+	int [] backBufferWidths = new int [BACK_BUFFER_COUNT], backBufferHeights = new int [BACK_BUFFER_COUNT];
+	int backBufferCount, backBufferPixels;
+	int backBufferHits, backBufferMisses;
+	static final int BACK_BUFFER_COUNT = 8;
+	static final int BACK_BUFFER_LIMIT = 4 * 1024 * 1024;
+	static final int BACK_BUFFER_ROUND = 64;
+
 	/* Widget Timers */
 	Callback windowTimerCallback;
 	int windowTimerProc;
@@ -436,6 +453,7 @@ void addMouseHoverTimeOut (int handle) {
 }
 void addWidget (int handle, Widget widget) {
 	if (handle == 0) return;
+	handleTable.put (handle, widget);
 	if (OS.XtIsSubclass (handle, OS.shellWidgetClass ())) {
 		for (int i=0; i<shellTable.length; i++) {
 			if (shellTable [i] == null) {
@@ -604,6 +622,44 @@ public void asyncExec (Runnable runnable) {
 		synchronizer.asyncExec (runnable);
 	}
 }
+/**
+ * Causes the <code>run()</code> method of the runnable to
+ * be invoked by the user-interface thread at the next 
+ * reasonable opportunity, unless a runnable that was posted
+ * with the same key is still waiting to be run.  In that case,
+ * the new runnable replaces the waiting one and runs in its
+ * place, so that only the most recent of a series of updates
+ * for the same key is run.  The caller of this method continues 
+ * to run in parallel, and is not notified when the
+ * runnable has completed.
+ * <p>
+ * Note that at the time the runnable is invoked, widgets 
+ * that have the receiver as their display may have been
+ * disposed. Therefore, it is necessary to check for this
+ * case inside the runnable before accessing the widget.
+ * </p>
+ *
+ * @param key the key that identifies the runnables that supersede each other (cannot be null)
+ * @param runnable code to run on the user-interface thread (cannot be null)
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT - if the key or the runnable is null</li>
+ * </ul>
+ * @exception SWTException <ul>
+ *    <li>ERROR_DEVICE_DISPOSED - if the receiver has been disposed</li>
+ * </ul>
+ * 
+ * @see #asyncExec
+ *
+ * @since 3.7
+ */
+public void asyncExecCoalesced (Object key, Runnable runnable) {
+	if (key == null || runnable == null) error (SWT.ERROR_NULL_ARGUMENT);
+	synchronized (Device.class) {
+		if (isDisposed ()) error (SWT.ERROR_DEVICE_DISPOSED);
+		synchronizer.asyncExecCoalesced (key, runnable);
+	}
+}
 /**
  * Causes the system hardware to emit a short sound
  * (if it supports this capability).
@@ -1262,6 +1318,28 @@ public Shell getActiveShell () {
 	} while ((handle = OS.XtParent (handle)) != 0);
 	return null;
 }
+/*
+ * Returns an image that is at least the specified size, to be used as the
+ * back buffer of a DOUBLE_BUFFERED paint.  Sizes are rounded up to a multiple
+ * of BACK_BUFFER_ROUND so that a control that is painted repeatedly gets the
+ * same pixmap back from the pool instead of allocating a new one on the X
+ * server.  The contents of a pooled image are undefined.  The image must be
+ * returned with releaseBackBuffer() when the paint is done.
+ */
+Image getBackBuffer (int width, int height) {
+	width = roundBackBufferSize (width);
+	height = roundBackBufferSize (height);
+	for (int i=0; i<backBufferCount; i++) {
+		if (backBufferWidths [i] == width && backBufferHeights [i] == height) {
+			Image image = backBuffers [i];
+			removeBackBuffer (i);
+			backBufferHits++;
+			return image;
+		}
+	}
+	backBufferMisses++;
+	return new Image (this, width, height);
+}
 /**
  * Returns the display which the currently running thread is
  * the user-interface thread for, or null if the currently
@@ -1447,6 +1525,28 @@ public Object getData () {
 	checkDevice ();
 	return data;
 }
+/**
+ * Returns a <code>DeviceData</code> based on the receiver.
+ * Modifications made to this <code>DeviceData</code> will not
+ * affect the receiver. In addition to the data of the device,
+ * it holds the hit and miss counts of the pool of back buffers
+ * used to paint <code>DOUBLE_BUFFERED</code> controls.
+ *
+ * @return a <code>DeviceData</code> containing the display's data and attributes
+ *
+ * @exception SWTException <ul>
+ *    <li>ERROR_THREAD_INVALID_ACCESS - if not called from the thread that created the receiver</li>
+ *    <li>ERROR_DEVICE_DISPOSED - if the receiver has been disposed</li>
+ * </ul>
+ *
+ * @see DeviceData
+ */
+public DeviceData getDeviceData () {
+	DeviceData data = super.getDeviceData ();
+	data.backBufferHits = backBufferHits;
+	data.backBufferMisses = backBufferMisses;
+	return data;
+}
 /**
  * Returns the button dismissal alignment, one of <code>LEFT</code> or <code>RIGHT</code>.
  * The button dismissal alignment is the ordering that should be used when positioning the
@@ -2005,6 +2105,8 @@ public Thread getThread () {
 }
 Widget getWidget (int handle) {
 	if (handle == 0) return null;
+	Widget widget = handleTable.get (handle);
+	if (widget != null) return widget;
 	if (OS.XtIsSubclass (handle, OS.shellWidgetClass ())) {
 		for (int i=0; i<shellTable.length; i++) {
 			Widget shell = shellTable [i];
@@ -2176,6 +2278,7 @@ void initializeDisplay () {
 	windowTimerCallback = new Callback (this, "windowTimerProc", 2); //$NON-NLS-1$
 	windowTimerProc = windowTimerCallback.getAddress ();
 	if (windowTimerProc == 0) error (SWT.ERROR_NO_MORE_CALLBACKS);
+	timerOrigin = System.nanoTime ();
 	timerCallback = new Callback (this, "timerProc", 2); //$NON-NLS-1$
 	timerProc = timerCallback.getAddress ();
 	if (timerProc == 0) error (SWT.ERROR_NO_MORE_CALLBACKS);
@@ -2988,6 +3091,14 @@ void releaseDisplay () {
 	}
 	cursors = null;
 
+	/* Dispose the back buffers */
+	for (int i=0; i<backBufferCount; i++) {
+		backBuffers [i].dispose ();
+	}
+	backBuffers = null;
+	backBufferWidths = backBufferHeights = null;
+	backBufferCount = backBufferPixels = 0;
+
 	/* Destroy the hidden Override shell parent */
 	if (shellHandle != 0) {
 		if (!OS.IsSunOS) {
@@ -3003,13 +3114,11 @@ void releaseDisplay () {
 	caretCallback = null;
 	
 	/* Dispose the timer callback */
-	if (timerIds != null) {
-		for (int i=0; i<timerIds.length; i++) {
-			if (timerIds [i] != 0) OS.XtRemoveTimeOut (timerIds [i]);
-		}
-	}
-	timerIds = null;
+	if (timerId != 0) OS.XtRemoveTimeOut (timerId);
+	timerId = timerCount = 0;
 	timerList = null;
+	timerTimes = null;
+	timerNext = timerPrev = timerHashNext = timerWheel = timerHash = null;
 	timerProc = 0;
 	timerCallback.dispose ();
 	timerCallback = null;
@@ -3086,11 +3195,44 @@ void releaseDisplay () {
 	eventTable = filterTable = null;
 	indexTable = userData = timeout = null;
 	widgetTable = shellTable = null;
+	handleTable = null;
 	xExposeEvent = null;
 	xConfigureEvent = null;
 	data = null;
 	values = keys = null;
 }
+/*
+ * Returns an image that was answered by getBackBuffer() to the pool.  The
+ * pool is kept in most recently used order, and the least recently used
+ * images are disposed when there are more than BACK_BUFFER_COUNT images or
+ * more than BACK_BUFFER_LIMIT pixels in the pool.
+ */
+void releaseBackBuffer (Image image, int width, int height) {
+	if (backBuffers == null) {
+		image.dispose ();
+		return;
+	}
+	width = roundBackBufferSize (width);
+	height = roundBackBufferSize (height);
+	if (backBufferCount == backBuffers.length) {
+		Image lastImage = backBuffers [backBufferCount - 1];
+		removeBackBuffer (backBufferCount - 1);
+		lastImage.dispose ();
+	}
+	System.arraycopy (backBuffers, 0, backBuffers, 1, backBufferCount);
+	System.arraycopy (backBufferWidths, 0, backBufferWidths, 1, backBufferCount);
+	System.arraycopy (backBufferHeights, 0, backBufferHeights, 1, backBufferCount);
+	backBuffers [0] = image;
+	backBufferWidths [0] = width;
+	backBufferHeights [0] = height;
+	backBufferCount++;
+	backBufferPixels += width * height;
+	while (backBufferPixels > BACK_BUFFER_LIMIT && backBufferCount > 1) {
+		Image lastImage = backBuffers [backBufferCount - 1];
+		removeBackBuffer (backBufferCount - 1);
+		lastImage.dispose ();
+	}
+}
 void releaseToolTipHandle (int handle) {
 	if (mouseHoverHandle == handle) removeMouseHoverTimeOut ();
 	if (toolTipHandle != 0) {
@@ -3099,12 +3241,24 @@ void releaseToolTipHandle (int handle) {
 		if (handle == shellParent) toolTipHandle = 0;
 	}
 }
+void removeBackBuffer (int index) {
+	backBufferPixels -= backBufferWidths [index] * backBufferHeights [index];
+	int length = --backBufferCount - index;
+	System.arraycopy (backBuffers, index + 1, backBuffers, index, length);
+	System.arraycopy (backBufferWidths, index + 1, backBufferWidths, index, length);
+	System.arraycopy (backBufferHeights, index + 1, backBufferHeights, index, length);
+	backBuffers [backBufferCount] = null;
+}
 void removeMouseHoverTimeOut () {
 	if (mouseHoverID != 0) OS.XtRemoveTimeOut (mouseHoverID);
 	mouseHoverID = mouseHoverHandle = 0;
 }
+int roundBackBufferSize (int size) {
+	return (size + BACK_BUFFER_ROUND - 1) / BACK_BUFFER_ROUND * BACK_BUFFER_ROUND;
+}
 Widget removeWidget (int handle) {
 	if (handle == 0) return null;
+	handleTable.remove (handle);
 	if (OS.XtIsSubclass (handle, OS.shellWidgetClass ())) {
 		for (int i=0; i<shellTable.length; i++) {
 			Widget shell = shellTable [i];
@@ -3197,6 +3351,9 @@ public void removeListener (int eventType, Listener listener) {
 	eventTable.unhook (eventType, listener);
 }
 boolean runAsyncMessages (boolean all) {
+	if (!all && asyncExecCount > 1) {
+		return synchronizer.runAsyncMessages (asyncExecCount, asyncExecTime);
+	}
 	return synchronizer.runAsyncMessages (all);
 }
 boolean runDeferredEvents () {
@@ -3543,6 +3700,38 @@ public void setData (Object data) {
 	checkDevice ();
 	this.data = data;
 }
+/**
+ * Sets the maximum number of runnables posted by <code>asyncExec</code>
+ * or <code>syncExec</code> that are run by a single call to
+ * <code>readAndDispatch</code>, and the number of milliseconds after
+ * which no more runnables are started by that call.  By default, one
+ * runnable is run per call.  Running several runnables per call reduces
+ * the overhead of dispatching when background threads post many
+ * small updates, at the expense of the responsiveness to user input
+ * while they run.
+ *
+ * @param count the maximum number of runnables run per call (must be positive)
+ * @param time the time limit in milliseconds, or zero for no limit
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_INVALID_ARGUMENT - if the count is not positive or the time is negative</li>
+ * </ul>
+ * @exception SWTException <ul>
+ *    <li>ERROR_THREAD_INVALID_ACCESS - if not called from the thread that created the receiver</li>
+ *    <li>ERROR_DEVICE_DISPOSED - if the receiver has been disposed</li>
+ * </ul>
+ *
+ * @see #asyncExec
+ * @see #readAndDispatch
+ *
+ * @since 3.7
+ */
+public void setAsyncExecLimit (int count, int time) {
+	checkDevice ();
+	if (count <= 0 || time < 0) error (SWT.ERROR_INVALID_ARGUMENT);
+	asyncExecCount = count;
+	asyncExecTime = time;
+}
 /**
  * Sets the synchronizer used by the display to be
  * the argument, which can not be null.
@@ -3753,6 +3942,77 @@ int textWidth (String string, Font font) {
 	OS.XmStringFree (xmString);
 	return width;
 }
+int findTimer (Runnable runnable) {
+	if (timerCount == 0) return -1;
+	int index = timerHash [System.identityHashCode (runnable) & (timerList.length - 1)];
+	while (index != -1 && timerList [index] != runnable) index = timerHashNext [index];
+	return index;
+}
+/*
+ * Returns the earliest time of the timers.  The buckets of the timer wheel
+ * are visited in time order, so the first bucket that has a timer within
+ * the current rotation of the wheel holds the earliest time.  When all of
+ * the timers are more than one rotation away, every timer is checked.
+ */
+long nextTimerTime () {
+	long result = Long.MAX_VALUE;
+	long start = timerTime / TIMER_TICK;
+	for (long tick=start; tick<start+TIMER_WHEEL_SIZE; tick++) {
+		int index = timerWheel [(int) (tick & (TIMER_WHEEL_SIZE - 1))];
+		while (index != -1) {
+			long time = timerTimes [index];
+			if (time / TIMER_TICK <= tick) result = Math.min (result, time);
+			index = timerNext [index];
+		}
+		if (result != Long.MAX_VALUE) return result;
+	}
+	for (int i=0; i<TIMER_WHEEL_SIZE; i++) {
+		int index = timerWheel [i];
+		while (index != -1) {
+			result = Math.min (result, timerTimes [index]);
+			index = timerNext [index];
+		}
+	}
+	return result;
+}
+void removeTimer (int index) {
+	/* Unlink the timer from its bucket */
+	int next = timerNext [index], prev = timerPrev [index];
+	if (next != -1) timerPrev [next] = prev;
+	if (prev != -1) {
+		timerNext [prev] = next;
+	} else {
+		timerWheel [(int) ((timerTimes [index] / TIMER_TICK) & (TIMER_WHEEL_SIZE - 1))] = next;
+	}
+	
+	/* Unlink the timer from its hash chain */
+	int hash = System.identityHashCode (timerList [index]) & (timerList.length - 1);
+	if (timerHash [hash] == index) {
+		timerHash [hash] = timerHashNext [index];
+	} else {
+		int i = timerHash [hash];
+		while (timerHashNext [i] != index) i = timerHashNext [i];
+		timerHashNext [i] = timerHashNext [index];
+	}
+	
+	timerList [index] = null;
+	timerNext [index] = timerFree;
+	timerFree = index;
+	timerCount--;
+}
+/*
+ * Replaces the Xt timeout of the display with one that expires at the
+ * specified time.  All of the timers share this single timeout, which
+ * is always set for the earliest time of the timers (or earlier, after
+ * a timer is cancelled).
+ */
+void scheduleTimer (long time, long now) {
+	if (timerId != 0) OS.XtRemoveTimeOut (timerId);
+	int xtContext = OS.XtDisplayToApplicationContext (xDisplay);
+	int delay = (int) Math.max (0, Math.min (Integer.MAX_VALUE, time - now));
+	timerId = OS.XtAppAddTimeOut (xtContext, delay, timerProc, 0);
+	timerDeadline = time;
+}
 /**
  * Causes the <code>run()</code> method of the runnable to
  * be invoked by the user-interface thread after the specified
@@ -3781,48 +4041,142 @@ int textWidth (String string, Font font) {
 public void timerExec (int milliseconds, Runnable runnable) {
 	checkDevice ();
 	if (runnable == null) error (SWT.ERROR_NULL_ARGUMENT);
-	if (timerList == null) timerList = new Runnable [4];
-	if (timerIds == null) timerIds = new int [4];
-	int index = 0;
-	while (index < timerList.length) {
-		if (timerList [index] == runnable) break;
-		index++;
-	}
-	if (index != timerList.length) {
-		OS.XtRemoveTimeOut (timerIds [index]);
-		timerList [index] = null;
-		timerIds [index] = 0;
-		if (milliseconds < 0) return;
-	} else {
-		if (milliseconds < 0) return;
-		index = 0;
-		while (index < timerList.length) {
-			if (timerList [index] == null) break;
-			index++;
+	int index = findTimer (runnable);
+	if (index != -1) removeTimer (index);
+	if (milliseconds < 0) return;
+	long now = timerClock ();
+	if (timerCount == 0) timerTime = now;
+	long time = now + milliseconds;
+	if (timerFree == -1) {
+		int length = timerList == null ? 0 : timerList.length;
+		int newLength = Math.max (16, length * 2);
+		Runnable [] newTimerList = new Runnable [newLength];
+		long [] newTimerTimes = new long [newLength];
+		int [] newTimerNext = new int [newLength];
+		int [] newTimerPrev = new int [newLength];
+		if (length != 0) {
+			System.arraycopy (timerList, 0, newTimerList, 0, length);
+			System.arraycopy (timerTimes, 0, newTimerTimes, 0, length);
+			System.arraycopy (timerNext, 0, newTimerNext, 0, length);
+			System.arraycopy (timerPrev, 0, newTimerPrev, 0, length);
+		} else {
+			timerWheel = new int [TIMER_WHEEL_SIZE];
+			for (int i=0; i<TIMER_WHEEL_SIZE; i++) timerWheel [i] = -1;
 		}
-		if (index == timerList.length) {
-			Runnable [] newTimerList = new Runnable [timerList.length + 4];
-			System.arraycopy (timerList, 0, newTimerList, 0, timerList.length);
-			timerList = newTimerList;
-			int [] newTimerIds = new int [timerIds.length + 4];
-			System.arraycopy (timerIds, 0, newTimerIds, 0, timerIds.length);
-			timerIds = newTimerIds;
+		for (int i=length; i<newLength; i++) {
+			newTimerNext [i] = i + 1 < newLength ? i + 1 : -1;
+		}
+		timerList = newTimerList;
+		timerTimes = newTimerTimes;
+		timerNext = newTimerNext;
+		timerPrev = newTimerPrev;
+		timerFree = length;
+		/* Rehash the runnables */
+		timerHash = new int [newLength];
+		timerHashNext = new int [newLength];
+		for (int i=0; i<newLength; i++) timerHash [i] = -1;
+		for (int i=0; i<length; i++) {
+			int hash = System.identityHashCode (timerList [i]) & (newLength - 1);
+			timerHashNext [i] = timerHash [hash];
+			timerHash [hash] = i;
 		}
 	}
-	int xtContext = OS.XtDisplayToApplicationContext (xDisplay);
-	int timerId = OS.XtAppAddTimeOut (xtContext, milliseconds, timerProc, index);
-	if (timerId != 0) {
-		timerIds [index] = timerId;
-		timerList [index] = runnable;
-	}
+	index = timerFree;
+	timerFree = timerNext [index];
+	timerList [index] = runnable;
+	timerTimes [index] = time;
+	int bucket = (int) ((time / TIMER_TICK) & (TIMER_WHEEL_SIZE - 1));
+	timerPrev [index] = -1;
+	timerNext [index] = timerWheel [bucket];
+	if (timerWheel [bucket] != -1) timerPrev [timerWheel [bucket]] = index;
+	timerWheel [bucket] = index;
+	int hash = System.identityHashCode (runnable) & (timerList.length - 1);
+	timerHashNext [index] = timerHash [hash];
+	timerHash [hash] = index;
+	timerCount++;
+	if (timerId == 0 || time < timerDeadline) scheduleTimer (time, now);
+}
+/*
+ * Returns the time of the timers in milliseconds.  The time is measured
+ * from the creation of the display with a monotonic clock, so changes
+ * to the wall clock neither delay the timers nor make them fire early.
+ */
+long timerClock () {
+	return (System.nanoTime () - timerOrigin) / 1000000;
 }
 int timerProc (int index, int id) {
+	timerId = 0;
 	if (timerList == null) return 0;
-	if (0 <= index && index < timerList.length) {
-		Runnable runnable = timerList [index];
-		timerList [index] = null;
-		timerIds [index] = 0;
-		if (runnable != null) runnable.run ();
+	long now = timerClock ();
+	
+	/* Collect the expired runnables from the buckets that were passed */
+	Runnable [] runnables = null;
+	long [] times = null;
+	int count = 0;
+	long start = timerTime / TIMER_TICK, end = now / TIMER_TICK;
+	if (end - start >= TIMER_WHEEL_SIZE) start = end - TIMER_WHEEL_SIZE + 1;
+	for (long tick=start; tick<=end; tick++) {
+		int i = timerWheel [(int) (tick & (TIMER_WHEEL_SIZE - 1))];
+		while (i != -1) {
+			if (timerTimes [i] <= now) {
+				if (runnables == null) {
+					runnables = new Runnable [4];
+					times = new long [4];
+				}
+				if (count == runnables.length) {
+					Runnable [] newRunnables = new Runnable [count * 2];
+					System.arraycopy (runnables, 0, newRunnables, 0, count);
+					runnables = newRunnables;
+					long [] newTimes = new long [count * 2];
+					System.arraycopy (times, 0, newTimes, 0, count);
+					times = newTimes;
+				}
+				/* Keep the expired runnables sorted by time */
+				int j = count++;
+				while (j > 0 && times [j - 1] > timerTimes [i]) {
+					runnables [j] = runnables [j - 1];
+					times [j] = times [j - 1];
+					j--;
+				}
+				runnables [j] = timerList [i];
+				times [j] = timerTimes [i];
+			}
+			i = timerNext [i];
+		}
+	}
+
+	/*
+	* Run the expired runnables.  A runnable may cancel or reschedule
+	* any timer, so check that each one is still expired before running
+	* it.  The timeout is set again before each runnable is run, so that
+	* the timers keep firing when the runnable runs a nested event loop,
+	* such as the one of a modal dialog.  While expired runnables remain,
+	* the timeout expires immediately and the nested loop runs them.  If
+	* a runnable throws an exception, the remaining ones stay in the wheel
+	* and the buckets are visited again on the next timeout.
+	*/
+	try {
+		for (int i=0; i<count; i++) {
+			if (timerList == null) break;
+			int timer = findTimer (runnables [i]);
+			if (timer != -1 && timerTimes [timer] <= now) {
+				removeTimer (timer);
+				if (timerCount != 0) {
+					long time = Math.max (now, nextTimerTime ());
+					if (timerId == 0 || time != timerDeadline) scheduleTimer (time, now);
+				}
+				runnables [i].run ();
+			}
+		}
+		timerTime = Math.max (timerTime, now);
+	} finally {
+		if (timerList != null && timerCount != 0) {
+			long time = nextTimerTime ();
+			if (timerId == 0 || time != timerDeadline) scheduleTimer (time, timerClock ());
+		} else if (timerId != 0) {
+			OS.XtRemoveTimeOut (timerId);
+			timerId = 0;
+		}
 	}
 	return 0;
 }
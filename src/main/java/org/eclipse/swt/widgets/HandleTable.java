@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.widgets;
+
+
+/*
+ * A map from OS handles to widgets, used by the display to find the widget
+ * of a handle without asking Xt for the XmNuserData resource of the handle.
+ * The map uses open addressing with linear probing in a table whose length
+ * is a power of two and that is never more than half full.  Zero is not a
+ * valid handle and marks the empty entries.
+ */
+class HandleTable {
+	int [] handles = new int [GROW_SIZE];
+	Widget [] widgets = new Widget [GROW_SIZE];
+	int count;
+	static final int GROW_SIZE = 64;
+
+Widget get (int handle) {
+	if (handle == 0) return null;
+	int mask = handles.length - 1;
+	int index = hash (handle) & mask;
+	int key;
+	while ((key = handles [index]) != 0) {
+		if (key == handle) return widgets [index];
+		index = (index + 1) & mask;
+	}
+	return null;
+}
+
+static int hash (int handle) {
+	/* Handles are aligned addresses, so mix the high bits into the low ones */
+	int hash = handle * 0x9E3779B9;
+	return hash ^ (hash >>> 16);
+}
+
+void put (int handle, Widget widget) {
+	if (handle == 0) return;
+	if ((count + 1) * 2 > handles.length) resize (handles.length * 2);
+	int mask = handles.length - 1;
+	int index = hash (handle) & mask;
+	int key;
+	while ((key = handles [index]) != 0) {
+		if (key == handle) {
+			widgets [index] = widget;
+			return;
+		}
+		index = (index + 1) & mask;
+	}
+	handles [index] = handle;
+	widgets [index] = widget;
+	count++;
+}
+
+/*
+ * Removes the handle and answers its widget.  The entries that follow the
+ * removed one in its probe sequence are moved back, so that no deleted
+ * markers are needed and lookups stay short.
+ */
+Widget remove (int handle) {
+	if (handle == 0) return null;
+	int mask = handles.length - 1;
+	int index = hash (handle) & mask;
+	int key;
+	while ((key = handles [index]) != handle) {
+		if (key == 0) return null;
+		index = (index + 1) & mask;
+	}
+	Widget widget = widgets [index];
+	int next = index;
+	while (true) {
+		next = (next + 1) & mask;
+		if ((key = handles [next]) == 0) break;
+		int home = hash (key) & mask;
+		/* Move the entry back unless its home lies cyclically in (index, next] */
+		if (index <= next ? (index < home && home <= next) : (index < home || home <= next)) continue;
+		handles [index] = key;
+		widgets [index] = widgets [next];
+		index = next;
+	}
+	handles [index] = 0;
+	widgets [index] = null;
+	count--;
+	return widget;
+}
+
+void resize (int length) {
+	int [] oldHandles = handles;
+	Widget [] oldWidgets = widgets;
+	handles = new int [length];
+	widgets = new Widget [length];
+	count = 0;
+	for (int i=0; i<oldHandles.length; i++) {
+		if (oldHandles [i] != 0) put (oldHandles [i], oldWidgets [i]);
+	}
+}
+
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.widgets;
+
+
+/*
+ * A set of non-negative indices stored as a bit set.  This is used by the
+ * emulated Table to remember which rows are selected without
+ * keeping a reference to the item of every selected row.  Membership tests
+ * are O(1), ranges are added and removed a word at a time, and the indices
+ * can be shifted to follow rows that are inserted or removed.
+ */
+class IndexSet {
+	int[] words = new int [0];
+	int count;
+
+void add (int index) {
+	ensureCapacity (index);
+	int bit = 1 << (index & 31);
+	if ((words [index >> 5] & bit) != 0) return;
+	words [index >> 5] |= bit;
+	count++;
+}
+
+/*
+ * Adds the indices between start and end (inclusive).
+ */
+void add (int start, int end) {
+	if (start > end) return;
+	ensureCapacity (end);
+	int startWord = start >> 5, endWord = end >> 5;
+	for (int i = startWord; i <= endWord; i++) {
+		int mask = -1;
+		if (i == startWord) mask &= -1 << (start & 31);
+		if (i == endWord) mask &= -1 >>> (31 - (end & 31));
+		count += Integer.bitCount (mask & ~words [i]);
+		words [i] |= mask;
+	}
+}
+
+IndexSet copy () {
+	IndexSet result = new IndexSet ();
+	result.words = new int [words.length];
+	System.arraycopy (words, 0, result.words, 0, words.length);
+	result.count = count;
+	return result;
+}
+
+boolean contains (int index) {
+	if (index < 0) return false;
+	int word = index >> 5;
+	if (word >= words.length) return false;
+	return (words [word] & (1 << (index & 31))) != 0;
+}
+
+/*
+ * Removes the index and shifts all of the greater indices down by one,
+ * following a row that was removed from the receiver's owner.
+ */
+void delete (int index) {
+	int word = index >> 5;
+	if (word >= words.length) return;
+	if (contains (index)) count--;
+	int low = (1 << (index & 31)) - 1;
+	int high = ~low << 1;
+	int value = words [word];
+	value = (value & low) | ((value & high) >>> 1);
+	for (int i = word; i < words.length; i++) {
+		if (i > word) value = words [i] >>> 1;
+		if (i + 1 < words.length) value |= words [i + 1] << 31;
+		words [i] = value;
+	}
+}
+
+void ensureCapacity (int index) {
+	int length = (index >> 5) + 1;
+	if (length <= words.length) return;
+	int[] newWords = new int [Math.max (length, words.length * 3 / 2)];
+	System.arraycopy (words, 0, newWords, 0, words.length);
+	words = newWords;
+}
+
+/*
+ * Shifts the index and all of the greater indices up by one, following a
+ * row that was inserted into the receiver's owner.  The new index is not
+ * contained in the receiver.
+ */
+void insert (int index) {
+	int word = index >> 5;
+	if (word >= words.length) return;
+	if (words [words.length - 1] < 0) ensureCapacity (words.length << 5);
+	for (int i = words.length - 1; i > word; i--) {
+		words [i] = (words [i] << 1) | (words [i - 1] >>> 31);
+	}
+	int low = (1 << (index & 31)) - 1;
+	int value = words [word];
+	words [word] = (value & low) | ((value & ~low) << 1);
+}
+
+/*
+ * Returns the smallest index in the receiver that is greater than or equal
+ * to the argument, or -1 if there is none.
+ */
+int nextIndex (int index) {
+	if (index < 0) index = 0;
+	int word = index >> 5;
+	if (word >= words.length) return -1;
+	int value = words [word] & (-1 << (index & 31));
+	while (value == 0) {
+		if (++word == words.length) return -1;
+		value = words [word];
+	}
+	return (word << 5) + Integer.numberOfTrailingZeros (value);
+}
+
+void remove (int index) {
+	if (!contains (index)) return;
+	words [index >> 5] &= ~(1 << (index & 31));
+	count--;
+}
+
+/*
+ * Removes the indices between start and end (inclusive).
+ */
+void remove (int start, int end) {
+	end = Math.min (end, (words.length << 5) - 1);
+	if (start > end) return;
+	int startWord = start >> 5, endWord = end >> 5;
+	for (int i = startWord; i <= endWord; i++) {
+		int mask = -1;
+		if (i == startWord) mask &= -1 << (start & 31);
+		if (i == endWord) mask &= -1 >>> (31 - (end & 31));
+		count -= Integer.bitCount (mask & words [i]);
+		words [i] &= ~mask;
+	}
+}
+
+/*
+ * Returns the indices in the receiver in ascending order.
+ */
+int[] toArray () {
+	int[] result = new int [count];
+	int index = nextIndex (0);
+	for (int i = 0; i < count; i++) {
+		result [i] = index;
+		index = nextIndex (index + 1);
+	}
+	return result;
+}
+
+}
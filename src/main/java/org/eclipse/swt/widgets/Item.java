@@ -102,6 +102,28 @@ protected void checkSubclass () {
 	/* Do Nothing - Subclassing is allowed */
 }
 
+/*
+ * Returns the number of leading characters of the string that fit within
+ * the specified width in the GC's current font.  The string must be known
+ * not to fit as a whole.  Since prefix widths grow with prefix length the
+ * fit is found with a binary search, which needs O(log n) measurements
+ * instead of one measurement per character.
+ */
+static int fitText (GC gc, String string, int width, boolean mnemonics) {
+	int low = 0, high = string.length ();
+	while (high - low > 1) {
+		int mid = (low + high) >>> 1;
+		String prefix = string.substring (0, mid);
+		int extent = mnemonics ? gc.textExtent (prefix, SWT.DRAW_MNEMONIC).x : gc.stringExtent (prefix).x;
+		if (extent <= width) {
+			low = mid;
+		} else {
+			high = mid;
+		}
+	}
+	return low;
+}
+
 /**
  * Returns the receiver's image if it has one, or null
  * if it does not.
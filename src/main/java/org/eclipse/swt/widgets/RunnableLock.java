@@ -22,6 +22,8 @@ class RunnableLock {
 	Runnable runnable;
 	Thread thread;
 	Throwable throwable;
+	Object key;
+	int syncSerial;
 	
 RunnableLock (Runnable runnable) {
 	this.runnable = runnable;
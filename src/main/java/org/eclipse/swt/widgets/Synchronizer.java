@@ -11,6 +11,8 @@
 package org.eclipse.swt.widgets;
 
 
+import java.util.Hashtable;
+
 import org.eclipse.swt.*;
 import org.eclipse.swt.graphics.*;
 import org.eclipse.swt.internal.Compatibility;
@@ -35,9 +37,11 @@ import org.eclipse.swt.internal.Compatibility;
  */
 public class Synchronizer {
 	Display display;
-	int messageCount;
+	int messageStart, messageCount;
 	RunnableLock [] messages;
 	Object messageLock = new Object ();
+	Hashtable keyedMessages;
+	int syncSerial;
 	Thread syncThread;
 	static final int GROW_SIZE = 4;
 	static final int MESSAGE_LIMIT = 64;
@@ -51,17 +55,15 @@ public Synchronizer (Display display) {
 	this.display = display;
 }
 
+/*
+ * Messages are kept in a circular buffer whose length is a power of two,
+ * so that both adding and removing a message are constant time and the
+ * message lock is only held very briefly by the posting threads.
+ */
 void addLast (RunnableLock lock) {
 	boolean wake = false;
 	synchronized (messageLock) {
-		if (messages == null) messages = new RunnableLock [GROW_SIZE];
-		if (messageCount == messages.length) {
-			RunnableLock[] newMessages = new RunnableLock [messageCount + GROW_SIZE];
-			System.arraycopy (messages, 0, newMessages, 0, messageCount);
-			messages = newMessages;
-		}
-		messages [messageCount++] = lock;
-		wake = messageCount == 1;
+		wake = enqueue (lock);
 	}
 	if (wake) display.wakeThread ();
 }
@@ -86,6 +88,70 @@ protected void asyncExec (Runnable runnable) {
 	addLast (new RunnableLock (runnable));
 }
 
+/**
+ * Causes the <code>run()</code> method of the runnable to
+ * be invoked by the user-interface thread at the next
+ * reasonable opportunity, unless a runnable that was
+ * posted with the same key is still waiting to be run.
+ * In that case, the new runnable replaces the waiting
+ * one and runs in its place in the queue.
+ *
+ * @param key the key that identifies the runnables that supersede each other
+ * @param runnable code to run on the user-interface thread.
+ *
+ * @see #asyncExec
+ *
+ * @since 3.7
+ */
+protected void asyncExecCoalesced (Object key, Runnable runnable) {
+	boolean wake = false;
+	synchronized (messageLock) {
+		if (keyedMessages != null) {
+			RunnableLock lock = (RunnableLock) keyedMessages.get (key);
+			/*
+			* Only replace the waiting runnable when no syncExec() was posted
+			* after it.  Otherwise, the new runnable would run before a
+			* syncExec() that was posted before it.
+			*/
+			if (lock != null && lock.syncSerial == syncSerial) {
+				lock.runnable = runnable;
+				return;
+			}
+		}
+		RunnableLock lock = new RunnableLock (runnable);
+		lock.key = key;
+		if (keyedMessages == null) keyedMessages = new Hashtable ();
+		keyedMessages.put (key, lock);
+		wake = enqueue (lock);
+	}
+	if (wake) display.wakeThread ();
+}
+
+/*
+ * Adds the message to the end of the queue and answers whether the queue
+ * was empty.  Must be called with the message lock held.
+ */
+boolean enqueue (RunnableLock lock) {
+	ensureCapacity (messageCount + 1);
+	messages [(messageStart + messageCount++) & (messages.length - 1)] = lock;
+	if (lock.thread != null) syncSerial++;
+	lock.syncSerial = syncSerial;
+	return messageCount == 1;
+}
+
+void ensureCapacity (int count) {
+	if (messages == null) messages = new RunnableLock [GROW_SIZE];
+	if (count <= messages.length) return;
+	int length = messages.length;
+	while (length < count) length <<= 1;
+	RunnableLock[] newMessages = new RunnableLock [length];
+	int first = Math.min (messageCount, messages.length - messageStart);
+	System.arraycopy (messages, messageStart, newMessages, 0, first);
+	System.arraycopy (messages, 0, newMessages, first, messageCount - first);
+	messages = newMessages;
+	messageStart = 0;
+}
+
 int getMessageCount () {
 	synchronized (messageLock) {
 		return messageCount;
@@ -96,16 +162,21 @@ void releaseSynchronizer () {
 	display = null;
 	messages = null;
 	messageLock = null;
+	keyedMessages = null;
 	syncThread = null;
 }
 
 RunnableLock removeFirst () {
 	synchronized (messageLock) {
 		if (messageCount == 0) return null;
-		RunnableLock lock = messages [0];
-		System.arraycopy (messages, 1, messages, 0, --messageCount);
-		messages [messageCount] = null;
-		if (messageCount == 0) {
+		RunnableLock lock = messages [messageStart];
+		messages [messageStart] = null;
+		if (lock.key != null && keyedMessages.get (lock.key) == lock) {
+			keyedMessages.remove (lock.key);
+		}
+		messageStart = (messageStart + 1) & (messages.length - 1);
+		if (--messageCount == 0) {
+			messageStart = 0;
 			if (messages.length > MESSAGE_LIMIT) messages = null;
 		}
 		return lock;
@@ -122,22 +193,45 @@ boolean runAsyncMessages (boolean all) {
 		RunnableLock lock = removeFirst ();
 		if (lock == null) return run;
 		run = true;
-		synchronized (lock) {
-			syncThread = lock.thread;
-			try {
-				lock.run ();
-			} catch (Throwable t) {
-				lock.throwable = t;
-				SWT.error (SWT.ERROR_FAILED_EXEC, t);
-			} finally {
-				syncThread = null;
-				lock.notifyAll ();
-			}
-		}
+		runMessage (lock);
 	} while (all);
 	return run;
 }
 
+/*
+ * Runs up to count messages.  When time is not zero, no more messages
+ * are started once time milliseconds have elapsed.  Messages are removed
+ * one at a time so that a message that runs a nested event loop does not
+ * change the order in which the remaining messages are run.
+ */
+boolean runAsyncMessages (int count, int time) {
+	long end = time != 0 ? System.currentTimeMillis () + time : 0;
+	boolean run = false;
+	for (int i = 0; i < count; i++) {
+		RunnableLock lock = removeFirst ();
+		if (lock == null) break;
+		run = true;
+		runMessage (lock);
+		if (end != 0 && System.currentTimeMillis () >= end) break;
+	}
+	return run;
+}
+
+void runMessage (RunnableLock lock) {
+	synchronized (lock) {
+		syncThread = lock.thread;
+		try {
+			lock.run ();
+		} catch (Throwable t) {
+			lock.throwable = t;
+			SWT.error (SWT.ERROR_FAILED_EXEC, t);
+		} finally {
+			syncThread = null;
+			lock.notifyAll ();
+		}
+	}
+}
+
 /**
  * Causes the <code>run()</code> method of the runnable to
  * be invoked by the user-interface thread at the next
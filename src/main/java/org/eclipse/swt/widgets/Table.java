@@ -70,7 +70,7 @@ public class Table extends Composite {
 	TableColumn[] columns = new TableColumn [0];
 	TableColumn[] orderedColumns;
 	TableItem[] items = new TableItem [0];
-	TableItem[] selectedItems = new TableItem [0];
+	IndexSet selectedIndices = new IndexSet ();
 	TableItem focusItem, anchorItem, lastClickedItem;
 	Color cachedBackground, cachedForeground;
 	Event lastSelectionEvent;
@@ -250,6 +250,16 @@ public void addSelectionListener (SelectionListener listener) {
 	addListener (SWT.Selection, typedListener);
 	addListener (SWT.DefaultSelection, typedListener);
 }
+/*
+ * Returns the item at the specified index.  If the receiver is VIRTUAL then
+ * items are only created when first requested, so the item is materialized
+ * here if it does not exist yet.
+ */
+TableItem _getItem (int index) {
+	TableItem item = items [index];
+	if (item != null) return item;
+	return items [index] = new TableItem (this, SWT.NONE, index, false);
+}
 boolean checkData (TableItem item, boolean redraw) {
 	if (item.cached) return true;
 	if ((style & SWT.VIRTUAL) != 0) {
@@ -308,9 +318,11 @@ protected void checkSubclass () {
 public void clear (int index) {
 	checkWidget ();
 	if (!(0 <= index && index < itemsCount)) error (SWT.ERROR_INVALID_RANGE);
-	Rectangle bounds = items [index].getBounds (false);
+	TableItem item = items [index];
+	if (item == null) return;	/* not materialized, so nothing to clear */
+	Rectangle bounds = item.getBounds (false);
 	int oldRightX = bounds.x + bounds.width;
-	items [index].clear ();
+	item.clear ();
 	if (columns.length == 0) updateHorizontalBar (0, -oldRightX);
 	redrawItem (index, false);
 }
@@ -344,7 +356,7 @@ public void clear (int start, int end) {
 		error (SWT.ERROR_INVALID_RANGE);
 	}
 	for (int i = start; i <= end; i++) {
-		items [i].clear ();
+		if (items [i] != null) items [i].clear ();
 	}
 	updateHorizontalBar ();
 	redrawItems (start, end, false);
@@ -382,7 +394,8 @@ public void clear (int [] indices) {
 	}
 	
 	for (int i = 0; i < indices.length; i++) {
-		items [indices [i]].clear ();
+		TableItem item = items [indices [i]];
+		if (item != null) item.clear ();
 	}
 	updateHorizontalBar ();
 	for (int i = 0; i < indices.length; i++) {
@@ -431,6 +444,7 @@ public Point computeSize (int wHint, int hHint, boolean changed) {
 	} else {
 		if (columns.length == 0) {
 			for (int i = 0; i < itemsCount; i++) {
+				if (items [i] == null) continue;	/* not materialized */
 				Rectangle itemBounds = items [i].getBounds (false);
 				width = Math.max (width, itemBounds.x + itemBounds.width);
 			}
@@ -474,7 +488,7 @@ void createItem (TableColumn column, int index) {
 
 	/* allow all items to update their internal structures accordingly */
 	for (int i = 0; i < itemsCount; i++) {
-		items [i].addColumn (column);
+		if (items [i] != null) items [i].addColumn (column);
 	}
 
 	/* existing items become hidden when going from 0 to 1 column (0 width) */
@@ -504,8 +518,9 @@ void createItem (TableItem item) {
 
 	/* update the index for items bumped down by this new item */
 	for (int i = index + 1; i < itemsCount; i++) {
-		items [i].index = i;
+		if (items [i] != null) items [i].index = i;
 	}
+	selectedIndices.insert (index);
 
 	/* update scrollbars */
 	updateVerticalBar ();
@@ -550,17 +565,11 @@ void createItem (TableItem item) {
 public void deselect (int index) {
 	checkWidget ();
 	if (!(0 <= index && index < itemsCount)) return;
-	TableItem item = items [index];
-	int selectIndex = getSelectionIndex (item);
-	if (selectIndex == -1) return;
-	
-	TableItem[] newSelectedItems = new TableItem [selectedItems.length - 1];
-	System.arraycopy (selectedItems, 0, newSelectedItems, 0, selectIndex);
-	System.arraycopy (selectedItems, selectIndex + 1, newSelectedItems, selectIndex, newSelectedItems.length - selectIndex);
-	selectedItems = newSelectedItems;
+	if (!selectedIndices.contains (index)) return;
+	selectedIndices.remove (index);
 	
 	if (hasFocus () || (style & SWT.HIDE_SELECTION) == 0) {
-		redrawItem (item.index, false);
+		redrawItem (index, false);
 	}
 }
 /**
@@ -585,8 +594,12 @@ public void deselect (int start, int end) {
 	} else {
 		start = Math.max (start, 0);
 		end = Math.min (end, itemsCount - 1);
-		for (int i = start; i <= end; i++) {
-			deselect (i);
+		if (start > end) return;
+		IndexSet oldSelection = selectedIndices;
+		selectedIndices = oldSelection.copy ();
+		selectedIndices.remove (start, end);
+		if (hasFocus () || (style & SWT.HIDE_SELECTION) == 0) {
+			redrawSelection (oldSelection, selectedIndices);
 		}
 	}
 }
@@ -625,26 +638,14 @@ public void deselect (int [] indices) {
  */
 public void deselectAll () {
 	checkWidget ();
-	TableItem[] oldSelection = selectedItems;
-	selectedItems = new TableItem [0];
+	IndexSet oldSelection = selectedIndices;
+	selectedIndices = new IndexSet ();
 	if (hasFocus () || (style & SWT.HIDE_SELECTION) == 0) {
-		for (int i = 0; i < oldSelection.length; i++) {
-			redrawItem (oldSelection [i].index, true);
-		}
+		redrawSelection (oldSelection, selectedIndices);
 	}
 }
 void deselectItem (TableItem item) {
-	int index = getSelectionIndex (item);
-	if (index == -1) return;
-	TableItem[] newSelectedItems = new TableItem [selectedItems.length - 1];
-	System.arraycopy (selectedItems, 0, newSelectedItems, 0, index);
-	System.arraycopy (
-		selectedItems,
-		index + 1,
-		newSelectedItems,
-		index,
-		newSelectedItems.length - index);
-	selectedItems = newSelectedItems;
+	selectedIndices.remove (item.index);
 }
 void destroyItem (TableColumn column) {
 	headerHideToolTip ();
@@ -681,7 +682,7 @@ void destroyItem (TableColumn column) {
 
 	/* allow all items to update their internal structures accordingly */
 	for (int i = 0; i < itemsCount; i++) {
-		items [i].removeColumn (column, index);
+		if (items [i] != null) items [i].removeColumn (column, index);
 	}
 
 	/* update horizontal scrollbar */
@@ -745,9 +746,10 @@ void destroyItem (TableItem item) {
 
 	/* update the index on affected items */
 	for (int i = index; i < itemsCount; i++) {
-		items [i].index = i;
+		if (items [i] != null) items [i].index = i;
 	}
 	item.index = -1;
+	selectedIndices.delete (index);
 
 	int oldTopIndex = topIndex;
 	updateVerticalBar ();
@@ -762,19 +764,6 @@ void destroyItem (TableItem item) {
 		if (vBar != null) vBar.setSelection (topIndex);
 	}
 
-	/* selectedItems array */
-	if (item.isSelected ()) {
-		int selectionIndex = getSelectionIndex (item);
-		TableItem[] newSelectedItems = new TableItem [selectedItems.length - 1];
-		System.arraycopy (selectedItems, 0, newSelectedItems, 0, selectionIndex);
-		System.arraycopy (
-			selectedItems,
-			selectionIndex + 1,
-			newSelectedItems,
-			selectionIndex,
-			newSelectedItems.length - selectionIndex);
-		selectedItems = newSelectedItems;
-	}
 	if (item == anchorItem) anchorItem = null;
 	if (item == lastClickedItem) lastClickedItem = null;
 	/*
@@ -1023,7 +1012,7 @@ public boolean getHeaderVisible () {
 public TableItem getItem (int index) {
 	checkWidget ();
 	if (!(0 <= index && index < itemsCount)) error (SWT.ERROR_INVALID_RANGE);
-	return items [index];
+	return _getItem (index);
 }
 /**
  * Returns the item at the given point in the receiver
@@ -1053,7 +1042,7 @@ public TableItem getItem (Point point) {
 	if (point == null) error (SWT.ERROR_NULL_ARGUMENT);
 	int index = (point.y - getHeaderHeight ()) / itemHeight + topIndex;
 	if (!(0 <= index && index < itemsCount)) return null;		/* below the last item */
-	TableItem result = items [index];
+	TableItem result = _getItem (index);
 	if (!result.getHitBounds ().contains (point)) return null;	/* considers the x value */
 	return result;
 }
@@ -1105,7 +1094,9 @@ public int getItemHeight () {
 public TableItem[] getItems () {
 	checkWidget ();
 	TableItem[] result = new TableItem [itemsCount];
-	System.arraycopy (items, 0, result, 0, itemsCount);
+	for (int i = 0; i < itemsCount; i++) {
+		result [i] = _getItem (i);
+	}
 	return result;	
 }
 /*
@@ -1158,9 +1149,11 @@ TableColumn[] getOrderedColumns () {
  */
 public TableItem[] getSelection () {
 	checkWidget ();
-	TableItem[] result = new TableItem [selectedItems.length];
-	System.arraycopy (selectedItems, 0, result, 0, selectedItems.length);
-	sortAscent (result);
+	int[] indices = selectedIndices.toArray ();
+	TableItem[] result = new TableItem [indices.length];
+	for (int i = 0; i < indices.length; i++) {
+		result [i] = _getItem (indices [i]);
+	}
 	return result;
 }
 /**
@@ -1175,7 +1168,7 @@ public TableItem[] getSelection () {
  */
 public int getSelectionCount () {
 	checkWidget ();
-	return selectedItems.length;
+	return selectedIndices.count;
 }
 /**
  * Returns the zero-relative index of the item which is currently
@@ -1190,18 +1183,7 @@ public int getSelectionCount () {
  */
 public int getSelectionIndex () {
 	checkWidget ();
-	if (selectedItems.length == 0) return -1;
-	return selectedItems [0].index;
-}
-/*
- * Returns the index of the argument in the receiver's array of currently-
- * selected items, or -1 if the item is not currently selected.
- */
-int getSelectionIndex (TableItem item) {
-	for (int i = 0; i < selectedItems.length; i++) {
-		if (selectedItems [i] == item) return i;
-	}
-	return -1;
+	return selectedIndices.nextIndex (0);
 }
 /**
  * Returns the zero-relative indices of the items which are currently
@@ -1221,12 +1203,7 @@ int getSelectionIndex (TableItem item) {
  */
 public int [] getSelectionIndices () {
 	checkWidget ();
-	int[] result = new int [selectedItems.length];
-	for (int i = 0; i < selectedItems.length; i++) {
-		result [i] = selectedItems [i].index;
-	}
-	sortAscent (result);
-	return result;
+	return selectedIndices.toArray ();
 }
 /**
  * Returns the column which shows the sort indicator for
@@ -1788,19 +1765,28 @@ static void initImages (final Display display) {
 public boolean isSelected (int index) {
 	checkWidget ();
 	if (!(0 <= index && index < itemsCount)) return false;
-	return items [index].isSelected ();
+	return selectedIndices.contains (index);
+}
+/*
+ * Returns true if the item at the specified index is in the viewport.  Unlike
+ * TableItem.isInViewport() this does not require the item to be materialized.
+ */
+boolean isInViewport (int index) {
+	if (index < topIndex) return false;
+	int visibleCount = clientArea.height / itemHeight;
+	return index <= topIndex + visibleCount;
 }
 void onArrowDown (int stateMask) {
 	if ((stateMask & (SWT.SHIFT | SWT.CTRL)) == 0) {
 		/* Down Arrow with no modifiers */
 		int newFocusIndex = focusItem.index + 1;
 		if (newFocusIndex == itemsCount) return; 	/* at bottom */
-		selectItem (items [newFocusIndex], false);
-		setFocusItem (items [newFocusIndex], true);
+		selectItem (_getItem (newFocusIndex), false);
+		setFocusItem (_getItem (newFocusIndex), true);
 		redrawItem (newFocusIndex, true);
-		showItem (items [newFocusIndex]);
+		showItem (_getItem (newFocusIndex));
 		Event newEvent = new Event ();
-		newEvent.item = items [newFocusIndex];
+		newEvent.item = _getItem (newFocusIndex);
 		postEvent (SWT.Selection, newEvent);
 		return;
 	}
@@ -1824,12 +1810,12 @@ void onArrowDown (int stateMask) {
 		/* Shift+Down Arrow */
 		int newFocusIndex = focusItem.index + 1;
 		if (newFocusIndex == itemsCount) return; 	/* at bottom */
-		selectItem (items [newFocusIndex], false);
-		setFocusItem (items [newFocusIndex], true);
+		selectItem (_getItem (newFocusIndex), false);
+		setFocusItem (_getItem (newFocusIndex), true);
 		redrawItem (newFocusIndex, true);
-		showItem (items [newFocusIndex]);
+		showItem (_getItem (newFocusIndex));
 		Event newEvent = new Event ();
-		newEvent.item = items [newFocusIndex];
+		newEvent.item = _getItem (newFocusIndex);
 		postEvent (SWT.Selection, newEvent);
 		return;
 	}
@@ -1854,7 +1840,7 @@ void onArrowDown (int stateMask) {
 		/* CTRL+Down Arrow */
 		int focusIndex = focusItem.index; 
 		if (focusIndex == itemsCount - 1) return;	/* at bottom */
-		TableItem newFocusItem = items [focusIndex + 1];
+		TableItem newFocusItem = _getItem (focusIndex + 1);
 		setFocusItem (newFocusItem, true);
 		redrawItem (newFocusItem.index, true);
 		showItem (newFocusItem);
@@ -1868,12 +1854,12 @@ void onArrowDown (int stateMask) {
 		deselectItem (focusItem);
 		redrawItem (focusItem.index, true);
 	}
-	selectItem (items [newFocusIndex], true);
-	setFocusItem (items [newFocusIndex], true);
+	selectItem (_getItem (newFocusIndex), true);
+	setFocusItem (_getItem (newFocusIndex), true);
 	redrawItem (newFocusIndex, true);
-	showItem (items [newFocusIndex]);
+	showItem (_getItem (newFocusIndex));
 	Event newEvent = new Event ();
-	newEvent.item = items [newFocusIndex];
+	newEvent.item = _getItem (newFocusIndex);
 	postEvent (SWT.Selection, newEvent);
 }
 void onArrowLeft (int stateMask) {
@@ -1933,7 +1919,7 @@ void onArrowUp (int stateMask) {
 		/* Up Arrow with no modifiers */
 		int newFocusIndex = focusItem.index - 1;
 		if (newFocusIndex < 0) return; 		/* at top */
-		TableItem item = items [newFocusIndex];
+		TableItem item = _getItem (newFocusIndex);
 		selectItem (item, false);
 		setFocusItem (item, true);
 		redrawItem (newFocusIndex, true);
@@ -1962,7 +1948,7 @@ void onArrowUp (int stateMask) {
 		/* Shift+Up Arrow */
 		int newFocusIndex = focusItem.index - 1;
 		if (newFocusIndex < 0) return; 	/* at top */
-		TableItem item = items [newFocusIndex];
+		TableItem item = _getItem (newFocusIndex);
 		selectItem (item, false);
 		setFocusItem (item, true);
 		redrawItem (newFocusIndex, true);
@@ -1992,7 +1978,7 @@ void onArrowUp (int stateMask) {
 		/* CTRL+Up Arrow */
 		int focusIndex = focusItem.index; 
 		if (focusIndex == 0) return;	/* at top */
-		TableItem newFocusItem = items [focusIndex - 1];
+		TableItem newFocusItem = _getItem (focusIndex - 1);
 		setFocusItem (newFocusItem, true);
 		showItem (newFocusItem);
 		redrawItem (newFocusItem.index, true);
@@ -2006,7 +1992,7 @@ void onArrowUp (int stateMask) {
 		deselectItem (focusItem);
 		redrawItem (focusItem.index, true);
 	}
-	TableItem item = items [newFocusIndex];
+	TableItem item = _getItem (newFocusIndex);
 	selectItem (item, true);
 	setFocusItem (item, true);
 	redrawItem (newFocusIndex, true);
@@ -2028,7 +2014,7 @@ void onDispose (Event event) {
 	notifyListeners(SWT.Dispose, event);
 	event.type = SWT.None;
 	for (int i = 0; i < itemsCount; i++) {
-		items [i].dispose (false);
+		if (items [i] != null) items [i].dispose (false);
 	}
 	for (int i = 0; i < columns.length; i++) {
 		columns [i].dispose (false);
@@ -2040,7 +2026,8 @@ void onDispose (Event event) {
 	}
 	toolTipListener = null;
 	itemsCount = topIndex = horizontalOffset = 0;
-	items = selectedItems = null;
+	items = null;
+	selectedIndices = null;
 	columns = orderedColumns = null;
 	focusItem = anchorItem = lastClickedItem = null;
 	lastSelectionEvent = null;
@@ -2053,7 +2040,7 @@ void onEnd (int stateMask) {
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 		/* End with no modifiers */
 		if (focusItem.index == lastAvailableIndex) return; 	/* at bottom */
-		TableItem item = items [lastAvailableIndex]; 
+		TableItem item = _getItem (lastAvailableIndex); 
 		selectItem (item, false);
 		setFocusItem (item, true);
 		redrawItem (lastAvailableIndex, true);
@@ -2072,7 +2059,7 @@ void onEnd (int stateMask) {
 		}
 		/* Shift+End */
 		if (focusItem.index == lastAvailableIndex) return; /* at bottom */
-		TableItem item = items [lastAvailableIndex]; 
+		TableItem item = _getItem (lastAvailableIndex); 
 		selectItem (item, false);
 		setFocusItem (item, true);
 		redrawItem (lastAvailableIndex, true);
@@ -2086,12 +2073,12 @@ void onEnd (int stateMask) {
 	if ((stateMask & SWT.CTRL) != 0) {
 		if ((stateMask & SWT.SHIFT) != 0) {
 			/* CTRL+Shift+End */
-			showItem (items [lastAvailableIndex]);
+			showItem (_getItem (lastAvailableIndex));
 			return;
 		}
 		/* CTRL+End */
 		if (focusItem.index == lastAvailableIndex) return; /* at bottom */
-		TableItem item = items [lastAvailableIndex];
+		TableItem item = _getItem (lastAvailableIndex);
 		setFocusItem (item, true);
 		showItem (item);
 		redrawItem (item.index, true);
@@ -2099,16 +2086,11 @@ void onEnd (int stateMask) {
 	}
 	/* Shift+End */
 	if (anchorItem == null) anchorItem = focusItem;
-	TableItem selectedItem = items [lastAvailableIndex];
+	TableItem selectedItem = _getItem (lastAvailableIndex);
 	if (selectedItem == focusItem && selectedItem.isSelected ()) return;
 	int anchorIndex = anchorItem.index;
 	int selectIndex = selectedItem.index;
-	TableItem[] newSelection = new TableItem [selectIndex - anchorIndex + 1];
-	int writeIndex = 0;
-	for (int i = anchorIndex; i <= selectIndex; i++) {
-		newSelection [writeIndex++] = items [i];
-	}
-	setSelection (newSelection, false);
+	selectRange (anchorIndex, selectIndex);
 	setFocusItem (selectedItem, true);
 	redrawItems (anchorIndex, selectIndex, true);
 	showItem (selectedItem);
@@ -2123,9 +2105,7 @@ void onFocusIn () {
 		return;
 	}
 	if ((style & (SWT.HIDE_SELECTION | SWT.MULTI)) == (SWT.HIDE_SELECTION | SWT.MULTI)) {
-		for (int i = 0; i < selectedItems.length; i++) {
-			redrawItem (selectedItems [i].index, true);
-		}
+		redrawSelection (new IndexSet (), selectedIndices);
 	}
 	if (focusItem != null) {
 		redrawItem (focusItem.index, true);
@@ -2133,10 +2113,10 @@ void onFocusIn () {
 	}
 	/* an initial focus item must be selected */
 	TableItem initialFocus;
-	if (selectedItems.length > 0) {
-		initialFocus = selectedItems [0];
+	if (selectedIndices.count > 0) {
+		initialFocus = _getItem (selectedIndices.nextIndex (0));
 	} else {
-		initialFocus = items [topIndex];
+		initialFocus = _getItem (topIndex);
 	}
 	setFocusItem (initialFocus, false);
 	redrawItem (initialFocus.index, true);
@@ -2152,16 +2132,14 @@ void onFocusOut () {
 		redrawItem (focusItem.index, true);
 	}
 	if ((style & (SWT.HIDE_SELECTION | SWT.MULTI)) == (SWT.HIDE_SELECTION | SWT.MULTI)) {
-		for (int i = 0; i < selectedItems.length; i++) {
-			redrawItem (selectedItems [i].index, true);
-		}
+		redrawSelection (new IndexSet (), selectedIndices);
 	}
 }
 void onHome (int stateMask) {
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 		/* Home with no modifiers */
 		if (focusItem.index == 0) return; 		/* at top */
-		TableItem item = items [0];
+		TableItem item = _getItem (0);
 		selectItem (item, false);
 		setFocusItem (item, true);
 		redrawItem (0, true);
@@ -2179,7 +2157,7 @@ void onHome (int stateMask) {
 		}
 		/* Shift+Home */
 		if (focusItem.index == 0) return; 		/* at top */
-		TableItem item = items [0];
+		TableItem item = _getItem (0);
 		selectItem (item, false);
 		setFocusItem (item, true);
 		redrawItem (0, true);
@@ -2198,7 +2176,7 @@ void onHome (int stateMask) {
 		}
 		/* CTRL+Home */
 		if (focusItem.index == 0) return; /* at top */
-		TableItem item = items [0];
+		TableItem item = _getItem (0);
 		setFocusItem (item, true);
 		showItem (item);
 		redrawItem (item.index, true);
@@ -2206,16 +2184,11 @@ void onHome (int stateMask) {
 	}
 	/* Shift+Home */
 	if (anchorItem == null) anchorItem = focusItem;
-	TableItem selectedItem = items [0];
+	TableItem selectedItem = _getItem (0);
 	if (selectedItem == focusItem && selectedItem.isSelected ()) return;
 	int anchorIndex = anchorItem.index;
 	int selectIndex = selectedItem.index;
-	TableItem[] newSelection = new TableItem [anchorIndex + 1];
-	int writeIndex = 0;
-	for (int i = anchorIndex; i >= 0; i--) {
-		newSelection [writeIndex++] = items [i];
-	}
-	setSelection (newSelection, false);
+	selectRange (anchorIndex, selectIndex);
 	setFocusItem (selectedItem, true);
 	redrawItems (anchorIndex, selectIndex, true);
 	showItem (selectedItem);
@@ -2277,6 +2250,7 @@ void onKeyDown (Event event) {
 	/* check available items from current focus item to bottom */
 	for (int i = initialIndex + 1; i < itemsCount; i++) {
 		TableItem item = items [i];
+		if (item == null) continue;	/* not materialized, so has no text */
 		String text = item.getText (0, false);
 		if (text.length () > 0) {
 			if (Character.toLowerCase (text.charAt (0)) == character) {
@@ -2294,6 +2268,7 @@ void onKeyDown (Event event) {
 	/* check available items from top to current focus item */
 	for (int i = 0; i < initialIndex; i++) {
 		TableItem item = items [i];
+		if (item == null) continue;	/* not materialized, so has no text */
 		String text = item.getText (0, false);
 		if (text.length () > 0) {
 			if (Character.toLowerCase (text.charAt (0)) == character) {
@@ -2313,7 +2288,7 @@ void onMouseDoubleClick (Event event) {
 	if (!isFocusControl ()) setFocus ();
 	int index = (event.y - getHeaderHeight ()) / itemHeight + topIndex;
 	if  (!(0 <= index && index < itemsCount)) return;	/* not on an available item */
-	TableItem selectedItem = items [index];
+	TableItem selectedItem = _getItem (index);
 	
 	/* 
 	 * If the two clicks of the double click did not occur over the same item then do not
@@ -2331,7 +2306,7 @@ void onMouseDown (Event event) {
 	if (!isFocusControl ()) forceFocus ();
 	int index = (event.y - getHeaderHeight ()) / itemHeight + topIndex;
 	if (!(0 <= index && index < itemsCount)) return;	/* not on an available item */
-	TableItem selectedItem = items [index];
+	TableItem selectedItem = _getItem (index);
 	
 	/* if click was in checkbox */
 	if ((style & SWT.CHECK) != 0 && selectedItem.getCheckboxBounds ().contains (event.x, event.y)) {
@@ -2405,14 +2380,7 @@ void onMouseDown (Event event) {
 				if (anchorItem == null) anchorItem = focusItem;
 				int anchorIndex = anchorItem.index;
 				int selectIndex = selectedItem.index;
-				TableItem[] newSelection = new TableItem [Math.abs (anchorIndex - selectIndex) + 1];
-				int step = anchorIndex < selectIndex ? 1 : -1;
-				int writeIndex = 0;
-				for (int i = anchorIndex; i != selectIndex; i += step) {
-					newSelection [writeIndex++] = items [i];
-				}
-				newSelection [writeIndex] = items [selectIndex];
-				setSelection (newSelection, false);
+				selectRange (anchorIndex, selectIndex);
 				setFocusItem (selectedItem, true);
 				redrawItems (
 					Math.min (anchorIndex, selectIndex),
@@ -2451,7 +2419,7 @@ void onMouseDown (Event event) {
 	/* item is selected */
 	if (event.button != 1) return;
 	if ((event.stateMask & SWT.CTRL) != 0) {
-		removeSelectedItem (getSelectionIndex (selectedItem));
+		selectedIndices.remove (selectedItem.index);
 		setFocusItem (selectedItem, true);
 		redrawItem (selectedItem.index, true);
 		if (sendSelection) {
@@ -2465,14 +2433,7 @@ void onMouseDown (Event event) {
 		if (anchorItem == null) anchorItem = focusItem;
 		int anchorIndex = anchorItem.index;
 		int selectIndex = selectedItem.index;
-		TableItem[] newSelection = new TableItem [Math.abs (anchorIndex - selectIndex) + 1];
-		int step = anchorIndex < selectIndex ? 1 : -1;
-		int writeIndex = 0;
-		for (int i = anchorIndex; i != selectIndex; i += step) {
-			newSelection [writeIndex++] = items [i];
-		}
-		newSelection [writeIndex] = items [selectIndex];
-		setSelection (newSelection, false);
+		selectRange (anchorIndex, selectIndex);
 		setFocusItem (selectedItem, true);
 		redrawItems (
 			Math.min (anchorIndex, selectIndex),
@@ -2497,7 +2458,7 @@ void onMouseDown (Event event) {
 void onMouseUp (Event event) {
 	int index = (event.y - getHeaderHeight ()) / itemHeight + topIndex;
 	if (!(0 <= index && index < itemsCount)) return;	/* not on an available item */
-	lastClickedItem = items [index];
+	lastClickedItem = _getItem (index);
 }
 void onPageDown (int stateMask) {
 	int visibleItemCount = (clientArea.height - getHeaderHeight ()) / itemHeight;
@@ -2506,7 +2467,7 @@ void onPageDown (int stateMask) {
 		int newFocusIndex = focusItem.index + visibleItemCount - 1;
 		newFocusIndex = Math.min (newFocusIndex, itemsCount - 1);
 		if (newFocusIndex == focusItem.index) return;
-		TableItem item = items [newFocusIndex];
+		TableItem item = _getItem (newFocusIndex);
 		selectItem (item, false);
 		setFocusItem (item, true);
 		showItem (item);
@@ -2527,7 +2488,7 @@ void onPageDown (int stateMask) {
 			int newFocusIndex = focusItem.index + visibleItemCount - 1;
 			newFocusIndex = Math.min (newFocusIndex, itemsCount - 1);
 			if (newFocusIndex == focusItem.index) return;
-			TableItem item = items [newFocusIndex];
+			TableItem item = _getItem (newFocusIndex);
 			selectItem (item, false);
 			setFocusItem (item, true);
 			showItem (item);
@@ -2547,14 +2508,14 @@ void onPageDown (int stateMask) {
 		int bottomIndex = Math.min (topIndex + visibleItemCount - 1, itemsCount - 1);
 		if (focusItem.index != bottomIndex) {
 			/* move focus to bottom item in viewport */
-			setFocusItem (items [bottomIndex], true);
+			setFocusItem (_getItem (bottomIndex), true);
 			redrawItem (bottomIndex, true);
 		} else {
 			/* at bottom of viewport, so set focus to bottom item one page down */
 			int newFocusIndex = Math.min (itemsCount - 1, bottomIndex + visibleItemCount);
 			if (newFocusIndex == focusItem.index) return;
-			setFocusItem (items [newFocusIndex], true);
-			showItem (items [newFocusIndex]);
+			setFocusItem (_getItem (newFocusIndex), true);
+			showItem (_getItem (newFocusIndex));
 			redrawItem (newFocusIndex, true);
 		}
 		return;
@@ -2572,15 +2533,8 @@ void onPageDown (int stateMask) {
 		selectIndex = Math.min (itemsCount - 1, bottomIndex + visibleItemCount);
 		if (selectIndex == focusItem.index && focusItem.isSelected ()) return;
 	}
-	TableItem selectedItem = items [selectIndex];
-	TableItem[] newSelection = new TableItem [Math.abs (anchorIndex - selectIndex) + 1];
-	int step = anchorIndex < selectIndex ? 1 : -1;
-	int writeIndex = 0;
-	for (int i = anchorIndex; i != selectIndex; i += step) {
-		newSelection [writeIndex++] = items [i];
-	}
-	newSelection [writeIndex] = items [selectIndex];
-	setSelection (newSelection, false);
+	TableItem selectedItem = _getItem (selectIndex);
+	selectRange (anchorIndex, selectIndex);
 	setFocusItem (selectedItem, true);
 	showItem (selectedItem);
 	Event newEvent = new Event ();
@@ -2593,7 +2547,7 @@ void onPageUp (int stateMask) {
 		/* PageUp with no modifiers */
 		int newFocusIndex = Math.max (0, focusItem.index - visibleItemCount + 1);
 		if (newFocusIndex == focusItem.index) return;
-		TableItem item = items [newFocusIndex];
+		TableItem item = _getItem (newFocusIndex);
 		selectItem (item, false);
 		setFocusItem (item, true);
 		showItem (item);
@@ -2612,7 +2566,7 @@ void onPageUp (int stateMask) {
 			/* Shift+PageUp */
 			int newFocusIndex = Math.max (0, focusItem.index - visibleItemCount + 1);
 			if (newFocusIndex == focusItem.index) return;
-			TableItem item = items [newFocusIndex];
+			TableItem item = _getItem (newFocusIndex);
 			selectItem (item, false);
 			setFocusItem (item, true);
 			showItem (item);
@@ -2630,14 +2584,14 @@ void onPageUp (int stateMask) {
 		/* CTRL+PageUp */
 		if (focusItem.index != topIndex) {
 			/* move focus to top item in viewport */
-			setFocusItem (items [topIndex], true);
+			setFocusItem (_getItem (topIndex), true);
 			redrawItem (topIndex, true);
 		} else {
 			/* at top of viewport, so set focus to top item one page up */
 			int newFocusIndex = Math.max (0, focusItem.index - visibleItemCount);
 			if (newFocusIndex == focusItem.index) return;
-			setFocusItem (items [newFocusIndex], true);
-			showItem (items [newFocusIndex]);
+			setFocusItem (_getItem (newFocusIndex), true);
+			showItem (_getItem (newFocusIndex));
 			redrawItem (newFocusIndex, true);
 		}
 		return;
@@ -2654,15 +2608,8 @@ void onPageUp (int stateMask) {
 		selectIndex = Math.max (0, topIndex - visibleItemCount);
 		if (selectIndex == focusItem.index && focusItem.isSelected ()) return;
 	}
-	TableItem selectedItem = items [selectIndex];
-	TableItem[] newSelection = new TableItem [Math.abs (anchorIndex - selectIndex) + 1];
-	int step = anchorIndex < selectIndex ? 1 : -1;
-	int writeIndex = 0;
-	for (int i = anchorIndex; i != selectIndex; i += step) {
-		newSelection [writeIndex++] = items [i];
-	}
-	newSelection [writeIndex] = items [selectIndex];
-	setSelection (newSelection, false);
+	TableItem selectedItem = _getItem (selectIndex);
+	selectRange (anchorIndex, selectIndex);
 	setFocusItem (selectedItem, true);
 	showItem (selectedItem);
 	Event newEvent = new Event ();
@@ -2699,7 +2646,7 @@ void onPaint (Event event) {
 	cachedBackground = getBackground ();
 	gc.setBackground (cachedBackground);
 	gc.setClipping (clipping);
-	int bottomY = endIndex >= 0 ? getItemY (items [endIndex]) + itemHeight : 0;
+	int bottomY = endIndex >= 0 ? getItemY (_getItem (endIndex)) + itemHeight : 0;
 	int fillHeight = Math.max (0, clientArea.height - bottomY);
 	if (fillHeight > 0) {	/* space below bottom item */
 		drawBackground (gc, 0, bottomY, clientArea.width, fillHeight, 0, 0);
@@ -2718,7 +2665,7 @@ void onPaint (Event event) {
 	int lineWidth = gc.getLineWidth ();
 	cachedForeground = getForeground ();
 	for (int i = startIndex; i <= Math.min (endIndex, itemsCount - 1); i++) {
-		TableItem item = items [i];
+		TableItem item = _getItem (i);
 		if (!item.isDisposed ()) {	/* ensure that item was not disposed in a callback */
 			if (startColumn == -1) {
 				/* indicates that region to paint is to the right of the last column */
@@ -2917,7 +2864,7 @@ void reassignFocus () {
 		index++;
 	}
 	if (index < itemsCount) {
-		TableItem item = items [index];
+		TableItem item = _getItem (index);
 		setFocusItem (item, false);
 		showItem (item);
 	} else {
@@ -2941,12 +2888,26 @@ public void redraw (int x, int y, int width, int height, boolean all) {
 void redrawFromItemDownwards (int index) {
 	redrawItems (index, itemsCount - 1, false);
 }
+/*
+ * Redraws the focus bounds of the items in the viewport whose selection state
+ * differs between the two selections.  Items outside of the viewport are not
+ * visited, so this is cheap regardless of how many items are selected.
+ */
+void redrawSelection (IndexSet oldSelection, IndexSet newSelection) {
+	if (drawCount > 0 || itemHeight == 0) return;
+	int endIndex = Math.min (itemsCount - 1, topIndex + clientArea.height / itemHeight);
+	for (int i = topIndex; i <= endIndex; i++) {
+		if (oldSelection.contains (i) != newSelection.contains (i)) {
+			redrawItem (i, true);
+		}
+	}
+}
 /*
  * Redraws the table item at the specified index.  It is valid for this index to reside
  * beyond the last available item.
  */
 void redrawItem (int itemIndex, boolean focusBoundsOnly) {
-	if (itemIndex < itemsCount && !items [itemIndex].isInViewport ()) return;
+	if (itemIndex < itemsCount && !isInViewport (itemIndex)) return;
 	redrawItems (itemIndex, itemIndex, focusBoundsOnly);
 }
 /*
@@ -2973,8 +2934,8 @@ void redrawItems (int startIndex, int endIndex, boolean focusBoundsOnly) {
 		}
 		endIndex = Math.min (endIndex, itemsCount - 1);
 		for (int i = startIndex; i <= endIndex; i++) {
-			TableItem item = items [i];
-			if (item.isInViewport ()) {
+			if (isInViewport (i)) {
+				TableItem item = _getItem (i);
 				/* if custom painting is being done then repaint the full item */
 				if (custom) {
 					redraw (0, getItemY (item), clientArea.width, itemHeight, false);
@@ -3006,7 +2967,7 @@ void redrawItems (int startIndex, int endIndex, boolean focusBoundsOnly) {
 public void remove (int index) {
 	checkWidget ();
 	if (!(0 <= index && index < itemsCount)) error (SWT.ERROR_INVALID_RANGE);
-	items [index].dispose ();
+	_getItem (index).dispose ();
 }
 /**
  * Removes the items from the receiver which are
@@ -3034,7 +2995,7 @@ public void remove (int start, int end) {
 		removeAll ();
 	} else {
 		for (int i = end; i >= start; i--) {
-			items [i].dispose ();
+			_getItem (i).dispose ();
 		}
 	}
 }
@@ -3067,7 +3028,7 @@ public void remove (int [] indices) {
 	int lastRemovedIndex = -1;
 	for (int i = 0; i < newIndices.length; i++) {
 		if (newIndices [i] != lastRemovedIndex) {
-			items [newIndices [i]].dispose ();
+			_getItem (newIndices [i]).dispose ();
 			lastRemovedIndex = newIndices [i];
 		}
 	}
@@ -3087,10 +3048,10 @@ public void removeAll () {
 
 	setFocusItem (null, false);
 	for (int i = 0; i < itemsCount; i++) {
-		items [i].dispose (false);
+		if (items [i] != null) items [i].dispose (false);
 	}
 	items = new TableItem [0];
-	selectedItems = new TableItem [0];
+	selectedIndices = new IndexSet ();
 	itemsCount = topIndex = 0;
 	anchorItem = lastClickedItem = null;
 	lastSelectionEvent = null;
@@ -3127,12 +3088,6 @@ String removeMnemonics (String string) {
 	if (i == j) return string;
 	return new String (chars, 0, j);
 }
-void removeSelectedItem (int index) {
-	TableItem[] newSelectedItems = new TableItem [selectedItems.length - 1];
-	System.arraycopy (selectedItems, 0, newSelectedItems, 0, index);
-	System.arraycopy (selectedItems, index + 1, newSelectedItems, index, newSelectedItems.length - index);
-	selectedItems = newSelectedItems;
-}
 /**
  * Removes the listener from the collection of listeners who will
  * be notified when the user changes the receiver's selection.
@@ -3186,7 +3141,7 @@ void reskinChildren (int flags) {
 public void select (int index) {
 	checkWidget ();
 	if (!(0 <= index && index < itemsCount)) return;
-	selectItem (items [index], (style & SWT.MULTI) != 0);
+	selectItem (index, (style & SWT.MULTI) != 0);
 	if (hasFocus () || (style & SWT.HIDE_SELECTION) == 0) {
 		redrawItem (index, false);
 	}
@@ -3220,8 +3175,10 @@ public void select (int start, int end) {
 	if (itemsCount == 0 || start >= itemsCount) return;
 	start = Math.max (start, 0);
 	end = Math.min (end, itemsCount - 1);
-	for (int i = start; i <= end; i++) {
-		selectItem (items [i], (style & SWT.MULTI) != 0);
+	if ((style & SWT.MULTI) != 0) {
+		selectedIndices.add (start, end);
+	} else {
+		selectItem (start, false);
 	}
 	if (hasFocus () || (style & SWT.HIDE_SELECTION) == 0) {
 		redrawItems (start, end, false);
@@ -3257,7 +3214,7 @@ public void select (int [] indices) {
 
 	for (int i = 0; i < indices.length; i++) {
 		if (0 <= indices [i] && indices [i] < itemsCount) {
-			selectItem (items [indices [i]], (style & SWT.MULTI) != 0);
+			selectItem (indices [i], (style & SWT.MULTI) != 0);
 		}
 	}
 	if (hasFocus () || (style & SWT.HIDE_SELECTION) == 0) {
@@ -3282,28 +3239,37 @@ public void select (int [] indices) {
 public void selectAll () {
 	checkWidget ();
 	if ((style & SWT.SINGLE) != 0) return;
-	selectedItems = new TableItem [itemsCount];
-	System.arraycopy (items, 0, selectedItems, 0, itemsCount);
+	selectedIndices.add (0, itemsCount - 1);
 	if (hasFocus () || (style & SWT.HIDE_SELECTION) == 0) {
 		redraw ();
 	}
 }
 void selectItem (TableItem item, boolean addToSelection) {
-	TableItem[] oldSelectedItems = selectedItems;
+	selectItem (item.index, addToSelection);
+}
+void selectItem (int index, boolean addToSelection) {
 	if (!addToSelection || (style & SWT.SINGLE) != 0) {
-		selectedItems = new TableItem[] {item};
+		IndexSet oldSelection = selectedIndices;
+		selectedIndices = new IndexSet ();
+		selectedIndices.add (index);
 		if (hasFocus () || (style & SWT.HIDE_SELECTION) == 0) {
-			for (int i = 0; i < oldSelectedItems.length; i++) {
-				if (oldSelectedItems [i] != item) {
-					redrawItem (oldSelectedItems [i].index, true);
-				}
-			}
+			redrawSelection (oldSelection, selectedIndices);
 		}
 	} else {
-		if (item.isSelected ()) return;
-		selectedItems = new TableItem [selectedItems.length + 1];
-		System.arraycopy (oldSelectedItems, 0, selectedItems, 0, oldSelectedItems.length);
-		selectedItems [selectedItems.length - 1] = item;
+		selectedIndices.add (index);
+	}
+}
+/*
+ * Replaces the selection with the items between the two indices (inclusive),
+ * which may be given in either order.  This is used for SHIFT range selection
+ * and does not create the items in the range.
+ */
+void selectRange (int anchorIndex, int selectIndex) {
+	IndexSet oldSelection = selectedIndices;
+	selectedIndices = new IndexSet ();
+	selectedIndices.add (Math.min (anchorIndex, selectIndex), Math.max (anchorIndex, selectIndex));
+	if (hasFocus () || (style & SWT.HIDE_SELECTION) == 0) {
+		redrawSelection (oldSelection, selectedIndices);
 	}
 }
 public void setBackground (Color color) {
@@ -3413,7 +3379,7 @@ public void setFont (Font value) {
 		columns [i].updateFont (gc);
 	}
 	for (int i = 0; i < itemsCount; i++) {
-		items [i].updateFont (gc);
+		if (items [i] != null) items [i].updateFont (gc);
 	}
 	
 	gc.dispose ();
@@ -3501,30 +3467,16 @@ public void setItemCount (int count) {
 		redrawStart = count;
 		redrawEnd = itemsCount - 1;
 		for (int i = count; i < itemsCount; i++) {
-			items [i].dispose (false);
+			if (items [i] != null) items [i].dispose (false);
+			items [i] = null;
 		}
 
-		int newSelectedCount = 0;
-		for (int i = 0; i < selectedItems.length; i++) {
-			if (!selectedItems [i].isDisposed ()) newSelectedCount++;
-		}
-		if (newSelectedCount != selectedItems.length) {
-			/* one or more selected items have been disposed */
-			TableItem[] newSelectedItems = new TableItem [newSelectedCount];
-			int pos = 0;
-			for (int i = 0; i < selectedItems.length; i++) {
-				TableItem item = selectedItems [i];
-				if (!item.isDisposed ()) {
-					newSelectedItems [pos++] = item;
-				}
-			}
-			selectedItems = newSelectedItems;
-		}
+		selectedIndices.remove (count, itemsCount - 1);
 
 		if (anchorItem != null && anchorItem.isDisposed ()) anchorItem = null;
 		if (lastClickedItem != null && lastClickedItem.isDisposed ()) lastClickedItem = null;
 		if (focusItem != null && focusItem.isDisposed ()) {
-			TableItem newFocusItem = count > 0 ? items [count - 1] : null; 
+			TableItem newFocusItem = count > 0 ? _getItem (count - 1) : null; 
 			setFocusItem (newFocusItem, false);
 		}
 		itemsCount = count;
@@ -3535,11 +3487,16 @@ public void setItemCount (int count) {
 		TableItem[] newItems = new TableItem [count];
 		System.arraycopy (items, 0, newItems, 0, itemsCount);
 		items = newItems;
-		for (int i = itemsCount; i < count; i++) {
-			items [i] = new TableItem (this, SWT.NONE, i, false);
-			itemsCount++;
+		if ((style & SWT.VIRTUAL) != 0) {
+			/* items are materialized on demand by _getItem() */
+			itemsCount = count;
+		} else {
+			for (int i = itemsCount; i < count; i++) {
+				items [i] = new TableItem (this, SWT.NONE, i, false);
+				itemsCount++;
+			}
 		}
-		if (oldCount == 0) focusItem = items [0];
+		if (oldCount == 0) focusItem = _getItem (0);
 	}
 
 	updateVerticalBar ();
@@ -3662,41 +3619,30 @@ void setSelection (TableItem[] items, boolean updateViewport) {
 		deselectAll ();
 		return;
 	}
-	TableItem[] oldSelection = selectedItems;
+	IndexSet oldSelection = selectedIndices;
 	
-	/* remove null and duplicate items */
-	int index = 0;
-	selectedItems = new TableItem [items.length];	/* assume all valid items */
+	/* ignore null and disposed items and items from other tables */
+	TableItem firstItem = null;
+	selectedIndices = new IndexSet ();
 	for (int i = 0; i < items.length; i++) {
 		TableItem item = items [i];
-		if (item != null && item.parent == this && !item.isSelected ()) {
-			selectedItems [index++] = item;
+		if (item != null && item.parent == this && !item.isDisposed ()) {
+			if (firstItem == null) firstItem = item;
+			selectedIndices.add (item.index);
 		}
 	}
-	if (index != items.length) {
-		/* an invalid item was provided so resize the array accordingly */
-		TableItem[] temp = new TableItem [index];
-		System.arraycopy (selectedItems, 0, temp, 0, index);
-		selectedItems = temp;
-	}
-	if (selectedItems.length == 0) {	/* no valid items */
+	if (firstItem == null) {	/* no valid items */
+		selectedIndices = oldSelection;
 		deselectAll ();
 		return;
 	}
 
 	if (hasFocus () || (style & SWT.HIDE_SELECTION) == 0) {
-		for (int i = 0; i < oldSelection.length; i++) {
-			if (!oldSelection [i].isSelected ()) {
-				redrawItem (oldSelection [i].index, true);
-			}
-		}
-		for (int i = 0; i < selectedItems.length; i++) {
-			redrawItem (selectedItems [i].index, true);
-		}
+		redrawSelection (oldSelection, selectedIndices);
 	}
 	if (updateViewport) {
-		showItem (selectedItems [0]);
-		setFocusItem (selectedItems [0], true);
+		showItem (firstItem);
+		setFocusItem (firstItem, true);
 	}
 }
 /**
@@ -3766,8 +3712,8 @@ public void setSelection (int index) {
 	checkWidget ();
 	deselectAll ();
 	if (!(0 <= index && index < itemsCount)) return;
-	selectItem (items [index], false);
-	setFocusItem (items [index], true);
+	selectItem (_getItem (index), false);
+	setFocusItem (_getItem (index), true);
 	redrawItem (index, true);
 	showSelection ();
 }
@@ -3801,7 +3747,7 @@ public void setSelection (int start, int end) {
 	start = Math.max (0, start);
 	end = Math.min (end, itemsCount - 1);
 	select (start, end);
-	setFocusItem (items [start], true);
+	setFocusItem (_getItem (start), true);
 	showSelection ();
 }
 /**
@@ -3839,7 +3785,7 @@ public void setSelection (int [] indices) {
 			focusIndex = indices [i];
 		}
 	}
-	if (focusIndex != -1) setFocusItem (items [focusIndex], true);
+	if (focusIndex != -1) setFocusItem (_getItem (focusIndex), true);
 	showSelection ();
 }
 /**
@@ -3969,8 +3915,8 @@ public void showItem (TableItem item) {
  */
 public void showSelection () {
 	checkWidget ();
-	if (selectedItems.length == 0) return;
-	showItem (selectedItems [0]);
+	if (selectedIndices.count == 0) return;
+	showItem (_getItem (selectedIndices.nextIndex (0)));
 }
 void sortDescent (int [] items) {
 	/* Shell Sort from K&R, pg 108 */
@@ -3987,36 +3933,6 @@ void sortDescent (int [] items) {
 		}
 	}
 }
-void sortAscent (int [] items) {
-	/* Shell Sort from K&R, pg 108 */
-	int length = items.length;
-	for (int gap = length / 2; gap > 0; gap /= 2) {
-		for (int i = gap; i < length; i++) {
-			for (int j = i - gap; j >= 0; j -= gap) {
-				if (items [j] >= items [j + gap]) {
-					int swap = items [j];
-					items [j] = items [j + gap];
-					items [j + gap] = swap;
-				}
-			}
-		}
-	}
-}
-void sortAscent (TableItem [] items) {
-	/* Shell Sort from K&R, pg 108 */
-	int length = items.length;
-	for (int gap = length / 2; gap > 0; gap /= 2) {
-		for (int i = gap; i < length; i++) {
-			for (int j = i - gap; j >= 0; j -= gap) {
-				if (items [j].index >= items [j + gap].index) {
-					TableItem swap = items [j];
-					items [j] = items [j + gap];
-					items [j + gap] = swap;
-				}
-			}
-		}
-	}
-}
 void updateColumnWidth (TableColumn column, int width) {
 	headerHideToolTip ();
 	int oldWidth = column.width;
@@ -4063,7 +3979,7 @@ void updateColumnWidth (TableColumn column, int width) {
 	column.updateWidth (headerGC);
 	headerGC.dispose ();
 	for (int i = 0; i < itemsCount; i++) {
-		items [i].updateColumnWidth (column, gc);
+		if (items [i] != null) items [i].updateColumnWidth (column, gc);
 	}
 	gc.dispose ();
 
@@ -4113,6 +4029,7 @@ void updateHorizontalBar () {
 		}
 	} else {
 		for (int i = 0; i < itemsCount; i++) {
+			if (items [i] == null) continue;	/* not materialized */
 			Rectangle itemBounds = items [i].getCellBounds (0);
 			maxX = Math.max (maxX, itemBounds.x + itemBounds.width + horizontalOffset);
 		}
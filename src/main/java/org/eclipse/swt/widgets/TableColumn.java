@@ -210,37 +210,9 @@ void computeDisplayText (GC gc) {
 		return;
 	}
 	
-	/* Make initial guess. */
-	int index = Math.min (availableWidth / gc.getFontMetrics ().getAverageCharWidth (), text.length ());
-	textWidth = gc.textExtent (text.substring (0, index), SWT.DRAW_MNEMONIC).x;
-
-	/* Initial guess is correct. */
-	if (availableWidth == textWidth) {
-		displayText = text.substring (0, index) + Table.ELLIPSIS;
-		return;
-	}
-
-	/* Initial guess is too high, so reduce until fit is found. */
-	if (availableWidth < textWidth) {
-		do {
-			index--;
-			if (index < 0) {
-				displayText = Table.ELLIPSIS;
-				return;
-			}
-			text = text.substring (0, index);
-			textWidth = gc.textExtent (text, SWT.DRAW_MNEMONIC).x;
-		} while (availableWidth < textWidth);
-		displayText = text + Table.ELLIPSIS;
-		return;
-	}
-	
-	/* Initial guess is too low, so increase until overrun is found. */
-	while (textWidth < availableWidth) {
-		index++;
-		textWidth = gc.textExtent (text.substring (0, index), SWT.DRAW_MNEMONIC).x;
-	}
-	displayText = text.substring (0, index - 1) + Table.ELLIPSIS;
+	/* Find the longest prefix that fits in front of the ellipsis. */
+	int index = fitText (gc, text, availableWidth, true);
+	displayText = text.substring (0, index) + Table.ELLIPSIS;
 }
 public void dispose () {
 	if (isDisposed ()) return;
@@ -456,6 +428,7 @@ public void pack () {
 	int index = getIndex ();
 	int newWidth = getPreferredWidth ();
 	for (int i = 0; i < parent.itemsCount; i++) {
+		if (items [i] == null) continue;	/* not materialized */
 		int width = items [i].getPreferredWidth (index);
 		/* ensure that receiver and parent were not disposed in a callback */
 		if (parent.isDisposed () || isDisposed ()) return;
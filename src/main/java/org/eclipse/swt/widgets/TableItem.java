@@ -302,43 +302,16 @@ void computeDisplayText (int columnIndex, GC gc) {
 		return;
 	}
 
-	/* Make initial guess. */
-	int index = Math.min (availableWidth / gc.getFontMetrics ().getAverageCharWidth (), text.length ());
-	textWidth = gc.stringExtent (text.substring (0, index)).x;
-
-	/* Initial guess is correct. */
-	if (availableWidth == textWidth) {
-		displayTexts [columnIndex] = text.substring (0, index) + Table.ELLIPSIS;
-		textWidths [columnIndex] = textWidth + ellipsisWidth;
-		return;
-	}
-
-	/* Initial guess is too high, so reduce until fit is found. */
-	if (availableWidth < textWidth) {
-		do {
-			index--;
-			if (index < 0) {
-				displayTexts [columnIndex] = Table.ELLIPSIS;
-				textWidths [columnIndex] = ellipsisWidth;
-				return;
-			}
-			text = text.substring (0, index);
-			textWidth = gc.stringExtent (text).x;
-		} while (availableWidth < textWidth);
-		displayTexts [columnIndex] = text + Table.ELLIPSIS;
-		textWidths [columnIndex] = textWidth + ellipsisWidth;
+	/* Find the longest prefix that fits in front of the ellipsis. */
+	int index = fitText (gc, text, availableWidth, false);
+	if (index == 0) {
+		displayTexts [columnIndex] = Table.ELLIPSIS;
+		textWidths [columnIndex] = ellipsisWidth;
 		return;
 	}
-	
-	/* Initial guess is too low, so increase until overrun is found. */
-	int previousWidth = 0;
-	while (textWidth < availableWidth) {
-		index++;
-		previousWidth = textWidth;
-		textWidth = gc.stringExtent (text.substring (0, index)).x;
-	}
-	displayTexts [columnIndex] = text.substring (0, index - 1) + Table.ELLIPSIS;
-	textWidths [columnIndex] = previousWidth + ellipsisWidth;
+	text = text.substring (0, index);
+	displayTexts [columnIndex] = text + Table.ELLIPSIS;
+	textWidths [columnIndex] = gc.stringExtent (text).x + ellipsisWidth;
 }
 void computeDisplayTexts (GC gc) {
 	if ((parent.style & SWT.VIRTUAL) != 0 && !cached) return;	/* nothing to do */
@@ -1054,7 +1027,7 @@ boolean isInViewport () {
 	return index <= topIndex + visibleCount;
 }
 boolean isSelected () {
-	return parent.getSelectionIndex (this) != -1;
+	return parent.selectedIndices.contains (index);
 }
 /*
  * The backgroundOnly argument indicates whether the item should only
@@ -1846,7 +1819,7 @@ public void setImage (int columnIndex, Image value) {
 					GC gc = new GC (parent);
 					TableItem[] rootItems = parent.items;
 					for (int i = 0; i < parent.itemsCount; i++) {
-						rootItems [i].updateColumnWidth (columns [0], gc);
+						if (rootItems [i] != null) rootItems [i].updateColumnWidth (columns [0], gc);
 					}
 					gc.dispose ();
 				}
@@ -1873,7 +1846,7 @@ public void setImage (int columnIndex, Image value) {
 			GC gc = new GC (parent);
 			TableItem[] rootItems = parent.items;
 			for (int i = 0; i < parent.itemsCount; i++) {
-				rootItems [i].updateColumnWidth (columns [0], gc);
+				if (rootItems [i] != null) rootItems [i].updateColumnWidth (columns [0], gc);
 			}
 			gc.dispose ();
 			parent.redraw (
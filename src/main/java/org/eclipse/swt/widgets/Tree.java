@@ -78,6 +78,7 @@ public class Tree extends Composite {
 	TreeColumn[] orderedColumns;
 	TreeItem[] items = NO_ITEMS;
 	TreeItem[] availableItems = NO_ITEMS;
+	int firstStaleIndex = Integer.MAX_VALUE;	/* see invalidateAvailableIndices() */
 	TreeItem[] selectedItems = NO_ITEMS;
 	TreeItem focusItem, anchorItem, insertMarkItem;
 	TreeItem lastClickedItem;
@@ -302,7 +303,7 @@ boolean checkData (TreeItem item, boolean redraw) {
 		event.index = parentItem == null ? indexOf (item) : parentItem.indexOf (item);
 		sendEvent (SWT.SetData, event);
 		if (isDisposed () || item.isDisposed ()) return false;
-		if (redraw) redrawItem (item.availableIndex, false);
+		if (redraw) redrawItem (item.getAvailableIndex (), false);
 	}
 	return true;
 }
@@ -397,9 +398,9 @@ public void clear (int index, boolean recursive) {
 		int descendentCount = availableDescendents == null ?
 			item.computeAvailableDescendentCount () :
 			availableDescendents.length;
-		redrawItems (item.availableIndex, item.availableIndex + descendentCount - 1, false);
+		redrawItems (item.getAvailableIndex (), item.getAvailableIndex () + descendentCount - 1, false);
 	} else {
-		redrawItem (item.availableIndex, false);
+		redrawItem (item.getAvailableIndex (), false);
 	}
 }
 /**
@@ -460,7 +461,7 @@ public void clearAll (boolean recursive) {
 		redrawItems (0, availableItemsCount - 1, false);
 	} else {
 		for (int i = 0; i < items.length; i++) {
-			redrawItem (items [i].availableIndex, false);
+			redrawItem (items [i].getAvailableIndex (), false);
 		}
 	}
 }
@@ -560,7 +561,7 @@ void createItem (TreeItem item, int index) {
 	if (index == items.length - 1) {
 		startIndex = availableItemsCount;		/* last item */
 	} else {
-		startIndex = items [index + 1].availableIndex;
+		startIndex = items [index + 1].getAvailableIndex ();
 	}
 
 	if (availableItemsCount == availableItems.length) {
@@ -581,10 +582,9 @@ void createItem (TreeItem item, int index) {
 	availableItems [startIndex] = item;
 	availableItemsCount++;
 
-	/* update the availableIndex for items bumped down by this new item */
-	for (int i = startIndex; i < availableItemsCount; i++) {
-		availableItems [i].availableIndex = i;
-	}
+	/* the availableIndex of items bumped down by this new item is updated lazily */
+	item.availableIndex = startIndex;
+	invalidateAvailableIndices (startIndex + 1);
 
 	/* update scrollbars */
 	updateVerticalBar ();
@@ -595,7 +595,7 @@ void createItem (TreeItem item, int index) {
 	 * If new item is above viewport then adjust topIndex and the vertical
 	 * scrollbar so that the current viewport items will not change.
 	 */
-	if (item.availableIndex < topIndex) {
+	if (item.getAvailableIndex () < topIndex) {
 		topIndex++;
 		ScrollBar vBar = getVerticalBar ();
 		if (vBar != null) vBar.setSelection (topIndex);
@@ -612,7 +612,7 @@ void createItem (TreeItem item, int index) {
 	}
 	int redrawIndex = index;
 	if (redrawIndex > 0 && item.isLastChild ()) redrawIndex--;
-	redrawFromItemDownwards (items [redrawIndex].availableIndex);
+	redrawFromItemDownwards (items [redrawIndex].getAvailableIndex ());
 }
 /**
  * Deselects an item in the receiver.  If the item was already
@@ -636,7 +636,7 @@ public void deselect (TreeItem item) {
 	if (item == null) error (SWT.ERROR_NULL_ARGUMENT);
 	if (item.isDisposed ()) error (SWT.ERROR_INVALID_ARGUMENT);
 	deselectItem (item);
-	redrawItem (item.availableIndex, true);
+	redrawItem (item.getAvailableIndex (), true);
 }
 /**
  * Deselects all selected items in the receiver.
@@ -651,7 +651,7 @@ public void deselectAll () {
 	TreeItem[] oldSelection = selectedItems;
 	selectedItems = NO_ITEMS;
 	for (int i = 0; i < oldSelection.length; i++) {
-		redrawItem (oldSelection [i].availableIndex, true);
+		redrawItem (oldSelection [i].getAvailableIndex (), true);
 	}
 }
 void deselectItem (TreeItem item) {
@@ -743,7 +743,7 @@ void destroyItem (TreeItem item) {
 	if (item == focusItem) reassignFocus ();
 
 	/* availableItems array */
-	int availableIndex = item.availableIndex; 
+	int availableIndex = item.getAvailableIndex (); 
 	if (availableIndex != -1) {
 		Rectangle bounds = item.getBounds (false);
 		int rightX = bounds.x + bounds.width;
@@ -769,10 +769,8 @@ void destroyItem (TreeItem item) {
 			availableItems = newAvailableItems;
 		}
 
-		/* update the availableIndex on affected items */
-		for (int i = availableIndex; i < availableItemsCount; i++) {
-			availableItems [i].availableIndex = i;
-		}
+		/* the availableIndex of affected items is updated lazily */
+		invalidateAvailableIndices (availableIndex);
 		item.availableIndex = -1;
 		int oldTopIndex = topIndex;
 		updateVerticalBar ();
@@ -1171,7 +1169,7 @@ public TreeItem[] getItems () {
  * Returns the current y-coordinate that the specified item should have. 
  */
 int getItemY (TreeItem item) {
-	int index = item.availableIndex;
+	int index = item.getAvailableIndex ();
 	if (index == -1) return -1;
 	return (index - topIndex) * itemHeight + getHeaderHeight ();
 }
@@ -1898,7 +1896,7 @@ void makeAvailable (TreeItem item) {
 	int parentItemCount = item.parentItem.items.length; 
 	int index = 0;
 	if (parentItemCount == 1) {		/* this is the only child of parentItem */
-		index = item.parentItem.availableIndex + 1;
+		index = item.parentItem.getAvailableIndex () + 1;
 	} else {
 		/* determine this item's index in its parent */
 		int itemIndex = 0;
@@ -1910,10 +1908,10 @@ void makeAvailable (TreeItem item) {
 			}
 		}
 		if (itemIndex != parentItemCount - 1) {	/* this is not the last child */
-			index = items [itemIndex + 1].availableIndex;
+			index = items [itemIndex + 1].getAvailableIndex ();
 		} else {	/* this is the last child */
 			TreeItem previousItem = items [itemIndex - 1];
-			index = previousItem.availableIndex + previousItem.computeAvailableDescendentCount ();
+			index = previousItem.getAvailableIndex () + previousItem.computeAvailableDescendentCount ();
 		}
 	}
 
@@ -1930,36 +1928,65 @@ void makeAvailable (TreeItem item) {
 	availableItems [index] = item;
 	availableItemsCount++;
 
-	/* update availableIndex as needed */
-	for (int i = index; i < availableItemsCount; i++) {
-		availableItems [i].availableIndex = i;
-	}
+	/* the availableIndex of items bumped down by this new item is updated lazily */
+	item.availableIndex = index;
+	invalidateAvailableIndices (index + 1);
 }
 
+/*
+ * Records that the availableIndex of the available items at or after the
+ * specified index may be out of date.  Renumbering these items is deferred
+ * until TreeItem.getAvailableIndex() needs one of them, so that expanding
+ * or collapsing an item does not visit every item below it.
+ */
+void invalidateAvailableIndices (int index) {
+	if (index < firstStaleIndex) firstStaleIndex = index;
+	if (firstStaleIndex >= availableItemsCount) firstStaleIndex = Integer.MAX_VALUE;
+}
+/*
+ * Renumbers the out of date available items up to and including the argument.
+ */
+void updateAvailableIndices (TreeItem item) {
+	int index = firstStaleIndex;
+	while (index < availableItemsCount) {
+		TreeItem current = availableItems [index];
+		current.availableIndex = index++;
+		if (current == item) break;
+	}
+	firstStaleIndex = index < availableItemsCount ? index : Integer.MAX_VALUE;
+}
 /*
  * Important: Assumes that item is available and its descendents have just become
  * available (ie.- they were either created or the item was expanded).
  */
 void makeDescendentsAvailable (TreeItem item, TreeItem[] descendents) {
-	int itemAvailableIndex = item.availableIndex;
-	TreeItem[] newAvailableItems = new TreeItem [availableItemsCount + descendents.length - 1];
+	int itemAvailableIndex = item.getAvailableIndex ();
+	int newCount = availableItemsCount + descendents.length - 1;
+	if (availableItems.length < newCount) {
+		TreeItem[] newAvailableItems = new TreeItem [Math.max (newCount, availableItems.length * 3 / 2)];
+		System.arraycopy (availableItems, 0, newAvailableItems, 0, availableItemsCount);
+		availableItems = newAvailableItems;
+	}
 	
-	System.arraycopy (availableItems, 0, newAvailableItems, 0, itemAvailableIndex);
-	System.arraycopy (descendents, 0, newAvailableItems, itemAvailableIndex, descendents.length);
+	/* shift the items below the item down to make room for its descendents */
 	int startIndex = itemAvailableIndex + 1;
 	System.arraycopy (
 		availableItems,
 		startIndex,
-		newAvailableItems,
+		availableItems,
 		itemAvailableIndex + descendents.length,
 		availableItemsCount - startIndex);
-	availableItems = newAvailableItems;
-	availableItemsCount = availableItems.length;
+	System.arraycopy (descendents, 0, availableItems, itemAvailableIndex, descendents.length);
+	availableItemsCount = newCount;
 	
-	/* update availableIndex as needed */
-	for (int i = itemAvailableIndex; i < availableItemsCount; i++) {
-		availableItems [i].availableIndex = i;
+	/* 
+	 * The descendents are numbered now, the availableIndex of the items that
+	 * were shifted down is updated lazily.
+	 */
+	for (int i = 1; i < descendents.length; i++) {
+		descendents [i].availableIndex = itemAvailableIndex + i;
 	}
+	invalidateAvailableIndices (itemAvailableIndex + descendents.length);
 }
 
 /*
@@ -1968,27 +1995,28 @@ void makeDescendentsAvailable (TreeItem item, TreeItem[] descendents) {
  */
 void makeDescendentsUnavailable (TreeItem item, TreeItem[] descendents) {
 	int descendentsLength = descendents.length;
-	TreeItem[] newAvailableItems = new TreeItem [availableItemsCount - descendentsLength + 1];
+	int itemAvailableIndex = item.getAvailableIndex ();
+	int newCount = availableItemsCount - descendentsLength + 1;
 	
-	System.arraycopy (availableItems, 0, newAvailableItems, 0, item.availableIndex + 1);
-	int startIndex = item.availableIndex + descendentsLength;
+	/* shift the items below the descendents up to reclaim their slots */
+	int startIndex = itemAvailableIndex + descendentsLength;
 	System.arraycopy (
 		availableItems,
 		startIndex,
-		newAvailableItems,
-		item.availableIndex + 1,
+		availableItems,
+		itemAvailableIndex + 1,
 		availableItemsCount - startIndex);
-	availableItems = newAvailableItems;
-	availableItemsCount = availableItems.length;
+	for (int i = newCount; i < availableItemsCount; i++) {
+		availableItems [i] = null;
+	}
+	availableItemsCount = newCount;
 	
-	/* update availableIndexes */
+	/* update availableIndexes, the items that were shifted up are updated lazily */
 	for (int i = 1; i < descendents.length; i++) {
 		/* skip the first descendent since this is the item being collapsed */
 		descendents [i].availableIndex = -1;
 	}
-	for (int i = item.availableIndex; i < availableItemsCount; i++) {
-		availableItems [i].availableIndex = i;
-	}
+	invalidateAvailableIndices (itemAvailableIndex + 1);
 	
 	/* remove the selection from all descendents */
 	for (int i = selectedItems.length - 1; i >= 0; i--) {
@@ -2005,7 +2033,7 @@ void makeDescendentsUnavailable (TreeItem item, TreeItem[] descendents) {
 void onArrowDown (int stateMask) {
 	if ((stateMask & (SWT.SHIFT | SWT.CTRL)) == 0) {
 		/* Down Arrow with no modifiers */
-		int newFocusIndex = focusItem.availableIndex + 1;
+		int newFocusIndex = focusItem.getAvailableIndex () + 1;
 		if (newFocusIndex == availableItemsCount) return; 	/* at bottom */
 		selectItem (availableItems [newFocusIndex], false);
 		setFocusItem (availableItems [newFocusIndex], true);
@@ -2034,7 +2062,7 @@ void onArrowDown (int stateMask) {
 			return;
 		}
 		/* Shift+Down Arrow */
-		int newFocusIndex = focusItem.availableIndex + 1;
+		int newFocusIndex = focusItem.getAvailableIndex () + 1;
 		if (newFocusIndex == availableItemsCount) return; 	/* at bottom */
 		selectItem (availableItems [newFocusIndex], false);
 		setFocusItem (availableItems [newFocusIndex], true);
@@ -2064,21 +2092,21 @@ void onArrowDown (int stateMask) {
 			return;
 		}
 		/* CTRL+Down Arrow */
-		int focusIndex = focusItem.availableIndex; 
+		int focusIndex = focusItem.getAvailableIndex (); 
 		if (focusIndex == availableItemsCount - 1) return;	/* at bottom */
 		TreeItem newFocusItem = availableItems [focusIndex + 1];
 		setFocusItem (newFocusItem, true);
-		redrawItem (newFocusItem.availableIndex, true);
+		redrawItem (newFocusItem.getAvailableIndex (), true);
 		showItem (newFocusItem);
 		return;
 	}
 	/* Shift+Down Arrow */
-	int newFocusIndex = focusItem.availableIndex + 1;
+	int newFocusIndex = focusItem.getAvailableIndex () + 1;
 	if (newFocusIndex == availableItemsCount) return; 	/* at bottom */
 	if (anchorItem == null) anchorItem = focusItem;
-	if (focusItem.availableIndex < anchorItem.availableIndex) {
+	if (focusItem.getAvailableIndex () < anchorItem.getAvailableIndex ()) {
 		deselectItem (focusItem);
-		redrawItem (focusItem.availableIndex, true);
+		redrawItem (focusItem.getAvailableIndex (), true);
 	}
 	selectItem (availableItems [newFocusIndex], true);
 	setFocusItem (availableItems [newFocusIndex], true);
@@ -2128,7 +2156,7 @@ void onArrowLeft (int stateMask) {
 	
 	selectItem (parentItem, false);
 	setFocusItem (parentItem, true);
-	redrawItem (parentItem.availableIndex, true);
+	redrawItem (parentItem.getAvailableIndex (), true);
 	showItem (parentItem);
 	Event newEvent = new Event ();
 	newEvent.item = parentItem;
@@ -2184,7 +2212,7 @@ void onArrowRight (int stateMask) {
 	}
 	selectItem (children [0], false);
 	setFocusItem (children [0], true);
-	redrawItem (children [0].availableIndex, true);
+	redrawItem (children [0].getAvailableIndex (), true);
 	showItem (children [0]);
 	Event newEvent = new Event ();
 	newEvent.item = children [0];
@@ -2193,7 +2221,7 @@ void onArrowRight (int stateMask) {
 void onArrowUp (int stateMask) {
 	if ((stateMask & (SWT.SHIFT | SWT.CTRL)) == 0) {
 		/* Up Arrow with no modifiers */
-		int newFocusIndex = focusItem.availableIndex - 1;
+		int newFocusIndex = focusItem.getAvailableIndex () - 1;
 		if (newFocusIndex < 0) return; 		/* at top */
 		TreeItem item = availableItems [newFocusIndex];
 		selectItem (item, false);
@@ -2222,7 +2250,7 @@ void onArrowUp (int stateMask) {
 			return;
 		}
 		/* Shift+Up Arrow */
-		int newFocusIndex = focusItem.availableIndex - 1;
+		int newFocusIndex = focusItem.getAvailableIndex () - 1;
 		if (newFocusIndex < 0) return; 	/* at top */
 		TreeItem item = availableItems [newFocusIndex];
 		selectItem (item, false);
@@ -2252,21 +2280,21 @@ void onArrowUp (int stateMask) {
 			return;
 		}
 		/* CTRL+Up Arrow */
-		int focusIndex = focusItem.availableIndex; 
+		int focusIndex = focusItem.getAvailableIndex (); 
 		if (focusIndex == 0) return;	/* at top */
 		TreeItem newFocusItem = availableItems [focusIndex - 1];
 		setFocusItem (newFocusItem, true);
 		showItem (newFocusItem);
-		redrawItem (newFocusItem.availableIndex, true);
+		redrawItem (newFocusItem.getAvailableIndex (), true);
 		return;
 	}
 	/* Shift+Up Arrow */
-	int newFocusIndex = focusItem.availableIndex - 1;
+	int newFocusIndex = focusItem.getAvailableIndex () - 1;
 	if (newFocusIndex < 0) return; 		/* at top */
 	if (anchorItem == null) anchorItem = focusItem;
-	if (anchorItem.availableIndex < focusItem.availableIndex) {
+	if (anchorItem.getAvailableIndex () < focusItem.getAvailableIndex ()) {
 		deselectItem (focusItem);
-		redrawItem (focusItem.availableIndex, true);
+		redrawItem (focusItem.getAvailableIndex (), true);
 	}
 	TreeItem item = availableItems [newFocusIndex];
 	selectItem (item, true);
@@ -2303,6 +2331,7 @@ void onDispose (Event event) {
 	toolTipListener = null;
 	topIndex = availableItemsCount = horizontalOffset = 0;
 	availableItems = items = selectedItems = null;
+	firstStaleIndex = Integer.MAX_VALUE;
 	columns = orderedColumns = null;
 	focusItem = anchorItem = insertMarkItem = lastClickedItem = null;
 	lastSelectionEvent = null;
@@ -2315,7 +2344,7 @@ void onEnd (int stateMask) {
 	int lastAvailableIndex = availableItemsCount - 1;
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 		/* End with no modifiers */
-		if (focusItem.availableIndex == lastAvailableIndex) return; 	/* at bottom */
+		if (focusItem.getAvailableIndex () == lastAvailableIndex) return; 	/* at bottom */
 		TreeItem item = availableItems [lastAvailableIndex]; 
 		selectItem (item, false);
 		setFocusItem (item, true);
@@ -2334,7 +2363,7 @@ void onEnd (int stateMask) {
 			return;
 		}
 		/* Shift+End */
-		if (focusItem.availableIndex == lastAvailableIndex) return; /* at bottom */
+		if (focusItem.getAvailableIndex () == lastAvailableIndex) return; /* at bottom */
 		TreeItem item = availableItems [lastAvailableIndex]; 
 		selectItem (item, false);
 		setFocusItem (item, true);
@@ -2353,19 +2382,19 @@ void onEnd (int stateMask) {
 			return;
 		}
 		/* CTRL+End */
-		if (focusItem.availableIndex == lastAvailableIndex) return; /* at bottom */
+		if (focusItem.getAvailableIndex () == lastAvailableIndex) return; /* at bottom */
 		TreeItem item = availableItems [lastAvailableIndex];
 		setFocusItem (item, true);
 		showItem (item);
-		redrawItem (item.availableIndex, true);
+		redrawItem (item.getAvailableIndex (), true);
 		return;
 	}
 	/* Shift+End */
 	if (anchorItem == null) anchorItem = focusItem;
 	TreeItem selectedItem = availableItems [lastAvailableIndex];
 	if (selectedItem == focusItem && selectedItem.isSelected ()) return;
-	int anchorIndex = anchorItem.availableIndex;
-	int selectIndex = selectedItem.availableIndex;
+	int anchorIndex = anchorItem.getAvailableIndex ();
+	int selectIndex = selectedItem.getAvailableIndex ();
 	TreeItem[] newSelection = new TreeItem [selectIndex - anchorIndex + 1];
 	int writeIndex = 0;
 	for (int i = anchorIndex; i <= selectIndex; i++) {
@@ -2387,7 +2416,7 @@ void onFocusIn () {
 		return;
 	}
 	if (focusItem != null) {
-		redrawItem (focusItem.availableIndex, true);
+		redrawItem (focusItem.getAvailableIndex (), true);
 		return;
 	}
 	/* an initial focus item must be selected */
@@ -2406,7 +2435,7 @@ void onFocusIn () {
 		initialFocus = availableItems [topIndex];
 	}
 	setFocusItem (initialFocus, false);
-	redrawItem (initialFocus.availableIndex, true);
+	redrawItem (initialFocus.getAvailableIndex (), true);
 	return;
 }
 void onFocusOut () {
@@ -2418,13 +2447,13 @@ void onFocusOut () {
 	}	
 
 	if (focusItem != null) {
-		redrawItem (focusItem.availableIndex, true);
+		redrawItem (focusItem.getAvailableIndex (), true);
 	}
 }
 void onHome (int stateMask) {
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 		/* Home with no modifiers */
-		if (focusItem.availableIndex == 0) return; 		/* at top */
+		if (focusItem.getAvailableIndex () == 0) return; 		/* at top */
 		TreeItem item = availableItems [0];
 		selectItem (item, false);
 		setFocusItem (item, true);
@@ -2442,7 +2471,7 @@ void onHome (int stateMask) {
 			return;
 		}
 		/* Shift+Home */
-		if (focusItem.availableIndex == 0) return; 		/* at top */
+		if (focusItem.getAvailableIndex () == 0) return; 		/* at top */
 		TreeItem item = availableItems [0];
 		selectItem (item, false);
 		setFocusItem (item, true);
@@ -2461,19 +2490,19 @@ void onHome (int stateMask) {
 			return;
 		}
 		/* CTRL+Home */
-		if (focusItem.availableIndex == 0) return; /* at top */
+		if (focusItem.getAvailableIndex () == 0) return; /* at top */
 		TreeItem item = availableItems [0];
 		setFocusItem (item, true);
 		showItem (item);
-		redrawItem (item.availableIndex, true);
+		redrawItem (item.getAvailableIndex (), true);
 		return;
 	}
 	/* Shift+Home */
 	if (anchorItem == null) anchorItem = focusItem;
 	TreeItem selectedItem = availableItems [0];
 	if (selectedItem == focusItem && selectedItem.isSelected ()) return;
-	int anchorIndex = anchorItem.availableIndex;
-	int selectIndex = selectedItem.availableIndex;
+	int anchorIndex = anchorItem.getAvailableIndex ();
+	int selectIndex = selectedItem.getAvailableIndex ();
 	TreeItem[] newSelection = new TreeItem [anchorIndex + 1];
 	int writeIndex = 0;
 	for (int i = anchorIndex; i >= 0; i--) {
@@ -2536,7 +2565,7 @@ void onKeyDown (Event event) {
 	}
 	if ((event.stateMask & SWT.CTRL) != 0) return;
 
-	int initialIndex = focusItem.availableIndex;
+	int initialIndex = focusItem.getAvailableIndex ();
 	char character = Character.toLowerCase (event.character);
 	/* check available items from current focus item to bottom */
 	for (int i = initialIndex + 1; i < availableItemsCount; i++) {
@@ -2656,7 +2685,7 @@ void onMouseDown (Event event) {
 			if (event.button == 1) {
 				selectItem (selectedItem, false);
 				setFocusItem (selectedItem, true);
-				redrawItem (selectedItem.availableIndex, true);
+				redrawItem (selectedItem.getAvailableIndex (), true);
 				if (sendSelection) {
 					Event newEvent = new Event ();
 					newEvent.item = selectedItem;
@@ -2667,7 +2696,7 @@ void onMouseDown (Event event) {
 			if ((event.stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 				selectItem (selectedItem, false);
 				setFocusItem (selectedItem, true);
-				redrawItem (selectedItem.availableIndex, true);
+				redrawItem (selectedItem.getAvailableIndex (), true);
 				if (sendSelection) {
 					Event newEvent = new Event ();
 					newEvent.item = selectedItem;
@@ -2692,8 +2721,8 @@ void onMouseDown (Event event) {
 		if (event.button == 1) {
 			if ((event.stateMask & (SWT.CTRL | SWT.SHIFT)) == SWT.SHIFT) {
 				if (anchorItem == null) anchorItem = focusItem;
-				int anchorIndex = anchorItem.availableIndex;
-				int selectIndex = selectedItem.availableIndex;
+				int anchorIndex = anchorItem.getAvailableIndex ();
+				int selectIndex = selectedItem.getAvailableIndex ();
 				TreeItem[] newSelection = new TreeItem [Math.abs (anchorIndex - selectIndex) + 1];
 				int step = anchorIndex < selectIndex ? 1 : -1;
 				int writeIndex = 0;
@@ -2716,7 +2745,7 @@ void onMouseDown (Event event) {
 			}
 			selectItem (selectedItem, (event.stateMask & SWT.CTRL) != 0);
 			setFocusItem (selectedItem, true);
-			redrawItem (selectedItem.availableIndex, true);
+			redrawItem (selectedItem.getAvailableIndex (), true);
 			if (sendSelection) {
 				Event newEvent = new Event ();
 				newEvent.item = selectedItem;
@@ -2728,7 +2757,7 @@ void onMouseDown (Event event) {
 		if ((event.stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 			selectItem (selectedItem, false);
 			setFocusItem (selectedItem, true);
-			redrawItem (selectedItem.availableIndex, true);
+			redrawItem (selectedItem.getAvailableIndex (), true);
 			if (sendSelection) {
 				Event newEvent = new Event ();
 				newEvent.item = selectedItem;
@@ -2742,7 +2771,7 @@ void onMouseDown (Event event) {
 	if ((event.stateMask & SWT.CTRL) != 0) {
 		removeSelectedItem (getSelectionIndex (selectedItem));
 		setFocusItem (selectedItem, true);
-		redrawItem (selectedItem.availableIndex, true);
+		redrawItem (selectedItem.getAvailableIndex (), true);
 		if (sendSelection) {
 			Event newEvent = new Event ();
 			newEvent.item = selectedItem;
@@ -2752,8 +2781,8 @@ void onMouseDown (Event event) {
 	}
 	if ((event.stateMask & SWT.SHIFT) != 0) {
 		if (anchorItem == null) anchorItem = focusItem;
-		int anchorIndex = anchorItem.availableIndex;
-		int selectIndex = selectedItem.availableIndex;
+		int anchorIndex = anchorItem.getAvailableIndex ();
+		int selectIndex = selectedItem.getAvailableIndex ();
 		TreeItem[] newSelection = new TreeItem [Math.abs (anchorIndex - selectIndex) + 1];
 		int step = anchorIndex < selectIndex ? 1 : -1;
 		int writeIndex = 0;
@@ -2776,7 +2805,7 @@ void onMouseDown (Event event) {
 	}
 	selectItem (selectedItem, false);
 	setFocusItem (selectedItem, true);
-	redrawItem (selectedItem.availableIndex, true);
+	redrawItem (selectedItem.getAvailableIndex (), true);
 	if (sendSelection) {
 		Event newEvent = new Event ();
 		newEvent.item = selectedItem;
@@ -2792,14 +2821,14 @@ void onPageDown (int stateMask) {
 	int visibleItemCount = (clientArea.height - getHeaderHeight ()) / itemHeight;
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 		/* PageDown with no modifiers */
-		int newFocusIndex = focusItem.availableIndex + visibleItemCount - 1;
+		int newFocusIndex = focusItem.getAvailableIndex () + visibleItemCount - 1;
 		newFocusIndex = Math.min (newFocusIndex, availableItemsCount - 1);
-		if (newFocusIndex == focusItem.availableIndex) return;
+		if (newFocusIndex == focusItem.getAvailableIndex ()) return;
 		TreeItem item = availableItems [newFocusIndex];
 		selectItem (item, false);
 		setFocusItem (item, true);
 		showItem (item);
-		redrawItem (item.availableIndex, true);
+		redrawItem (item.getAvailableIndex (), true);
 		return;
 	}
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == (SWT.CTRL | SWT.SHIFT)) {
@@ -2813,14 +2842,14 @@ void onPageDown (int stateMask) {
 	if ((style & SWT.SINGLE) != 0) {
 		if ((stateMask & SWT.SHIFT) != 0) {
 			/* Shift+PageDown */
-			int newFocusIndex = focusItem.availableIndex + visibleItemCount - 1;
+			int newFocusIndex = focusItem.getAvailableIndex () + visibleItemCount - 1;
 			newFocusIndex = Math.min (newFocusIndex, availableItemsCount - 1);
-			if (newFocusIndex == focusItem.availableIndex) return;
+			if (newFocusIndex == focusItem.getAvailableIndex ()) return;
 			TreeItem item = availableItems [newFocusIndex];
 			selectItem (item, false);
 			setFocusItem (item, true);
 			showItem (item);
-			redrawItem (item.availableIndex, true);
+			redrawItem (item.getAvailableIndex (), true);
 			return;
 		}
 		/* CTRL+PageDown */
@@ -2834,14 +2863,14 @@ void onPageDown (int stateMask) {
 	if ((stateMask & SWT.CTRL) != 0) {
 		/* CTRL+PageDown */
 		int bottomIndex = Math.min (topIndex + visibleItemCount - 1, availableItemsCount - 1);
-		if (focusItem.availableIndex != bottomIndex) {
+		if (focusItem.getAvailableIndex () != bottomIndex) {
 			/* move focus to bottom item in viewport */
 			setFocusItem (availableItems [bottomIndex], true);
 			redrawItem (bottomIndex, true);
 		} else {
 			/* at bottom of viewport, so set focus to bottom item one page down */
 			int newFocusIndex = Math.min (availableItemsCount - 1, bottomIndex + visibleItemCount);
-			if (newFocusIndex == focusItem.availableIndex) return;
+			if (newFocusIndex == focusItem.getAvailableIndex ()) return;
 			setFocusItem (availableItems [newFocusIndex], true);
 			showItem (availableItems [newFocusIndex]);
 			redrawItem (newFocusIndex, true);
@@ -2850,16 +2879,16 @@ void onPageDown (int stateMask) {
 	}
 	/* Shift+PageDown */
 	if (anchorItem == null) anchorItem = focusItem;
-	int anchorIndex = anchorItem.availableIndex;
+	int anchorIndex = anchorItem.getAvailableIndex ();
 	int bottomIndex = Math.min (topIndex + visibleItemCount - 1, availableItemsCount - 1);
 	int selectIndex;
-	if (focusItem.availableIndex != bottomIndex) {
+	if (focusItem.getAvailableIndex () != bottomIndex) {
 		/* select from focus to bottom item in viewport */
 		selectIndex = bottomIndex;
 	} else {
 		/* already at bottom of viewport, so select to bottom of one page down */
 		selectIndex = Math.min (availableItemsCount - 1, bottomIndex + visibleItemCount);
-		if (selectIndex == focusItem.availableIndex && focusItem.isSelected ()) return;
+		if (selectIndex == focusItem.getAvailableIndex () && focusItem.isSelected ()) return;
 	}
 	TreeItem selectedItem = availableItems [selectIndex];
 	TreeItem[] newSelection = new TreeItem [Math.abs (anchorIndex - selectIndex) + 1];
@@ -2880,13 +2909,13 @@ void onPageUp (int stateMask) {
 	int visibleItemCount = (clientArea.height - getHeaderHeight ()) / itemHeight;
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 		/* PageUp with no modifiers */
-		int newFocusIndex = Math.max (0, focusItem.availableIndex - visibleItemCount + 1);
-		if (newFocusIndex == focusItem.availableIndex) return;
+		int newFocusIndex = Math.max (0, focusItem.getAvailableIndex () - visibleItemCount + 1);
+		if (newFocusIndex == focusItem.getAvailableIndex ()) return;
 		TreeItem item = availableItems [newFocusIndex];
 		selectItem (item, false);
 		setFocusItem (item, true);
 		showItem (item);
-		redrawItem (item.availableIndex, true);
+		redrawItem (item.getAvailableIndex (), true);
 		return;
 	}
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == (SWT.CTRL | SWT.SHIFT)) {
@@ -2899,13 +2928,13 @@ void onPageUp (int stateMask) {
 	if ((style & SWT.SINGLE) != 0) {
 		if ((stateMask & SWT.SHIFT) != 0) {
 			/* Shift+PageUp */
-			int newFocusIndex = Math.max (0, focusItem.availableIndex - visibleItemCount + 1);
-			if (newFocusIndex == focusItem.availableIndex) return;
+			int newFocusIndex = Math.max (0, focusItem.getAvailableIndex () - visibleItemCount + 1);
+			if (newFocusIndex == focusItem.getAvailableIndex ()) return;
 			TreeItem item = availableItems [newFocusIndex];
 			selectItem (item, false);
 			setFocusItem (item, true);
 			showItem (item);
-			redrawItem (item.availableIndex, true);
+			redrawItem (item.getAvailableIndex (), true);
 			return;
 		}
 		/* CTRL+PageUp */
@@ -2917,14 +2946,14 @@ void onPageUp (int stateMask) {
 	/* SWT.MULTI */
 	if ((stateMask & SWT.CTRL) != 0) {
 		/* CTRL+PageUp */
-		if (focusItem.availableIndex != topIndex) {
+		if (focusItem.getAvailableIndex () != topIndex) {
 			/* move focus to top item in viewport */
 			setFocusItem (availableItems [topIndex], true);
 			redrawItem (topIndex, true);
 		} else {
 			/* at top of viewport, so set focus to top item one page up */
-			int newFocusIndex = Math.max (0, focusItem.availableIndex - visibleItemCount);
-			if (newFocusIndex == focusItem.availableIndex) return;
+			int newFocusIndex = Math.max (0, focusItem.getAvailableIndex () - visibleItemCount);
+			if (newFocusIndex == focusItem.getAvailableIndex ()) return;
 			setFocusItem (availableItems [newFocusIndex], true);
 			showItem (availableItems [newFocusIndex]);
 			redrawItem (newFocusIndex, true);
@@ -2933,15 +2962,15 @@ void onPageUp (int stateMask) {
 	}
 	/* Shift+PageUp */
 	if (anchorItem == null) anchorItem = focusItem;
-	int anchorIndex = anchorItem.availableIndex;
+	int anchorIndex = anchorItem.getAvailableIndex ();
 	int selectIndex;
-	if (focusItem.availableIndex != topIndex) {
+	if (focusItem.getAvailableIndex () != topIndex) {
 		/* select from focus to top item in viewport */
 		selectIndex = topIndex;
 	} else {
 		/* already at top of viewport, so select to top of one page up */
 		selectIndex = Math.max (0, topIndex - visibleItemCount);
-		if (selectIndex == focusItem.availableIndex && focusItem.isSelected ()) return;
+		if (selectIndex == focusItem.getAvailableIndex () && focusItem.isSelected ()) return;
 	}
 	TreeItem selectedItem = availableItems [selectIndex];
 	TreeItem[] newSelection = new TreeItem [Math.abs (anchorIndex - selectIndex) + 1];
@@ -3186,7 +3215,7 @@ void onSpace () {
 	if (focusItem == null) return;
 	if (!focusItem.isSelected ()) {
 		selectItem (focusItem, (style & SWT.MULTI) != 0);
-		redrawItem (focusItem.availableIndex, true);
+		redrawItem (focusItem.getAvailableIndex (), true);
 	}
 	if ((style & SWT.CHECK) != 0) {
 		focusItem.setChecked (!focusItem.checked);
@@ -3320,6 +3349,7 @@ public void removeAll () {
 	}
 	items = availableItems = selectedItems = NO_ITEMS;
 	availableItemsCount = topIndex = 0;
+	firstStaleIndex = Integer.MAX_VALUE;
 	anchorItem = lastClickedItem = insertMarkItem = null;
 	lastSelectionEvent = null;
 	inExpand = false;
@@ -3445,7 +3475,7 @@ public void select (TreeItem item) {
 	if (item == null) error (SWT.ERROR_NULL_ARGUMENT);
 	if (item.isDisposed ()) error (SWT.ERROR_INVALID_ARGUMENT);
 	selectItem (item, (style & SWT.MULTI) != 0);
-	redrawItem (item.availableIndex, true);
+	redrawItem (item.getAvailableIndex (), true);
 }
 /**
  * Selects all of the items in the receiver.
@@ -3471,7 +3501,7 @@ void selectItem (TreeItem item, boolean addToSelection) {
 		selectedItems = new TreeItem[] {item};
 		for (int i = 0; i < oldSelectedItems.length; i++) {
 			if (oldSelectedItems [i] != item) {
-				redrawItem (oldSelectedItems [i].availableIndex, true);
+				redrawItem (oldSelectedItems [i].getAvailableIndex (), true);
 			}
 		}
 	} else {
@@ -3572,7 +3602,7 @@ void setFocusItem (TreeItem item, boolean redrawOldFocus) {
 	TreeItem oldFocusItem = focusItem;
 	focusItem = item;
 	if (redrawOldFocus && oldFocusItem != null) {
-		redrawItem (oldFocusItem.availableIndex, true);
+		redrawItem (oldFocusItem.getAvailableIndex (), true);
 	}
 }
 public void setFont (Font value) {
@@ -3696,11 +3726,11 @@ public void setInsertMark (TreeItem item, boolean before) {
 	TreeItem oldInsertItem = insertMarkItem;
 	insertMarkItem = item;
 	insertMarkPrecedes = before;
-	if (oldInsertItem != null && oldInsertItem.availableIndex != -1) {
-		redrawItem (oldInsertItem.availableIndex, true);
+	if (oldInsertItem != null && oldInsertItem.getAvailableIndex () != -1) {
+		redrawItem (oldInsertItem.getAvailableIndex (), true);
 	}
-	if (item != null && item != oldInsertItem && item.availableIndex != -1) {
-		redrawItem (item.availableIndex, true);
+	if (item != null && item != oldInsertItem && item.getAvailableIndex () != -1) {
+		redrawItem (item.getAvailableIndex (), true);
 	}
 }
 /**
@@ -3724,9 +3754,10 @@ public void setItemCount (int count) {
 
 	/* if the new item count is less than the current count then remove all excess items from the end */
 	if (count < items.length) {
-		redrawStart = count > 0 ? items [count - 1].availableIndex : 0;
+		redrawStart = count > 0 ? items [count - 1].getAvailableIndex () : 0;
 		redrawEnd = availableItemsCount - 1;
-		availableItemsCount = items [count].availableIndex;
+		availableItemsCount = items [count].getAvailableIndex ();
+		invalidateAvailableIndices (availableItemsCount);
 		for (int i = count; i < items.length; i++) {
 			items [i].dispose (false);
 		}
@@ -3765,7 +3796,7 @@ public void setItemCount (int count) {
 		if (columns.length == 0) updateHorizontalBar ();
 	} else {
 		int grow = count - items.length;
-		redrawStart = items.length == 0 ? 0 : items [items.length - 1].availableIndex;
+		redrawStart = items.length == 0 ? 0 : items [items.length - 1].getAvailableIndex ();
 		redrawEnd = availableItemsCount + grow - 1;
 		TreeItem[] newItems = new TreeItem [count];
 		System.arraycopy (items, 0, newItems, 0, items.length);
@@ -3929,7 +3960,7 @@ void setSelection (TreeItem[] items, boolean updateViewport) {
 
 	for (int i = 0; i < oldSelection.length; i++) {
 		if (!oldSelection [i].isSelected ()) {
-			int availableIndex = oldSelection [i].availableIndex;
+			int availableIndex = oldSelection [i].getAvailableIndex ();
 			if (availableIndex != -1) {
 				redrawItem (availableIndex, true);
 			}
@@ -3940,7 +3971,7 @@ void setSelection (TreeItem[] items, boolean updateViewport) {
 		setFocusItem (selectedItems [0], true);
 	}
 	for (int i = 0; i < selectedItems.length; i++) {
-		int availableIndex = selectedItems [i].availableIndex;
+		int availableIndex = selectedItems [i].getAvailableIndex ();
 		if (availableIndex != -1) {
 			redrawItem (availableIndex, true);
 		}
@@ -4026,7 +4057,7 @@ public void setTopItem (TreeItem item) {
 
 	int visibleItemCount = (clientArea.height - getHeaderHeight ()) / itemHeight;
 	if (availableItemsCount < visibleItemCount) return;
-	int index = Math.min (item.availableIndex, availableItemsCount - visibleItemCount);
+	int index = Math.min (item.getAvailableIndex (), availableItemsCount - visibleItemCount);
 	if (topIndex == index) return;
 
 	update ();
@@ -4111,7 +4142,7 @@ public void showItem (TreeItem item) {
 	/* item must be available */
 	if (!item.isAvailable ()) item.parentItem.expandAncestors ();
 	
-	int index = item.availableIndex;
+	int index = item.getAvailableIndex ();
 	int visibleItemCount = (clientArea.height - getHeaderHeight ()) / itemHeight;
 	/* nothing to do if item is already in viewport */
 	if (topIndex <= index && index < topIndex + visibleItemCount) return;
@@ -4161,7 +4192,7 @@ void updateColumnWidth (TreeColumn column, int width) {
 		redraw (clientArea.width - change, 0, change, clientArea.height, false);
 	}
 	/* the focus box must be repainted because its stipple may become shifted as a result of its new width */
-	if (focusItem != null) redrawItem (focusItem.availableIndex, true);
+	if (focusItem != null) redrawItem (focusItem.getAvailableIndex (), true);
 
 	GC headerGC = new GC (header);
 	if (drawCount <= 0 && header.getVisible ()) {
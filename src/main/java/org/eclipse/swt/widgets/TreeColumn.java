@@ -212,37 +212,9 @@ void computeDisplayText (GC gc) {
 		return;
 	}
 	
-	/* Make initial guess. */
-	int index = Math.min (availableWidth / gc.getFontMetrics ().getAverageCharWidth (), text.length ());
-	textWidth = gc.textExtent (text.substring (0, index), SWT.DRAW_MNEMONIC).x;
-
-	/* Initial guess is correct. */
-	if (availableWidth == textWidth) {
-		displayText = text.substring (0, index) + Tree.ELLIPSIS;
-		return;
-	}
-
-	/* Initial guess is too high, so reduce until fit is found. */
-	if (availableWidth < textWidth) {
-		do {
-			index--;
-			if (index < 0) {
-				displayText = Tree.ELLIPSIS;
-				return;
-			}
-			text = text.substring (0, index);
-			textWidth = gc.textExtent (text, SWT.DRAW_MNEMONIC).x;
-		} while (availableWidth < textWidth);
-		displayText = text + Tree.ELLIPSIS;
-		return;
-	}
-	
-	/* Initial guess is too low, so increase until overrun is found. */
-	while (textWidth < availableWidth) {
-		index++;
-		textWidth = gc.textExtent (text.substring (0, index), SWT.DRAW_MNEMONIC).x;
-	}
-	displayText = text.substring (0, index - 1) + Tree.ELLIPSIS;
+	/* Find the longest prefix that fits in front of the ellipsis. */
+	int index = fitText (gc, text, availableWidth, true);
+	displayText = text.substring (0, index) + Tree.ELLIPSIS;
 }
 public void dispose () {
 	if (isDisposed ()) return;
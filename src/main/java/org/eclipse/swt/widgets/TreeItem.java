@@ -353,14 +353,14 @@ void addItem (TreeItem item, int index) {
 	 * If new item is above viewport then adjust topIndex and the vertical scrollbar
 	 * so that the current viewport items will not change. 
 	 */
-	if (item.availableIndex < parent.topIndex) {
+	if (item.getAvailableIndex () < parent.topIndex) {
 		parent.topIndex++;
 		ScrollBar vBar = parent.getVerticalBar ();
 		if (vBar != null) vBar.setSelection (parent.topIndex);
 		return;
 	}
 	
-	parent.redrawFromItemDownwards (availableIndex);
+	parent.redrawFromItemDownwards (getAvailableIndex ());
 }
 static Tree checkNull (Tree tree) {
 	if (tree == null) SWT.error (SWT.ERROR_NULL_ARGUMENT);
@@ -430,7 +430,7 @@ public void clear (int index, boolean recursive) {
 	/* if there are no columns then the horizontal scrollbar may need adjusting */
 	TreeItem[] availableDescendents = null;
 	int oldRightX = 0;
-	if (item.availableIndex != -1 && parent.columns.length == 0) {
+	if (item.getAvailableIndex () != -1 && parent.columns.length == 0) {
 		if (recursive) {
 			availableDescendents = item.computeAvailableDescendents ();
 			for (int i = 0; i < availableDescendents.length; i++) {
@@ -448,7 +448,7 @@ public void clear (int index, boolean recursive) {
 	if (recursive) {
 		item.clearAll (true, false);
 	}
-	if (item.availableIndex == -1) return;	/* no visual update needed */
+	if (item.getAvailableIndex () == -1) return;	/* no visual update needed */
 
 	/* adjust the horizontal scrollbar if needed */
 	if (parent.columns.length == 0) {
@@ -470,9 +470,9 @@ public void clear (int index, boolean recursive) {
 		int descendentCount = availableDescendents == null ?
 			item.computeAvailableDescendentCount () :
 			availableDescendents.length;
-		parent.redrawItems (item.availableIndex, item.availableIndex + descendentCount - 1, false);
+		parent.redrawItems (item.getAvailableIndex (), item.getAvailableIndex () + descendentCount - 1, false);
 	} else {
-		parent.redrawItem (item.availableIndex, false);
+		parent.redrawItem (item.getAvailableIndex (), false);
 	}
 }
 /**
@@ -504,7 +504,7 @@ void clearAll (boolean recursive, boolean doVisualUpdate) {
 	/* if there are no columns then the horizontal scrollbar may need adjusting */
 	TreeItem[] availableDescendents = null;
 	int oldRightX = 0;
-	if (doVisualUpdate && availableIndex != -1 && expanded && parent.columns.length == 0) {
+	if (doVisualUpdate && getAvailableIndex () != -1 && expanded && parent.columns.length == 0) {
 		if (recursive) {
 			availableDescendents = computeAvailableDescendents ();
 			/*
@@ -529,7 +529,7 @@ void clearAll (boolean recursive, boolean doVisualUpdate) {
 		if (recursive) items [i].clearAll (true, false);
 	}
 
-	if (!doVisualUpdate || availableIndex == -1 || !expanded) return;	/* no visual update needed */
+	if (!doVisualUpdate || getAvailableIndex () == -1 || !expanded) return;	/* no visual update needed */
 
 	/* adjust the horizontal scrollbar if needed */
 	if (parent.columns.length == 0) {
@@ -556,13 +556,13 @@ void clearAll (boolean recursive, boolean doVisualUpdate) {
 
 	/* redraw the item(s) */
 	if (recursive) {
-		int startIndex = items [0].availableIndex;
+		int startIndex = items [0].getAvailableIndex ();
 		TreeItem lastChild = items [items.length - 1]; 
-		int endIndex = lastChild.availableIndex + lastChild.computeAvailableDescendentCount () - 1;
+		int endIndex = lastChild.getAvailableIndex () + lastChild.computeAvailableDescendentCount () - 1;
 		parent.redrawItems (startIndex, endIndex, false);
 	} else {
 		for (int i = 0; i < items.length; i++) {
-			parent.redrawItem (items [i].availableIndex, false);
+			parent.redrawItem (items [i].getAvailableIndex (), false);
 		}
 	}
 }
@@ -666,43 +666,16 @@ void computeDisplayText (int columnIndex, GC gc) {
 		return;
 	}
 	
-	/* Make initial guess. */
-	int index = Math.min (availableWidth / gc.getFontMetrics ().getAverageCharWidth (), text.length ());
-	textWidth = gc.stringExtent (text.substring (0, index)).x;
-
-	/* Initial guess is correct. */
-	if (availableWidth == textWidth) {
-		displayTexts [columnIndex] = text.substring (0, index) + Tree.ELLIPSIS;
-		textWidths [columnIndex] = textWidth + ellipsisWidth;
-		return;
-	}
-
-	/* Initial guess is too high, so reduce until fit is found. */
-	if (availableWidth < textWidth) {
-		do {
-			index--;
-			if (index < 0) {
-				displayTexts [columnIndex] = Tree.ELLIPSIS;
-				textWidths [columnIndex] = ellipsisWidth;
-				return;
-			}
-			text = text.substring (0, index);
-			textWidth = gc.stringExtent (text).x;
-		} while (availableWidth < textWidth);
-		displayTexts [columnIndex] = text + Tree.ELLIPSIS;
-		textWidths [columnIndex] = textWidth + ellipsisWidth;
+	/* Find the longest prefix that fits in front of the ellipsis. */
+	int index = fitText (gc, text, availableWidth, false);
+	if (index == 0) {
+		displayTexts [columnIndex] = Tree.ELLIPSIS;
+		textWidths [columnIndex] = ellipsisWidth;
 		return;
 	}
-	
-	/* Initial guess is too low, so increase until overrun is found. */
-	int previousWidth = 0;
-	while (textWidth < availableWidth) {
-		index++;
-		previousWidth = textWidth;
-		textWidth = gc.stringExtent (text.substring (0, index)).x;
-	}
-	displayTexts [columnIndex] = text.substring (0, index - 1) + Tree.ELLIPSIS;
-	textWidths [columnIndex] = previousWidth + ellipsisWidth;
+	text = text.substring (0, index);
+	displayTexts [columnIndex] = text + Tree.ELLIPSIS;
+	textWidths [columnIndex] = gc.stringExtent (text).x + ellipsisWidth;
 }
 void computeDisplayTexts (GC gc) {
 	if ((parent.style & SWT.VIRTUAL) != 0 && !cached) return;	/* nothing to do */
@@ -742,12 +715,12 @@ public void dispose () {
 		if (isLastChild () && index > 0) {
 			/* vertical connector lines no longer needed for this item */
 			if (parentItem != null) {
-				startIndex = parentItem.items [index - 1].availableIndex;
+				startIndex = parentItem.items [index - 1].getAvailableIndex ();
 			} else {
-				startIndex = parent.items [index - 1].availableIndex;
+				startIndex = parent.items [index - 1].getAvailableIndex ();
 			}
 		} else {
-			startIndex = availableIndex;
+			startIndex = getAvailableIndex ();
 		}
 		endIndex = parent.availableItemsCount - 1;
 	}
@@ -759,7 +732,7 @@ public void dispose () {
 		parent.reassignFocus ();
 		focusItem = parent.focusItem;
 		if (focusItem != null) {
-			parent.redrawItem (focusItem.availableIndex, true);
+			parent.redrawItem (focusItem.getAvailableIndex (), true);
 		}
 	}
 	if (parentItem != null) parentItem.removeItem (this, index);
@@ -802,6 +775,22 @@ void expandAncestors () {
 		expanded = false;
 	}
 }
+/*
+ * Returns the receiver's index in its parent's available items, or -1 if it
+ * is not available.  The index of an item that was moved by an expand or
+ * collapse may be out of date, in which case the item is at or beyond the
+ * parent's firstStaleIndex and is renumbered on demand.  Note that an out of
+ * date index can be below firstStaleIndex, so the index is checked against
+ * the available items rather than against firstStaleIndex.
+ */
+int getAvailableIndex () {
+	if (availableIndex == -1 || parent == null) return availableIndex;
+	if (availableIndex < parent.availableItemsCount && parent.availableItems [availableIndex] == this) {
+		return availableIndex;
+	}
+	parent.updateAvailableIndices (this);
+	return availableIndex;
+}
 /**
  * Returns the receiver's background color.
  *
@@ -1636,11 +1625,11 @@ boolean isAvailable () {
  * viewport of the parent.
  */
 boolean isInViewport () {
-	if (availableIndex == -1) return false;
+	if (getAvailableIndex () == -1) return false;
 	int topIndex = parent.topIndex;
-	if (availableIndex < topIndex) return false;
+	if (getAvailableIndex () < topIndex) return false;
 	int visibleCount = parent.clientArea.height / parent.itemHeight;
-	return availableIndex <= topIndex + visibleCount;
+	return getAvailableIndex () <= topIndex + visibleCount;
 }
 /*
  * Returns true if the receiver is the last child of its parent item, or of its parent
@@ -2149,7 +2138,7 @@ public void removeAll () {
 	items = Tree.NO_ITEMS;
 	expanded = false;
 	if (isAvailable ()) {
-		parent.redrawItems (availableIndex, lastAvailableIndex, false);
+		parent.redrawItems (getAvailableIndex (), lastAvailableIndex, false);
 	}
 }
 /*
@@ -2289,11 +2278,11 @@ public void setExpanded (boolean value) {
 	if ((parent.style & SWT.VIRTUAL) != 0) cached = true;
 	if (value) {
 		expanded = value;
-		if (availableIndex == -1) return;
+		if (getAvailableIndex () == -1) return;
 
 		TreeItem[] availableDescendents = computeAvailableDescendents ();
 		int descendentsCount = availableDescendents.length;
-		if (availableIndex != parent.availableItemsCount - 1) {
+		if (getAvailableIndex () != parent.availableItemsCount - 1) {
 			/* the receiver is not the last available item */
 			Rectangle clientArea = parent.clientArea;
 			int y = parent.getItemY (this) + parent.itemHeight;
@@ -2324,20 +2313,20 @@ public void setExpanded (boolean value) {
 		 * If new item is above viewport then adjust topIndex and the vertical scrollbar
 		 * so that the current viewport items will not change. 
 		 */
-		if (availableIndex < parent.topIndex) {
+		if (getAvailableIndex () < parent.topIndex) {
 			parent.topIndex += descendentsCount - 1;
 			ScrollBar vBar = parent.getVerticalBar ();
 			if (vBar != null) vBar.setSelection (parent.topIndex);
 			return;
 		}
 
-		int redrawStart = availableIndex + 1;
+		int redrawStart = getAvailableIndex () + 1;
 		int redrawEnd = redrawStart + descendentsCount - 2;
 		parent.redrawItems (redrawStart, redrawEnd, false);
 	} else {
 		TreeItem[] descendents = computeAvailableDescendents ();
 		expanded = value;
-		if (availableIndex == -1) return;
+		if (getAvailableIndex () == -1) return;
 		Rectangle clientArea = parent.clientArea;
 
 		int y = parent.getItemY (this) + parent.itemHeight;
@@ -2359,7 +2348,7 @@ public void setExpanded (boolean value) {
 		 * If all collapsed items are above the viewport then adjust topIndex and
 		 * the vertical scrollbar so that the current viewport items will not change.
 		 */
-		int bottomIndex = availableIndex + descendents.length - 1;
+		int bottomIndex = getAvailableIndex () + descendents.length - 1;
 		if (bottomIndex < parent.topIndex) {
 			parent.topIndex = parent.topIndex - descendents.length + 1;
 			ScrollBar vBar = parent.getVerticalBar ();
@@ -2382,7 +2371,7 @@ public void setExpanded (boolean value) {
 			parent.sendEvent (SWT.Selection, newEvent);
 			if (isDisposed ()) return;
 			parent.showItem (this);
-			parent.redrawItem (availableIndex, true);
+			parent.redrawItem (getAvailableIndex (), true);
 		}
 	}
 	/* redraw the receiver's expander box */
@@ -2755,7 +2744,7 @@ public void setItemCount (int count) {
 
 	/* if the new item count is less than the current count then remove all excess items from the end */
 	if (count < items.length) {
-		redrawStart = count > 0 ? items [count - 1].availableIndex : availableIndex;
+		redrawStart = count > 0 ? items [count - 1].getAvailableIndex () : getAvailableIndex ();
 		redrawEnd = parent.availableItemsCount - 1;
 		for (int i = count; i < items.length; i++) {
 			items [i].dispose (true);
@@ -2771,7 +2760,7 @@ public void setItemCount (int count) {
 	} else {
 		int oldAvailableDescendentCount = computeAvailableDescendentCount ();
 		int grow = count - items.length;
-		redrawStart = items.length == 0 ? availableIndex : items [items.length - 1].availableIndex;
+		redrawStart = items.length == 0 ? getAvailableIndex () : items [items.length - 1].getAvailableIndex ();
 		redrawEnd = expanded && isAvailable () ? parent.availableItemsCount + grow  - 1: redrawStart;
 		TreeItem[] newItems = new TreeItem [count];
 		System.arraycopy (items, 0, newItems, 0, items.length);
@@ -2780,7 +2769,7 @@ public void setItemCount (int count) {
 			items [i] = new TreeItem (this, SWT.NONE, i, false);
 		}
 		
-		if (expanded && availableIndex != -1) {
+		if (expanded && getAvailableIndex () != -1) {
 			/* expand the availableItems array if necessary */
 			if (parent.availableItems.length < parent.availableItemsCount + grow) {
 				TreeItem[] newAvailableItems = new TreeItem [parent.availableItemsCount + grow];
@@ -2789,30 +2778,32 @@ public void setItemCount (int count) {
 			}
 			TreeItem[] availableItems = parent.availableItems;
 			/* shift items right to create space for the new available items */
-			int dest = availableIndex + oldAvailableDescendentCount + grow;
+			int dest = getAvailableIndex () + oldAvailableDescendentCount + grow;
 			System.arraycopy (
 				availableItems,
-				availableIndex + oldAvailableDescendentCount,
+				getAvailableIndex () + oldAvailableDescendentCount,
 				availableItems,
 				dest,
 				availableItems.length - dest);
 			parent.availableItemsCount += grow;
 			/* copy new items in */
+			int start = getAvailableIndex () + oldAvailableDescendentCount;
 			System.arraycopy (
 				items,
 				items.length - grow,
 				availableItems,
-				availableIndex + oldAvailableDescendentCount,
+				start,
 				grow);
-			/* update availableIndex for all affected items */
-			for (int i = availableIndex + oldAvailableDescendentCount; i < parent.availableItemsCount; i++) {
-				availableItems [i].availableIndex = i;
+			/* the new items are numbered now, the items shifted down are numbered lazily */
+			for (int i = 0; i < grow; i++) {
+				availableItems [start + i].availableIndex = start + i;
 			}
+			parent.invalidateAvailableIndices (start + grow);
 		}
 	}
 
 	if ((parent.style & SWT.VIRTUAL) != 0) cached = true;
-	if (availableIndex != -1) {
+	if (getAvailableIndex () != -1) {
 		if (expanded) parent.updateVerticalBar ();
 		parent.redrawItems (redrawStart, redrawEnd, false);
 	}
@@ -2894,7 +2885,7 @@ public void setText (int columnIndex, String value) {
 	gc.setFont (getFont (columnIndex, false));
 	computeDisplayText (columnIndex, gc);
 	gc.dispose ();
-	if (availableIndex == -1) return;
+	if (getAvailableIndex () == -1) return;
 	if (parent.columns.length == 0) {
 		Rectangle bounds = getBounds (false);
 		int rightX = bounds.x + bounds.width;